@@ -0,0 +1,140 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request and response bodies of {@link SessionsRestController} through a message converter like Spring MVC uses
+ * them: {@code jackson} with an {@link ObjectMapper} configured like the application's, {@code hand-written} with
+ * {@link SessionsJsonHttpMessageConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int sessions;
+
+    @Param({"jackson", "hand-written"})
+    String codec;
+
+    private HttpMessageConverter<Object> converter;
+    private final BufferOutputMessage output = new BufferOutputMessage();
+    private ChargingSession session;
+    private List<ChargingSession> sessionList;
+    private RestSummary summary;
+    private byte[] submitRequest;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        converter = codec.equals("jackson") ? new MappingJackson2HttpMessageConverter(objectMapper)
+                : new SessionsJsonHttpMessageConverter(new SessionsJson(objectMapper));
+        LocalDateTime now = LocalDateTime.now();
+        sessionList = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            sessionList.add(new ChargingSession(UUID.randomUUID(), "ABC-" + i, now.minusSeconds(i), null, ChargingSession.Status.IN_PROGRESS));
+        }
+        session = sessionList.get(0);
+        summary = new RestSummary(5, 3, 2);
+        submitRequest = "{\"stationId\":\"ABC-12345\",\"timestamp\":\"2019-05-06T19:00:20.529\"}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int writeSession() throws IOException {
+        return write(session);
+    }
+
+    @Benchmark
+    public int writeSessionList() throws IOException {
+        return write(sessionList);
+    }
+
+    @Benchmark
+    public int writeSummary() throws IOException {
+        return write(summary);
+    }
+
+    @Benchmark
+    public Object readSubmitRequest() throws IOException {
+        return converter.read(RestSubmitSessionRequest.class, new BufferInputMessage(submitRequest));
+    }
+
+    private int write(Object body) throws IOException {
+        output.reset();
+        converter.write(body, MediaType.APPLICATION_JSON, output);
+        return output.body.size();
+    }
+
+    private static final class BufferOutputMessage implements HttpOutputMessage {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 20);
+        private HttpHeaders headers = new HttpHeaders();
+
+        void reset() {
+            body.reset();
+            headers = new HttpHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static final class BufferInputMessage implements HttpInputMessage {
+        private final byte[] body;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        BufferInputMessage(byte[] body) {
+            this.body = body;
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.example.sessionsstore.journal;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionsStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of starting and stopping a session per durability level of the journal, {@code none} being the store
+ * without a journal. Run with {@code -Pjmh.threads} above one to see group commit of {@code always}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SessionsJournalBenchmark {
+
+    @Param({"none", "always", "interval", "os"})
+    String fsync;
+
+    private SessionsStore sessionsStore;
+    private SessionsJournal journal;
+    private Path directory;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        sessionsStore = new SessionsStore();
+        if (!fsync.equals("none")) {
+            directory = Files.createTempDirectory("journal");
+            journal = new SessionsJournal(sessionsStore, directory.toString(), DataSize.ofMegabytes(64L),
+                    FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT)), Duration.ofMillis(10L), Duration.ofHours(1L));
+            journal.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.stop();
+            FileSystemUtils.deleteRecursively(directory);
+            journal = null;
+        }
+    }
+
+    @Benchmark
+    public void addAndStopSession() {
+        ChargingSession session = sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now());
+    }
+
+}
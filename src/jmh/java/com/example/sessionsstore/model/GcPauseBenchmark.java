@@ -0,0 +1,72 @@
+package com.example.sessionsstore.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full GC pause with a filled store, per engine, which grows with the objects the collector has to trace: one
+ * graph of objects per session in the {@code concurrent} engine, a few large primitive arrays in {@code compact}
+ * and a buffer per slab of 65536 sessions in {@code off-heap}. The heap in use after the collection is printed at
+ * the end of every trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class GcPauseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FilledStore {
+
+        @Param({"1000000", "10000000"})
+        int size;
+
+        @Param({"concurrent", "compact", "off-heap"})
+        String storage;
+
+        SessionsStorage sessionsStorage;
+        SessionsStore sessionsStore;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            sessionsStorage = SessionsStoreBenchmark.createStorage(storage);
+            sessionsStore = new SessionsStore(sessionsStorage);
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < size; i++) {
+                ChargingSession session = sessionsStore.addSession("ABC-" + (i % 1000), now.minusSeconds(i % 3600));
+                if (i % 2 == 0) {
+                    sessionsStore.stopSession(session.getId().toString(), now);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            System.gc();
+            long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            System.out.printf("%n%s storage, %d sessions: %d MB heap in use after GC%n", storage, size, heapUsed >> 20);
+            SessionsStoreBenchmark.closeStorage(sessionsStorage);
+        }
+    }
+
+    @Benchmark
+    public int fullGc(FilledStore store) {
+        System.gc();
+        return store.sessionsStorage.indexSize();
+    }
+
+}
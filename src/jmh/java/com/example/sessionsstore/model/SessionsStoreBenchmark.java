@@ -0,0 +1,193 @@
+package com.example.sessionsstore.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store operations at different store sizes and engines. The number of threads is set with {@code -Pjmh.threads},
+ * the mixed workload runs its own fixed group of writers and readers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SessionsStoreBenchmark {
+
+    /**
+     * A store filled once per trial. Stops keep its size, so it is shared by all iterations.
+     */
+    @State(Scope.Benchmark)
+    public static class FilledStore {
+
+        @Param({"1000", "100000", "1000000", "10000000"})
+        int size;
+
+        @Param({"concurrent", "compact", "off-heap", "single-writer"})
+        String storage;
+
+        SessionsStorage sessionsStorage;
+        SessionsStore sessionsStore;
+        String[] ids;
+        LocalDateTime filledAt;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            close();
+            sessionsStorage = createStorage(storage);
+            sessionsStore = new SessionsStore(sessionsStorage);
+            ids = new String[size];
+            LocalDateTime now = LocalDateTime.now();
+            filledAt = now;
+            for (int i = 0; i < size; i++) {
+                // spread over the last hour, so the last minute holds about 1/60 of the sessions
+                ids[i] = sessionsStore.addSession("ABC-" + (i % 1000), now.minusSeconds(i % 3600)).getId().toString();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            closeStorage(sessionsStorage);
+        }
+
+        String randomId() {
+            return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        }
+    }
+
+    /**
+     * A store refilled before every iteration, so that adds measure a store of about the given size rather than one
+     * that grows with the length of the run.
+     */
+    @State(Scope.Benchmark)
+    public static class GrowingStore extends FilledStore {
+
+        @Setup(Level.Iteration)
+        public void refill() {
+            fill();
+        }
+    }
+
+    static SessionsStorage createStorage(String storage) {
+        switch (storage) {
+            case "concurrent":
+                return new ConcurrentSessionsStorage();
+            case "compact":
+                return new CompactSessionsStorage();
+            case "off-heap":
+                return new OffHeapSessionsStorage();
+            case "single-writer":
+                return new SingleWriterSessionsStorage();
+            default:
+                throw new IllegalArgumentException("Unknown storage " + storage);
+        }
+    }
+
+    /**
+     * Stops the writer thread or releases the direct memory of engines that have one.
+     */
+    static void closeStorage(SessionsStorage storage) {
+        if (storage instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) storage).close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public ChargingSession addSession(GrowingStore store) {
+        return store.sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+    }
+
+    @Benchmark
+    public void stopSession(FilledStore store) {
+        store.sessionsStore.stopSession(store.randomId(), LocalDateTime.now());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ArrayList<ChargingSession> getAllSessions(FilledStore store) {
+        return store.sessionsStore.getAllSessions();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ArrayList<ChargingSession> getSessionsUpdatedLastMinute(FilledStore store) {
+        return store.sessionsStore.getSessionsUpdatedLastMinute();
+    }
+
+    /**
+     * The last 10 of the 60 filled minutes.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ArrayList<ChargingSession> getSessionsUpdatedBetween(FilledStore store) {
+        return store.sessionsStore.getSessionsUpdatedBetween(store.filledAt.minusMinutes(10L), store.filledAt);
+    }
+
+    /**
+     * Finds the bucket of a minute like every add and stop does. Run with {@code -Pjmh.profilers=gc} to see what a
+     * lookup allocates.
+     */
+    @Benchmark
+    public int bucketLookup(FilledStore store) {
+        return store.sessionsStorage.bucketSize(ChargingSession.Status.IN_PROGRESS, store.filledAt);
+    }
+
+    @Benchmark
+    public SessionsSummary getSessionsSummary(FilledStore store) {
+        return store.sessionsStore.getSessionsSummary(Duration.ofMinutes(1L));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public ChargingSession mixedAdd(GrowingStore store) {
+        return store.sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedStop(GrowingStore store) {
+        store.sessionsStore.stopSession(store.randomId(), LocalDateTime.now());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedPage(GrowingStore store, Blackhole blackhole) {
+        Iterator<ChargingSession> sessions = store.sessionsStore.getSessionsAfter(store.randomId());
+        for (int i = 0; i < 100 && sessions.hasNext(); i++) {
+            blackhole.consume(sessions.next());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public SessionsSummary mixedSummary(GrowingStore store) {
+        return store.sessionsStore.getSessionsSummary(Duration.ofMinutes(1L));
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.example.sessionsstore.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the {@code sharded} engine from 1 to 16 shards of either engine, with as many threads as cores so
+ * that writers contend. One shard is the engine itself behind the routing of the sharded engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+public class ShardedStorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ShardedStore {
+
+        @Param({"1", "2", "4", "8", "16"})
+        int shards;
+
+        @Param({"concurrent", "compact"})
+        String engine;
+
+        @Param({"100000"})
+        int size;
+
+        SessionsStore sessionsStore;
+        String[] ids;
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            List<SessionsStorage> storages = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                storages.add(SessionsStoreBenchmark.createStorage(engine));
+            }
+            sessionsStore = new SessionsStore(new ShardedSessionsStorage(storages));
+            ids = new String[size];
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < size; i++) {
+                ids[i] = sessionsStore.addSession("ABC-" + (i % 1000), now.minusSeconds(i % 3600)).getId().toString();
+            }
+        }
+
+        String randomId() {
+            return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        }
+    }
+
+    @Benchmark
+    public ChargingSession addSession(ShardedStore store) {
+        return store.sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+    }
+
+    @Benchmark
+    public void stopSession(ShardedStore store) {
+        store.sessionsStore.stopSession(store.randomId(), LocalDateTime.now());
+    }
+
+    @Benchmark
+    public ChargingSession getSession(ShardedStore store) {
+        return store.sessionsStore.getSession(store.randomId());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.example.sessionsstore.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups by station with the same number of sessions per station at growing store sizes. The latency should
+ * stay flat, as only the sessions of the station are visited.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StationIndexBenchmark {
+
+    private static final int SESSIONS_PER_STATION = 100;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"concurrent", "compact", "single-writer"})
+    String storage;
+
+    private SessionsStorage sessionsStorage;
+    private SessionsStore sessionsStore;
+    private int stations;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        sessionsStorage = SessionsStoreBenchmark.createStorage(storage);
+        sessionsStore = new SessionsStore(sessionsStorage);
+        stations = size / SESSIONS_PER_STATION;
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            ChargingSession session = sessionsStore.addSession("ABC-" + (i % stations), now.minusSeconds(i % 3600));
+            if (i % 2 == 0) {
+                sessionsStore.stopSession(session.getId().toString(), now);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        SessionsStoreBenchmark.closeStorage(sessionsStorage);
+    }
+
+    private String randomStation() {
+        return "ABC-" + ThreadLocalRandom.current().nextInt(stations);
+    }
+
+    @Benchmark
+    public ArrayList<ChargingSession> getStationSessions() {
+        return sessionsStore.getStationSessions(randomStation());
+    }
+
+    @Benchmark
+    public SessionsSummary getStationSummary() {
+        return sessionsStore.getStationSummary(randomStation(), null);
+    }
+
+    @Benchmark
+    public SessionsSummary getStationSummaryLastHour() {
+        return sessionsStore.getStationSummary(randomStation(), Duration.ofHours(1L));
+    }
+
+}
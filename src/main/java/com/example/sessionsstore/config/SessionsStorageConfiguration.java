@@ -0,0 +1,85 @@
+package com.example.sessionsstore.config;
+
+import com.example.sessionsstore.model.BackpressurePolicy;
+import com.example.sessionsstore.model.CompactSessionsStorage;
+import com.example.sessionsstore.model.ConcurrentSessionsStorage;
+import com.example.sessionsstore.model.OffHeapSessionsStorage;
+import com.example.sessionsstore.model.SessionsStorage;
+import com.example.sessionsstore.model.ShardedSessionsStorage;
+import com.example.sessionsstore.model.SingleWriterSessionsStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the {@link SessionsStorage} engine with {@code sessions.storage.type}.
+ */
+@Configuration
+public class SessionsStorageConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "sessions.storage.type", havingValue = "concurrent", matchIfMissing = true)
+    public SessionsStorage concurrentSessionsStorage(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ConcurrentSessionsStorage(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sessions.storage.type", havingValue = "compact")
+    public SessionsStorage compactSessionsStorage(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new CompactSessionsStorage(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * Closed with the context, which releases its direct memory.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "sessions.storage.type", havingValue = "off-heap")
+    public SessionsStorage offHeapSessionsStorage(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new OffHeapSessionsStorage(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * Closed with the context, which stops its writer thread.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "sessions.storage.type", havingValue = "single-writer")
+    public SessionsStorage singleWriterSessionsStorage(@Value("${sessions.storage.single-writer.ring-size:65536}") int ringSize,
+                                                       @Value("${sessions.storage.single-writer.backpressure:block}") BackpressurePolicy backpressure,
+                                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        return new SingleWriterSessionsStorage(ringSize, backpressure, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * {@code sessions.storage.sharded.shards} engines of type {@code sessions.storage.sharded.engine}, concurrent
+     * or compact.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "sessions.storage.type", havingValue = "sharded")
+    public SessionsStorage shardedSessionsStorage(@Value("${sessions.storage.sharded.shards:8}") int shardCount,
+                                                  @Value("${sessions.storage.sharded.engine:concurrent}") String engine,
+                                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        List<SessionsStorage> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            switch (engine) {
+                case "concurrent":
+                    shards.add(new ConcurrentSessionsStorage(registry));
+                    break;
+                case "compact":
+                    shards.add(new CompactSessionsStorage(registry));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Shards can be concurrent or compact, not " + engine);
+            }
+        }
+        return new ShardedSessionsStorage(shards);
+    }
+
+}
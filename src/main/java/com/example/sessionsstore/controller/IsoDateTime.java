@@ -0,0 +1,120 @@
+package com.example.sessionsstore.controller;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} for the timestamps of the API without the formatter machinery:
+ * parses {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} and writes {@code yyyy-MM-ddTHH:mm:ss[.fraction]} (trailing
+ * zeros of the fraction stripped) with four digit years. Anything else, including invalid dates, goes through
+ * the formatter, so results and exceptions are the same as with {@link LocalDateTime#parse}.
+ */
+final class IsoDateTime {
+
+    // longest text written: yyyy-MM-ddTHH:mm:ss.nnnnnnnnn
+    static final int MAX_LENGTH = 29;
+
+    private IsoDateTime() {
+    }
+
+    /**
+     * @throws DateTimeParseException if the text is not an ISO local date-time
+     */
+    static LocalDateTime parse(String text) {
+        int length = text.length();
+        if (length < 16 || length > MAX_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || (text.charAt(10) != 'T' && text.charAt(10) != 't') || text.charAt(13) != ':') {
+            return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            second = length >= 19 && text.charAt(16) == ':' ? digits(text, 17, 2) : -1;
+            if (length > 19) {
+                nano = text.charAt(19) == '.' && length > 20 ? digits(text, 20, length - 20) : -1;
+                for (int i = length - 20; i < 9 && nano > 0; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+        } catch (DateTimeException e) {
+            // out of range, the formatter reports it
+            return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+    }
+
+    /**
+     * @return the value of the decimal digits, -1 if there is another character
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes the date-time as ASCII bytes.
+     *
+     * @param buffer at least {@link #MAX_LENGTH} bytes from {@code position}
+     * @return the position after the date-time
+     */
+    static int write(LocalDateTime dateTime, byte[] buffer, int position) {
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            String text = dateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            for (int i = 0; i < text.length(); i++) {
+                buffer[position++] = (byte) text.charAt(i);
+            }
+            return position;
+        }
+        position = writeDigits(year, 4, buffer, position);
+        buffer[position++] = '-';
+        position = writeDigits(dateTime.getMonthValue(), 2, buffer, position);
+        buffer[position++] = '-';
+        position = writeDigits(dateTime.getDayOfMonth(), 2, buffer, position);
+        buffer[position++] = 'T';
+        position = writeDigits(dateTime.getHour(), 2, buffer, position);
+        buffer[position++] = ':';
+        position = writeDigits(dateTime.getMinute(), 2, buffer, position);
+        buffer[position++] = ':';
+        position = writeDigits(dateTime.getSecond(), 2, buffer, position);
+        int nano = dateTime.getNano();
+        if (nano > 0) {
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            buffer[position++] = '.';
+            position = writeDigits(nano, digits, buffer, position);
+        }
+        return position;
+    }
+
+    private static int writeDigits(int value, int count, byte[] buffer, int position) {
+        for (int i = position + count - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + count;
+    }
+
+}
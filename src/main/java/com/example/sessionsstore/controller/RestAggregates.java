@@ -0,0 +1,22 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.AggregateBucket;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Body of {@code GET /chargingSessions/summary?from=&to=}. {@code stoppedDurationBounds} are the upper bounds of
+ * the entries of the {@code stoppedDurations} histograms, as ISO-8601 durations.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+class RestAggregates {
+    private String granularity;
+    private String stationId;
+    private List<String> stoppedDurationBounds;
+    private List<AggregateBucket> buckets;
+}
@@ -0,0 +1,18 @@
+package com.example.sessionsstore.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of one entry of a batch request: the status and body the single request would have returned.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class RestBatchItemResult {
+    private int status;
+    private Object body;
+}
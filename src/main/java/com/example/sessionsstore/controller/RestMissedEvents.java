@@ -0,0 +1,16 @@
+package com.example.sessionsstore.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data of a {@code missed} event: the sequence numbers of the events a slow subscriber did not get.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+class RestMissedEvents {
+    private long firstMissed;
+    private long lastMissed;
+}
@@ -0,0 +1,14 @@
+package com.example.sessionsstore.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+class RestStopSessionRequest {
+    private String id;
+    // optional, the time of the request if empty
+    private String timestamp;
+}
@@ -0,0 +1,173 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.SessionsStore;
+import com.example.sessionsstore.model.SessionsSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Serialized JSON bodies of the hot read endpoints, reused while they are current: until the
+ * {@link SessionsStore#getVersion() version} of the store changes or {@code sessions.response-cache.ttl} passes.
+ * The TTL bounds the age of bodies that depend on the time, like summaries of a window ending now. A poll served
+ * from the cache costs a version read and writing the cached bytes.
+ * <p>
+ * Every body has a strong ETag derived from its bytes, so a client that sends it back in {@code If-None-Match} gets
+ * {@code 304 Not Modified} while the body is unchanged. Lookups are counted as {@code sessions.response.cache}
+ * tagged with the endpoint and {@code result} ({@code hit} or {@code miss}), and
+ * {@code sessions.response.cache.hit.ratio} is the share of hits since startup.
+ */
+@Component
+public class SerializedResponseCache {
+
+    // bodies are keyed by endpoint and parameters, a client cycling through parameters must not grow the cache
+    private static final int MAX_ENTRIES = 256;
+
+    private final SessionsStore sessionsStore;
+    private final SessionsJson sessionsJson;
+    private final long ttlNanos;
+    private final long maxBodySize;
+    private final ConcurrentMap<String, Body> bodies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> hitCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> missCounters = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public SerializedResponseCache(SessionsStore sessionsStore,
+                                   SessionsJson sessionsJson,
+                                   @Value("${sessions.response-cache.ttl:1s}") Duration ttl,
+                                   @Value("${sessions.response-cache.max-body-size:16MB}") DataSize maxBodySize,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        this(sessionsStore, sessionsJson, ttl, maxBodySize, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public SerializedResponseCache(SessionsStore sessionsStore, SessionsJson sessionsJson, Duration ttl, DataSize maxBodySize,
+                                   MeterRegistry meterRegistry) {
+        this.sessionsStore = sessionsStore;
+        this.sessionsJson = sessionsJson;
+        this.ttlNanos = ttl.toNanos();
+        this.maxBodySize = maxBodySize.toBytes();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("sessions.response.cache.hit.ratio", this, SerializedResponseCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * @return the body of {@code GET /chargingSessions}
+     */
+    Body getAllSessions() {
+        return get("all", "all", sessionsStore::getAllSessions);
+    }
+
+    /**
+     * @return the body of {@code GET /chargingSessions/summary}
+     * @throws IllegalArgumentException if the store does not summarize such a window
+     */
+    Body getSessionsSummary(Duration window) {
+        return get("summary", "summary " + window, () -> {
+            SessionsSummary summary = sessionsStore.getSessionsSummary(window);
+            return new RestSummary(summary.getTotalCount(), summary.getStartedCount(), summary.getStoppedCount());
+        });
+    }
+
+    /**
+     * Returns the current body of {@code key}, serializing what {@code compute} returns if the cached one is
+     * outdated. Bodies larger than {@code sessions.response-cache.max-body-size} are not kept.
+     *
+     * @param endpoint tag of the lookup metrics
+     * @param key      endpoint and parameters that determine the body
+     */
+    Body get(String endpoint, String key, Supplier<?> compute) {
+        // read before computing, so that a change during the computation outdates the body
+        long version = sessionsStore.getVersion();
+        long now = System.nanoTime();
+        Body body = bodies.get(key);
+        if (body != null && body.version == version && now - body.createdAt < ttlNanos) {
+            hits.increment();
+            lookupCounter(hitCounters, endpoint, "hit").increment();
+            return body;
+        }
+        misses.increment();
+        lookupCounter(missCounters, endpoint, "miss").increment();
+        byte[] bytes = sessionsJson.toBytes(compute.get());
+        body = new Body(bytes, version, now);
+        if (ttlNanos > 0 && bytes.length <= maxBodySize) {
+            if (bodies.size() >= MAX_ENTRIES && !bodies.containsKey(key)) {
+                bodies.clear();
+            }
+            bodies.put(key, body);
+        }
+        return body;
+    }
+
+    private Counter lookupCounter(ConcurrentMap<String, Counter> counters, String endpoint, String result) {
+        // get() first: computeIfAbsent locks the hash bin even when the counter already exists
+        Counter counter = counters.get(endpoint);
+        return counter != null ? counter : counters.computeIfAbsent(endpoint, e -> meterRegistry.counter("sessions.response.cache", "endpoint", e, "result", result));
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * A serialized body and the store version it was computed at.
+     */
+    static final class Body {
+        private final byte[] bytes;
+        private final String etag;
+        private final long version;
+        private final long createdAt;
+
+        Body(byte[] bytes, long version, long createdAt) {
+            this.bytes = bytes;
+            this.version = version;
+            this.createdAt = createdAt;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            this.etag = "\"" + Integer.toHexString(bytes.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @param ifNoneMatch the {@code If-None-Match} header, a list of weak or strong ETags or {@code *}
+         * @return {@code true} if the client already has this body
+         */
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
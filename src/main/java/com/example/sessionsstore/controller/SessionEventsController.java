@@ -0,0 +1,215 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.SessionEvent;
+import com.example.sessionsstore.model.SessionEventLog;
+import com.example.sessionsstore.model.SessionEventSubscriber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code GET /chargingSessions/events} of the servlet serving mode: the starts and stops of sessions as
+ * Server-Sent Events from {@link SessionEventLog}, {@code SessionsHandler#streamEvents} in the reactive mode.
+ * <p>
+ * Every event has its sequence number as id, a client resumes after the last event it got with the
+ * {@code Last-Event-ID} header (sent by {@code EventSource} when it reconnects) or the {@code lastEventId}
+ * parameter. Without either it gets the events from now on. Servlet responses are written with blocking I/O, so
+ * the events of a client are written by a sender thread while the client accepts them, and a client that stalls
+ * only falls behind in the log. Idle streams get a comment every {@code sessions.events.heartbeat-interval}, which
+ * keeps proxies from closing them and detects clients that are gone.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SessionEventsController {
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final SessionEventLog eventLog;
+    private final Duration heartbeatInterval;
+    private final Set<EmitterSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threads = new AtomicInteger();
+    // a thread per stream that is being written, streams that are up to date hold no thread
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-events-sender-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-events-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SessionEventsController(SessionEventLog eventLog,
+                                   @Value("${sessions.events.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.eventLog = eventLog;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        heartbeats.scheduleWithFixedDelay(() -> subscribers.forEach(EmitterSubscriber::heartbeat),
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        heartbeats.shutdownNow();
+        subscribers.forEach(EmitterSubscriber::close);
+        senders.shutdownNow();
+    }
+
+    @GetMapping(value = "/chargingSessions/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventIdHeader,
+                                   @RequestParam(required = false) String lastEventId) {
+        Long after = parseLastEventId(lastEventIdHeader, lastEventId);
+        // no timeout, the stream lasts until the client or a failed write ends it
+        SseEmitter emitter = new SseEmitter(0L);
+        EmitterSubscriber subscriber = new EmitterSubscriber(emitter);
+        subscribers.add(subscriber);
+        subscriber.subscription = eventLog.subscribe(after, subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        return emitter;
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<RestError> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(new RestError(e.getMessage()));
+    }
+
+    /**
+     * @return the sequence number to resume after, {@code null} to start with the next event
+     * @throws IllegalArgumentException if the id is not a sequence number
+     */
+    static Long parseLastEventId(String header, String param) {
+        String lastEventId = StringUtils.isEmpty(header) ? param : header;
+        if (StringUtils.isEmpty(lastEventId)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse Last-Event-ID");
+        }
+    }
+
+    static String eventName(SessionEvent event) {
+        return event.getType().name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Takes events from the log only while the previous ones are written, so the log is the only buffer.
+     */
+    private final class EmitterSubscriber implements SessionEventSubscriber {
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean completeWhenSent;
+        private volatile long sentAt = System.nanoTime();
+        private volatile SessionEventLog.Subscription subscription;
+
+        EmitterSubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public long demand() {
+            return outbox.isEmpty() && !sending.get() ? Long.MAX_VALUE : 0L;
+        }
+
+        @Override
+        public void onEvents(List<SessionEvent> events) {
+            for (SessionEvent event : events) {
+                outbox.add(SseEmitter.event()
+                        .id(Long.toString(event.getSequence()))
+                        .name(eventName(event))
+                        .data(event.getSession(), MediaType.APPLICATION_JSON));
+            }
+            send();
+        }
+
+        @Override
+        public void onMissed(long firstMissed, long lastMissed) {
+            outbox.add(SseEmitter.event().name("missed").data(new RestMissedEvents(firstMissed, lastMissed), MediaType.APPLICATION_JSON));
+            send();
+        }
+
+        @Override
+        public void onDisconnected(long firstMissed) {
+            outbox.add(SseEmitter.event().name("disconnected")
+                    .data(new RestError("Subscriber fell behind, events from " + firstMissed + " on were dropped"), MediaType.APPLICATION_JSON));
+            completeWhenSent = true;
+            send();
+        }
+
+        void heartbeat() {
+            if (outbox.isEmpty() && System.nanoTime() - sentAt >= heartbeatInterval.toNanos()) {
+                outbox.add(SseEmitter.event().comment(""));
+                send();
+            }
+        }
+
+        private void send() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    for (SseEmitter.SseEventBuilder event; (event = outbox.poll()) != null; ) {
+                        emitter.send(event);
+                    }
+                    sentAt = System.nanoTime();
+                    if (completeWhenSent) {
+                        emitter.complete();
+                    }
+                } catch (Exception e) {
+                    // the client is gone
+                    close();
+                    emitter.completeWithError(e);
+                } finally {
+                    sending.set(false);
+                }
+                // events added after the last poll and before sending was reset
+            } while (!outbox.isEmpty() && sending.compareAndSet(false, true));
+        }
+
+        void close() {
+            subscribers.remove(this);
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            outbox.clear();
+        }
+    }
+
+}
@@ -0,0 +1,373 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.ConsistentHashRing;
+import com.example.sessionsstore.model.SessionsStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Several instances of the application that share the sessions, enabled with {@code sessions.cluster.nodes} (the
+ * base urls of all instances, the same list on every instance) and {@code sessions.cluster.self} (the url of this
+ * instance in the list). Every session belongs to one node, chosen by consistent hashing of its id
+ * ({@link ConsistentHashRing}). A node gives new sessions ids that it owns, forwards requests for sessions of
+ * other nodes to their owner and gathers reads of all sessions from all nodes.
+ * <p>
+ * Requests between nodes carry {@value #FORWARDED_HEADER}, a node answers them from its own sessions only.
+ * Changing the list of nodes moves the ownership of about {@code 1/n} of the ids, their sessions are not moved.
+ * Served by {@link SessionsRestController} only, the reactive mode does not support clusters.
+ */
+@Component
+@ConditionalOnProperty(name = "sessions.cluster.nodes")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SessionsCluster {
+
+    static final String FORWARDED_HEADER = "X-Sessions-Forwarded";
+    private static final int VIRTUAL_NODES = 64;
+
+    private final SessionsStore sessionsStore;
+    private final ObjectMapper objectMapper;
+    private final List<String> nodes;
+    private final int self;
+    private final ConsistentHashRing ring;
+    private final RestTemplate restTemplate;
+    private final AtomicInteger threads = new AtomicInteger();
+    // gathers run on the threads of the requests waiting for them, so their number is bounded by those
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-cluster-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SessionsCluster(SessionsStore sessionsStore,
+                           ObjectMapper objectMapper,
+                           @Value("${sessions.cluster.nodes}") String[] nodes,
+                           @Value("${sessions.cluster.self}") String self,
+                           @Value("${sessions.cluster.timeout:2s}") Duration timeout) {
+        this.sessionsStore = sessionsStore;
+        this.objectMapper = objectMapper;
+        List<String> urls = new ArrayList<>(nodes.length);
+        for (String node : nodes) {
+            urls.add(trimUrl(node));
+        }
+        this.nodes = Collections.unmodifiableList(urls);
+        this.self = urls.indexOf(trimUrl(self));
+        if (this.self < 0) {
+            throw new IllegalArgumentException("sessions.cluster.self=" + self + " is not one of sessions.cluster.nodes=" + urls);
+        }
+        this.ring = new ConsistentHashRing(urls, VIRTUAL_NODES);
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) timeout.toMillis());
+        requestFactory.setReadTimeout((int) timeout.toMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        // answers of other nodes are relayed to the client as they are
+        this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+    }
+
+    private static String trimUrl(String url) {
+        url = url.trim();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @PostConstruct
+    void start() {
+        sessionsStore.setOwnedIds(this::isLocal);
+    }
+
+    @PreDestroy
+    void stop() {
+        sessionsStore.setOwnedIds(id -> true);
+        executor.shutdownNow();
+    }
+
+    List<String> getNodes() {
+        return nodes;
+    }
+
+    boolean isLocal(UUID id) {
+        return ring.nodeFor(id) == self;
+    }
+
+    /**
+     * @return the position of the node that owns the id in {@link #getNodes()}
+     */
+    int nodeFor(UUID id) {
+        return ring.nodeFor(id);
+    }
+
+    /**
+     * Sends the request to another node and returns its answer, whatever the status.
+     *
+     * @throws RestClientException if the node cannot be reached
+     */
+    ResponseEntity<byte[]> forward(int node, HttpMethod method, String pathAndQuery, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_HEADER, "true");
+        if (body != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        return restTemplate.exchange(nodes.get(node) + pathAndQuery, method, new HttpEntity<>(body, headers), byte[].class);
+    }
+
+    /**
+     * Sends the {@code GET} request to all other nodes at once.
+     *
+     * @return the bodies of the answers in the order of the nodes
+     * @throws RestClientException if a node cannot be reached or does not answer with a success
+     */
+    List<byte[]> gather(String pathAndQuery) {
+        List<CompletableFuture<byte[]>> answers = new ArrayList<>(nodes.size() - 1);
+        for (int node = 0; node < nodes.size(); node++) {
+            if (node != self) {
+                int peer = node;
+                answers.add(CompletableFuture.supplyAsync(() -> successBody(peer, forward(peer, HttpMethod.GET, pathAndQuery, null)), executor));
+            }
+        }
+        List<byte[]> bodies = new ArrayList<>(answers.size());
+        for (CompletableFuture<byte[]> answer : answers) {
+            bodies.add(join(answer));
+        }
+        return bodies;
+    }
+
+    /**
+     * Like {@link #gather(String)}, with the bodies read as {@code type}.
+     */
+    <T> List<T> gather(String pathAndQuery, Class<T> type) {
+        List<T> values = new ArrayList<>(nodes.size() - 1);
+        for (byte[] body : gather(pathAndQuery)) {
+            values.add(read(body, type));
+        }
+        return values;
+    }
+
+    private byte[] successBody(int node, ResponseEntity<byte[]> answer) {
+        if (!answer.getStatusCode().is2xxSuccessful()) {
+            throw new RestClientException("Node " + nodes.get(node) + " answered " + answer.getStatusCodeValue());
+        }
+        return answer.getBody() == null ? new byte[0] : answer.getBody();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private <T> T read(byte[] body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} sessions following the session with id {@code after}: the rest of the sessions of
+     * the node that owns {@code after}, then the sessions of the following nodes, like
+     * {@link com.example.sessionsstore.model.ShardedSessionsStorage} walks its shards.
+     *
+     * @param localPage the page of this node for a cursor and a limit
+     * @throws IllegalArgumentException if a node cannot resume after {@code after}
+     */
+    List<JsonNode> page(UUID after, int limit, BiFunction<UUID, Integer, List<ChargingSession>> localPage) {
+        List<JsonNode> page = new ArrayList<>(Math.min(limit, 256));
+        int first = after == null ? 0 : ring.nodeFor(after);
+        for (int node = first; node < nodes.size() && page.size() < limit; node++) {
+            UUID cursor = node == first ? after : null;
+            int remaining = limit - page.size();
+            if (node == self) {
+                for (ChargingSession session : localPage.apply(cursor, remaining)) {
+                    page.add(objectMapper.valueToTree(session));
+                }
+                continue;
+            }
+            ResponseEntity<byte[]> answer = forward(node, HttpMethod.GET, "/chargingSessions?limit=" + remaining + (cursor == null ? "" : "&after=" + cursor), null);
+            if (answer.getStatusCode().is4xxClientError()) {
+                throw new IllegalArgumentException("Node " + nodes.get(node) + " cannot resume after " + after);
+            }
+            successBody(node, answer);
+            read(answer.getBody(), JsonNode.class).forEach(page::add);
+        }
+        return page;
+    }
+
+    /**
+     * Writes the sessions following the session with id {@code after} as newline delimited JSON, node after node
+     * in the order of {@link #page}. The streams of other nodes are copied as they arrive.
+     *
+     * @param localStream writes the sessions of this node following a cursor
+     */
+    void stream(UUID after, OutputStream outputStream, LocalStream localStream) throws IOException {
+        int first = after == null ? 0 : ring.nodeFor(after);
+        for (int node = first; node < nodes.size(); node++) {
+            UUID cursor = node == first ? after : null;
+            if (node == self) {
+                localStream.write(cursor, outputStream);
+                continue;
+            }
+            int peer = node;
+            restTemplate.execute(nodes.get(node) + "/chargingSessions" + (cursor == null ? "" : "?after=" + cursor), HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().set(FORWARDED_HEADER, "true");
+                        request.getHeaders().setAccept(Collections.singletonList(MediaType.parseMediaType(SessionsRestController.APPLICATION_NDJSON_VALUE)));
+                    },
+                    response -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new RestClientException("Node " + nodes.get(peer) + " answered " + response.getRawStatusCode());
+                        }
+                        StreamUtils.copy(response.getBody(), outputStream);
+                        return null;
+                    });
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Stops the entries of other nodes by forwarding them to their owners, one batch per node at once, and the
+     * rest with {@code localStop}. Entries with an invalid id are stopped locally, which rejects them.
+     *
+     * @return the result of every entry in the order of {@code requests}
+     */
+    RestBatchItemResult[] stopSessions(List<RestStopSessionRequest> requests,
+                                       Function<List<RestStopSessionRequest>, RestBatchItemResult[]> localStop) {
+        int[] nodeOfRequest = new int[requests.size()];
+        List<List<RestStopSessionRequest>> byNode = new ArrayList<>(nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            byNode.add(new ArrayList<>());
+        }
+        for (int i = 0; i < nodeOfRequest.length; i++) {
+            RestStopSessionRequest request = requests.get(i);
+            int node;
+            try {
+                node = ring.nodeFor(UUID.fromString(request.getId()));
+            } catch (Exception e) {
+                node = self;
+            }
+            nodeOfRequest[i] = node;
+            byNode.get(node).add(request);
+        }
+        List<CompletableFuture<RestBatchItemResult[]>> answers = new ArrayList<>(nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            int peer = node;
+            List<RestStopSessionRequest> batch = byNode.get(node);
+            if (node == self || batch.isEmpty()) {
+                answers.add(null);
+                continue;
+            }
+            answers.add(CompletableFuture.supplyAsync(
+                    () -> read(successBody(peer, forward(peer, HttpMethod.PUT, "/chargingSessions/batch/stop", batch)), RestBatchItemResult[].class),
+                    executor));
+        }
+        RestBatchItemResult[][] resultsByNode = new RestBatchItemResult[nodes.size()][];
+        resultsByNode[self] = localStop.apply(byNode.get(self));
+        for (int node = 0; node < nodes.size(); node++) {
+            if (answers.get(node) != null) {
+                resultsByNode[node] = join(answers.get(node));
+            }
+        }
+        RestBatchItemResult[] results = new RestBatchItemResult[requests.size()];
+        int[] next = new int[nodes.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = resultsByNode[nodeOfRequest[i]][next[nodeOfRequest[i]]++];
+        }
+        return results;
+    }
+
+    /**
+     * Writes the sessions of this node as newline delimited JSON.
+     */
+    interface LocalStream {
+        void write(UUID after, OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Joins JSON arrays into one array without parsing their elements.
+     */
+    static byte[] concatArrays(List<byte[]> arrays) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        joined.write('[');
+        boolean empty = true;
+        for (byte[] array : arrays) {
+            int from = indexOf(array, '[') + 1;
+            int to = lastIndexOf(array, ']');
+            while (from < to && Character.isWhitespace(array[from])) {
+                from++;
+            }
+            if (from >= to) {
+                continue;
+            }
+            if (!empty) {
+                joined.write(',');
+            }
+            joined.write(array, from, to - from);
+            empty = false;
+        }
+        joined.write(']');
+        return joined.toByteArray();
+    }
+
+    private static int indexOf(byte[] array, char c) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == c) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a JSON array: " + new String(Arrays.copyOf(array, Math.min(array.length, 64))));
+    }
+
+    private static int lastIndexOf(byte[] array, char c) {
+        for (int i = array.length - 1; i >= 0; i--) {
+            if (array[i] == c) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a JSON array: " + new String(Arrays.copyOf(array, Math.min(array.length, 64))));
+    }
+
+}
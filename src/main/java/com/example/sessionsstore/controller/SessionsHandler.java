@@ -0,0 +1,407 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.AggregateGranularity;
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.ReactiveSessionsStore;
+import com.example.sessionsstore.model.SessionEvent;
+import com.example.sessionsstore.model.SessionEventLog;
+import com.example.sessionsstore.model.SessionEventSubscriber;
+import com.example.sessionsstore.model.SessionsSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.sessionsstore.controller.SessionEventsController.LAST_EVENT_ID;
+import static com.example.sessionsstore.controller.SessionsRestController.APPLICATION_NDJSON_VALUE;
+import static com.example.sessionsstore.controller.SessionsRestController.MAX_BATCH_SIZE;
+import static com.example.sessionsstore.controller.SessionsRestController.MAX_PAGE_SIZE;
+
+/**
+ * Endpoints of the reactive serving mode (WebFlux on Netty), routed by {@link SessionsRouter}. Serves the same
+ * contract as {@link SessionsRestController} on top of {@link ReactiveSessionsStore}, so a request never blocks an
+ * event loop: slow clients hold a connection, not a thread.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class SessionsHandler {
+
+    private static final Duration DEFAULT_SUMMARY_WINDOW = Duration.ofMinutes(1L);
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    private final ReactiveSessionsStore sessionsStore;
+    private final SessionsJson sessionsJson;
+    private final SerializedResponseCache responseCache;
+    private final SessionEventLog eventLog;
+    private final Duration heartbeatInterval;
+
+    public SessionsHandler(ReactiveSessionsStore sessionsStore, SessionsJson sessionsJson, SerializedResponseCache responseCache,
+                           SessionEventLog eventLog, @Value("${sessions.events.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.sessionsStore = sessionsStore;
+        this.sessionsJson = sessionsJson;
+        this.responseCache = responseCache;
+        this.eventLog = eventLog;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * The body is read with {@link SessionsJson}, like by {@link SessionsJsonHttpMessageConverter} in the servlet
+     * mode.
+     */
+    public Mono<ServerResponse> submitSession(ServerRequest request) {
+        return DataBufferUtils.join(request.body(BodyExtractors.toDataBuffers())).flatMap(buffer -> {
+            RestSubmitSessionRequest requestBody;
+            try (InputStream inputStream = buffer.asInputStream()) {
+                requestBody = sessionsJson.readSubmitRequest(inputStream);
+            } catch (IOException e) {
+                return error(HttpStatus.BAD_REQUEST, "Cannot parse request body");
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+            if (StringUtils.isEmpty(requestBody.getTimestamp()) || StringUtils.isEmpty(requestBody.getStationId())) {
+                return error(HttpStatus.BAD_REQUEST, "Timestamp and stationId cannot be empty");
+            }
+            LocalDateTime startedAt;
+            try {
+                startedAt = IsoDateTime.parse(requestBody.getTimestamp());
+            } catch (Exception e) {
+                return error(HttpStatus.BAD_REQUEST, "Cannot parse timestamp");
+            }
+            return sessionsStore.addSession(requestBody.getStationId(), startedAt).flatMap(session -> {
+                RestSubmitSessionResponse response = new RestSubmitSessionResponse(session.getId().toString(), session.getStationId(), session.getStartedAt());
+                return ServerResponse.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).syncBody(sessionsJson.toBytes(response));
+            });
+        });
+    }
+
+    public Mono<ServerResponse> stopSession(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return sessionsStore.stopSession(id, LocalDateTime.now())
+                .then(ServerResponse.ok().build())
+                .onErrorResume(IllegalArgumentException.class, e -> error(HttpStatus.NOT_FOUND, "No sessions found with id=" + id));
+    }
+
+    /**
+     * Like {@link SessionsRestController#submitSessions}. Reads at most one entry more than allowed.
+     */
+    public Mono<ServerResponse> submitSessions(ServerRequest request) {
+        return readBatch(request, RestSubmitSessionRequest.class).flatMap(requestBody -> {
+            if (requestBody.size() > MAX_BATCH_SIZE) {
+                return error(HttpStatus.BAD_REQUEST, "Batch cannot have more than " + MAX_BATCH_SIZE + " entries");
+            }
+            SubmitBatch batch = new SubmitBatch(requestBody);
+            return sessionsStore.addSessions(batch.getStarts())
+                    .flatMap(sessions -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).syncBody(batch.complete(sessions)));
+        });
+    }
+
+    /**
+     * Like {@link SessionsRestController#stopSessions}. Reads at most one entry more than allowed.
+     */
+    public Mono<ServerResponse> stopSessions(ServerRequest request) {
+        return readBatch(request, RestStopSessionRequest.class).flatMap(requestBody -> {
+            if (requestBody.size() > MAX_BATCH_SIZE) {
+                return error(HttpStatus.BAD_REQUEST, "Batch cannot have more than " + MAX_BATCH_SIZE + " entries");
+            }
+            StopBatch batch = new StopBatch(requestBody, LocalDateTime.now());
+            return sessionsStore.getSessions(batch.getIds())
+                    .flatMap(sessions -> {
+                        batch.rejectStopsBeforeStart(sessions);
+                        return sessionsStore.stopSessions(batch.getStops());
+                    })
+                    .flatMap(sessions -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).syncBody(batch.complete(sessions)));
+        });
+    }
+
+    /**
+     * Reads the entries of a batch as JSON trees first: a {@link Flux} of the entry type would drop {@code null}
+     * entries, and the results would no longer line up with the request.
+     */
+    private <T> Mono<List<T>> readBatch(ServerRequest request, Class<T> type) {
+        return request.bodyToFlux(JsonNode.class).take(MAX_BATCH_SIZE + 1).collectList().flatMap(entries -> {
+            List<T> requestBody = new ArrayList<>(entries.size());
+            try {
+                for (JsonNode entry : entries) {
+                    requestBody.add(sessionsJson.readBatchEntry(entry, type));
+                }
+            } catch (IOException e) {
+                return Mono.error(new ServerWebInputException("Cannot parse batch entry", null, e));
+            }
+            return Mono.just(requestBody);
+        });
+    }
+
+    /**
+     * Like {@link SessionsRestController#getAllSessions}.
+     */
+    public Mono<ServerResponse> getAllSessions(ServerRequest request) {
+        return cachedResponse(request, responseCache::getAllSessions);
+    }
+
+    /**
+     * Like {@link SessionsRestController#getSessionsPage}, the {@code Link} header points to the next page.
+     */
+    public Mono<ServerResponse> getSessionsPage(ServerRequest request) {
+        int limit;
+        try {
+            limit = Integer.parseInt(request.queryParam("limit").orElse(""));
+        } catch (NumberFormatException e) {
+            limit = 0;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return error(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        int pageSize = limit;
+        return sessionsStore.getSessionsAfter(request.queryParam("after").orElse(null))
+                .flatMap(sessions -> sessions.take(pageSize).collectList())
+                .flatMap(page -> {
+                    ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+                    if (page.size() == pageSize) {
+                        String next = UriComponentsBuilder.fromUri(request.uri())
+                                .replaceQueryParam("after", page.get(page.size() - 1).getId())
+                                .toUriString();
+                        response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+                    }
+                    return response.syncBody(sessionsJson.toBytes(page));
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> error(HttpStatus.BAD_REQUEST, "Cannot parse after"));
+    }
+
+    /**
+     * Like {@link SessionsRestController#getSessionsUpdatedBetween}.
+     */
+    public Mono<ServerResponse> getSessionsUpdatedBetween(ServerRequest request) {
+        if (request.queryParam("limit").isPresent()) {
+            return error(HttpStatus.BAD_REQUEST, "Limit cannot be combined with from and to");
+        }
+        LocalDateTime from;
+        LocalDateTime to;
+        try {
+            from = IsoDateTime.parse(request.queryParam("from").orElse(""));
+            to = IsoDateTime.parse(request.queryParam("to").orElse(""));
+        } catch (Exception e) {
+            return error(HttpStatus.BAD_REQUEST, "Cannot parse from and to");
+        }
+        if (!from.isBefore(to)) {
+            return error(HttpStatus.BAD_REQUEST, "From must be before to");
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(sessionsStore.getSessionsUpdatedBetween(from, to), ChargingSession.class);
+    }
+
+    public Mono<ServerResponse> getStationSessions(ServerRequest request) {
+        if (request.queryParam("limit").isPresent()) {
+            return error(HttpStatus.BAD_REQUEST, "Limit cannot be combined with stationId");
+        }
+        String stationId = request.queryParam("stationId").orElse("");
+        if (StringUtils.isEmpty(stationId)) {
+            return error(HttpStatus.BAD_REQUEST, "StationId cannot be empty");
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).body(sessionsStore.getStationSessions(stationId), ChargingSession.class);
+    }
+
+    /**
+     * Like {@link SessionsRestController#streamSessions}, one session per line. Sessions are read from the store
+     * only as fast as the client receives them.
+     */
+    public Mono<ServerResponse> streamSessions(ServerRequest request) {
+        return sessionsStore.getSessionsAfter(request.queryParam("after").orElse(null))
+                .flatMap(sessions -> {
+                    BodyInserter<Flux<ChargingSession>, ReactiveHttpOutputMessage> body =
+                            (message, context) -> message.writeWith(sessions.map(session -> writeLine(session, message.bufferFactory())));
+                    return ServerResponse.ok().contentType(APPLICATION_NDJSON).body(body);
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> error(HttpStatus.BAD_REQUEST, "Cannot parse after"));
+    }
+
+    private DataBuffer writeLine(ChargingSession session, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        try (OutputStream outputStream = buffer.asOutputStream()) {
+            sessionsJson.writeLine(session, outputStream);
+            return buffer;
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Mono<ServerResponse> getSessionsSummary(ServerRequest request) {
+        String window = request.queryParam("window").orElse(null);
+        Duration summaryWindow;
+        try {
+            summaryWindow = StringUtils.isEmpty(window) ? DEFAULT_SUMMARY_WINDOW : DurationStyle.detectAndParse(window);
+        } catch (Exception e) {
+            return error(HttpStatus.BAD_REQUEST, "Cannot parse window");
+        }
+        return cachedResponse(request, () -> responseCache.getSessionsSummary(summaryWindow))
+                .onErrorResume(IllegalArgumentException.class, e -> error(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    /**
+     * Like {@link SessionsRestController#getSessionsAggregates}.
+     */
+    public Mono<ServerResponse> getSessionsAggregates(ServerRequest request) {
+        if (request.queryParam("window").isPresent()) {
+            return error(HttpStatus.BAD_REQUEST, "Window cannot be combined with from and to");
+        }
+        LocalDateTime from;
+        LocalDateTime to;
+        try {
+            from = IsoDateTime.parse(request.queryParam("from").orElse(""));
+            to = IsoDateTime.parse(request.queryParam("to").orElse(""));
+        } catch (Exception e) {
+            return error(HttpStatus.BAD_REQUEST, "Cannot parse from and to");
+        }
+        AggregateGranularity granularity = SessionsRestController.parseGranularity(request.queryParam("granularity").orElse(null));
+        if (granularity == null) {
+            return error(HttpStatus.BAD_REQUEST, "Granularity must be minute, hour or day");
+        }
+        String stationId = request.queryParam("stationId").filter(StringUtils::hasLength).orElse(null);
+        return sessionsStore.getAggregates(from, to, granularity, stationId)
+                .flatMap(buckets -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .syncBody(SessionsRestController.assembleRestAggregates(granularity, stationId, buckets)))
+                .onErrorResume(IllegalArgumentException.class, e -> error(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    public Mono<ServerResponse> getStationSummary(ServerRequest request) {
+        String window = request.queryParam("window").orElse(null);
+        Duration summaryWindow;
+        try {
+            summaryWindow = StringUtils.isEmpty(window) ? null : DurationStyle.detectAndParse(window);
+        } catch (Exception e) {
+            return error(HttpStatus.BAD_REQUEST, "Cannot parse window");
+        }
+        if (summaryWindow != null && (summaryWindow.isNegative() || summaryWindow.isZero())) {
+            return error(HttpStatus.BAD_REQUEST, "Summary window must be positive");
+        }
+        return sessionsStore.getStationSummary(request.pathVariable("id"), summaryWindow).flatMap(this::summaryResponse);
+    }
+
+    /**
+     * Like {@link SessionEventsController#streamEvents}. Events are taken from the log only as fast as the client
+     * receives them, a client that stalls falls behind in the log.
+     */
+    public Mono<ServerResponse> streamEvents(ServerRequest request) {
+        Long after;
+        try {
+            after = SessionEventsController.parseLastEventId(request.headers().asHttpHeaders().getFirst(LAST_EVENT_ID),
+                    request.queryParam("lastEventId").orElse(null));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        Flux<ServerSentEvent<Object>> events = Flux.create(sink -> {
+            SessionEventLog.Subscription subscription = eventLog.subscribe(after, new SinkSubscriber(sink));
+            // a comment only when the client takes one, so that heartbeats never pile up in the sink
+            Disposable heartbeat = Schedulers.parallel().schedulePeriodically(() -> {
+                if (sink.requestedFromDownstream() > 0) {
+                    sink.next(ServerSentEvent.builder().comment("").build());
+                }
+            }, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+            sink.onDispose(() -> {
+                subscription.cancel();
+                heartbeat.dispose();
+            });
+        });
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(BodyInserters.fromServerSentEvents(events));
+    }
+
+    /**
+     * Like {@link SessionsRestController#handleRejected}.
+     */
+    public Mono<ServerResponse> rejected(Throwable e, ServerRequest request) {
+        return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
+    /**
+     * Looks the body up when subscribed, see {@link SerializedResponseCache}.
+     */
+    private static Mono<ServerResponse> cachedResponse(ServerRequest request, Callable<SerializedResponseCache.Body> lookup) {
+        return Mono.fromCallable(lookup).flatMap(body -> {
+            if (body.matches(request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_NONE_MATCH))) {
+                return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(body.getEtag()).build();
+            }
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).eTag(body.getEtag()).syncBody(body.getBytes());
+        });
+    }
+
+    private Mono<ServerResponse> summaryResponse(SessionsSummary summary) {
+        RestSummary restSummary = new RestSummary(summary.getTotalCount(), summary.getStartedCount(), summary.getStoppedCount());
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).syncBody(sessionsJson.toBytes(restSummary));
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, String message) {
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).syncBody(new RestError(message));
+    }
+
+    /**
+     * Takes as many events from the log as the client requested, so the sink does not buffer them.
+     */
+    private static final class SinkSubscriber implements SessionEventSubscriber {
+        private final FluxSink<ServerSentEvent<Object>> sink;
+
+        SinkSubscriber(FluxSink<ServerSentEvent<Object>> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public long demand() {
+            return sink.requestedFromDownstream();
+        }
+
+        @Override
+        public void onEvents(List<SessionEvent> events) {
+            for (SessionEvent event : events) {
+                sink.next(ServerSentEvent.<Object>builder(event.getSession())
+                        .id(Long.toString(event.getSequence()))
+                        .event(SessionEventsController.eventName(event))
+                        .build());
+            }
+        }
+
+        @Override
+        public void onMissed(long firstMissed, long lastMissed) {
+            sink.next(ServerSentEvent.<Object>builder(new RestMissedEvents(firstMissed, lastMissed)).event("missed").build());
+        }
+
+        @Override
+        public void onDisconnected(long firstMissed) {
+            sink.next(ServerSentEvent.<Object>builder(new RestError("Subscriber fell behind, events from " + firstMissed + " on were dropped"))
+                    .event("disconnected")
+                    .build());
+            sink.complete();
+        }
+    }
+
+}
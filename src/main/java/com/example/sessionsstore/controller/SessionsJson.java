@@ -0,0 +1,484 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * JSON bodies of the hot endpoints written and read by hand instead of by reflection: {@link ChargingSession}
+ * and collections of them, {@link RestSubmitSessionResponse} and {@link RestSummary} are written field by field
+ * into a byte buffer, timestamps with {@link IsoDateTime}, and {@link RestSubmitSessionRequest} is read from flat
+ * ASCII objects. The output is the same as the application's {@link ObjectMapper}; other values, and requests
+ * with escapes, non-ASCII text or values that are not strings, go through the {@link ObjectMapper}.
+ */
+@Component
+public class SessionsJson {
+
+    // buffers start small enough for one session or request and grow, up to the flush size when writing to a stream
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOWER_HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] STATUSES = new byte[ChargingSession.Status.values().length][];
+
+    static {
+        for (ChargingSession.Status status : ChargingSession.Status.values()) {
+            STATUSES[status.ordinal()] = ascii("\"" + status.name() + "\"");
+        }
+    }
+
+    private static final byte[] ID = ascii("{\"id\":");
+    private static final byte[] STATION_ID = ascii(",\"stationId\":");
+    private static final byte[] STARTED_AT = ascii(",\"startedAt\":");
+    private static final byte[] STATUS = ascii(",\"status\":");
+    private static final byte[] TIMESTAMP = ascii(",\"timestamp\":");
+    private static final byte[] TOTAL_COUNT = ascii("{\"totalCount\":");
+    private static final byte[] STARTED_COUNT = ascii(",\"startedCount\":");
+    private static final byte[] STOPPED_COUNT = ascii(",\"stoppedCount\":");
+    private static final byte[] NULL = ascii("null");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public SessionsJson(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // the caller closes its stream
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return {@code true} if values of the type are written by hand, or collections that may hold sessions
+     */
+    boolean canWrite(Class<?> type) {
+        return type == ChargingSession.class || type == RestSubmitSessionResponse.class || type == RestSummary.class
+                || Collection.class.isAssignableFrom(type);
+    }
+
+    void write(Object value, OutputStream outputStream) throws IOException {
+        Output output = new Output(outputStream);
+        if (write(value, output)) {
+            output.flush();
+        } else {
+            writer.writeValue(outputStream, value);
+        }
+    }
+
+    byte[] toBytes(Object value) {
+        Output output = new Output(null);
+        try {
+            return write(value, output) ? output.toBytes() : objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the sessions as newline delimited JSON.
+     */
+    void writeLines(Iterator<ChargingSession> sessions, OutputStream outputStream) throws IOException {
+        Output output = new Output(outputStream);
+        while (sessions.hasNext()) {
+            writeSession(sessions.next(), output);
+            output.write('\n');
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the session and a newline.
+     */
+    void writeLine(ChargingSession session, OutputStream outputStream) throws IOException {
+        Output output = new Output(outputStream);
+        writeSession(session, output);
+        output.write('\n');
+        output.flush();
+    }
+
+    /**
+     * @return {@code false} if the value is not written by hand, nothing is written then
+     */
+    private static boolean write(Object value, Output output) throws IOException {
+        if (value instanceof ChargingSession) {
+            writeSession((ChargingSession) value, output);
+        } else if (value instanceof RestSubmitSessionResponse) {
+            writeSubmitResponse((RestSubmitSessionResponse) value, output);
+        } else if (value instanceof RestSummary) {
+            writeSummary((RestSummary) value, output);
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            for (Object element : values) {
+                if (!(element instanceof ChargingSession)) {
+                    return false;
+                }
+            }
+            output.write('[');
+            boolean first = true;
+            for (Object element : values) {
+                if (!first) {
+                    output.write(',');
+                }
+                writeSession((ChargingSession) element, output);
+                first = false;
+            }
+            output.write(']');
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeSession(ChargingSession session, Output output) throws IOException {
+        output.write(ID);
+        output.writeUuid(session.getId());
+        output.write(STATION_ID);
+        output.writeString(session.getStationId());
+        output.write(STARTED_AT);
+        output.writeDateTime(session.getStartedAt());
+        output.write(STATUS);
+        if (session.getStatus() == null) {
+            output.write(NULL);
+        } else {
+            output.write(STATUSES[session.getStatus().ordinal()]);
+        }
+        output.write('}');
+    }
+
+    private static void writeSubmitResponse(RestSubmitSessionResponse response, Output output) throws IOException {
+        output.write(ID);
+        output.writeString(response.getId());
+        output.write(STATION_ID);
+        output.writeString(response.getStationId());
+        output.write(TIMESTAMP);
+        output.writeDateTime(response.getTimestamp());
+        output.write('}');
+    }
+
+    private static void writeSummary(RestSummary summary, Output output) throws IOException {
+        output.write(TOTAL_COUNT);
+        output.writeInteger(summary.getTotalCount());
+        output.write(STARTED_COUNT);
+        output.writeInteger(summary.getStartedCount());
+        output.write(STOPPED_COUNT);
+        output.writeInteger(summary.getStoppedCount());
+        output.write('}');
+    }
+
+    /**
+     * Reads the body of {@code POST /chargingSessions}.
+     *
+     * @throws IOException if the body is not JSON of a submit request
+     */
+    /**
+     * @return the entry of a batch, {@code null} for a JSON {@code null}
+     * @throws IOException if the entry is not JSON of the type
+     */
+    <T> T readBatchEntry(JsonNode entry, Class<T> type) throws IOException {
+        return entry.isNull() ? null : objectMapper.treeToValue(entry, type);
+    }
+
+    RestSubmitSessionRequest readSubmitRequest(InputStream inputStream) throws IOException {
+        byte[] body = new byte[INITIAL_BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(body, length, body.length - length)) >= 0) {
+            length += read;
+            if (length == body.length) {
+                body = Arrays.copyOf(body, body.length * 2);
+            }
+        }
+        RestSubmitSessionRequest request = new Input(body, length).readSubmitRequest();
+        return request != null ? request : objectMapper.readValue(body, 0, length, RestSubmitSessionRequest.class);
+    }
+
+    /**
+     * Bytes written to a buffer that is flushed to the stream when full, or grown if there is no stream.
+     */
+    private static final class Output {
+        private final OutputStream outputStream;
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int position;
+
+        Output(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void require(int length) throws IOException {
+            if (position + length <= buffer.length) {
+                return;
+            }
+            if (outputStream != null && buffer.length >= BUFFER_SIZE && length <= buffer.length) {
+                flush();
+            } else {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        void write(int b) throws IOException {
+            require(1);
+            buffer[position++] = (byte) b;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            write(bytes, 0, bytes.length);
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            require(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        void writeUuid(UUID id) throws IOException {
+            if (id == null) {
+                write(NULL);
+                return;
+            }
+            require(38);
+            buffer[position++] = '"';
+            writeHex(id.getMostSignificantBits() >>> 32, 8);
+            buffer[position++] = '-';
+            writeHex(id.getMostSignificantBits() >>> 16, 4);
+            buffer[position++] = '-';
+            writeHex(id.getMostSignificantBits(), 4);
+            buffer[position++] = '-';
+            writeHex(id.getLeastSignificantBits() >>> 48, 4);
+            buffer[position++] = '-';
+            writeHex(id.getLeastSignificantBits(), 12);
+            buffer[position++] = '"';
+        }
+
+        private void writeHex(long bits, int digits) {
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = LOWER_HEX[(int) bits & 0xf];
+                bits >>>= 4;
+            }
+            position += digits;
+        }
+
+        void writeDateTime(LocalDateTime dateTime) throws IOException {
+            if (dateTime == null) {
+                write(NULL);
+                return;
+            }
+            require(IsoDateTime.MAX_LENGTH + 2);
+            buffer[position++] = '"';
+            position = IsoDateTime.write(dateTime, buffer, position);
+            buffer[position++] = '"';
+        }
+
+        void writeInteger(Integer value) throws IOException {
+            if (value == null) {
+                write(NULL);
+                return;
+            }
+            write(ascii(Integer.toString(value)));
+        }
+
+        /**
+         * Escapes like Jackson: quotes, backslashes and control characters, other characters as UTF-8.
+         */
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                write(NULL);
+                return;
+            }
+            write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    int end = i + 1;
+                    while (end < value.length() && value.charAt(end) >= 0x80) {
+                        end++;
+                    }
+                    write(value.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                    i = end - 1;
+                    continue;
+                }
+                require(6);
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[position++] = (byte) c;
+                    continue;
+                }
+                buffer[position++] = '\\';
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        buffer[position++] = (byte) c;
+                        break;
+                    case '\b':
+                        buffer[position++] = 'b';
+                        break;
+                    case '\t':
+                        buffer[position++] = 't';
+                        break;
+                    case '\n':
+                        buffer[position++] = 'n';
+                        break;
+                    case '\f':
+                        buffer[position++] = 'f';
+                        break;
+                    case '\r':
+                        buffer[position++] = 'r';
+                        break;
+                    default:
+                        buffer[position++] = 'u';
+                        buffer[position++] = '0';
+                        buffer[position++] = '0';
+                        buffer[position++] = HEX[c >> 4];
+                        buffer[position++] = HEX[c & 0xf];
+                }
+            }
+            write('"');
+        }
+
+        void flush() throws IOException {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * Reads flat objects of ASCII strings without escapes, anything else is left to the {@link ObjectMapper}.
+     */
+    private static final class Input {
+        private final byte[] body;
+        private final int length;
+        private int position;
+
+        Input(byte[] body, int length) {
+            this.body = body;
+            this.length = length;
+        }
+
+        /**
+         * @return the request, or {@code null} if the body is not a flat object of simple strings or {@code null}s
+         */
+        RestSubmitSessionRequest readSubmitRequest() {
+            RestSubmitSessionRequest request = new RestSubmitSessionRequest();
+            if (!next('{')) {
+                return null;
+            }
+            if (next('}')) {
+                return atEnd() ? request : null;
+            }
+            do {
+                skipWhitespace();
+                int keyStart = position + 1;
+                int keyEnd = string();
+                if (keyEnd < 0 || !next(':')) {
+                    return null;
+                }
+                String value = null;
+                skipWhitespace();
+                int valueStart = position + 1;
+                int valueEnd = string();
+                if (valueEnd >= 0) {
+                    value = new String(body, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+                } else if (!literal(NULL)) {
+                    return null;
+                }
+                if (isKey(keyStart, keyEnd, "stationId")) {
+                    request.setStationId(value);
+                } else if (isKey(keyStart, keyEnd, "timestamp")) {
+                    request.setTimestamp(value);
+                }
+            } while (next(','));
+            return next('}') && atEnd() ? request : null;
+        }
+
+        /**
+         * Consumes the character if it follows after whitespace.
+         */
+        private boolean next(char c) {
+            skipWhitespace();
+            if (position < length && body[position] == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consumes a string that follows after whitespace.
+         *
+         * @return the position of its closing quote, -1 if there is no such string
+         */
+        private int string() {
+            if (!next('"')) {
+                return -1;
+            }
+            for (int i = position; i < length; i++) {
+                byte b = body[i];
+                if (b == '"') {
+                    position = i + 1;
+                    return i;
+                }
+                // escapes, control characters and anything not ASCII
+                if (b == '\\' || b < 0x20) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private boolean literal(byte[] literal) {
+            skipWhitespace();
+            if (position + literal.length > length) {
+                return false;
+            }
+            for (int i = 0; i < literal.length; i++) {
+                if (body[position + i] != literal[i]) {
+                    return false;
+                }
+            }
+            position += literal.length;
+            return true;
+        }
+
+        private boolean isKey(int start, int end, String key) {
+            if (end - start != key.length()) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (body[start + i] != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (position < length && (body[position] == ' ' || body[position] == '\n' || body[position] == '\r' || body[position] == '\t')) {
+                position++;
+            }
+        }
+
+        private boolean atEnd() {
+            skipWhitespace();
+            return position == length;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.sessionsstore.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link SessionsJson} for the bodies of {@link SessionsRestController}. Registered ahead of the Jackson converter,
+ * which still handles every other type, like the batch requests and results.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SessionsJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final SessionsJson sessionsJson;
+
+    public SessionsJsonHttpMessageConverter(SessionsJson sessionsJson) {
+        super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.sessionsJson = sessionsJson;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == RestSubmitSessionRequest.class || sessionsJson.canWrite(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == RestSubmitSessionRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return sessionsJson.canWrite(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        try {
+            return sessionsJson.readSubmitRequest(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        sessionsJson.write(value, outputMessage.getBody());
+    }
+
+}
@@ -1,35 +1,70 @@
 package com.example.sessionsstore.controller;
 
+import com.example.sessionsstore.model.AggregateBucket;
+import com.example.sessionsstore.model.AggregateGranularity;
 import com.example.sessionsstore.model.ChargingSession;
 import com.example.sessionsstore.model.SessionsStore;
+import com.example.sessionsstore.model.SessionsSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
-import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
-import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
-import static java.util.stream.Collectors.counting;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Endpoints of the servlet serving mode (Spring MVC on Tomcat), the default. {@link SessionsHandler} serves the
+ * same contract in the reactive mode.
+ * <p>
+ * In a {@link SessionsCluster} the requests for a session of another node are forwarded to that node, and reads of
+ * all sessions, time ranges, stations and summaries are gathered from all nodes.
+ */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SessionsRestController {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final int MAX_PAGE_SIZE = 10_000;
+    static final int MAX_BATCH_SIZE = 10_000;
+    private static final Duration DEFAULT_SUMMARY_WINDOW = Duration.ofMinutes(1L);
+
     private final SessionsStore sessionsStore;
+    private final SessionsJson sessionsJson;
+    private final SerializedResponseCache responseCache;
+    private final SessionsCluster cluster;
 
-    public SessionsRestController(SessionsStore sessionsStore) {
+    public SessionsRestController(SessionsStore sessionsStore, SessionsJson sessionsJson, SerializedResponseCache responseCache,
+                                  ObjectProvider<SessionsCluster> cluster) {
         this.sessionsStore = sessionsStore;
+        this.sessionsJson = sessionsJson;
+        this.responseCache = responseCache;
+        this.cluster = cluster.getIfAvailable();
     }
 
     @PostMapping("/chargingSessions")
@@ -39,7 +74,7 @@ public class SessionsRestController {
         }
         LocalDateTime startedAt;
         try {
-            startedAt = LocalDateTime.parse(requestBody.getTimestamp(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            startedAt = IsoDateTime.parse(requestBody.getTimestamp());
         } catch (Exception e) {
             return new ResponseEntity<>(new RestError("Cannot parse timestamp"), HttpStatus.BAD_REQUEST);
         }
@@ -49,7 +84,14 @@ public class SessionsRestController {
     }
 
     @PutMapping("/chargingSessions/{id}")
-    public ResponseEntity stopSession(@PathVariable String id) {
+    public ResponseEntity stopSession(@PathVariable String id, HttpServletRequest request) {
+        SessionsCluster cluster = cluster(request);
+        if (cluster != null) {
+            UUID sessionId = parseId(id);
+            if (sessionId != null && !cluster.isLocal(sessionId)) {
+                return relay(cluster.forward(cluster.nodeFor(sessionId), HttpMethod.PUT, pathAndQuery(request), null));
+            }
+        }
         try {
             sessionsStore.stopSession(id, LocalDateTime.now());
         } catch (IllegalArgumentException e) {
@@ -58,19 +100,369 @@ public class SessionsRestController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Submits every entry like {@code POST /chargingSessions} and adds the valid ones to the store at once.
+     * Responds with the status and body of every entry in the order of the request.
+     */
+    @PostMapping("/chargingSessions/batch")
+    public ResponseEntity submitSessions(@RequestBody List<RestSubmitSessionRequest> requestBody) {
+        if (requestBody.size() > MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(new RestError("Batch cannot have more than " + MAX_BATCH_SIZE + " entries"), HttpStatus.BAD_REQUEST);
+        }
+        SubmitBatch batch = new SubmitBatch(requestBody);
+        return ResponseEntity.ok(batch.complete(sessionsStore.addSessions(batch.getStarts())));
+    }
+
+    /**
+     * Stops every entry like {@code PUT /chargingSessions/{id}}, at its timestamp or now if it has none, and applies
+     * the valid ones to the store at once. Responds with the status and body of every entry in the order of the
+     * request.
+     */
+    @PutMapping("/chargingSessions/batch/stop")
+    public ResponseEntity stopSessions(@RequestBody List<RestStopSessionRequest> requestBody, HttpServletRequest request) {
+        if (requestBody.size() > MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(new RestError("Batch cannot have more than " + MAX_BATCH_SIZE + " entries"), HttpStatus.BAD_REQUEST);
+        }
+        SessionsCluster cluster = cluster(request);
+        return ResponseEntity.ok(cluster == null ? stopLocally(requestBody) : cluster.stopSessions(requestBody, this::stopLocally));
+    }
+
+    private RestBatchItemResult[] stopLocally(List<RestStopSessionRequest> requests) {
+        StopBatch batch = new StopBatch(requests, LocalDateTime.now());
+        batch.rejectStopsBeforeStart(sessionsStore.getSessions(batch.getIds()));
+        return batch.complete(sessionsStore.stopSessions(batch.getStops()));
+    }
+
+    /**
+     * Served from {@link SerializedResponseCache} while no session changes. In a cluster the bodies of all nodes
+     * are joined.
+     */
     @GetMapping("/chargingSessions")
-    public ArrayList<ChargingSession> getAllSessions() {
-        return sessionsStore.getAllSessions();
+    public ResponseEntity<byte[]> getAllSessions(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                 HttpServletRequest request) {
+        SerializedResponseCache.Body body = responseCache.getAllSessions();
+        SessionsCluster cluster = cluster(request);
+        if (cluster != null) {
+            body = new SerializedResponseCache.Body(gatherArrays(cluster, request, body.getBytes()), sessionsStore.getVersion(), System.nanoTime());
+        }
+        return cachedResponse(body, ifNoneMatch);
+    }
+
+    /**
+     * Returns up to {@code limit} sessions ordered by id that follow the session with id {@code after}. When the
+     * page is full, a {@code Link} header with {@code rel="next"} points to the following page. In a cluster the
+     * page continues with the sessions of the following nodes, see {@link SessionsCluster#page}.
+     */
+    @GetMapping(value = "/chargingSessions", params = {"limit", "!stationId"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getSessionsPage(@RequestParam int limit, @RequestParam(required = false) String after, HttpServletRequest request) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(new RestError("Limit must be between 1 and " + MAX_PAGE_SIZE), HttpStatus.BAD_REQUEST);
+        }
+        SessionsCluster cluster = cluster(request);
+        List<?> page;
+        String lastId;
+        try {
+            if (cluster == null) {
+                List<ChargingSession> sessions = localPage(after, limit);
+                page = sessions;
+                lastId = sessions.isEmpty() ? null : sessions.get(sessions.size() - 1).getId().toString();
+            } else {
+                List<JsonNode> sessions = cluster.page(after == null ? null : UUID.fromString(after), limit,
+                        (cursor, size) -> localPage(cursor == null ? null : cursor.toString(), size));
+                page = sessions;
+                lastId = sessions.isEmpty() ? null : sessions.get(sessions.size() - 1).get("id").asText();
+            }
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new RestError("Cannot parse after"), HttpStatus.BAD_REQUEST);
+        }
+        if (page.size() < limit) {
+            return ResponseEntity.ok(page);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", lastId)
+                .toUriString();
+        return ResponseEntity.ok().header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"").body(page);
+    }
+
+    private List<ChargingSession> localPage(String after, int limit) {
+        Iterator<ChargingSession> sessions = sessionsStore.getSessionsAfter(after);
+        List<ChargingSession> page = new ArrayList<>(Math.min(limit, 256));
+        while (page.size() < limit && sessions.hasNext()) {
+            page.add(sessions.next());
+        }
+        return page;
+    }
+
+    /**
+     * Returns the sessions last updated at or after {@code from} and before {@code to}, read from the minute
+     * buckets of that range only.
+     */
+    @GetMapping(value = "/chargingSessions", params = {"from", "to", "!stationId"})
+    public ResponseEntity getSessionsUpdatedBetween(@RequestParam String from, @RequestParam String to, @RequestParam(required = false) String limit,
+                                                    HttpServletRequest request) {
+        if (limit != null) {
+            return new ResponseEntity<>(new RestError("Limit cannot be combined with from and to"), HttpStatus.BAD_REQUEST);
+        }
+        LocalDateTime fromTime;
+        LocalDateTime toTime;
+        try {
+            fromTime = IsoDateTime.parse(from);
+            toTime = IsoDateTime.parse(to);
+        } catch (Exception e) {
+            return new ResponseEntity<>(new RestError("Cannot parse from and to"), HttpStatus.BAD_REQUEST);
+        }
+        if (!fromTime.isBefore(toTime)) {
+            return new ResponseEntity<>(new RestError("From must be before to"), HttpStatus.BAD_REQUEST);
+        }
+        return arrayResponse(request, sessionsStore.getSessionsUpdatedBetween(fromTime, toTime));
+    }
+
+    /**
+     * Returns all sessions of the station, read from the station index rather than by filtering all sessions.
+     */
+    @GetMapping(value = "/chargingSessions", params = "stationId")
+    public ResponseEntity getStationSessions(@RequestParam String stationId, @RequestParam(required = false) String limit,
+                                             HttpServletRequest request) {
+        if (limit != null) {
+            return new ResponseEntity<>(new RestError("Limit cannot be combined with stationId"), HttpStatus.BAD_REQUEST);
+        }
+        if (StringUtils.isEmpty(stationId)) {
+            return new ResponseEntity<>(new RestError("StationId cannot be empty"), HttpStatus.BAD_REQUEST);
+        }
+        return arrayResponse(request, sessionsStore.getStationSessions(stationId));
+    }
+
+    /**
+     * Streams all sessions following the session with id {@code after} as newline delimited JSON. Sessions are
+     * written to the response while iterating the store, so memory use does not depend on the number of sessions.
+     * In a cluster the nodes are streamed one after the other, see {@link SessionsCluster#stream}.
+     */
+    @GetMapping(value = "/chargingSessions", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSessions(@RequestParam(required = false) String after, HttpServletRequest request) {
+        SessionsCluster cluster = cluster(request);
+        StreamingResponseBody body;
+        try {
+            if (cluster == null) {
+                Iterator<ChargingSession> sessions = sessionsStore.getSessionsAfter(after);
+                body = outputStream -> sessionsJson.writeLines(sessions, outputStream);
+            } else {
+                UUID afterId = after == null ? null : UUID.fromString(after);
+                body = outputStream -> cluster.stream(afterId, outputStream,
+                        (cursor, localOutputStream) -> sessionsJson.writeLines(sessionsStore.getSessionsAfter(cursor == null ? null : cursor.toString()), localOutputStream));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(outputStream -> sessionsJson.write(new RestError("Cannot parse after"), outputStream));
+        }
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
     }
 
+    /**
+     * Served from {@link SerializedResponseCache} while no session changes, for at most
+     * {@code sessions.response-cache.ttl}. In a cluster the counts of all nodes are added.
+     */
     @GetMapping("/chargingSessions/summary")
-    public RestSummary getSessionsSummary() {
-        return assembleRestSummary(sessionsStore.getSessionsUpdatedLastMinute());
+    public ResponseEntity getSessionsSummary(@RequestParam(required = false) String window,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             HttpServletRequest request) {
+        Duration summaryWindow;
+        try {
+            summaryWindow = StringUtils.isEmpty(window) ? DEFAULT_SUMMARY_WINDOW : DurationStyle.detectAndParse(window);
+        } catch (Exception e) {
+            return new ResponseEntity<>(new RestError("Cannot parse window"), HttpStatus.BAD_REQUEST);
+        }
+        SerializedResponseCache.Body body;
+        try {
+            body = responseCache.getSessionsSummary(summaryWindow);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new RestError(e.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        SessionsCluster cluster = cluster(request);
+        if (cluster != null) {
+            RestSummary summary = gatherSummaries(cluster, request, assembleRestSummary(sessionsStore.getSessionsSummary(summaryWindow)));
+            body = new SerializedResponseCache.Body(sessionsJson.toBytes(summary), sessionsStore.getVersion(), System.nanoTime());
+        }
+        return cachedResponse(body, ifNoneMatch);
+    }
+
+    /**
+     * Counts the sessions started and stopped per {@code granularity} ({@code minute}, {@code hour} by default or
+     * {@code day}) from the bucket of {@code from} to the last bucket before {@code to}, of the station
+     * {@code stationId} or of all stations, with a histogram of the durations of the stopped sessions. Served from
+     * the aggregates of the store, see {@link SessionsStore#getAggregates}. In a cluster the counts of all nodes are
+     * added.
+     */
+    @GetMapping(value = "/chargingSessions/summary", params = {"from", "to"})
+    public ResponseEntity getSessionsAggregates(@RequestParam String from, @RequestParam String to,
+                                                @RequestParam(required = false) String granularity,
+                                                @RequestParam(required = false) String stationId,
+                                                @RequestParam(required = false) String window,
+                                                HttpServletRequest request) {
+        if (window != null) {
+            return new ResponseEntity<>(new RestError("Window cannot be combined with from and to"), HttpStatus.BAD_REQUEST);
+        }
+        LocalDateTime fromTime;
+        LocalDateTime toTime;
+        try {
+            fromTime = IsoDateTime.parse(from);
+            toTime = IsoDateTime.parse(to);
+        } catch (Exception e) {
+            return new ResponseEntity<>(new RestError("Cannot parse from and to"), HttpStatus.BAD_REQUEST);
+        }
+        AggregateGranularity aggregateGranularity = parseGranularity(granularity);
+        if (aggregateGranularity == null) {
+            return new ResponseEntity<>(new RestError("Granularity must be minute, hour or day"), HttpStatus.BAD_REQUEST);
+        }
+        String station = StringUtils.isEmpty(stationId) ? null : stationId;
+        List<AggregateBucket> buckets;
+        try {
+            buckets = sessionsStore.getAggregates(fromTime, toTime, aggregateGranularity, station);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new RestError(e.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        RestAggregates aggregates = assembleRestAggregates(aggregateGranularity, station, buckets);
+        SessionsCluster cluster = cluster(request);
+        return ResponseEntity.ok(cluster == null ? aggregates : gatherAggregates(cluster, request, aggregates));
+    }
+
+    /**
+     * @return the granularity, {@link AggregateGranularity#HOUR} if it is empty, {@code null} if there is no such
+     * granularity
+     */
+    static AggregateGranularity parseGranularity(String granularity) {
+        if (StringUtils.isEmpty(granularity)) {
+            return AggregateGranularity.HOUR;
+        }
+        try {
+            return AggregateGranularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static RestAggregates assembleRestAggregates(AggregateGranularity granularity, String stationId, List<AggregateBucket> buckets) {
+        List<String> bounds = new ArrayList<>(AggregateBucket.STOPPED_DURATION_BOUNDS.size());
+        for (Duration bound : AggregateBucket.STOPPED_DURATION_BOUNDS) {
+            bounds.add(bound.toString());
+        }
+        return new RestAggregates(granularity.name().toLowerCase(Locale.ROOT), stationId, bounds, buckets);
+    }
+
+    /**
+     * Counts the sessions of the station by status: all of them, or with {@code window} those last updated during
+     * the window ending now.
+     */
+    @GetMapping("/stations/{id}/summary")
+    public ResponseEntity getStationSummary(@PathVariable String id, @RequestParam(required = false) String window, HttpServletRequest request) {
+        Duration summaryWindow;
+        try {
+            summaryWindow = StringUtils.isEmpty(window) ? null : DurationStyle.detectAndParse(window);
+        } catch (Exception e) {
+            return new ResponseEntity<>(new RestError("Cannot parse window"), HttpStatus.BAD_REQUEST);
+        }
+        if (summaryWindow != null && (summaryWindow.isNegative() || summaryWindow.isZero())) {
+            return new ResponseEntity<>(new RestError("Summary window must be positive"), HttpStatus.BAD_REQUEST);
+        }
+        RestSummary summary = assembleRestSummary(sessionsStore.getStationSummary(id, summaryWindow));
+        SessionsCluster cluster = cluster(request);
+        return ResponseEntity.ok(cluster == null ? summary : gatherSummaries(cluster, request, summary));
+    }
+
+    /**
+     * The store refused a change because too many are waiting (see {@code sessions.storage.single-writer.backpressure}).
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<RestError> handleRejected(RejectedExecutionException e) {
+        return new ResponseEntity<>(new RestError(e.getMessage()), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Another node of the cluster cannot be reached or failed.
+     */
+    @ExceptionHandler(RestClientException.class)
+    public ResponseEntity<RestError> handleClusterFailure(RestClientException e) {
+        return new ResponseEntity<>(new RestError(e.getMessage()), HttpStatus.BAD_GATEWAY);
+    }
+
+    /**
+     * @return the cluster if the request has to be routed to or gathered from other nodes, {@code null} if this
+     * node answers it alone
+     */
+    private SessionsCluster cluster(HttpServletRequest request) {
+        return cluster == null || request.getHeader(SessionsCluster.FORWARDED_HEADER) != null ? null : cluster;
+    }
+
+    private static String pathAndQuery(HttpServletRequest request) {
+        return request.getQueryString() == null ? request.getRequestURI() : request.getRequestURI() + "?" + request.getQueryString();
+    }
+
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<byte[]> relay(ResponseEntity<byte[]> answer) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(answer.getStatusCode());
+        if (answer.getHeaders().getContentType() != null) {
+            response.contentType(answer.getHeaders().getContentType());
+        }
+        return response.body(answer.getBody());
+    }
+
+    private ResponseEntity arrayResponse(HttpServletRequest request, List<ChargingSession> sessions) {
+        SessionsCluster cluster = cluster(request);
+        if (cluster == null) {
+            return ResponseEntity.ok(sessions);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(gatherArrays(cluster, request, sessionsJson.toBytes(sessions)));
+    }
+
+    private static byte[] gatherArrays(SessionsCluster cluster, HttpServletRequest request, byte[] local) {
+        List<byte[]> arrays = new ArrayList<>(cluster.getNodes().size());
+        arrays.add(local);
+        arrays.addAll(cluster.gather(pathAndQuery(request)));
+        return SessionsCluster.concatArrays(arrays);
+    }
+
+    private static RestSummary gatherSummaries(SessionsCluster cluster, HttpServletRequest request, RestSummary local) {
+        RestSummary total = local;
+        for (RestSummary summary : cluster.gather(pathAndQuery(request), RestSummary.class)) {
+            total = new RestSummary(total.getTotalCount() + summary.getTotalCount(), total.getStartedCount() + summary.getStartedCount(),
+                    total.getStoppedCount() + summary.getStoppedCount());
+        }
+        return total;
+    }
+
+    /**
+     * Adds the counts of the other nodes to {@code local}, every node has the same buckets for the same request.
+     */
+    private static RestAggregates gatherAggregates(SessionsCluster cluster, HttpServletRequest request, RestAggregates local) {
+        for (RestAggregates aggregates : cluster.gather(pathAndQuery(request), RestAggregates.class)) {
+            for (int i = 0; i < local.getBuckets().size(); i++) {
+                AggregateBucket total = local.getBuckets().get(i);
+                AggregateBucket bucket = aggregates.getBuckets().get(i);
+                total.setStartedCount(total.getStartedCount() + bucket.getStartedCount());
+                total.setStoppedCount(total.getStoppedCount() + bucket.getStoppedCount());
+                for (int j = 0; j < total.getStoppedDurations().length; j++) {
+                    total.getStoppedDurations()[j] += bucket.getStoppedDurations()[j];
+                }
+            }
+        }
+        return local;
+    }
+
+    private static ResponseEntity<byte[]> cachedResponse(SerializedResponseCache.Body body, String ifNoneMatch) {
+        if (body.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(body.getEtag()).build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(body.getEtag()).body(body.getBytes());
     }
 
-    private RestSummary assembleRestSummary(List<ChargingSession> chargingSessions) {
-        Map<ChargingSession.Status, Long> sessionsByStatus = chargingSessions.stream().collect(Collectors.groupingBy(ChargingSession::getStatus, counting()));
-        return new RestSummary(chargingSessions.size(), sessionsByStatus.getOrDefault(IN_PROGRESS, 0L).intValue(), sessionsByStatus.getOrDefault(STOPPED, 0L).intValue());
+    private RestSummary assembleRestSummary(SessionsSummary summary) {
+        return new RestSummary(summary.getTotalCount(), summary.getStartedCount(), summary.getStoppedCount());
     }
 
 }
@@ -0,0 +1,58 @@
+package com.example.sessionsstore.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.example.sessionsstore.controller.SessionsRestController.APPLICATION_NDJSON_VALUE;
+
+/**
+ * Routes of the reactive serving mode, the same urls and parameters as the mappings of
+ * {@link SessionsRestController}. Routes are tried in order, so the more specific ones come first.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class SessionsRouter {
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    @Bean
+    public RouterFunction<ServerResponse> sessionsRoutes(SessionsHandler handler) {
+        return RouterFunctions.route()
+                .POST("/chargingSessions/batch", handler::submitSessions)
+                .PUT("/chargingSessions/batch/stop", handler::stopSessions)
+                .POST("/chargingSessions", handler::submitSession)
+                .PUT("/chargingSessions/{id}", handler::stopSession)
+                .GET("/chargingSessions/summary", hasQueryParam("from").and(hasQueryParam("to")), handler::getSessionsAggregates)
+                .GET("/chargingSessions/summary", handler::getSessionsSummary)
+                .GET("/chargingSessions/events", handler::streamEvents)
+                .GET("/chargingSessions", hasQueryParam("stationId"), handler::getStationSessions)
+                .GET("/chargingSessions", hasQueryParam("from").and(hasQueryParam("to")), handler::getSessionsUpdatedBetween)
+                .GET("/chargingSessions", acceptsNdjson(), handler::streamSessions)
+                .GET("/chargingSessions", hasQueryParam("limit"), handler::getSessionsPage)
+                .GET("/chargingSessions", handler::getAllSessions)
+                .GET("/stations/{id}/summary", handler::getStationSummary)
+                .onError(RejectedExecutionException.class, handler::rejected)
+                .build();
+    }
+
+    private static RequestPredicate hasQueryParam(String name) {
+        return RequestPredicates.queryParam(name, value -> true);
+    }
+
+    /**
+     * Unlike {@link RequestPredicates#accept}, does not match wildcards: clients that accept anything get JSON.
+     */
+    private static RequestPredicate acceptsNdjson() {
+        return request -> request.headers().accept().stream().anyMatch(APPLICATION_NDJSON::equalsTypeAndSubtype);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionStop;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Entries of a {@code PUT /chargingSessions/batch/stop} request, validated like single stops. Holds the stops of
+ * the valid entries for the store and the result of every entry, shared by both serving modes. Stops before the
+ * start of their session are rejected once the sessions were looked up, see {@link #rejectStopsBeforeStart}.
+ */
+class StopBatch {
+
+    private final RestBatchItemResult[] results;
+    private final List<SessionStop> stops;
+    private final int[] positions;
+
+    /**
+     * @param now the stop time of entries without a timestamp
+     */
+    StopBatch(List<RestStopSessionRequest> requests, LocalDateTime now) {
+        results = new RestBatchItemResult[requests.size()];
+        stops = new ArrayList<>(requests.size());
+        positions = new int[requests.size()];
+        for (int i = 0; i < results.length; i++) {
+            RestStopSessionRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Entry cannot be null"));
+                continue;
+            }
+            UUID id;
+            try {
+                id = UUID.fromString(request.getId());
+            } catch (Exception e) {
+                results[i] = new RestBatchItemResult(HttpStatus.NOT_FOUND.value(), new RestError("No sessions found with id=" + request.getId()));
+                continue;
+            }
+            LocalDateTime stoppedAt;
+            try {
+                stoppedAt = StringUtils.isEmpty(request.getTimestamp()) ? now : IsoDateTime.parse(request.getTimestamp());
+            } catch (Exception e) {
+                results[i] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Cannot parse timestamp"));
+                continue;
+            }
+            stops.add(new SessionStop(id, stoppedAt));
+            positions[stops.size() - 1] = i;
+        }
+    }
+
+    /**
+     * @return the ids of {@link #getStops()}, in the same order
+     */
+    List<UUID> getIds() {
+        List<UUID> ids = new ArrayList<>(stops.size());
+        for (SessionStop stop : stops) {
+            ids.add(stop.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Rejects the stops before the start of their session and leaves them out of {@link #getStops()}. The start of
+     * a session never changes, so the sessions may be looked up before the stops are applied.
+     *
+     * @param sessions the sessions of {@link #getIds()}, {@code null} where there is no session with the id
+     */
+    void rejectStopsBeforeStart(List<ChargingSession> sessions) {
+        int kept = 0;
+        for (int i = 0; i < sessions.size(); i++) {
+            SessionStop stop = stops.get(i);
+            ChargingSession session = sessions.get(i);
+            if (session != null && stop.getStoppedAt().isBefore(session.getStartedAt())) {
+                results[positions[i]] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Timestamp cannot be before the start of the session"));
+                continue;
+            }
+            stops.set(kept, stop);
+            positions[kept++] = positions[i];
+        }
+        stops.subList(kept, stops.size()).clear();
+    }
+
+    List<SessionStop> getStops() {
+        return stops;
+    }
+
+    /**
+     * @param sessions the result of {@link #getStops()}, {@code null} where there was no session with the id
+     * @return the result of every entry in the order of the request
+     */
+    RestBatchItemResult[] complete(List<ChargingSession> sessions) {
+        for (int i = 0; i < sessions.size(); i++) {
+            results[positions[i]] = sessions.get(i) != null
+                    ? new RestBatchItemResult(HttpStatus.OK.value(), null)
+                    : new RestBatchItemResult(HttpStatus.NOT_FOUND.value(), new RestError("No sessions found with id=" + stops.get(i).getId()));
+        }
+        return results;
+    }
+
+}
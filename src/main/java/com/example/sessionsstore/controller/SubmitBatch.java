@@ -0,0 +1,61 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionStart;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entries of a {@code POST /chargingSessions/batch} request, validated like single submits. Holds the starts of the
+ * valid entries for the store and the result of every entry, shared by both serving modes.
+ */
+class SubmitBatch {
+
+    private final RestBatchItemResult[] results;
+    private final List<SessionStart> starts;
+    private final int[] positions;
+
+    SubmitBatch(List<RestSubmitSessionRequest> requests) {
+        results = new RestBatchItemResult[requests.size()];
+        starts = new ArrayList<>(requests.size());
+        positions = new int[requests.size()];
+        for (int i = 0; i < results.length; i++) {
+            RestSubmitSessionRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Entry cannot be null"));
+                continue;
+            }
+            if (StringUtils.isEmpty(request.getTimestamp()) || StringUtils.isEmpty(request.getStationId())) {
+                results[i] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Timestamp and stationId cannot be empty"));
+                continue;
+            }
+            try {
+                starts.add(new SessionStart(request.getStationId(), IsoDateTime.parse(request.getTimestamp())));
+                positions[starts.size() - 1] = i;
+            } catch (Exception e) {
+                results[i] = new RestBatchItemResult(HttpStatus.BAD_REQUEST.value(), new RestError("Cannot parse timestamp"));
+            }
+        }
+    }
+
+    List<SessionStart> getStarts() {
+        return starts;
+    }
+
+    /**
+     * @param sessions the sessions added for {@link #getStarts()}, in the same order
+     * @return the result of every entry in the order of the request
+     */
+    RestBatchItemResult[] complete(List<ChargingSession> sessions) {
+        for (int i = 0; i < sessions.size(); i++) {
+            ChargingSession session = sessions.get(i);
+            RestSubmitSessionResponse response = new RestSubmitSessionResponse(session.getId().toString(), session.getStationId(), session.getStartedAt());
+            results[positions[i]] = new RestBatchItemResult(HttpStatus.CREATED.value(), response);
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.example.sessionsstore.journal;
+
+/**
+ * When the journal forces appended events to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every start and stop returns only after its event is on disk. Concurrent callers share one fsync.
+     */
+    ALWAYS,
+    /**
+     * A background thread forces the journal every {@code sessions.journal.fsync-interval}.
+     */
+    INTERVAL,
+    /**
+     * The operating system writes the mapped segments back whenever it decides to.
+     */
+    OS
+}
@@ -0,0 +1,110 @@
+package com.example.sessionsstore.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped file of the journal. Every record is framed as its payload length, the CRC32 of the payload
+ * and the payload. The file is preallocated and zero filled, so a length of zero marks the end of the records,
+ * and a record torn by a crash fails its checksum.
+ */
+final class JournalSegment {
+
+    static final int FRAME_HEADER_SIZE = 8;
+
+    private final long sequence;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(long sequence, Path path, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path path, long sequence, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new JournalSegment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    static JournalSegment openForReplay(Path path, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JournalSegment(sequence, path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Appends one record, the payload between position and limit of {@code payload}.
+     *
+     * @return {@code false} if the record does not fit into the rest of the segment
+     */
+    boolean tryAppend(ByteBuffer payload, CRC32 crc) {
+        int length = payload.remaining();
+        if (buffer.remaining() < FRAME_HEADER_SIZE + length) {
+            return false;
+        }
+        crc.reset();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), length);
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        // the length goes last, so a reader never sees a length without its payload
+        buffer.putInt(start, length);
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Calls {@code action} with the payload of every record up to the first empty or corrupt frame.
+     *
+     * @return {@code true} if the records ended cleanly, {@code false} if a corrupt frame was found
+     */
+    boolean forEachRecord(Consumer<ByteBuffer> action) {
+        ByteBuffer records = buffer.duplicate();
+        CRC32 crc = new CRC32();
+        while (records.remaining() >= FRAME_HEADER_SIZE) {
+            int length = records.getInt();
+            if (length == 0) {
+                return true;
+            }
+            int checksum = records.getInt();
+            if (length < 0 || length > records.remaining()) {
+                return false;
+            }
+            ByteBuffer payload = records.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return false;
+            }
+            action.accept(payload);
+            records.position(records.position() + length);
+        }
+        return true;
+    }
+
+}
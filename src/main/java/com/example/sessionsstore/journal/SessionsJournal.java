@@ -0,0 +1,371 @@
+package com.example.sessionsstore.journal;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionsStore;
+import com.example.sessionsstore.model.SessionsStoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static com.example.sessionsstore.model.ChargingSession.Status;
+
+/**
+ * Write-ahead journal of the {@link SessionsStore}, enabled with {@code sessions.journal.enabled=true}.
+ * <p>
+ * Every start and stop is appended to a memory-mapped segment file of {@code sessions.journal.segment-size}. When a
+ * segment is full the journal rolls over to a new one. {@code sessions.journal.fsync} decides when the appended
+ * events reach the disk, see {@link FsyncPolicy}. With {@code always} the callers that wait for the disk share
+ * one fsync of everything appended so far (group commit), so concurrent writers do not pay one fsync each.
+ * <p>
+ * Every {@code sessions.journal.snapshot-interval} the journal rolls over, dumps all sessions into a snapshot and
+ * deletes the segments the snapshot covers. On startup the latest snapshot is loaded, its blocks decoded by all
+ * cores (see {@link SessionsSnapshot}), and the segments written after it are replayed, up to the first torn or corrupt record of each segment. Evictions are not journaled,
+ * evicted sessions that are still in a segment come back on replay and are evicted by the next sweep.
+ * <p>
+ * Changes are appended before the store applies them, stops while concurrent stops of the same session wait (see
+ * {@link SessionsStoreListener#beforeSessionStopped}), so replay applies them in the same order. A change that
+ * cannot be appended is not applied. A change the storage rejects after it was appended, because the storage is
+ * closed or its writer queue is full, still comes back on replay.
+ */
+@Component
+@ConditionalOnProperty(name = "sessions.journal.enabled", havingValue = "true")
+public class SessionsJournal implements SessionsStoreListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionsJournal.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{20})\\.bin");
+    private static final byte START = 1;
+    private static final byte STOP = 2;
+    // type, id, epoch second and nano of the time
+    private static final int FIXED_RECORD_SIZE = 1 + 16 + 12;
+
+    private final SessionsStore sessionsStore;
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration fsyncInterval;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer record = ByteBuffer.allocate(256);
+    private JournalSegment segment;
+    // number of records appended since startup, guarded by writeLock
+    private long appendedPosition;
+    private volatile long durablePosition;
+
+    public SessionsJournal(SessionsStore sessionsStore,
+                           @Value("${sessions.journal.directory:journal}") String directory,
+                           @Value("${sessions.journal.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${sessions.journal.fsync:interval}") FsyncPolicy fsyncPolicy,
+                           @Value("${sessions.journal.fsync-interval:10ms}") Duration fsyncInterval,
+                           @Value("${sessions.journal.snapshot-interval:10m}") Duration snapshotInterval) {
+        if (segmentSize.toBytes() < 4096 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("sessions.journal.segment-size must be between 4KB and 2GB");
+        }
+        this.sessionsStore = sessionsStore;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = fsyncInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(directory);
+        long nextSequence = recover();
+        synchronized (writeLock) {
+            segment = JournalSegment.create(segmentPath(nextSequence), nextSequence, segmentSize);
+        }
+        sessionsStore.addListener(this);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            executor.scheduleWithFixedDelay(this::forceQuietly, fsyncInterval.toMillis(), fsyncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        executor.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sessionsStore.removeListener(this);
+        executor.shutdownNow();
+        force();
+    }
+
+    @Override
+    public void beforeSessionStarted(ChargingSession session) {
+        byte[] stationId = session.getStationId().getBytes(StandardCharsets.UTF_8);
+        synchronized (writeLock) {
+            ByteBuffer buffer = recordBuffer(FIXED_RECORD_SIZE + 4 + stationId.length);
+            putHeader(buffer, START, session.getId(), session.getStartedAt());
+            buffer.putInt(stationId.length);
+            buffer.put(stationId);
+            append(buffer);
+        }
+    }
+
+    /**
+     * Appended while the storage holds back concurrent stops of the same session, so the journal has them in the
+     * order they were applied.
+     */
+    @Override
+    public void beforeSessionStopped(ChargingSession session, LocalDateTime stoppedAt) {
+        synchronized (writeLock) {
+            ByteBuffer buffer = recordBuffer(FIXED_RECORD_SIZE);
+            putHeader(buffer, STOP, session.getId(), stoppedAt);
+            append(buffer);
+        }
+    }
+
+    @Override
+    public void sessionStarted(ChargingSession session) {
+        awaitDurable();
+    }
+
+    @Override
+    public void sessionStopped(ChargingSession session, LocalDateTime previousStoppedAt) {
+        awaitDurable();
+    }
+
+    /**
+     * With {@link FsyncPolicy#ALWAYS} every change waits for an fsync.
+     */
+    @Override
+    public boolean blocksWriters() {
+        return fsyncPolicy == FsyncPolicy.ALWAYS;
+    }
+
+    private ByteBuffer recordBuffer(int size) {
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+        }
+        record.clear();
+        return record;
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte type, UUID id, LocalDateTime time) {
+        buffer.put(type);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        buffer.putLong(time.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(time.getNano());
+    }
+
+    private long append(ByteBuffer buffer) {
+        buffer.flip();
+        if (buffer.remaining() + JournalSegment.FRAME_HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + buffer.remaining() + " bytes does not fit into a segment");
+        }
+        if (!segment.tryAppend(buffer, crc)) {
+            roll();
+            segment.tryAppend(buffer, crc);
+        }
+        return ++appendedPosition;
+    }
+
+    /**
+     * Continues in a new segment. Unless the operating system decides, the full segment is forced first, so
+     * {@link #force()} only ever has to force the current segment. Called with the write lock held.
+     */
+    private void roll() {
+        if (fsyncPolicy != FsyncPolicy.OS) {
+            segment.force();
+        }
+        long sequence = segment.getSequence() + 1;
+        try {
+            segment = JournalSegment.create(segmentPath(sequence), sequence, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + sequence, e);
+        }
+    }
+
+    /**
+     * Waits until everything appended so far, which includes the record of the change just applied, is on disk.
+     */
+    private void awaitDurable() {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        long position;
+        synchronized (writeLock) {
+            position = appendedPosition;
+        }
+        if (durablePosition < position) {
+            force();
+        }
+    }
+
+    /**
+     * Forces everything appended so far. A caller that finds its record already forced by another caller
+     * returns without an fsync of its own.
+     */
+    void force() {
+        long position;
+        JournalSegment current;
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                position = appendedPosition;
+                current = segment;
+            }
+            if (durablePosition >= position || current == null) {
+                return;
+            }
+            current.force();
+            durablePosition = position;
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (RuntimeException e) {
+            log.error("Journal fsync failed", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all sessions and deletes the segments and snapshots it replaces. Writers are not
+     * blocked: the snapshot iterates the store while it changes. Changes are appended before they are applied,
+     * so one appended right before the roll to a new segment may still be missing from the snapshot; the segment
+     * before the roll is therefore kept and replayed on top of the snapshot too, where restoring a session that is
+     * already in it is skipped and stops are restored again in the order they were applied.
+     */
+    void snapshot() throws IOException {
+        long sequence;
+        synchronized (writeLock) {
+            roll();
+            sequence = segment.getSequence();
+        }
+        Path snapshot = snapshotPath(sequence);
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        long count = SessionsSnapshot.write(temporary, sessionsStore.getSessionsAfter(null));
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        for (Path path : list(SEGMENT_NAME).values()) {
+            if (sequenceOf(path, SEGMENT_NAME) < sequence - 1) {
+                Files.deleteIfExists(path);
+            }
+        }
+        for (Path path : list(SNAPSHOT_NAME).values()) {
+            if (sequenceOf(path, SNAPSHOT_NAME) < sequence) {
+                Files.deleteIfExists(path);
+            }
+        }
+        log.info("Journal snapshot of {} sessions written in {} ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // the segments are kept, the next snapshot retries
+            log.error("Journal snapshot failed", e);
+        }
+    }
+
+    /**
+     * Restores the store from the latest snapshot, the segment before it and the segments after it.
+     *
+     * @return the sequence number for the next segment
+     */
+    private long recover() throws IOException {
+        TreeMap<Long, Path> snapshots = list(SNAPSHOT_NAME);
+        long snapshotSequence = 0;
+        if (!snapshots.isEmpty()) {
+            Map.Entry<Long, Path> latest = snapshots.lastEntry();
+            snapshotSequence = latest.getKey();
+            long start = System.nanoTime();
+            long count = SessionsSnapshot.read(latest.getValue(), sessionsStore::restoreSessions, Runtime.getRuntime().availableProcessors());
+            log.info("Restored {} sessions from {} in {} ms", count, latest.getValue(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        long nextSequence = snapshotSequence;
+        for (Map.Entry<Long, Path> entry : list(SEGMENT_NAME).tailMap(snapshotSequence - 1, true).entrySet()) {
+            JournalSegment replayed = JournalSegment.openForReplay(entry.getValue(), entry.getKey());
+            long[] events = new long[1];
+            if (!replayed.forEachRecord(payload -> {
+                replay(payload);
+                events[0]++;
+            })) {
+                log.warn("Journal segment {} ends with a torn record, replayed the {} events before it", entry.getValue(), events[0]);
+            }
+            nextSequence = entry.getKey() + 1;
+        }
+        return nextSequence;
+    }
+
+    private void replay(ByteBuffer payload) {
+        byte type = payload.get();
+        UUID id = new UUID(payload.getLong(), payload.getLong());
+        LocalDateTime time = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+        if (type == START) {
+            byte[] stationId = new byte[payload.getInt()];
+            payload.get(stationId);
+            sessionsStore.restoreSession(new ChargingSession(id, new String(stationId, StandardCharsets.UTF_8), time, null, Status.IN_PROGRESS));
+        } else if (type == STOP) {
+            sessionsStore.restoreStop(id, time);
+        } else {
+            throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private TreeMap<Long, Path> list(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                long sequence = sequenceOf(path, pattern);
+                if (sequence >= 0) {
+                    files.put(sequence, path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static long sequenceOf(Path path, Pattern pattern) {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("journal-%020d.log", sequence));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("snapshot-%020d.bin", sequence));
+    }
+
+}
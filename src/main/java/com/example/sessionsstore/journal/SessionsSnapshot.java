@@ -0,0 +1,355 @@
+package com.example.sessionsstore.journal;
+
+import com.example.sessionsstore.model.ChargingSession;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static com.example.sessionsstore.model.ChargingSession.Status;
+
+/**
+ * Binary dump of all sessions: a header with magic number and format version, blocks of sessions, and a trailer
+ * with the number of sessions.
+ * <p>
+ * Every block starts with the length and CRC32 of its payload, so the blocks of a snapshot are found by hopping
+ * from header to header and decoded independently of each other. The payload holds the station ids of the block
+ * once each and then the sessions: the id, the index of the station id, the start relative to the first start of
+ * the block and the stop relative to the start, as variable-length integers. The station index is not dumped,
+ * the storage rebuilds it from the sessions.
+ * <p>
+ * Version 1 snapshots, one {@code DataOutputStream} record per session, are still read.
+ */
+final class SessionsSnapshot {
+
+    private static final int MAGIC = 0x53455353;
+    private static final int VERSION = 2;
+    private static final int VERSION_1 = 1;
+    private static final int NO_TIME = -1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 4 + 8;
+    // id, station index, start second and nano, stop second and nano, as variable-length integers at most
+    private static final int MAX_RECORD_SIZE = 16 + 5 + 10 + 5 + 10 + 5;
+    static final int BLOCK_SESSIONS = 1 << 16;
+
+    private SessionsSnapshot() {
+    }
+
+    /**
+     * Writes the sessions and forces the file to disk.
+     *
+     * @return the number of written sessions
+     */
+    static long write(Path path, Iterator<ChargingSession> sessions) throws IOException {
+        return write(path, sessions, BLOCK_SESSIONS);
+    }
+
+    static long write(Path path, Iterator<ChargingSession> sessions, int blockSessions) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header);
+            BlockWriter writer = new BlockWriter();
+            List<ChargingSession> block = new ArrayList<>(Math.min(blockSessions, 1 << 12));
+            long count = 0;
+            while (sessions.hasNext()) {
+                block.add(sessions.next());
+                if (block.size() == blockSessions) {
+                    writeFully(channel, writer.encode(block));
+                    count += block.size();
+                    block.clear();
+                }
+            }
+            if (!block.isEmpty()) {
+                writeFully(channel, writer.encode(block));
+                count += block.size();
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putInt(0).putLong(count).flip();
+            writeFully(channel, trailer);
+            channel.force(true);
+            return count;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads the sessions of a snapshot written by {@link #write} and passes them to {@code action} a block at a
+     * time. The blocks are memory-mapped and decoded by {@code parallelism} threads, so {@code action} must be
+     * thread-safe and blocks arrive in no particular order.
+     *
+     * @throws IOException if the file is not a complete snapshot of a known version or a block is corrupt
+     */
+    static long read(Path path, Consumer<List<ChargingSession>> action, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readAt(channel, 0L, HEADER_SIZE, path);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Unsupported snapshot format " + path);
+            }
+            int version = header.getInt();
+            if (version == VERSION_1) {
+                return readVersion1(channel, action, path);
+            }
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot format " + path);
+            }
+            // offsets and lengths of the block payloads
+            List<long[]> blocks = new ArrayList<>();
+            long position = HEADER_SIZE;
+            while (true) {
+                ByteBuffer blockHeader = readAt(channel, position, 4, path);
+                int length = blockHeader.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || position + BLOCK_HEADER_SIZE + length > channel.size()) {
+                    throw new IOException("Incomplete snapshot " + path);
+                }
+                blocks.add(new long[]{position, length});
+                position += BLOCK_HEADER_SIZE + length;
+            }
+            long count = readAt(channel, position + 4, 8, path).getLong();
+            if (decodeBlocks(channel, blocks, action, parallelism, path) != count) {
+                throw new IOException("Incomplete snapshot " + path);
+            }
+            return count;
+        }
+    }
+
+    private static long decodeBlocks(FileChannel channel, List<long[]> blocks, Consumer<List<ChargingSession>> action, int parallelism,
+                                     Path path) throws IOException {
+        if (parallelism <= 1 || blocks.size() <= 1) {
+            long count = 0;
+            for (long[] block : blocks) {
+                count += decodeBlock(channel, block, action, path);
+            }
+            return count;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, blocks.size()), runnable -> {
+            Thread thread = new Thread(runnable, "sessions-snapshot-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Integer>> decoded = new ArrayList<>(blocks.size());
+            for (long[] block : blocks) {
+                decoded.add(executor.submit(() -> decodeBlock(channel, block, action, path)));
+            }
+            long count = 0;
+            for (Future<Integer> future : decoded) {
+                count += future.get();
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading snapshot " + path, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot read snapshot " + path, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int decodeBlock(FileChannel channel, long[] block, Consumer<List<ChargingSession>> action, Path path) throws IOException {
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, block[0], BLOCK_HEADER_SIZE + block[1]);
+        mapped.getInt();
+        int crc = mapped.getInt();
+        CRC32 actualCrc = new CRC32();
+        actualCrc.update(mapped.duplicate());
+        if ((int) actualCrc.getValue() != crc) {
+            throw new IOException("Corrupt block at " + block[0] + " of snapshot " + path);
+        }
+        try {
+            int sessions = mapped.getInt();
+            String[] stationIds = new String[readVarInt(mapped)];
+            for (int i = 0; i < stationIds.length; i++) {
+                byte[] bytes = new byte[readVarInt(mapped)];
+                mapped.get(bytes);
+                stationIds[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            long baseSecond = mapped.getLong();
+            List<ChargingSession> decoded = new ArrayList<>(sessions);
+            for (int i = 0; i < sessions; i++) {
+                UUID id = new UUID(mapped.getLong(), mapped.getLong());
+                String stationId = stationIds[readVarInt(mapped)];
+                long startSecond = baseSecond + zigZagDecode(readVarLong(mapped));
+                LocalDateTime startedAt = LocalDateTime.ofEpochSecond(startSecond, readVarInt(mapped), ZoneOffset.UTC);
+                long stop = readVarLong(mapped);
+                LocalDateTime stoppedAt = stop == 0 ? null
+                        : LocalDateTime.ofEpochSecond(startSecond + zigZagDecode(stop - 1), readVarInt(mapped), ZoneOffset.UTC);
+                decoded.add(new ChargingSession(id, stationId, startedAt, stoppedAt, stoppedAt == null ? Status.IN_PROGRESS : Status.STOPPED));
+            }
+            if (mapped.hasRemaining()) {
+                throw new IOException("Corrupt block at " + block[0] + " of snapshot " + path);
+            }
+            action.accept(decoded);
+            return sessions;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt block at " + block[0] + " of snapshot " + path, e);
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int size, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Incomplete snapshot " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long readVersion1(FileChannel channel, Consumer<List<ChargingSession>> action, Path path) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(HEADER_SIZE)), 1 << 16));
+        List<ChargingSession> block = new ArrayList<>();
+        long count = 0;
+        while (in.readBoolean()) {
+            UUID id = new UUID(in.readLong(), in.readLong());
+            String stationId = in.readUTF();
+            LocalDateTime startedAt = readVersion1Time(in);
+            LocalDateTime stoppedAt = readVersion1Time(in);
+            block.add(new ChargingSession(id, stationId, startedAt, stoppedAt, stoppedAt == null ? Status.IN_PROGRESS : Status.STOPPED));
+            count++;
+            if (block.size() == BLOCK_SESSIONS) {
+                action.accept(block);
+                block = new ArrayList<>();
+            }
+        }
+        if (in.readLong() != count) {
+            throw new IOException("Incomplete snapshot " + path);
+        }
+        if (!block.isEmpty()) {
+            action.accept(block);
+        }
+        return count;
+    }
+
+    private static LocalDateTime readVersion1Time(DataInputStream in) throws IOException {
+        int nano = in.readInt();
+        return nano == NO_TIME ? null : LocalDateTime.ofEpochSecond(in.readLong(), nano, ZoneOffset.UTC);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Encodes blocks into one buffer that grows to the largest block.
+     */
+    private static final class BlockWriter {
+        private final Map<String, Integer> stationIndexes = new HashMap<>();
+        private final List<byte[]> stationIds = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        ByteBuffer encode(List<ChargingSession> sessions) {
+            stationIndexes.clear();
+            stationIds.clear();
+            int stationIdsSize = 0;
+            for (ChargingSession session : sessions) {
+                if (stationIndexes.putIfAbsent(session.getStationId(), stationIndexes.size()) == null) {
+                    byte[] bytes = session.getStationId().getBytes(StandardCharsets.UTF_8);
+                    stationIds.add(bytes);
+                    stationIdsSize += 5 + bytes.length;
+                }
+            }
+            int maxSize = BLOCK_HEADER_SIZE + 4 + 5 + stationIdsSize + 8 + sessions.size() * MAX_RECORD_SIZE;
+            if (buffer.capacity() < maxSize) {
+                buffer = ByteBuffer.allocate(Math.max(maxSize, buffer.capacity() * 2));
+            }
+            buffer.clear();
+            buffer.position(BLOCK_HEADER_SIZE);
+            buffer.putInt(sessions.size());
+            writeVarLong(stationIds.size());
+            for (byte[] stationId : stationIds) {
+                writeVarLong(stationId.length);
+                buffer.put(stationId);
+            }
+            long baseSecond = sessions.get(0).getStartedAt().toEpochSecond(ZoneOffset.UTC);
+            buffer.putLong(baseSecond);
+            for (ChargingSession session : sessions) {
+                buffer.putLong(session.getId().getMostSignificantBits());
+                buffer.putLong(session.getId().getLeastSignificantBits());
+                writeVarLong(stationIndexes.get(session.getStationId()));
+                long startSecond = session.getStartedAt().toEpochSecond(ZoneOffset.UTC);
+                writeVarLong(zigZagEncode(startSecond - baseSecond));
+                writeVarLong(session.getStartedAt().getNano());
+                LocalDateTime stoppedAt = session.getStatus() == Status.STOPPED ? session.getStoppedAt() : null;
+                if (stoppedAt == null) {
+                    writeVarLong(0);
+                } else {
+                    writeVarLong(zigZagEncode(stoppedAt.toEpochSecond(ZoneOffset.UTC) - startSecond) + 1);
+                    writeVarLong(stoppedAt.getNano());
+                }
+            }
+            int length = buffer.position() - BLOCK_HEADER_SIZE;
+            crc.reset();
+            crc.update(buffer.array(), BLOCK_HEADER_SIZE, length);
+            buffer.putInt(0, length);
+            buffer.putInt(4, (int) crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private static long zigZagEncode(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.example.sessionsstore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sessions started and stopped during one bucket of {@link SessionsStore#getAggregates}, by the time of the start
+ * and of the stop respectively.
+ * <p>
+ * {@code stoppedDurations} is the histogram of {@code stoppedAt - startedAt} of the stopped sessions: entry
+ * {@code i} counts durations up to {@link #STOPPED_DURATION_BOUNDS}{@code [i]} and longer than the bound before,
+ * the last entry those longer than all bounds.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AggregateBucket {
+
+    public static final List<Duration> STOPPED_DURATION_BOUNDS = Collections.unmodifiableList(Arrays.asList(
+            Duration.ofMinutes(5L), Duration.ofMinutes(15L), Duration.ofMinutes(30L), Duration.ofHours(1L), Duration.ofHours(2L),
+            Duration.ofHours(4L), Duration.ofHours(8L), Duration.ofHours(12L), Duration.ofHours(24L)));
+
+    private LocalDateTime start;
+    private int startedCount;
+    private int stoppedCount;
+    private int[] stoppedDurations;
+}
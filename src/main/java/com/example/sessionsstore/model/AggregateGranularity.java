@@ -0,0 +1,24 @@
+package com.example.sessionsstore.model;
+
+/**
+ * Bucket size of {@link SessionsStore#getAggregates}, every granularity is a tier of {@link SessionAggregates}
+ * with its own retention.
+ */
+public enum AggregateGranularity {
+    MINUTE(60L),
+    HOUR(60L * 60L),
+    DAY(24L * 60L * 60L);
+
+    private final long seconds;
+
+    AggregateGranularity(long seconds) {
+        this.seconds = seconds;
+    }
+
+    /**
+     * @return the length of a bucket in seconds
+     */
+    public long getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.sessionsstore.model;
+
+/**
+ * What {@link SingleWriterSessionsStorage} does with a change while its command ring is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * The caller waits until the writer has made room in the ring.
+     */
+    BLOCK,
+    /**
+     * The change fails at once with a {@link java.util.concurrent.RejectedExecutionException}, which the endpoints
+     * answer with {@code 503 Service Unavailable}.
+     */
+    REJECT
+}
@@ -23,6 +23,11 @@ public class ChargingSession {
         IN_PROGRESS, STOPPED
     }
 
+    @JsonIgnore
+    public LocalDateTime getLastUpdateTime() {
+        return stoppedAt == null ? startedAt : stoppedAt;
+    }
+
     ChargingSession(UUID id, String stationId, LocalDateTime startedAt, Status status) {
         this.id = id;
         this.stationId = stationId;
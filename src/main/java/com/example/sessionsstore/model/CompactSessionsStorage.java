@@ -0,0 +1,894 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import static com.example.sessionsstore.model.ChargingSession.*;
+
+/**
+ * Storage engine that keeps sessions as primitive records instead of objects.
+ * <p>
+ * Every session is a record number into {@link SessionRecords}: the two halves of the id, an interned station
+ * reference, the start and stop time as epoch second and nano of second, and a status byte. This engine keeps
+ * them in parallel arrays on the heap (struct of arrays), {@link OffHeapSessionsStorage} in direct memory. The
+ * index is an open addressing table of record numbers keyed by the two longs of the id, and the buckets are keyed
+ * by epoch minute, separately for in-progress and stopped sessions. Every interned station has a bucket of its
+ * records as well. Records of evicted sessions are reused by later adds. {@link ChargingSession} objects are only created when sessions are read.
+ * <p>
+ * All structures are guarded by one read-write lock. Iterators take the read lock for one page of sessions at
+ * a time, so streaming all sessions does not block writers for its whole duration. Every operation times the
+ * lock with {@link LockTimer}.
+ */
+public class CompactSessionsStorage implements SessionsStorage {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ITERATOR_BATCH_SIZE = 256;
+    private static final int SCAN_CHUNK_SIZE = 1 << 16;
+    // changes since the id index was built that make it stale, at least
+    private static final int ID_INDEX_MIN_STALE = 4096;
+    private static final int NO_TIME = -1;
+    private static final byte FREE = -1;
+    private static final Status[] STATUSES = Status.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // records in use are below size, except the free ones
+    private int size;
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+    private final SessionRecords records;
+
+    private final Map<String, Integer> stationRefsByStationId = new HashMap<>();
+    private final List<String> stationIds = new ArrayList<>();
+    // records by station ref
+    private final List<Bucket> stationBuckets = new ArrayList<>();
+
+    // record number + 1 per slot, 0 marks an empty slot
+    private SessionRecords.Slots index;
+
+    private final Buckets inProgressBuckets = new Buckets();
+    private final Buckets stoppedBuckets = new Buckets();
+
+    // built by the first iterator, null again when not iterated for a while, see IdIndex
+    private IdIndex idIndex;
+    private boolean buildingIdIndex;
+    // records added and the number of records freed since the id index was built
+    private int[] addedRecords = new int[16];
+    private int addedCount;
+    private int freedCount;
+    private final Object idIndexBuildLock = new Object();
+
+    private final LockTimer addLock;
+    private final LockTimer addAllLock;
+    private final LockTimer stopLock;
+    private final LockTimer stopAllLock;
+    private final LockTimer getLock;
+    private final LockTimer iterateLock;
+    private final LockTimer updatedBetweenLock;
+    private final LockTimer stationLock;
+    private final LockTimer evictLock;
+
+    public CompactSessionsStorage() {
+        this(Metrics.globalRegistry);
+    }
+
+    public CompactSessionsStorage(MeterRegistry meterRegistry) {
+        this(meterRegistry, "compact", new HeapSessionRecords(INITIAL_CAPACITY));
+    }
+
+    /**
+     * @param storage the {@code storage} tag of the lock metrics
+     */
+    CompactSessionsStorage(MeterRegistry meterRegistry, String storage, SessionRecords records) {
+        this.records = records;
+        this.index = records.newSlots(records.capacity() * 2);
+        this.addLock = new LockTimer(meterRegistry, storage, "add");
+        this.addAllLock = new LockTimer(meterRegistry, storage, "addAll");
+        this.stopLock = new LockTimer(meterRegistry, storage, "stop");
+        this.stopAllLock = new LockTimer(meterRegistry, storage, "stopAll");
+        this.getLock = new LockTimer(meterRegistry, storage, "get");
+        this.iterateLock = new LockTimer(meterRegistry, storage, "iterate");
+        this.updatedBetweenLock = new LockTimer(meterRegistry, storage, "updatedBetween");
+        this.stationLock = new LockTimer(meterRegistry, storage, "station");
+        this.evictLock = new LockTimer(meterRegistry, storage, "evict");
+    }
+
+    @Override
+    public void add(ChargingSession session) {
+        long acquiredAt = lock(lock.writeLock(), addLock);
+        try {
+            addRecord(session);
+        } finally {
+            unlock(lock.writeLock(), addLock, acquiredAt);
+        }
+    }
+
+    /**
+     * Adds all sessions under one write lock. The buckets cache the bucket of the last minute, so a batch of the
+     * same minute looks up its bucket once.
+     */
+    @Override
+    public void addAll(List<ChargingSession> sessions) {
+        long acquiredAt = lock(lock.writeLock(), addAllLock);
+        try {
+            for (ChargingSession session : sessions) {
+                addRecord(session);
+            }
+        } finally {
+            unlock(lock.writeLock(), addAllLock, acquiredAt);
+        }
+    }
+
+    private void addRecord(ChargingSession session) {
+        int record = allocateRecord();
+        records.setIdMostSigBits(record, session.getId().getMostSignificantBits());
+        records.setIdLeastSigBits(record, session.getId().getLeastSignificantBits());
+        records.setStationRef(record, internStationId(session.getStationId()));
+        records.setStartedSeconds(record, session.getStartedAt().toEpochSecond(ZoneOffset.UTC));
+        records.setStartedNanos(record, session.getStartedAt().getNano());
+        records.setStoppedNanos(record, NO_TIME);
+        if (session.getStoppedAt() != null) {
+            records.setStoppedSeconds(record, session.getStoppedAt().toEpochSecond(ZoneOffset.UTC));
+            records.setStoppedNanos(record, session.getStoppedAt().getNano());
+        }
+        records.setStatus(record, (byte) session.getStatus().ordinal());
+        insertIntoIndex(record);
+        bucketsOf(record).add(record, toMinute(lastUpdateSecond(record)));
+        records.setStationPosition(record, stationBuckets.get(records.getStationRef(record)).add(record));
+        trackAdded(record);
+    }
+
+    @Override
+    public boolean stop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop) {
+        long acquiredAt = lock(lock.writeLock(), stopLock);
+        try {
+            int record = findRecord(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (record < 0) {
+                return false;
+            }
+            onStop.accept(toSession(record));
+            stopRecord(record, stoppedAt);
+            return true;
+        } finally {
+            unlock(lock.writeLock(), stopLock, acquiredAt);
+        }
+    }
+
+    /**
+     * Stops all sessions under one write lock.
+     */
+    @Override
+    public boolean[] stopAll(List<SessionStop> stops, ObjIntConsumer<ChargingSession> onStop) {
+        boolean[] results = new boolean[stops.size()];
+        long acquiredAt = lock(lock.writeLock(), stopAllLock);
+        try {
+            for (int i = 0; i < results.length; i++) {
+                UUID id = stops.get(i).getId();
+                int record = findRecord(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                if (record >= 0) {
+                    onStop.accept(toSession(record), i);
+                    stopRecord(record, stops.get(i).getStoppedAt());
+                    results[i] = true;
+                }
+            }
+        } finally {
+            unlock(lock.writeLock(), stopAllLock, acquiredAt);
+        }
+        return results;
+    }
+
+    private void stopRecord(int record, LocalDateTime stoppedAt) {
+        bucketsOf(record).remove(record, toMinute(lastUpdateSecond(record)));
+        records.setStoppedSeconds(record, stoppedAt.toEpochSecond(ZoneOffset.UTC));
+        records.setStoppedNanos(record, stoppedAt.getNano());
+        records.setStatus(record, (byte) Status.STOPPED.ordinal());
+        stoppedBuckets.add(record, toMinute(records.getStoppedSeconds(record)));
+    }
+
+    @Override
+    public ChargingSession get(UUID id) {
+        long acquiredAt = lock(lock.readLock(), getLock);
+        try {
+            int record = findRecord(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return record < 0 ? null : toSession(record);
+        } finally {
+            unlock(lock.readLock(), getLock, acquiredAt);
+        }
+    }
+
+    /**
+     * Iterates the sessions in id order, like {@link ConcurrentSessionsStorage}, from the first session with an id
+     * greater than {@code after}, whether or not that session is still in the store. See {@link IdOrderIterator}.
+     */
+    @Override
+    public Iterator<ChargingSession> iterator(UUID after) {
+        return new IdOrderIterator(after);
+    }
+
+    @Override
+    public void forEachUpdatedBetween(LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action) {
+        long acquiredAt = lock(lock.readLock(), updatedBetweenLock);
+        try {
+            long fromMinute = toMinute(from.toEpochSecond(ZoneOffset.UTC));
+            long toMinute = toMinute(to.toEpochSecond(ZoneOffset.UTC));
+            forEachUpdatedBetween(inProgressBuckets.buckets.subMap(fromMinute, true, toMinute, true), from, to, action);
+            forEachUpdatedBetween(stoppedBuckets.buckets.subMap(fromMinute, true, toMinute, true), from, to, action);
+        } finally {
+            unlock(lock.readLock(), updatedBetweenLock, acquiredAt);
+        }
+    }
+
+    private void forEachUpdatedBetween(Map<Long, Bucket> buckets, LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action) {
+        for (Bucket bucket : buckets.values()) {
+            for (int i = 0; i < bucket.size; i++) {
+                ChargingSession session = toSession(bucket.records[i]);
+                LocalDateTime lastUpdateTime = session.getLastUpdateTime();
+                if (lastUpdateTime.isAfter(from) && lastUpdateTime.isBefore(to)) {
+                    action.accept(session);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEachAtStation(String stationId, Consumer<ChargingSession> action) {
+        long acquiredAt = lock(lock.readLock(), stationLock);
+        try {
+            Integer stationRef = stationRefsByStationId.get(stationId);
+            if (stationRef == null) {
+                return;
+            }
+            Bucket bucket = stationBuckets.get(stationRef);
+            for (int i = 0; i < bucket.size; i++) {
+                action.accept(toSession(bucket.records[i]));
+            }
+        } finally {
+            unlock(lock.readLock(), stationLock, acquiredAt);
+        }
+    }
+
+    /**
+     * Evicts one bucket under the write lock, so writers wait for at most one bucket.
+     */
+    @Override
+    public int evictStoppedBucket(LocalDateTime cutoff) {
+        long acquiredAt = lock(lock.writeLock(), evictLock);
+        try {
+            Map.Entry<Long, Bucket> oldest = stoppedBuckets.buckets.firstEntry();
+            if (oldest == null || oldest.getKey() >= toMinute(cutoff.toEpochSecond(ZoneOffset.UTC))) {
+                return -1;
+            }
+            stoppedBuckets.removeBucket(oldest.getKey());
+            Bucket bucket = oldest.getValue();
+            for (int i = 0; i < bucket.size; i++) {
+                freeRecord(bucket.records[i]);
+            }
+            return bucket.size;
+        } finally {
+            unlock(lock.writeLock(), evictLock, acquiredAt);
+        }
+    }
+
+    @Override
+    public int sessionCount() {
+        return indexSize();
+    }
+
+    @Override
+    public int indexSize() {
+        lock.readLock().lock();
+        try {
+            return size - freeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int bucketCount() {
+        lock.readLock().lock();
+        try {
+            return inProgressBuckets.buckets.size() + stoppedBuckets.buckets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int bucketSize(Status status, LocalDateTime minute) {
+        lock.readLock().lock();
+        try {
+            Buckets buckets = status == Status.STOPPED ? stoppedBuckets : inProgressBuckets;
+            Bucket bucket = buckets.buckets.get(toMinute(minute.toEpochSecond(ZoneOffset.UTC)));
+            return bucket == null ? 0 : bucket.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gives up the memory of the records and the index, the storage is not used afterwards.
+     */
+    void release() {
+        lock.writeLock().lock();
+        try {
+            index.release();
+            records.release();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long lock(Lock lock, LockTimer timer) {
+        long requestedAt = System.nanoTime();
+        lock.lock();
+        return timer.acquired(requestedAt);
+    }
+
+    private static void unlock(Lock lock, LockTimer timer, long acquiredAt) {
+        lock.unlock();
+        timer.released(acquiredAt);
+    }
+
+    private ChargingSession toSession(int record) {
+        LocalDateTime stoppedAt = records.getStoppedNanos(record) == NO_TIME
+                ? null
+                : LocalDateTime.ofEpochSecond(records.getStoppedSeconds(record), records.getStoppedNanos(record), ZoneOffset.UTC);
+        return new ChargingSession(
+                new UUID(records.getIdMostSigBits(record), records.getIdLeastSigBits(record)),
+                stationIds.get(records.getStationRef(record)),
+                LocalDateTime.ofEpochSecond(records.getStartedSeconds(record), records.getStartedNanos(record), ZoneOffset.UTC),
+                stoppedAt,
+                STATUSES[records.getStatus(record)]);
+    }
+
+    private int internStationId(String stationId) {
+        Integer stationRef = stationRefsByStationId.get(stationId);
+        if (stationRef == null) {
+            stationRef = stationIds.size();
+            stationIds.add(stationId);
+            stationBuckets.add(new Bucket());
+            stationRefsByStationId.put(stationId, stationRef);
+        }
+        return stationRef;
+    }
+
+    private Buckets bucketsOf(int record) {
+        return records.getStatus(record) == Status.STOPPED.ordinal() ? stoppedBuckets : inProgressBuckets;
+    }
+
+    private long lastUpdateSecond(int record) {
+        return records.getStoppedNanos(record) == NO_TIME ? records.getStartedSeconds(record) : records.getStoppedSeconds(record);
+    }
+
+    private static long toMinute(long epochSecond) {
+        return Math.floorDiv(epochSecond, 60L);
+    }
+
+    private int allocateRecord() {
+        if (freeCount > 0) {
+            return freeRecords[--freeCount];
+        }
+        if (size == records.capacity()) {
+            records.grow(size * 2);
+        }
+        return size++;
+    }
+
+    private void freeRecord(int record) {
+        removeFromIndex(record);
+        int movedRecord = stationBuckets.get(records.getStationRef(record)).remove(records.getStationPosition(record));
+        if (movedRecord >= 0) {
+            records.setStationPosition(movedRecord, records.getStationPosition(record));
+        }
+        records.setStatus(record, FREE);
+        if (idIndex != null || buildingIdIndex) {
+            freedCount++;
+        }
+        if (freeCount == freeRecords.length) {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+        freeRecords[freeCount++] = record;
+    }
+
+    // id index: ids in id order, rebuilt by iterators once too many records were added or freed since
+
+    private void trackAdded(int record) {
+        if (idIndex == null && !buildingIdIndex) {
+            return;
+        }
+        if (!buildingIdIndex && addedCount >= 4 * staleLimit(idIndex)) {
+            // not iterated for a while, building the index again is cheaper than keeping track
+            idIndex = null;
+            addedRecords = new int[16];
+            addedCount = 0;
+            freedCount = 0;
+            return;
+        }
+        if (addedCount == addedRecords.length) {
+            addedRecords = Arrays.copyOf(addedRecords, addedCount * 2);
+        }
+        addedRecords[addedCount++] = record;
+    }
+
+    private static int staleLimit(IdIndex index) {
+        return Math.max(ID_INDEX_MIN_STALE, index.count / 64);
+    }
+
+    private boolean isIdIndexStale() {
+        long acquiredAt = lock(lock.readLock(), iterateLock);
+        try {
+            return idIndex == null || addedCount + freedCount > staleLimit(idIndex);
+        } finally {
+            unlock(lock.readLock(), iterateLock, acquiredAt);
+        }
+    }
+
+    /**
+     * Builds the id index if there is none or it is stale. The ids are copied under the read lock
+     * {@value #SCAN_CHUNK_SIZE} records at a time and sorted without it. Records added meanwhile are tracked as
+     * added to the new index, so they are found even if they were copied too.
+     */
+    private void buildIdIndexIfStale() {
+        if (!isIdIndexStale()) {
+            return;
+        }
+        synchronized (idIndexBuildLock) {
+            if (!isIdIndexStale()) {
+                return;
+            }
+            int addedBefore;
+            int freedBefore;
+            long acquiredAt = lock(lock.writeLock(), iterateLock);
+            try {
+                buildingIdIndex = true;
+                addedBefore = addedCount;
+                freedBefore = freedCount;
+            } finally {
+                unlock(lock.writeLock(), iterateLock, acquiredAt);
+            }
+            IdIndex built = null;
+            try {
+                long[] mostSigBits = new long[0];
+                long[] leastSigBits = new long[0];
+                int count = 0;
+                for (int start = 0; ; start += SCAN_CHUNK_SIZE) {
+                    acquiredAt = lock(lock.readLock(), iterateLock);
+                    try {
+                        if (start >= size) {
+                            break;
+                        }
+                        int end = Math.min(size, start + SCAN_CHUNK_SIZE);
+                        if (mostSigBits.length < count + end - start) {
+                            int length = Math.max(count + end - start, size - freeCount + ITERATOR_BATCH_SIZE);
+                            mostSigBits = Arrays.copyOf(mostSigBits, length);
+                            leastSigBits = Arrays.copyOf(leastSigBits, length);
+                        }
+                        for (int record = start; record < end; record++) {
+                            if (records.getStatus(record) != FREE) {
+                                mostSigBits[count] = records.getIdMostSigBits(record);
+                                leastSigBits[count++] = records.getIdLeastSigBits(record);
+                            }
+                        }
+                    } finally {
+                        unlock(lock.readLock(), iterateLock, acquiredAt);
+                    }
+                }
+                order(mostSigBits, leastSigBits, null, 0, count, count, true);
+                built = new IdIndex(mostSigBits, leastSigBits, count);
+            } finally {
+                acquiredAt = lock(lock.writeLock(), iterateLock);
+                try {
+                    buildingIdIndex = false;
+                    if (built != null) {
+                        idIndex = built;
+                        System.arraycopy(addedRecords, addedBefore, addedRecords, 0, addedCount - addedBefore);
+                        addedCount -= addedBefore;
+                        freedCount -= freedBefore;
+                    } else if (idIndex == null) {
+                        addedCount = 0;
+                        freedCount = 0;
+                    }
+                } finally {
+                    unlock(lock.writeLock(), iterateLock, acquiredAt);
+                }
+            }
+        }
+    }
+
+    // index: open addressing with linear probing, kept at most half full
+
+    private static int hash(long mostSigBits, long leastSigBits) {
+        long h = mostSigBits ^ leastSigBits;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int findRecord(long mostSigBits, long leastSigBits) {
+        int mask = index.length() - 1;
+        for (int slot = hash(mostSigBits, leastSigBits) & mask; index.get(slot) != 0; slot = (slot + 1) & mask) {
+            int record = index.get(slot) - 1;
+            if (records.getIdMostSigBits(record) == mostSigBits && records.getIdLeastSigBits(record) == leastSigBits) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private void insertIntoIndex(int record) {
+        if ((size - freeCount) * 2 > index.length()) {
+            SessionRecords.Slots oldIndex = index;
+            index = records.newSlots(oldIndex.length() * 2);
+            for (int oldSlot = 0; oldSlot < oldIndex.length(); oldSlot++) {
+                if (oldIndex.get(oldSlot) != 0) {
+                    placeInIndex(oldIndex.get(oldSlot) - 1);
+                }
+            }
+            oldIndex.release();
+        }
+        placeInIndex(record);
+    }
+
+    private void placeInIndex(int record) {
+        int mask = index.length() - 1;
+        int slot = hash(records.getIdMostSigBits(record), records.getIdLeastSigBits(record)) & mask;
+        while (index.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index.set(slot, record + 1);
+    }
+
+    /**
+     * Removes a record with backward shift deletion: later entries of the same probe sequence move into the gap,
+     * so lookups never need tombstones.
+     */
+    private void removeFromIndex(int record) {
+        int mask = index.length() - 1;
+        int gap = hash(records.getIdMostSigBits(record), records.getIdLeastSigBits(record)) & mask;
+        while (index.get(gap) != record + 1) {
+            gap = (gap + 1) & mask;
+        }
+        for (int slot = (gap + 1) & mask; index.get(slot) != 0; slot = (slot + 1) & mask) {
+            int candidate = index.get(slot) - 1;
+            int home = hash(records.getIdMostSigBits(candidate), records.getIdLeastSigBits(candidate)) & mask;
+            // the candidate may fill the gap unless its home slot lies cyclically in (gap, slot]
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                index.set(gap, index.get(slot));
+                gap = slot;
+            }
+        }
+        index.set(gap, 0);
+    }
+
+    /**
+     * Buckets of records by epoch minute of their last update, with the most recently used bucket cached because
+     * almost all adds and stops go to the current minute.
+     */
+    private final class Buckets {
+        private final NavigableMap<Long, Bucket> buckets = new TreeMap<>();
+        private long lastMinute = Long.MIN_VALUE;
+        private Bucket lastBucket;
+
+        void add(int record, long minute) {
+            if (minute != lastMinute) {
+                lastBucket = buckets.computeIfAbsent(minute, k -> new Bucket());
+                lastMinute = minute;
+            }
+            records.setBucketPosition(record, lastBucket.add(record));
+        }
+
+        void remove(int record, long minute) {
+            Bucket bucket = buckets.get(minute);
+            int movedRecord = bucket.remove(records.getBucketPosition(record));
+            if (movedRecord >= 0) {
+                records.setBucketPosition(movedRecord, records.getBucketPosition(record));
+            }
+            if (bucket.size == 0) {
+                removeBucket(minute);
+            }
+        }
+
+        void removeBucket(long minute) {
+            buckets.remove(minute);
+            if (minute == lastMinute) {
+                lastMinute = Long.MIN_VALUE;
+                lastBucket = null;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private int[] records = new int[16];
+        private int size;
+
+        int add(int record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size] = record;
+            return size++;
+        }
+
+        /**
+         * Removes the record at the position by moving the last record there.
+         *
+         * @return the moved record or -1 if the removed record was the last one
+         */
+        int remove(int position) {
+            int last = records[--size];
+            if (position == size) {
+                return -1;
+            }
+            records[position] = last;
+            return last;
+        }
+    }
+
+    /**
+     * The ids of all records in id order, as of when it was built, at 16 bytes per session. Records added since
+     * are tracked in {@link #addedRecords}, ids of records freed since are still in it and skipped by the iterator.
+     * Once more than a sixty-fourth of the records, or {@value #ID_INDEX_MIN_STALE}, were added or freed since, the
+     * next iterator builds it again.
+     */
+    private static final class IdIndex {
+        private final long[] mostSigBits;
+        private final long[] leastSigBits;
+        private final int count;
+
+        IdIndex(long[] mostSigBits, long[] leastSigBits, int count) {
+            this.mostSigBits = mostSigBits;
+            this.leastSigBits = leastSigBits;
+            this.count = count;
+        }
+
+        /**
+         * @return the position of the first id greater than the given one
+         */
+        int after(long most, long least) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(mostSigBits[middle], leastSigBits[middle], most, least) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The records are not kept in id order, so the iterator reads the ids from the {@link IdIndex}, merged with the
+     * records added since it was built. A page of {@value #ITERATOR_BATCH_SIZE} sessions costs a binary search in
+     * the index, the sessions of the page and a look at the added records, and is read under the read lock: a
+     * session evicted meanwhile is skipped, a stopped one is returned stopped.
+     */
+    private final class IdOrderIterator implements Iterator<ChargingSession> {
+        private final List<ChargingSession> batch = new ArrayList<>(ITERATOR_BATCH_SIZE);
+        private int batchPosition;
+        private boolean hasCursor;
+        private long cursorMostSigBits;
+        private long cursorLeastSigBits;
+        // the smallest ids after the cursor among the added records, with room for as many candidates
+        private final long[] addedMostSigBits = new long[2 * ITERATOR_BATCH_SIZE];
+        private final long[] addedLeastSigBits = new long[2 * ITERATOR_BATCH_SIZE];
+        private final int[] selectedRecords = new int[2 * ITERATOR_BATCH_SIZE];
+        private int selected;
+        // whether added records after the selected ones were left out
+        private boolean selectionCut;
+        private boolean exhausted;
+
+        IdOrderIterator(UUID after) {
+            if (after != null) {
+                hasCursor = true;
+                cursorMostSigBits = after.getMostSignificantBits();
+                cursorLeastSigBits = after.getLeastSignificantBits();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (batchPosition == batch.size()) {
+                if (exhausted) {
+                    return false;
+                }
+                readBatch();
+            }
+            return true;
+        }
+
+        @Override
+        public ChargingSession next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(batchPosition++);
+        }
+
+        private void readBatch() {
+            batch.clear();
+            batchPosition = 0;
+            while (true) {
+                buildIdIndexIfStale();
+                long acquiredAt = lock(lock.readLock(), iterateLock);
+                try {
+                    IdIndex index = idIndex;
+                    if (index == null) {
+                        // dropped right after it was built
+                        continue;
+                    }
+                    selectAdded();
+                    int position = hasCursor ? index.after(cursorMostSigBits, cursorLeastSigBits) : 0;
+                    int next = 0;
+                    while (batch.size() < ITERATOR_BATCH_SIZE) {
+                        long most;
+                        long least;
+                        int record;
+                        if (next == selected && selectionCut) {
+                            // the next added ids are unknown
+                            break;
+                        } else if (position < index.count && (next == selected
+                                || compare(index.mostSigBits[position], index.leastSigBits[position], addedMostSigBits[next], addedLeastSigBits[next]) < 0)) {
+                            most = index.mostSigBits[position];
+                            least = index.leastSigBits[position++];
+                            record = -1;
+                        } else if (next < selected) {
+                            most = addedMostSigBits[next];
+                            least = addedLeastSigBits[next];
+                            record = selectedRecords[next++];
+                        } else {
+                            exhausted = true;
+                            break;
+                        }
+                        if (hasCursor && compare(most, least, cursorMostSigBits, cursorLeastSigBits) <= 0) {
+                            // the same session in the index and among the added records
+                            continue;
+                        }
+                        hasCursor = true;
+                        cursorMostSigBits = most;
+                        cursorLeastSigBits = least;
+                        if (record < 0 || records.getStatus(record) == FREE || records.getIdMostSigBits(record) != most || records.getIdLeastSigBits(record) != least) {
+                            record = findRecord(most, least);
+                        }
+                        if (record >= 0) {
+                            batch.add(toSession(record));
+                        }
+                    }
+                    return;
+                } finally {
+                    unlock(lock.readLock(), iterateLock, acquiredAt);
+                }
+            }
+        }
+
+        /**
+         * Selects the smallest {@value #ITERATOR_BATCH_SIZE} ids after the cursor among the added records, in id
+         * order. Whenever the buffer is full it is cut to the smallest ones, and later ids are only collected if they
+         * are smaller than the largest kept.
+         */
+        private void selectAdded() {
+            selected = 0;
+            selectionCut = false;
+            for (int i = 0; i < addedCount; i++) {
+                int record = addedRecords[i];
+                if (records.getStatus(record) == FREE) {
+                    continue;
+                }
+                long most = records.getIdMostSigBits(record);
+                long least = records.getIdLeastSigBits(record);
+                if (hasCursor && compare(most, least, cursorMostSigBits, cursorLeastSigBits) <= 0
+                        || selectionCut && compare(most, least, addedMostSigBits[ITERATOR_BATCH_SIZE - 1], addedLeastSigBits[ITERATOR_BATCH_SIZE - 1]) >= 0) {
+                    continue;
+                }
+                addedMostSigBits[selected] = most;
+                addedLeastSigBits[selected] = least;
+                selectedRecords[selected++] = record;
+                if (selected == addedMostSigBits.length) {
+                    order(addedMostSigBits, addedLeastSigBits, selectedRecords, 0, selected, ITERATOR_BATCH_SIZE, false);
+                    selected = ITERATOR_BATCH_SIZE;
+                    selectionCut = true;
+                }
+            }
+            order(addedMostSigBits, addedLeastSigBits, selectedRecords, 0, selected, ITERATOR_BATCH_SIZE, true);
+            if (selected > ITERATOR_BATCH_SIZE) {
+                selected = ITERATOR_BATCH_SIZE;
+                selectionCut = true;
+            }
+        }
+    }
+
+    /**
+     * Moves the smallest {@code limit} ids from {@code from} inclusive to {@code to} exclusive, with their records if
+     * {@code records} is given, to the start of the range with the largest of them last, and sorts them if
+     * {@code sorted} is set.
+     */
+    private static void order(long[] mostSigBits, long[] leastSigBits, int[] records, int from, int to, int limit, boolean sorted) {
+        while (to - from > 16) {
+            int middle = (from + to) >>> 1;
+            long pivotMostSigBits = mostSigBits[middle];
+            long pivotLeastSigBits = leastSigBits[middle];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(mostSigBits[i], leastSigBits[i], pivotMostSigBits, pivotLeastSigBits) < 0) {
+                    i++;
+                }
+                while (compare(mostSigBits[j], leastSigBits[j], pivotMostSigBits, pivotLeastSigBits) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(mostSigBits, leastSigBits, records, i++, j--);
+                }
+            }
+            if (!sorted) {
+                // quickselect: continue in the part holding the last of the smallest
+                if (limit - 1 <= j) {
+                    to = j + 1;
+                } else if (limit - 1 >= i) {
+                    from = i;
+                } else {
+                    return;
+                }
+            } else if (i >= limit) {
+                to = j + 1;
+            } else if (j + 1 - from < to - i) {
+                // recurse into the smaller part, loop on the larger one
+                order(mostSigBits, leastSigBits, records, from, j + 1, limit, true);
+                from = i;
+            } else {
+                order(mostSigBits, leastSigBits, records, i, to, limit, true);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(mostSigBits[j - 1], leastSigBits[j - 1], mostSigBits[j], leastSigBits[j]) > 0; j--) {
+                swap(mostSigBits, leastSigBits, records, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] mostSigBits, long[] leastSigBits, int[] records, int i, int j) {
+        long most = mostSigBits[i];
+        mostSigBits[i] = mostSigBits[j];
+        mostSigBits[j] = most;
+        long least = leastSigBits[i];
+        leastSigBits[i] = leastSigBits[j];
+        leastSigBits[j] = least;
+        if (records != null) {
+            int record = records[i];
+            records[i] = records[j];
+            records[j] = record;
+        }
+    }
+
+    /**
+     * Orders ids like {@link UUID#compareTo}.
+     */
+    private static int compare(long mostSigBits, long leastSigBits, long otherMostSigBits, long otherLeastSigBits) {
+        int result = Long.compare(mostSigBits, otherMostSigBits);
+        return result != 0 ? result : Long.compare(leastSigBits, otherLeastSigBits);
+    }
+
+}
@@ -0,0 +1,389 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import static com.example.sessionsstore.model.ChargingSession.*;
+
+/**
+ * Default storage engine without a global lock.
+ * <p>
+ * Sessions are grouped into per-minute buckets by their last update time and indexed by id. In-progress and
+ * stopped sessions have separate buckets, so stopped sessions can be evicted a whole bucket at a time. The buckets
+ * are {@link ConcurrentHashMap}s in a time index keyed by epoch minute (see {@link Buckets}), so time range scans
+ * visit only the minutes of the range. The index is a {@link ConcurrentSkipListMap} ordered by id, which lets
+ * callers page through all sessions from a cursor. A second {@link ConcurrentHashMap} indexes the sessions by
+ * station id. Adds only touch the bucket of their minute, stops and
+ * evictions are serialized per session by the monitor of that session, and reads iterate the maps weakly
+ * consistently without blocking writers. Stored sessions are never modified: a stop replaces the session with a
+ * stopped copy. The monitors of stops and evictions are timed with {@link LockTimer}.
+ */
+public class ConcurrentSessionsStorage implements SessionsStorage {
+
+    private final Buckets inProgress = new Buckets();
+    private final Buckets stopped = new Buckets();
+    private final ConcurrentNavigableMap<UUID, ChargingSession> index = new ConcurrentSkipListMap<>();
+    // emptied stations are kept, removing them would race with adds to the same station
+    private final ConcurrentMap<String, ConcurrentMap<UUID, ChargingSession>> stations = new ConcurrentHashMap<>();
+    // the size of the skip list is counted by traversing it
+    private final LongAdder indexSize = new LongAdder();
+    private final LockTimer stopLock;
+    private final LockTimer evictLock;
+
+    public ConcurrentSessionsStorage() {
+        this(Metrics.globalRegistry);
+    }
+
+    public ConcurrentSessionsStorage(MeterRegistry meterRegistry) {
+        this.stopLock = new LockTimer(meterRegistry, "concurrent", "stop");
+        this.evictLock = new LockTimer(meterRegistry, "concurrent", "evict");
+    }
+
+    @Override
+    public void add(ChargingSession session) {
+        bucketsFor(session).getOrCreate(epochMinute(session.getLastUpdateTime())).put(session.getId(), session);
+        if (index.put(session.getId(), session) == null) {
+            indexSize.increment();
+        }
+        getBucket(stations, session.getStationId()).put(session.getId(), session);
+    }
+
+    /**
+     * Adds the sessions one by one, but looks up the buckets only when the minute, the status or the station
+     * differs from the previous session.
+     */
+    @Override
+    public void addAll(List<ChargingSession> sessions) {
+        Buckets lastBuckets = null;
+        long lastMinute = 0L;
+        ConcurrentMap<UUID, ChargingSession> bucket = null;
+        String lastStationId = null;
+        ConcurrentMap<UUID, ChargingSession> station = null;
+        for (ChargingSession session : sessions) {
+            Buckets buckets = bucketsFor(session);
+            long minute = epochMinute(session.getLastUpdateTime());
+            if (buckets != lastBuckets || minute != lastMinute) {
+                bucket = buckets.getOrCreate(minute);
+                lastBuckets = buckets;
+                lastMinute = minute;
+            }
+            if (!session.getStationId().equals(lastStationId)) {
+                station = getBucket(stations, session.getStationId());
+                lastStationId = session.getStationId();
+            }
+            bucket.put(session.getId(), session);
+            if (index.put(session.getId(), session) == null) {
+                indexSize.increment();
+            }
+            station.put(session.getId(), session);
+        }
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    private Buckets bucketsFor(ChargingSession session) {
+        return session.getStatus() == Status.STOPPED ? stopped : inProgress;
+    }
+
+    private ConcurrentMap<UUID, ChargingSession> getBucket(ConcurrentMap<String, ConcurrentMap<UUID, ChargingSession>> buckets, String key) {
+        // get() first: computeIfAbsent locks the hash bin even when the bucket already exists
+        ConcurrentMap<UUID, ChargingSession> sessions = buckets.get(key);
+        return sessions != null ? sessions : buckets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Stops a session and moves it to the stopped bucket of the stop time. The stopped session is a new object that
+     * replaces the previous one in the index and the buckets, so readers see either the previous or the stopped
+     * session, never one in between. The whole move runs on the monitor of the previous session, so concurrent stops
+     * of the same session are applied one after another.
+     */
+    @Override
+    public boolean stop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop) {
+        return stop(id, stoppedAt, epochMinute(stoppedAt), null, onStop);
+    }
+
+    /**
+     * Stops the sessions one by one, each on its own monitor, but looks up the stopped bucket only when the stop
+     * minute differs from the previous stop.
+     */
+    @Override
+    public boolean[] stopAll(List<SessionStop> stops, ObjIntConsumer<ChargingSession> onStop) {
+        boolean[] results = new boolean[stops.size()];
+        ConcurrentMap<UUID, ChargingSession> stopBucket = null;
+        long stopMinute = 0L;
+        for (int i = 0; i < results.length; i++) {
+            SessionStop stop = stops.get(i);
+            long minute = epochMinute(stop.getStoppedAt());
+            if (stopBucket == null || minute != stopMinute) {
+                stopBucket = stopped.getOrCreate(minute);
+                stopMinute = minute;
+            }
+            int position = i;
+            results[i] = stop(stop.getId(), stop.getStoppedAt(), stopMinute, stopBucket, session -> onStop.accept(session, position));
+        }
+        return results;
+    }
+
+    /**
+     * @param stopBucket the stopped bucket of {@code stopMinute}, looked up when needed if {@code null}
+     */
+    private boolean stop(UUID id, LocalDateTime stoppedAt, long stopMinute, ConcurrentMap<UUID, ChargingSession> stopBucket,
+                         Consumer<ChargingSession> onStop) {
+        while (true) {
+            ChargingSession session = index.get(id);
+            if (session == null) {
+                return false;
+            }
+            long requestedAt = System.nanoTime();
+            synchronized (session) {
+                long acquiredAt = stopLock.acquired(requestedAt);
+                try {
+                    if (index.get(id) != session) {
+                        // stopped or evicted meanwhile, retry with the current session
+                        continue;
+                    }
+                    Buckets buckets = bucketsFor(session);
+                    long minute = epochMinute(session.getLastUpdateTime());
+                    onStop.accept(session);
+                    ChargingSession stoppedSession = new ChargingSession(id, session.getStationId(), session.getStartedAt(), stoppedAt, Status.STOPPED);
+                    // out of the previous bucket before into the next one, see forEachUpdatedBetween
+                    if (buckets != stopped || minute != stopMinute) {
+                        Map<UUID, ChargingSession> previousBucket = buckets.get(minute);
+                        if (previousBucket != null) {
+                            previousBucket.remove(id, session);
+                        }
+                    }
+                    (stopBucket != null ? stopBucket : stopped.getOrCreate(stopMinute)).put(id, stoppedSession);
+                    index.put(id, stoppedSession);
+                    stations.get(session.getStationId()).replace(id, session, stoppedSession);
+                    return true;
+                } finally {
+                    stopLock.released(acquiredAt);
+                }
+            }
+        }
+    }
+
+    @Override
+    public ChargingSession get(UUID id) {
+        return index.get(id);
+    }
+
+    /**
+     * Iterates the index in id order. The cursor does not need to exist in the store.
+     */
+    @Override
+    public Iterator<ChargingSession> iterator(UUID after) {
+        if (after == null) {
+            return index.values().iterator();
+        }
+        return index.tailMap(after, false).values().iterator();
+    }
+
+    /**
+     * Visits the existing buckets of the range only, however long the range is. A stop takes the session out of its
+     * in-progress bucket before it puts the stopped copy into a stopped bucket, and the stopped buckets are visited
+     * first, so a session stopped during the scan is visited once or, if it moved between the two scans, not at all.
+     * A stopped session stopped again into another minute during the scan may be visited with both stops.
+     */
+    @Override
+    public void forEachUpdatedBetween(LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action) {
+        long fromMinute = epochMinute(from);
+        long toMinute = epochMinute(to);
+        forEachUpdatedBetween(stopped.between(fromMinute, toMinute), from, to, action);
+        forEachUpdatedBetween(inProgress.between(fromMinute, toMinute), from, to, action);
+    }
+
+    private void forEachUpdatedBetween(Map<Long, ConcurrentMap<UUID, ChargingSession>> buckets, LocalDateTime from, LocalDateTime to,
+                                       Consumer<ChargingSession> action) {
+        for (Map<UUID, ChargingSession> sessions : buckets.values()) {
+            for (ChargingSession session : sessions.values()) {
+                LocalDateTime lastUpdateTime = session.getLastUpdateTime();
+                if (lastUpdateTime.isAfter(from) && lastUpdateTime.isBefore(to)) {
+                    action.accept(session);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEachAtStation(String stationId, Consumer<ChargingSession> action) {
+        Map<UUID, ChargingSession> sessions = stations.get(stationId);
+        if (sessions != null) {
+            sessions.values().forEach(action);
+        }
+    }
+
+    /**
+     * Detaches the oldest stopped bucket at once and then removes its sessions from the index. Sessions stopped
+     * again while the bucket is detached have moved to a newer bucket and stay in the store.
+     */
+    @Override
+    public int evictStoppedBucket(LocalDateTime cutoff) {
+        Map.Entry<Long, ConcurrentMap<UUID, ChargingSession>> oldest = stopped.oldest();
+        if (oldest == null || oldest.getKey() >= epochMinute(cutoff)) {
+            return -1;
+        }
+        long oldestMinute = oldest.getKey();
+        Map<UUID, ChargingSession> bucket = stopped.remove(oldestMinute);
+        if (bucket == null) {
+            // evicted by another thread meanwhile
+            return 0;
+        }
+        int evicted = 0;
+        for (ChargingSession session : bucket.values()) {
+            long requestedAt = System.nanoTime();
+            synchronized (session) {
+                long acquiredAt = evictLock.acquired(requestedAt);
+                if (epochMinute(session.getLastUpdateTime()) == oldestMinute && index.remove(session.getId(), session)) {
+                    stations.get(session.getStationId()).remove(session.getId(), session);
+                    evicted++;
+                }
+                evictLock.released(acquiredAt);
+            }
+        }
+        indexSize.add(-evicted);
+        return evicted;
+    }
+
+    @Override
+    public int sessionCount() {
+        return inProgress.sessionCount() + stopped.sessionCount();
+    }
+
+    @Override
+    public int indexSize() {
+        return indexSize.intValue();
+    }
+
+    @Override
+    public int bucketCount() {
+        return inProgress.size() + stopped.size();
+    }
+
+    @Override
+    public int bucketSize(Status status, LocalDateTime minute) {
+        Map<UUID, ChargingSession> bucket = (status == Status.STOPPED ? stopped : inProgress).get(epochMinute(minute));
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    /**
+     * Buckets of sessions in a {@link ConcurrentSkipListMap} keyed by the epoch minute of their last update, so range
+     * scans and evictions find their minutes without scanning all keys.
+     * <p>
+     * The buckets of the last {@value #RECENT_MINUTES} minutes used are also kept in a ring indexed by the minute.
+     * Almost all adds and stops go to recent minutes, which they then find without boxing the minute or searching
+     * the map, so a lookup allocates nothing. An entry of the ring is only replaced by a compare-and-set from the
+     * entry seen before reading the map, and {@link #remove} replaces the entry of the minute after removing the
+     * bucket from the map, so the ring never keeps a removed bucket.
+     */
+    private static final class Buckets {
+        private static final int RECENT_MINUTES = 1024;
+
+        private final ConcurrentNavigableMap<Long, ConcurrentMap<UUID, ChargingSession>> byMinute = new ConcurrentSkipListMap<>();
+        private final AtomicReferenceArray<RecentBucket> recent = new AtomicReferenceArray<>(RECENT_MINUTES);
+        // the size of the skip list is counted by traversing it
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * @return the bucket of the minute or {@code null} if there is none
+         */
+        ConcurrentMap<UUID, ChargingSession> get(long minute) {
+            int slot = slot(minute);
+            RecentBucket cached = recent.get(slot);
+            if (cached != null && cached.minute == minute && cached.sessions != null) {
+                return cached.sessions;
+            }
+            ConcurrentMap<UUID, ChargingSession> sessions = byMinute.get(minute);
+            if (sessions != null) {
+                recent.compareAndSet(slot, cached, new RecentBucket(minute, sessions));
+            }
+            return sessions;
+        }
+
+        ConcurrentMap<UUID, ChargingSession> getOrCreate(long minute) {
+            int slot = slot(minute);
+            RecentBucket cached = recent.get(slot);
+            if (cached != null && cached.minute == minute && cached.sessions != null) {
+                return cached.sessions;
+            }
+            ConcurrentMap<UUID, ChargingSession> sessions = byMinute.get(minute);
+            if (sessions == null) {
+                ConcurrentMap<UUID, ChargingSession> created = new ConcurrentHashMap<>();
+                sessions = byMinute.putIfAbsent(minute, created);
+                if (sessions == null) {
+                    sessions = created;
+                    size.incrementAndGet();
+                }
+            }
+            recent.compareAndSet(slot, cached, new RecentBucket(minute, sessions));
+            return sessions;
+        }
+
+        /**
+         * @return a view of the buckets from {@code fromMinute} to {@code toMinute}, both inclusive
+         */
+        Map<Long, ConcurrentMap<UUID, ChargingSession>> between(long fromMinute, long toMinute) {
+            return byMinute.subMap(fromMinute, true, toMinute, true);
+        }
+
+        Map.Entry<Long, ConcurrentMap<UUID, ChargingSession>> oldest() {
+            return byMinute.firstEntry();
+        }
+
+        ConcurrentMap<UUID, ChargingSession> remove(long minute) {
+            ConcurrentMap<UUID, ChargingSession> sessions = byMinute.remove(minute);
+            if (sessions != null) {
+                size.decrementAndGet();
+                // a new entry, so that a concurrent lookup that read the map before the removal cannot cache it
+                recent.set(slot(minute), new RecentBucket(minute, null));
+            }
+            return sessions;
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        int sessionCount() {
+            int count = 0;
+            for (ConcurrentMap<UUID, ChargingSession> bucket : byMinute.values()) {
+                count += bucket.size();
+            }
+            return count;
+        }
+
+        private static int slot(long minute) {
+            return (int) minute & (RECENT_MINUTES - 1);
+        }
+    }
+
+    private static final class RecentBucket {
+        private final long minute;
+        private final ConcurrentMap<UUID, ChargingSession> sessions;
+
+        RecentBucket(long minute, ConcurrentMap<UUID, ChargingSession> sessions) {
+            this.minute = minute;
+            this.sessions = sessions;
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.example.sessionsstore.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Assigns session ids to a fixed list of nodes by consistent hashing. Every node is placed on a ring of 64-bit
+ * hashes at {@code virtualNodes} points derived from its name, and an id belongs to the node of the first point at
+ * or after the hash of the id. Adding or removing a node only moves the ids between its points and their
+ * predecessors, about {@code 1/n} of all ids, and the virtual nodes spread the ids evenly. Immutable.
+ */
+public final class ConsistentHashRing {
+
+    private final long[] points;
+    private final int[] owners;
+    private final int nodeCount;
+
+    /**
+     * @param nodes names of the nodes, the same names place the nodes at the same points on every instance
+     */
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("Ring needs at least one node and one virtual node per node");
+        }
+        this.nodeCount = nodes.size();
+        long[] hashes = new long[nodes.size() * virtualNodes];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < virtualNodes; i++) {
+                hashes[node * virtualNodes + i] = hash(nodes.get(node) + "#" + i);
+            }
+        }
+        long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        this.points = sorted;
+        this.owners = new int[sorted.length];
+        for (int i = 0; i < hashes.length; i++) {
+            // hashes of different points are distinct in practice, a collision only shifts one point
+            owners[Arrays.binarySearch(sorted, hashes[i])] = i / virtualNodes;
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the position of the node that owns the id in the list of nodes
+     */
+    public int nodeFor(UUID id) {
+        long hash = mix(id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32));
+        int point = Arrays.binarySearch(points, hash);
+        if (point < 0) {
+            point = -point - 1;
+        }
+        return owners[point == points.length ? 0 : point];
+    }
+
+    private static long hash(String name) {
+        // FNV-1a, mixed to spread similar names
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // finalizer of MurmurHash3
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+}
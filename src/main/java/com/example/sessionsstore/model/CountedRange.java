@@ -0,0 +1,26 @@
+package com.example.sessionsstore.model;
+
+/**
+ * The times that the rings of counters ({@link RollingSummary}, {@link SessionAggregates}) count: those of the units
+ * a ring keeps up to the clock, and up to a minute ahead of the clock. Anything older or later is not counted, so a
+ * far-future timestamp cannot claim a slot and hide the counts of the units that reuse it.
+ */
+final class CountedRange {
+
+    // how far ahead of the clock timestamps are counted, rings keep slots for it
+    static final int FUTURE_SECONDS = 60;
+
+    private CountedRange() {
+    }
+
+    /**
+     * @param unit        the unit to count in, as units of {@code unitSeconds} since the epoch
+     * @param unitSeconds the length of a unit of the ring
+     * @param units       the number of units the ring keeps up to the clock
+     * @param nowSecond   the clock as epoch second
+     */
+    static boolean isCounted(long unit, long unitSeconds, long units, long nowSecond) {
+        return unit > Math.floorDiv(nowSecond, unitSeconds) - units && unit <= Math.floorDiv(nowSecond + FUTURE_SECONDS, unitSeconds);
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.example.sessionsstore.model;
+
+import java.util.Arrays;
+
+/**
+ * {@link SessionRecords} as parallel arrays on the heap (struct of arrays), one array per field. Growing copies
+ * every array.
+ */
+final class HeapSessionRecords implements SessionRecords {
+
+    private long[] idMostSigBits;
+    private long[] idLeastSigBits;
+    private int[] stationRefs;
+    private long[] startedSeconds;
+    private int[] startedNanos;
+    private long[] stoppedSeconds;
+    private int[] stoppedNanos;
+    private byte[] statuses;
+    private int[] bucketPositions;
+    private int[] stationPositions;
+
+    HeapSessionRecords(int capacity) {
+        idMostSigBits = new long[capacity];
+        idLeastSigBits = new long[capacity];
+        stationRefs = new int[capacity];
+        startedSeconds = new long[capacity];
+        startedNanos = new int[capacity];
+        stoppedSeconds = new long[capacity];
+        stoppedNanos = new int[capacity];
+        statuses = new byte[capacity];
+        bucketPositions = new int[capacity];
+        stationPositions = new int[capacity];
+    }
+
+    @Override
+    public int capacity() {
+        return idMostSigBits.length;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        idMostSigBits = Arrays.copyOf(idMostSigBits, capacity);
+        idLeastSigBits = Arrays.copyOf(idLeastSigBits, capacity);
+        stationRefs = Arrays.copyOf(stationRefs, capacity);
+        startedSeconds = Arrays.copyOf(startedSeconds, capacity);
+        startedNanos = Arrays.copyOf(startedNanos, capacity);
+        stoppedSeconds = Arrays.copyOf(stoppedSeconds, capacity);
+        stoppedNanos = Arrays.copyOf(stoppedNanos, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        bucketPositions = Arrays.copyOf(bucketPositions, capacity);
+        stationPositions = Arrays.copyOf(stationPositions, capacity);
+    }
+
+    @Override
+    public void release() {
+    }
+
+    @Override
+    public long getIdMostSigBits(int record) {
+        return idMostSigBits[record];
+    }
+
+    @Override
+    public void setIdMostSigBits(int record, long idMostSigBits) {
+        this.idMostSigBits[record] = idMostSigBits;
+    }
+
+    @Override
+    public long getIdLeastSigBits(int record) {
+        return idLeastSigBits[record];
+    }
+
+    @Override
+    public void setIdLeastSigBits(int record, long idLeastSigBits) {
+        this.idLeastSigBits[record] = idLeastSigBits;
+    }
+
+    @Override
+    public int getStationRef(int record) {
+        return stationRefs[record];
+    }
+
+    @Override
+    public void setStationRef(int record, int stationRef) {
+        stationRefs[record] = stationRef;
+    }
+
+    @Override
+    public long getStartedSeconds(int record) {
+        return startedSeconds[record];
+    }
+
+    @Override
+    public void setStartedSeconds(int record, long startedSeconds) {
+        this.startedSeconds[record] = startedSeconds;
+    }
+
+    @Override
+    public int getStartedNanos(int record) {
+        return startedNanos[record];
+    }
+
+    @Override
+    public void setStartedNanos(int record, int startedNanos) {
+        this.startedNanos[record] = startedNanos;
+    }
+
+    @Override
+    public long getStoppedSeconds(int record) {
+        return stoppedSeconds[record];
+    }
+
+    @Override
+    public void setStoppedSeconds(int record, long stoppedSeconds) {
+        this.stoppedSeconds[record] = stoppedSeconds;
+    }
+
+    @Override
+    public int getStoppedNanos(int record) {
+        return stoppedNanos[record];
+    }
+
+    @Override
+    public void setStoppedNanos(int record, int stoppedNanos) {
+        this.stoppedNanos[record] = stoppedNanos;
+    }
+
+    @Override
+    public byte getStatus(int record) {
+        return statuses[record];
+    }
+
+    @Override
+    public void setStatus(int record, byte status) {
+        statuses[record] = status;
+    }
+
+    @Override
+    public int getBucketPosition(int record) {
+        return bucketPositions[record];
+    }
+
+    @Override
+    public void setBucketPosition(int record, int bucketPosition) {
+        bucketPositions[record] = bucketPosition;
+    }
+
+    @Override
+    public int getStationPosition(int record) {
+        return stationPositions[record];
+    }
+
+    @Override
+    public void setStationPosition(int record, int stationPosition) {
+        stationPositions[record] = stationPosition;
+    }
+
+    @Override
+    public Slots newSlots(int length) {
+        int[] slots = new int[length];
+        return new Slots() {
+            @Override
+            public int length() {
+                return slots.length;
+            }
+
+            @Override
+            public int get(int slot) {
+                return slots[slot];
+            }
+
+            @Override
+            public void set(int slot, int value) {
+                slots[slot] = value;
+            }
+
+            @Override
+            public void release() {
+            }
+        };
+    }
+
+}
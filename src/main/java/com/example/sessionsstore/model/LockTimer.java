@@ -0,0 +1,45 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one lock of a storage operation: how long the operation waited for the lock as
+ * {@code sessions.storage.lock.wait} and how long it held it as {@code sessions.storage.lock.hold}.
+ */
+final class LockTimer {
+
+    private final Timer wait;
+    private final Timer hold;
+
+    LockTimer(MeterRegistry registry, String storage, String operation) {
+        this.wait = Timer.builder("sessions.storage.lock.wait")
+                .tag("storage", storage)
+                .tag("operation", operation)
+                .register(registry);
+        this.hold = Timer.builder("sessions.storage.lock.hold")
+                .tag("storage", storage)
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    /**
+     * @param requestedAt {@link System#nanoTime()} before the lock was requested
+     * @return {@link System#nanoTime()} now that the lock is held
+     */
+    long acquired(long requestedAt) {
+        long acquiredAt = System.nanoTime();
+        wait.record(acquiredAt - requestedAt, TimeUnit.NANOSECONDS);
+        return acquiredAt;
+    }
+
+    /**
+     * @param acquiredAt the value returned by {@link #acquired(long)}
+     */
+    void released(long acquiredAt) {
+        hold.record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.example.sessionsstore.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, a ring of slots that each carry a sequence
+ * number. A producer claims the next position with a CAS on the tail, writes its element and then publishes the
+ * slot by advancing its sequence; the consumer takes slots in order once they are published. Producers never wait
+ * for each other beyond a failed CAS, and the consumer never writes to a location producers contend on.
+ */
+final class MpscRing<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer only, volatile for size()
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    MpscRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * @return {@code false} if the ring is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    // a volatile write, so that a producer that checks afterwards whether the consumer sleeps
+                    // cannot miss a consumer that checked the ring before falling asleep
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Called by the consumer only.
+     *
+     * @return the oldest element or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[slot];
+        elements[slot] = null;
+        sequences.lazySet(slot, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Called by the consumer only.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    /**
+     * @return the number of claimed slots, including those being written
+     */
+    int size() {
+        return (int) Math.max(0L, tail.get() - head);
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.example.sessionsstore.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * {@link SessionRecords} in direct memory: fixed-width records of {@link #RECORD_SIZE} bytes in slabs of
+ * {@link #RECORDS_PER_SLAB} records each (array of structs). Growing adds slabs, existing records never move, and
+ * the heap only holds one {@link ByteBuffer} per slab. Index tables are direct buffers as well.
+ * <p>
+ * Direct memory is returned when the collector finds a released buffer unreachable, it counts against
+ * {@code -XX:MaxDirectMemorySize} (the heap size by default) until then.
+ */
+final class OffHeapSessionRecords implements SessionRecords {
+
+    static final int RECORD_SIZE = 56;
+    static final int RECORDS_PER_SLAB = 1 << 16;
+    // the largest index a direct buffer holds
+    private static final int MAX_SLOTS = 1 << 29;
+
+    private static final int ID_MOST_SIG_BITS = 0;
+    private static final int ID_LEAST_SIG_BITS = 8;
+    private static final int STARTED_SECONDS = 16;
+    private static final int STOPPED_SECONDS = 24;
+    private static final int STATION_REF = 32;
+    private static final int STARTED_NANOS = 36;
+    private static final int STOPPED_NANOS = 40;
+    private static final int BUCKET_POSITION = 44;
+    private static final int STATION_POSITION = 48;
+    private static final int STATUS = 52;
+
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+    // slabs and index tables, read by the gauge of the storage
+    private volatile long allocatedBytes;
+
+    OffHeapSessionRecords(int capacity) {
+        grow(capacity);
+    }
+
+    @Override
+    public int capacity() {
+        return slabs.length * RECORDS_PER_SLAB;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        int slabCount = (int) (((long) capacity + RECORDS_PER_SLAB - 1) / RECORDS_PER_SLAB);
+        if (slabCount <= slabs.length) {
+            return;
+        }
+        int oldSlabCount = slabs.length;
+        slabs = Arrays.copyOf(slabs, slabCount);
+        for (int i = oldSlabCount; i < slabCount; i++) {
+            slabs[i] = allocate((long) RECORDS_PER_SLAB * RECORD_SIZE);
+        }
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public void release() {
+        slabs = new ByteBuffer[0];
+        allocatedBytes = 0L;
+    }
+
+    private ByteBuffer allocate(long bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        allocatedBytes += bytes;
+        return buffer;
+    }
+
+    private ByteBuffer slab(int record) {
+        return slabs[record / RECORDS_PER_SLAB];
+    }
+
+    private static int offset(int record, int field) {
+        return record % RECORDS_PER_SLAB * RECORD_SIZE + field;
+    }
+
+    @Override
+    public long getIdMostSigBits(int record) {
+        return slab(record).getLong(offset(record, ID_MOST_SIG_BITS));
+    }
+
+    @Override
+    public void setIdMostSigBits(int record, long idMostSigBits) {
+        slab(record).putLong(offset(record, ID_MOST_SIG_BITS), idMostSigBits);
+    }
+
+    @Override
+    public long getIdLeastSigBits(int record) {
+        return slab(record).getLong(offset(record, ID_LEAST_SIG_BITS));
+    }
+
+    @Override
+    public void setIdLeastSigBits(int record, long idLeastSigBits) {
+        slab(record).putLong(offset(record, ID_LEAST_SIG_BITS), idLeastSigBits);
+    }
+
+    @Override
+    public int getStationRef(int record) {
+        return slab(record).getInt(offset(record, STATION_REF));
+    }
+
+    @Override
+    public void setStationRef(int record, int stationRef) {
+        slab(record).putInt(offset(record, STATION_REF), stationRef);
+    }
+
+    @Override
+    public long getStartedSeconds(int record) {
+        return slab(record).getLong(offset(record, STARTED_SECONDS));
+    }
+
+    @Override
+    public void setStartedSeconds(int record, long startedSeconds) {
+        slab(record).putLong(offset(record, STARTED_SECONDS), startedSeconds);
+    }
+
+    @Override
+    public int getStartedNanos(int record) {
+        return slab(record).getInt(offset(record, STARTED_NANOS));
+    }
+
+    @Override
+    public void setStartedNanos(int record, int startedNanos) {
+        slab(record).putInt(offset(record, STARTED_NANOS), startedNanos);
+    }
+
+    @Override
+    public long getStoppedSeconds(int record) {
+        return slab(record).getLong(offset(record, STOPPED_SECONDS));
+    }
+
+    @Override
+    public void setStoppedSeconds(int record, long stoppedSeconds) {
+        slab(record).putLong(offset(record, STOPPED_SECONDS), stoppedSeconds);
+    }
+
+    @Override
+    public int getStoppedNanos(int record) {
+        return slab(record).getInt(offset(record, STOPPED_NANOS));
+    }
+
+    @Override
+    public void setStoppedNanos(int record, int stoppedNanos) {
+        slab(record).putInt(offset(record, STOPPED_NANOS), stoppedNanos);
+    }
+
+    @Override
+    public byte getStatus(int record) {
+        return slab(record).get(offset(record, STATUS));
+    }
+
+    @Override
+    public void setStatus(int record, byte status) {
+        slab(record).put(offset(record, STATUS), status);
+    }
+
+    @Override
+    public int getBucketPosition(int record) {
+        return slab(record).getInt(offset(record, BUCKET_POSITION));
+    }
+
+    @Override
+    public void setBucketPosition(int record, int bucketPosition) {
+        slab(record).putInt(offset(record, BUCKET_POSITION), bucketPosition);
+    }
+
+    @Override
+    public int getStationPosition(int record) {
+        return slab(record).getInt(offset(record, STATION_POSITION));
+    }
+
+    @Override
+    public void setStationPosition(int record, int stationPosition) {
+        slab(record).putInt(offset(record, STATION_POSITION), stationPosition);
+    }
+
+    /**
+     * @throws IllegalStateException if the table would not fit in a direct buffer
+     */
+    @Override
+    public Slots newSlots(int length) {
+        if (length <= 0 || length > MAX_SLOTS) {
+            throw new IllegalStateException("Off-heap index cannot hold " + length + " slots");
+        }
+        long bytes = (long) length * Integer.BYTES;
+        return new Slots() {
+            private ByteBuffer slots = allocate(bytes);
+
+            @Override
+            public int length() {
+                return length;
+            }
+
+            @Override
+            public int get(int slot) {
+                return slots.getInt(slot * Integer.BYTES);
+            }
+
+            @Override
+            public void set(int slot, int value) {
+                slots.putInt(slot * Integer.BYTES, value);
+            }
+
+            @Override
+            public void release() {
+                slots = null;
+                allocatedBytes -= bytes;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * The {@link CompactSessionsStorage} engine with its records and index in direct memory, see
+ * {@link OffHeapSessionRecords}. The heap holds one buffer per slab of records, the interned station ids and the
+ * buckets as arrays of record numbers, none of which the collector has to trace per session, so heap size and GC
+ * pauses stay flat at tens of millions of sessions. {@link ChargingSession} objects are only created when sessions
+ * are read.
+ * <p>
+ * {@code sessions.storage.direct.memory} is the direct memory held by the engine. {@link #close()} gives it up.
+ */
+public class OffHeapSessionsStorage extends CompactSessionsStorage implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = OffHeapSessionRecords.RECORDS_PER_SLAB;
+
+    public OffHeapSessionsStorage() {
+        this(Metrics.globalRegistry);
+    }
+
+    public OffHeapSessionsStorage(MeterRegistry meterRegistry) {
+        this(meterRegistry, new OffHeapSessionRecords(INITIAL_CAPACITY));
+    }
+
+    private OffHeapSessionsStorage(MeterRegistry meterRegistry, OffHeapSessionRecords records) {
+        super(meterRegistry, "off-heap", records);
+        Gauge.builder("sessions.storage.direct.memory", records, OffHeapSessionRecords::allocatedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Releases the direct memory, the storage is not used afterwards.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+}
@@ -0,0 +1,345 @@
+package com.example.sessionsstore.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Persistent map from 128 bit keys to values, a bitmapped trie that consumes the key five bits at a time from
+ * the most significant bit, so its entries are ordered by the key as an unsigned 128 bit number.
+ * <p>
+ * Every change returns a new trie that shares all untouched nodes with the old one; the old trie stays valid and
+ * never changes. Changes made with the same non-null {@code edit} token update the nodes created with that token
+ * in place instead of copying them again, so a batch of changes copies every path only once. Once a trie has been
+ * handed to other threads its token must not be used again. Not thread-safe while being edited.
+ */
+final class PersistentTrie<V> {
+
+    private static final int BITS = 5;
+    private static final int MAX_DEPTH = (128 + BITS - 1) / BITS;
+    private static final PersistentTrie<?> EMPTY = new PersistentTrie<>(null, 0, null);
+
+    private final Object edit;
+    private Node root;
+    private int size;
+
+    private PersistentTrie(Node root, int size, Object edit) {
+        this.root = root;
+        this.size = size;
+        this.edit = edit;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentTrie<V> empty() {
+        return (PersistentTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(UUID key) {
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = 1 << chunk(key, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+            Object slotKey = node.slots[i];
+            if (slotKey != null) {
+                return key.equals(slotKey) ? (V) node.slots[i + 1] : null;
+            }
+            node = (Node) node.slots[i + 1];
+        }
+        return null;
+    }
+
+    /**
+     * @return a trie with {@code value} for {@code key}, this trie itself if it was created with {@code edit}
+     */
+    PersistentTrie<V> with(UUID key, V value, Object edit) {
+        PersistentTrie<V> trie = editable(edit);
+        trie.root = trie.insert(trie.root, key, value, 0);
+        return trie;
+    }
+
+    /**
+     * @return a trie without {@code key}, this trie itself if it was created with {@code edit}
+     */
+    PersistentTrie<V> without(UUID key, Object edit) {
+        PersistentTrie<V> trie = editable(edit);
+        trie.root = trie.remove(trie.root, key, 0);
+        return trie;
+    }
+
+    /**
+     * @return a cursor over the entries with keys greater than {@code after}, or over all entries if it is
+     * {@code null}, in key order
+     */
+    Cursor<V> cursor(UUID after) {
+        return new Cursor<>(root, after);
+    }
+
+    /**
+     * @return the values of {@link #cursor(UUID)}
+     */
+    Iterator<V> values(UUID after) {
+        Cursor<V> cursor = cursor(after);
+        return new Iterator<V>() {
+            private boolean advanced;
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!advanced) {
+                    hasNext = cursor.advance();
+                    advanced = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                advanced = false;
+                return cursor.value();
+            }
+        };
+    }
+
+    private PersistentTrie<V> editable(Object edit) {
+        return edit != null && this.edit == edit ? this : new PersistentTrie<>(root, size, edit);
+    }
+
+    private Node editable(Node node) {
+        return edit != null && node.edit == edit ? node : new Node(edit, node.bitmap, node.slots.clone());
+    }
+
+    private Node insert(Node node, UUID key, Object value, int shift) {
+        if (node == null) {
+            size++;
+            return new Node(edit, 1 << chunk(key, shift), new Object[]{key, value});
+        }
+        int bit = 1 << chunk(key, shift);
+        int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            size++;
+            Object[] slots = new Object[node.slots.length + 2];
+            System.arraycopy(node.slots, 0, slots, 0, i);
+            slots[i] = key;
+            slots[i + 1] = value;
+            System.arraycopy(node.slots, i, slots, i + 2, node.slots.length - i);
+            if (edit != null && node.edit == edit) {
+                node.bitmap |= bit;
+                node.slots = slots;
+                return node;
+            }
+            return new Node(edit, node.bitmap | bit, slots);
+        }
+        Object slotKey = node.slots[i];
+        Object slotValue = node.slots[i + 1];
+        if (slotKey == null) {
+            Node child = insert((Node) slotValue, key, value, shift + BITS);
+            if (child == slotValue) {
+                return node;
+            }
+            Node copy = editable(node);
+            copy.slots[i + 1] = child;
+            return copy;
+        }
+        if (key.equals(slotKey)) {
+            if (value == slotValue) {
+                return node;
+            }
+            Node copy = editable(node);
+            copy.slots[i + 1] = value;
+            return copy;
+        }
+        size++;
+        Node copy = editable(node);
+        copy.slots[i] = null;
+        copy.slots[i + 1] = pair((UUID) slotKey, slotValue, key, value, shift + BITS);
+        return copy;
+    }
+
+    private Node pair(UUID key1, Object value1, UUID key2, Object value2, int shift) {
+        int chunk1 = chunk(key1, shift);
+        int chunk2 = chunk(key2, shift);
+        if (chunk1 == chunk2) {
+            return new Node(edit, 1 << chunk1, new Object[]{null, pair(key1, value1, key2, value2, shift + BITS)});
+        }
+        Object[] slots = chunk1 < chunk2
+                ? new Object[]{key1, value1, key2, value2}
+                : new Object[]{key2, value2, key1, value1};
+        return new Node(edit, (1 << chunk1) | (1 << chunk2), slots);
+    }
+
+    /**
+     * Removes the key and keeps the trie canonical: a node below the root never holds just one entry, such a node
+     * is replaced by its entry in the parent.
+     *
+     * @return the node without the key, {@code null} if nothing is left
+     */
+    private Node remove(Node node, UUID key, int shift) {
+        if (node == null) {
+            return null;
+        }
+        int bit = 1 << chunk(key, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        Object slotKey = node.slots[i];
+        if (slotKey == null) {
+            Node child = (Node) node.slots[i + 1];
+            Node removed = remove(child, key, shift + BITS);
+            // an editable child may have been changed in place, so its identity only tells there is nothing to copy
+            if (removed.slots.length == 2 && removed.slots[0] != null) {
+                Node copy = editable(node);
+                copy.slots[i] = removed.slots[0];
+                copy.slots[i + 1] = removed.slots[1];
+                return copy;
+            }
+            if (removed == child) {
+                return node;
+            }
+            Node copy = editable(node);
+            copy.slots[i + 1] = removed;
+            return copy;
+        }
+        if (!key.equals(slotKey)) {
+            return node;
+        }
+        size--;
+        if (node.slots.length == 2) {
+            return null;
+        }
+        Object[] slots = new Object[node.slots.length - 2];
+        System.arraycopy(node.slots, 0, slots, 0, i);
+        System.arraycopy(node.slots, i + 2, slots, i, slots.length - i);
+        if (edit != null && node.edit == edit) {
+            node.bitmap &= ~bit;
+            node.slots = slots;
+            return node;
+        }
+        return new Node(edit, node.bitmap & ~bit, slots);
+    }
+
+    /**
+     * @return the five bits of the key that start {@code shift} bits below its most significant bit
+     */
+    private static int chunk(UUID key, int shift) {
+        long bits;
+        if (shift == 0) {
+            bits = key.getMostSignificantBits();
+        } else if (shift < 64) {
+            bits = key.getMostSignificantBits() << shift | key.getLeastSignificantBits() >>> (64 - shift);
+        } else {
+            bits = key.getLeastSignificantBits() << (shift - 64);
+        }
+        return (int) (bits >>> (64 - BITS));
+    }
+
+    private static int compareUnsigned(UUID key1, UUID key2) {
+        int compared = Long.compareUnsigned(key1.getMostSignificantBits(), key2.getMostSignificantBits());
+        return compared != 0 ? compared : Long.compareUnsigned(key1.getLeastSignificantBits(), key2.getLeastSignificantBits());
+    }
+
+    /**
+     * Node with one bit in {@code bitmap} for every used chunk value and a pair of slots for each in chunk order:
+     * a key and its value, or {@code null} and the node of the keys that share the chunk.
+     */
+    private static final class Node {
+        private final Object edit;
+        private int bitmap;
+        private Object[] slots;
+
+        Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * Walks the entries of one version of the trie in key order, remembering the path to the current entry.
+     */
+    static final class Cursor<V> {
+        private final Node[] nodes = new Node[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private UUID key;
+        private Object value;
+
+        private Cursor(Node root, UUID after) {
+            if (root == null) {
+                depth = -1;
+                return;
+            }
+            nodes[0] = root;
+            if (after == null) {
+                return;
+            }
+            for (int shift = 0; ; shift += BITS) {
+                Node node = nodes[depth];
+                int bit = 1 << chunk(after, shift);
+                int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+                if ((node.bitmap & bit) == 0) {
+                    positions[depth] = i;
+                    return;
+                }
+                Object slotKey = node.slots[i];
+                if (slotKey != null) {
+                    positions[depth] = compareUnsigned((UUID) slotKey, after) > 0 ? i : i + 2;
+                    return;
+                }
+                positions[depth] = i + 2;
+                nodes[++depth] = (Node) node.slots[i + 1];
+                positions[depth] = 0;
+            }
+        }
+
+        /**
+         * @return {@code false} if there are no more entries
+         */
+        boolean advance() {
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int i = positions[depth];
+                if (i >= node.slots.length) {
+                    nodes[depth--] = null;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                Object slotKey = node.slots[i];
+                if (slotKey == null) {
+                    nodes[++depth] = (Node) node.slots[i + 1];
+                    positions[depth] = 0;
+                    continue;
+                }
+                key = (UUID) slotKey;
+                value = node.slots[i + 1];
+                return true;
+            }
+            return false;
+        }
+
+        UUID key() {
+            return key;
+        }
+
+        @SuppressWarnings("unchecked")
+        V value() {
+            return (V) value;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.example.sessionsstore.model;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking view of {@link SessionsStore} for the reactive serving mode.
+ * <p>
+ * The store itself never waits for I/O: its engines keep everything in memory and hold their locks only for the
+ * few steps of one operation. So reads and, by default, writes run on the subscribing thread, i.e. the event
+ * loop. Only while the engine or a listener may block writers ({@link SessionsStore#writesMayBlock()}, e.g. the
+ * {@code single-writer} engine or the journal with {@code sessions.journal.fsync=always}) are changes moved to the
+ * {@code sessions-writes} threads, so that waiting for the writer thread or the disk never stalls an event loop.
+ */
+@Component
+public class ReactiveSessionsStore {
+
+    private final SessionsStore sessionsStore;
+    private final Scheduler writeScheduler = Schedulers.newElastic("sessions-writes", 60, true);
+
+    public ReactiveSessionsStore(SessionsStore sessionsStore) {
+        this.sessionsStore = sessionsStore;
+    }
+
+    @PreDestroy
+    void stop() {
+        writeScheduler.dispose();
+    }
+
+    public Mono<ChargingSession> addSession(String stationId, LocalDateTime startedAt) {
+        return write(() -> sessionsStore.addSession(stationId, startedAt));
+    }
+
+    /**
+     * Completes empty once the session is stopped.
+     *
+     * @see SessionsStore#stopSession
+     */
+    public Mono<Void> stopSession(String id, LocalDateTime stopTime) {
+        return write(() -> {
+            sessionsStore.stopSession(id, stopTime);
+            return null;
+        });
+    }
+
+    public Mono<List<ChargingSession>> addSessions(List<SessionStart> starts) {
+        return write(() -> sessionsStore.addSessions(starts));
+    }
+
+    public Mono<List<ChargingSession>> stopSessions(List<SessionStop> stops) {
+        return write(() -> sessionsStore.stopSessions(stops));
+    }
+
+    public Mono<ChargingSession> getSession(String id) {
+        return Mono.fromCallable(() -> sessionsStore.getSession(id));
+    }
+
+    /**
+     * @see SessionsStore#getSessions
+     */
+    public Mono<List<ChargingSession>> getSessions(List<UUID> ids) {
+        return Mono.fromCallable(() -> sessionsStore.getSessions(ids));
+    }
+
+    /**
+     * Positions an iterator like {@link SessionsStore#getSessionsAfter} and emits the sessions it reads, as fast as
+     * the subscriber requests them. The outer {@link Mono} fails with {@link IllegalArgumentException} if the
+     * iterator cannot be positioned, before anything is emitted.
+     */
+    public Mono<Flux<ChargingSession>> getSessionsAfter(String afterId) {
+        return Mono.fromCallable(() -> {
+            Iterator<ChargingSession> sessions = sessionsStore.getSessionsAfter(afterId);
+            return Flux.fromIterable(() -> sessions);
+        });
+    }
+
+    public Flux<ChargingSession> getSessionsUpdatedBetween(LocalDateTime from, LocalDateTime to) {
+        return Mono.fromCallable(() -> sessionsStore.getSessionsUpdatedBetween(from, to)).flatMapIterable(sessions -> sessions);
+    }
+
+    public Flux<ChargingSession> getStationSessions(String stationId) {
+        return Mono.fromCallable(() -> sessionsStore.getStationSessions(stationId)).flatMapIterable(sessions -> sessions);
+    }
+
+    public Mono<SessionsSummary> getSessionsSummary(Duration window) {
+        return Mono.fromCallable(() -> sessionsStore.getSessionsSummary(window));
+    }
+
+    public Mono<SessionsSummary> getStationSummary(String stationId, Duration window) {
+        return Mono.fromCallable(() -> sessionsStore.getStationSummary(stationId, window));
+    }
+
+    public Mono<List<AggregateBucket>> getAggregates(LocalDateTime from, LocalDateTime to, AggregateGranularity granularity, String stationId) {
+        return Mono.fromCallable(() -> sessionsStore.getAggregates(from, to, granularity, stationId));
+    }
+
+    private <T> Mono<T> write(Callable<T> change) {
+        return Mono.defer(() -> {
+            Mono<T> result = Mono.fromCallable(change);
+            return sessionsStore.writesMayBlock() ? result.subscribeOn(writeScheduler) : result;
+        });
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.example.sessionsstore.model;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static com.example.sessionsstore.model.ChargingSession.Status;
+
+/**
+ * Ring buffer of per-second counters of sessions by the second of their last update and their current status.
+ * <p>
+ * Every session is counted in exactly one slot: starting a session increments the started counter of its start
+ * second, stopping it moves it from the slot of its previous update to the stopped counter of the stop second.
+ * A summary for the last N seconds is then a sum over N slots, no matter how many sessions there are.
+ * <p>
+ * A slot only ever moves forward in time, so a decrement is applied only when the slot still holds the second
+ * the session was counted in. Updates outside the {@link CountedRange} of the ring are dropped, and the ring keeps
+ * one extra minute of slots for the seconds ahead of the clock, so they do not displace counts of the largest
+ * window.
+ */
+class RollingSummary {
+
+    private final Duration maxWindow;
+    private final Clock clock;
+    private final Slot[] slots;
+
+    RollingSummary(Duration maxWindow) {
+        this(maxWindow, Clock.systemDefaultZone());
+    }
+
+    RollingSummary(Duration maxWindow, Clock clock) {
+        if (maxWindow.getSeconds() < 1) {
+            throw new IllegalArgumentException("Summary window must be at least one second");
+        }
+        this.maxWindow = maxWindow;
+        this.clock = clock;
+        this.slots = new Slot[(int) maxWindow.getSeconds() + CountedRange.FUTURE_SECONDS];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    Duration getMaxWindow() {
+        return maxWindow;
+    }
+
+    void sessionStarted(LocalDateTime startedAt) {
+        long second = toEpochSecond(startedAt);
+        if (inRing(second)) {
+            slotFor(second).add(second, 1, 0);
+        }
+    }
+
+    void sessionStopped(LocalDateTime previousUpdateTime, Status previousStatus, LocalDateTime stoppedAt) {
+        long previousSecond = toEpochSecond(previousUpdateTime);
+        if (previousStatus == Status.IN_PROGRESS) {
+            slotFor(previousSecond).remove(previousSecond, 1, 0);
+        } else {
+            slotFor(previousSecond).remove(previousSecond, 0, 1);
+        }
+        long second = toEpochSecond(stoppedAt);
+        if (inRing(second)) {
+            slotFor(second).add(second, 0, 1);
+        }
+    }
+
+    private boolean inRing(long second) {
+        return CountedRange.isCounted(second, 1L, maxWindow.getSeconds(), toEpochSecond(LocalDateTime.now(clock)));
+    }
+
+    /**
+     * Counts the sessions last updated during the {@code window} seconds that end with the second of {@code now},
+     * at the precision of whole seconds. Updates later than the second of {@code now} are not counted yet.
+     */
+    SessionsSummary summarize(LocalDateTime now, Duration window) {
+        if (window.getSeconds() < 1 || window.compareTo(maxWindow) > 0) {
+            throw new IllegalArgumentException("Summary window must be between 1s and " + maxWindow.getSeconds() + "s");
+        }
+        long nowSecond = toEpochSecond(now);
+        int started = 0;
+        int stopped = 0;
+        for (long second = nowSecond - window.getSeconds() + 1; second <= nowSecond; second++) {
+            Slot slot = slotFor(second);
+            synchronized (slot) {
+                if (slot.second == second) {
+                    started += slot.started;
+                    stopped += slot.stopped;
+                }
+            }
+        }
+        return new SessionsSummary(started + stopped, started, stopped);
+    }
+
+    private Slot slotFor(long second) {
+        return slots[(int) Math.floorMod(second, (long) slots.length)];
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static final class Slot {
+        private long second = Long.MIN_VALUE;
+        private int started;
+        private int stopped;
+
+        synchronized void add(long second, int started, int stopped) {
+            if (this.second > second) {
+                return;
+            }
+            if (this.second < second) {
+                this.second = second;
+                this.started = 0;
+                this.stopped = 0;
+            }
+            this.started += started;
+            this.stopped += stopped;
+        }
+
+        synchronized void remove(long second, int started, int stopped) {
+            if (this.second == second) {
+                this.started -= started;
+                this.stopped -= stopped;
+            }
+        }
+    }
+
+}
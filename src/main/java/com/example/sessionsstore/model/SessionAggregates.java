@@ -0,0 +1,242 @@
+package com.example.sessionsstore.model;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counters of started and stopped sessions, in total and per station, in buckets of a minute, an hour and a day,
+ * so that historical summaries are sums over buckets instead of over sessions.
+ * <p>
+ * Starts are counted in the bucket of the start, stops in the bucket of the stop together with their duration in
+ * a histogram (see {@link AggregateBucket}). A stop that replaces an earlier stop moves it out of the bucket of the
+ * earlier stop if that bucket is still kept. Evicting sessions from the store does not change the counters.
+ * <p>
+ * Every tier is a ring of slots like {@link RollingSummary}: a slot holds the bucket it was last counted in and is
+ * reset when a later bucket reuses it, so a tier keeps the buckets of its retention up to the latest bucket, in
+ * memory proportional to the retention and the number of stations per bucket. Every change is counted in all tiers
+ * at once, so the hour and day tiers are the minute tier rolled up, and outlive it. Changes outside the
+ * {@link CountedRange} of a tier are not counted in it, and every tier keeps one extra slot for the bucket a minute
+ * ahead.
+ */
+class SessionAggregates {
+
+    private static final int STARTED = 0;
+    private static final int STOPPED = 1;
+    private static final int DURATIONS = 2;
+    private static final int COUNTERS = DURATIONS + AggregateBucket.STOPPED_DURATION_BOUNDS.size() + 1;
+    private static final int[] STARTED_COUNTERS = {STARTED};
+    // the counters of a stop, by the histogram entry of its duration
+    private static final int[][] STOPPED_COUNTERS = new int[COUNTERS - DURATIONS][];
+
+    static {
+        for (int i = 0; i < STOPPED_COUNTERS.length; i++) {
+            STOPPED_COUNTERS[i] = new int[]{STOPPED, DURATIONS + i};
+        }
+    }
+
+    private final Clock clock;
+    private final Tier[] tiers = new Tier[AggregateGranularity.values().length];
+
+    SessionAggregates(Duration minuteRetention, Duration hourRetention, Duration dayRetention) {
+        this(minuteRetention, hourRetention, dayRetention, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @throws IllegalArgumentException if a retention is shorter than a bucket of its tier
+     */
+    SessionAggregates(Duration minuteRetention, Duration hourRetention, Duration dayRetention, Clock clock) {
+        this.clock = clock;
+        tiers[AggregateGranularity.MINUTE.ordinal()] = new Tier(AggregateGranularity.MINUTE, minuteRetention);
+        tiers[AggregateGranularity.HOUR.ordinal()] = new Tier(AggregateGranularity.HOUR, hourRetention);
+        tiers[AggregateGranularity.DAY.ordinal()] = new Tier(AggregateGranularity.DAY, dayRetention);
+    }
+
+    Duration getRetention(AggregateGranularity granularity) {
+        return tiers[granularity.ordinal()].retention;
+    }
+
+    void sessionStarted(String stationId, LocalDateTime startedAt) {
+        long nowSecond = toEpochSecond(LocalDateTime.now(clock));
+        for (Tier tier : tiers) {
+            tier.add(startedAt, nowSecond, stationId, STARTED_COUNTERS, 1);
+        }
+    }
+
+    /**
+     * @param previousStoppedAt the stop time this stop replaces, {@code null} if the session was in progress
+     */
+    void sessionStopped(String stationId, LocalDateTime startedAt, LocalDateTime previousStoppedAt, LocalDateTime stoppedAt) {
+        long nowSecond = toEpochSecond(LocalDateTime.now(clock));
+        if (previousStoppedAt != null) {
+            int[] previousCounters = stoppedCounters(startedAt, previousStoppedAt);
+            for (Tier tier : tiers) {
+                tier.add(previousStoppedAt, nowSecond, stationId, previousCounters, -1);
+            }
+        }
+        int[] counters = stoppedCounters(startedAt, stoppedAt);
+        for (Tier tier : tiers) {
+            tier.add(stoppedAt, nowSecond, stationId, counters, 1);
+        }
+    }
+
+    private static int[] stoppedCounters(LocalDateTime startedAt, LocalDateTime stoppedAt) {
+        Duration duration = Duration.between(startedAt, stoppedAt);
+        int entry = 0;
+        while (entry < AggregateBucket.STOPPED_DURATION_BOUNDS.size() && duration.compareTo(AggregateBucket.STOPPED_DURATION_BOUNDS.get(entry)) > 0) {
+            entry++;
+        }
+        return STOPPED_COUNTERS[entry];
+    }
+
+    /**
+     * Returns the buckets that start at or after the bucket of {@code from} and before {@code to}, of the station or
+     * of all stations if {@code stationId} is {@code null}. Buckets no longer kept are empty.
+     *
+     * @throws IllegalArgumentException if {@code from} is not before {@code to} or the range covers more buckets
+     *                                  than the tier keeps
+     */
+    List<AggregateBucket> aggregate(LocalDateTime from, LocalDateTime to, AggregateGranularity granularity, String stationId) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("From must be before to");
+        }
+        Tier tier = tiers[granularity.ordinal()];
+        long seconds = granularity.getSeconds();
+        long first = Math.floorDiv(toEpochSecond(from), seconds);
+        // the last bucket starts before to
+        long toSecond = toEpochSecond(to);
+        long end = Math.floorDiv(to.getNano() > 0 ? toSecond : toSecond - 1L, seconds) + 1L;
+        if (end - first > tier.capacity) {
+            String name = granularity.name().toLowerCase(Locale.ROOT);
+            throw new IllegalArgumentException("Range cannot cover more than " + tier.capacity + " " + name + " buckets, "
+                    + name + " aggregates are kept for " + tier.retention);
+        }
+        List<AggregateBucket> buckets = new ArrayList<>((int) (end - first));
+        for (long bucket = first; bucket < end; bucket++) {
+            int[] counts = tier.slotFor(bucket).counts(bucket, stationId);
+            if (counts == null) {
+                counts = new int[COUNTERS];
+            }
+            buckets.add(new AggregateBucket(LocalDateTime.ofEpochSecond(bucket * seconds, 0, ZoneOffset.UTC), counts[STARTED],
+                    counts[STOPPED], Arrays.copyOfRange(counts, DURATIONS, COUNTERS)));
+        }
+        return buckets;
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static final class Tier {
+        private final long seconds;
+        private final Duration retention;
+        // the buckets of the retention
+        private final int capacity;
+        private final Slot[] slots;
+
+        Tier(AggregateGranularity granularity, Duration retention) {
+            long capacity = retention.getSeconds() / granularity.getSeconds();
+            if (capacity < 1 || capacity >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Retention of " + granularity.name().toLowerCase(Locale.ROOT) + " aggregates must be at least "
+                        + Duration.ofSeconds(granularity.getSeconds()));
+            }
+            this.seconds = granularity.getSeconds();
+            this.retention = retention;
+            this.capacity = (int) capacity;
+            this.slots = new Slot[this.capacity + 1];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        void add(LocalDateTime time, long nowSecond, String stationId, int[] counters, int delta) {
+            long bucket = Math.floorDiv(toEpochSecond(time), seconds);
+            if (CountedRange.isCounted(bucket, seconds, capacity, nowSecond)) {
+                slotFor(bucket).add(bucket, stationId, counters, delta);
+            }
+        }
+
+        Slot slotFor(long bucket) {
+            return slots[(int) Math.floorMod(bucket, (long) slots.length)];
+        }
+    }
+
+    /**
+     * Holds the counters of one bucket without locks: moving to a later bucket swaps in fresh counters with a CAS,
+     * so an add that raced with the swap lands in the counters of the bucket it was meant for, which the slot no
+     * longer holds, instead of in the new bucket.
+     */
+    private static final class Slot {
+        private final AtomicReference<Counters> current = new AtomicReference<>(new Counters(Long.MIN_VALUE));
+
+        /**
+         * Adds {@code delta} to the counters, in total and of the station. Decrements only apply to the bucket the
+         * slot still holds.
+         */
+        void add(long bucket, String stationId, int[] counters, int delta) {
+            Counters current = this.current.get();
+            while (current.bucket != bucket) {
+                if (current.bucket > bucket || delta < 0) {
+                    return;
+                }
+                Counters next = new Counters(bucket);
+                if (this.current.compareAndSet(current, next)) {
+                    current = next;
+                } else {
+                    current = this.current.get();
+                }
+            }
+            AtomicIntegerArray station = current.station(stationId);
+            for (int counter : counters) {
+                current.totals.addAndGet(counter, delta);
+                station.addAndGet(counter, delta);
+            }
+        }
+
+        /**
+         * @return a copy of the counters of the bucket, {@code null} if the slot does not hold it or the station
+         * has none
+         */
+        int[] counts(long bucket, String stationId) {
+            Counters current = this.current.get();
+            if (current.bucket != bucket) {
+                return null;
+            }
+            AtomicIntegerArray counts = stationId == null ? current.totals : current.stations.get(stationId);
+            if (counts == null) {
+                return null;
+            }
+            int[] copy = new int[COUNTERS];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = counts.get(i);
+            }
+            return copy;
+        }
+    }
+
+    private static final class Counters {
+        private final long bucket;
+        private final AtomicIntegerArray totals = new AtomicIntegerArray(COUNTERS);
+        private final ConcurrentMap<String, AtomicIntegerArray> stations = new ConcurrentHashMap<>();
+
+        Counters(long bucket) {
+            this.bucket = bucket;
+        }
+
+        AtomicIntegerArray station(String stationId) {
+            // get() first: computeIfAbsent locks the hash bin even when the station already has counters
+            AtomicIntegerArray station = stations.get(stationId);
+            return station != null ? station : stations.computeIfAbsent(stationId, id -> new AtomicIntegerArray(COUNTERS));
+        }
+    }
+
+}
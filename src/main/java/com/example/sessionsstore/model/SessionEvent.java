@@ -0,0 +1,20 @@
+package com.example.sessionsstore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A start or stop of a session, numbered by {@link SessionEventLog} in the order the changes were logged. Sequence
+ * numbers start at 1 with every start of the application.
+ */
+@Data
+@AllArgsConstructor
+public class SessionEvent {
+    private long sequence;
+    private Type type;
+    private ChargingSession session;
+
+    public enum Type {
+        STARTED, STOPPED
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latest starts and stops of the {@link SessionsStore}, numbered in order, for subscribers that follow the
+ * changes instead of polling all sessions.
+ * <p>
+ * Events are kept in a ring of the last {@code sessions.events.buffer-size} events. Logging an event claims the
+ * next sequence number and writes one slot, whatever the number of subscribers, so subscribers never slow down
+ * writers. A dispatcher thread hands every subscriber the events after its cursor every
+ * {@code sessions.events.dispatch-interval}, as many as it takes. A subscriber that falls behind by more than the
+ * ring holds is handled by {@code sessions.events.slow-consumer}, see {@link SlowConsumerPolicy}.
+ * <p>
+ * {@code sessions.events.subscribers} is the number of subscribers, {@code sessions.events.missed} counts the events
+ * slow subscribers missed and {@code sessions.events.disconnected} the subscribers that were disconnected.
+ */
+@Component
+public class SessionEventLog implements SessionsStoreListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionEventLog.class);
+
+    // events per call of a subscriber, so that one busy subscriber does not hold up the others for long
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final SessionsStore sessionsStore;
+    private final AtomicReferenceArray<SessionEvent> slots;
+    private final int mask;
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final Duration dispatchInterval;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Counter missed;
+    private final Counter disconnected;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public SessionEventLog(SessionsStore sessionsStore,
+                           @Value("${sessions.events.buffer-size:65536}") int bufferSize,
+                           @Value("${sessions.events.slow-consumer:drop}") SlowConsumerPolicy slowConsumerPolicy,
+                           @Value("${sessions.events.dispatch-interval:10ms}") Duration dispatchInterval,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        this(sessionsStore, bufferSize, slowConsumerPolicy, dispatchInterval, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * @param bufferSize rounded up to a power of two
+     */
+    public SessionEventLog(SessionsStore sessionsStore, int bufferSize, SlowConsumerPolicy slowConsumerPolicy, Duration dispatchInterval,
+                           MeterRegistry meterRegistry) {
+        int size = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.sessionsStore = sessionsStore;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.dispatchInterval = dispatchInterval;
+        this.missed = meterRegistry.counter("sessions.events.missed");
+        this.disconnected = meterRegistry.counter("sessions.events.disconnected");
+        Gauge.builder("sessions.events.subscribers", subscriptions, Set::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        sessionsStore.addListener(this);
+        executor.scheduleWithFixedDelay(this::dispatch, dispatchInterval.toMillis(), dispatchInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sessionsStore.removeListener(this);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void sessionStarted(ChargingSession session) {
+        append(SessionEvent.Type.STARTED, session);
+    }
+
+    @Override
+    public void sessionStopped(ChargingSession session, LocalDateTime previousStoppedAt) {
+        append(SessionEvent.Type.STOPPED, session);
+    }
+
+    private void append(SessionEvent.Type type, ChargingSession session) {
+        long sequence = lastSequence.incrementAndGet();
+        SessionEvent event = new SessionEvent(sequence, type, session);
+        int slot = (int) sequence & mask;
+        SessionEvent previous;
+        do {
+            previous = slots.get(slot);
+            if (previous != null && previous.getSequence() > sequence) {
+                // a writer a whole ring ahead got here first
+                return;
+            }
+        } while (!slots.compareAndSet(slot, previous, event));
+    }
+
+    /**
+     * @return the sequence number of the latest event, 0 if there is none
+     */
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Subscribes to the events following {@code after}, or to the events from now on if it is {@code null} or later
+     * than the latest event (e.g. a sequence number of a previous run).
+     */
+    public Subscription subscribe(Long after, SessionEventSubscriber subscriber) {
+        long last = lastSequence.get();
+        Subscription subscription = new Subscription(subscriber, after == null || after > last ? last : Math.max(after, 0L));
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void dispatch() {
+        for (Subscription subscription : subscriptions) {
+            try {
+                dispatch(subscription);
+            } catch (RuntimeException e) {
+                // keep the other subscribers and the schedule alive
+                log.warn("Dispatching session events failed, unsubscribing", e);
+                subscription.cancel();
+            }
+        }
+    }
+
+    private void dispatch(Subscription subscription) {
+        while (true) {
+            long last = lastSequence.get();
+            long cursor = subscription.cursor;
+            if (cursor >= last) {
+                return;
+            }
+            long oldest = Math.max(1L, last - slots.length() + 1);
+            if (cursor + 1 < oldest) {
+                if (!fellBehind(subscription, cursor + 1, oldest - 1)) {
+                    return;
+                }
+                continue;
+            }
+            long demand = subscription.subscriber.demand();
+            if (demand <= 0) {
+                return;
+            }
+            int batchSize = (int) Math.min(Math.min(demand, MAX_BATCH_SIZE), last - cursor);
+            List<SessionEvent> events = new ArrayList<>(batchSize);
+            for (long sequence = cursor + 1; events.size() < batchSize; sequence++) {
+                SessionEvent event = slots.get((int) sequence & mask);
+                // an older event is not overwritten yet, a newer one is found as behind by the next round
+                if (event == null || event.getSequence() != sequence) {
+                    break;
+                }
+                events.add(event);
+            }
+            if (events.isEmpty()) {
+                return;
+            }
+            subscription.cursor = cursor + events.size();
+            subscription.subscriber.onEvents(events);
+            if (events.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the subscription continues after the missed events
+     */
+    private boolean fellBehind(Subscription subscription, long firstMissed, long lastMissed) {
+        if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+            subscriptions.remove(subscription);
+            disconnected.increment();
+            subscription.subscriber.onDisconnected(firstMissed);
+            return false;
+        }
+        subscription.cursor = lastMissed;
+        missed.increment(lastMissed - firstMissed + 1);
+        subscription.subscriber.onMissed(firstMissed, lastMissed);
+        return true;
+    }
+
+    public final class Subscription {
+        private final SessionEventSubscriber subscriber;
+        // read and written by the dispatcher thread only
+        private long cursor;
+
+        private Subscription(SessionEventSubscriber subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Stops the events. The subscriber may still get the events of a dispatch in progress.
+         */
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+    }
+
+}
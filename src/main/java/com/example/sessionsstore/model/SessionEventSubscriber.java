@@ -0,0 +1,34 @@
+package com.example.sessionsstore.model;
+
+import java.util.List;
+
+/**
+ * Receives the events of a {@link SessionEventLog} subscription. All methods are called by the dispatcher thread
+ * of the log, one subscriber after the other, so they must not block.
+ */
+public interface SessionEventSubscriber {
+
+    /**
+     * @return how many more events the subscriber takes now, 0 while it is still busy with the previous ones
+     */
+    long demand();
+
+    /**
+     * @param events the next events in order, at most {@link #demand()} of them
+     */
+    void onEvents(List<SessionEvent> events);
+
+    /**
+     * The events from {@code firstMissed} to {@code lastMissed} were overwritten before the subscriber took them
+     * ({@link SlowConsumerPolicy#DROP}). The next events follow {@code lastMissed}.
+     */
+    void onMissed(long firstMissed, long lastMissed);
+
+    /**
+     * The subscriber fell behind and was unsubscribed ({@link SlowConsumerPolicy#DISCONNECT}).
+     *
+     * @param firstMissed the first event it will not get
+     */
+    void onDisconnected(long firstMissed);
+
+}
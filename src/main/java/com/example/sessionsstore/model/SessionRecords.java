@@ -0,0 +1,80 @@
+package com.example.sessionsstore.model;
+
+/**
+ * Fixed-width session records of {@link CompactSessionsStorage}, addressed by record number, and the int tables of
+ * its index. Not thread-safe, the storage guards them with its lock.
+ */
+interface SessionRecords {
+
+    int capacity();
+
+    /**
+     * Makes room for at least {@code capacity} records, keeping the existing ones.
+     */
+    void grow(int capacity);
+
+    /**
+     * Gives up the memory of all records, which are not used afterwards.
+     */
+    void release();
+
+    long getIdMostSigBits(int record);
+
+    void setIdMostSigBits(int record, long idMostSigBits);
+
+    long getIdLeastSigBits(int record);
+
+    void setIdLeastSigBits(int record, long idLeastSigBits);
+
+    int getStationRef(int record);
+
+    void setStationRef(int record, int stationRef);
+
+    long getStartedSeconds(int record);
+
+    void setStartedSeconds(int record, long startedSeconds);
+
+    int getStartedNanos(int record);
+
+    void setStartedNanos(int record, int startedNanos);
+
+    long getStoppedSeconds(int record);
+
+    void setStoppedSeconds(int record, long stoppedSeconds);
+
+    int getStoppedNanos(int record);
+
+    void setStoppedNanos(int record, int stoppedNanos);
+
+    byte getStatus(int record);
+
+    void setStatus(int record, byte status);
+
+    int getBucketPosition(int record);
+
+    void setBucketPosition(int record, int bucketPosition);
+
+    int getStationPosition(int record);
+
+    void setStationPosition(int record, int stationPosition);
+
+    /**
+     * @return a table of {@code length} int slots, all 0, kept where the records are kept
+     */
+    Slots newSlots(int length);
+
+    interface Slots {
+
+        int length();
+
+        int get(int slot);
+
+        void set(int slot, int value);
+
+        /**
+         * Gives up the memory of the table, which is not used afterwards.
+         */
+        void release();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.example.sessionsstore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of {@link SessionsStore#addSessions}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionStart {
+    private String stationId;
+    private LocalDateTime startedAt;
+}
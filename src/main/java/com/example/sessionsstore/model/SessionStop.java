@@ -0,0 +1,19 @@
+package com.example.sessionsstore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One entry of {@link SessionsStore#stopSessions}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionStop {
+    private UUID id;
+    private LocalDateTime stoppedAt;
+}
@@ -0,0 +1,100 @@
+package com.example.sessionsstore.model;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Storage engine behind {@link SessionsStore}: holds the sessions, the index by id and the buckets by time of
+ * the last update. Implementations must be thread-safe.
+ */
+public interface SessionsStorage {
+
+    void add(ChargingSession session);
+
+    /**
+     * Adds the sessions in one pass, sharing locks and bucket lookups between them.
+     */
+    void addAll(List<ChargingSession> sessions);
+
+    /**
+     * Stops the session with the given id and moves it to the bucket of {@code stoppedAt}. {@code onStop} is
+     * called with the session as it was before the stop, while concurrent stops of the same session wait.
+     *
+     * @return {@code false} if there is no session with this id
+     */
+    boolean stop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop);
+
+    /**
+     * Stops the sessions of {@code stops} in one pass, sharing locks and bucket lookups between them. For every
+     * stopped session {@code onStop} is called like for {@link #stop}, together with the position of the stop in
+     * the list.
+     *
+     * @return for every stop whether there was a session with its id
+     */
+    boolean[] stopAll(List<SessionStop> stops, ObjIntConsumer<ChargingSession> onStop);
+
+    /**
+     * @return the session with the given id or {@code null} if there is no such session
+     */
+    ChargingSession get(UUID id);
+
+    /**
+     * Returns a weakly consistent iterator over all sessions in the order of the engine, starting right after
+     * the session with id {@code after}, or from the first session if it is {@code null}.
+     *
+     * @throws IllegalArgumentException if the engine cannot position the iterator after {@code after}
+     */
+    Iterator<ChargingSession> iterator(UUID after);
+
+    /**
+     * Calls {@code action} for every session last updated after {@code from} and before {@code to}, visiting only
+     * the buckets of that time range.
+     */
+    void forEachUpdatedBetween(LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action);
+
+    /**
+     * Calls {@code action} for every session of the station, visiting only the sessions of that station.
+     */
+    void forEachAtStation(String stationId, Consumer<ChargingSession> action);
+
+    /**
+     * Evicts the oldest bucket of stopped sessions if its minute started before the minute of {@code cutoff}.
+     * In-progress sessions are never evicted.
+     *
+     * @return the number of evicted sessions, or -1 if there is no such bucket
+     */
+    int evictStoppedBucket(LocalDateTime cutoff);
+
+    /**
+     * @return the number of sessions in the buckets
+     */
+    int sessionCount();
+
+    /**
+     * @return the number of sessions in the index by id
+     */
+    int indexSize();
+
+    /**
+     * @return the number of buckets, in-progress and stopped
+     */
+    int bucketCount();
+
+    /**
+     * @return the number of sessions with the given status in the bucket of the minute of {@code minute}
+     */
+    int bucketSize(ChargingSession.Status status, LocalDateTime minute);
+
+    /**
+     * @return {@code true} if adds and stops may park the calling thread, e.g. to wait for a writer thread, so that
+     * non-blocking callers must not apply changes on their own threads
+     */
+    default boolean blocksWriters() {
+        return false;
+    }
+
+}
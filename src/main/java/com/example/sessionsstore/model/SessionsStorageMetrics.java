@@ -0,0 +1,92 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.sessionsstore.model.ChargingSession.Status;
+
+/**
+ * Gauges of the size of the {@link SessionsStorage}: {@code sessions.storage.sessions},
+ * {@code sessions.storage.index.size} and {@code sessions.storage.buckets}.
+ * <p>
+ * Once a minute the buckets of the minute that just ended are recorded in the histogram
+ * {@code sessions.storage.bucket.size}, tagged with their status. Every bucket is recorded once, so the histogram
+ * shows how many sessions a minute holds without walking all buckets on every scrape.
+ */
+@Component
+public class SessionsStorageMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionsStorageMetrics.class);
+
+    private final SessionsStorage storage;
+    private final DistributionSummary inProgressBucketSizes;
+    private final DistributionSummary stoppedBucketSizes;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sessions-storage-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SessionsStorageMetrics(SessionsStorage storage, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.storage = storage;
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("sessions.storage.sessions", storage, SessionsStorage::sessionCount).register(registry);
+        Gauge.builder("sessions.storage.index.size", storage, SessionsStorage::indexSize).register(registry);
+        Gauge.builder("sessions.storage.buckets", storage, SessionsStorage::bucketCount).register(registry);
+        this.inProgressBucketSizes = bucketSizes(registry, "in_progress");
+        this.stoppedBucketSizes = bucketSizes(registry, "stopped");
+    }
+
+    private static DistributionSummary bucketSizes(MeterRegistry registry, String status) {
+        return DistributionSummary.builder("sessions.storage.bucket.size")
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        long millisToNextMinute = ChronoUnit.MILLIS.between(LocalDateTime.now(), LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1L));
+        executor.scheduleAtFixedRate(this::recordBucketSizes, millisToNextMinute, TimeUnit.MINUTES.toMillis(1L), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    void recordBucketSizes() {
+        recordBucketSizes(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(1L));
+    }
+
+    void recordBucketSizes(LocalDateTime minute) {
+        try {
+            record(inProgressBucketSizes, storage.bucketSize(Status.IN_PROGRESS, minute));
+            record(stoppedBucketSizes, storage.bucketSize(Status.STOPPED, minute));
+        } catch (RuntimeException e) {
+            // keep the schedule alive
+            log.error("Recording bucket sizes failed", e);
+        }
+    }
+
+    private static void record(DistributionSummary bucketSizes, int size) {
+        if (size > 0) {
+            bucketSizes.record(size);
+        }
+    }
+
+}
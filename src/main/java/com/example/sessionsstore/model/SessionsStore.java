@@ -1,88 +1,519 @@
 package com.example.sessionsstore.model;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static com.example.sessionsstore.model.ChargingSession.*;
 
+/**
+ * Thread-safe store of charging sessions.
+ * <p>
+ * Sessions are kept by a {@link SessionsStorage} engine, chosen with {@code sessions.storage.type}. Summaries are
+ * served from a {@link RollingSummary} that is updated together with the engine, so they never iterate the
+ * sessions. Historical summaries by minute, hour or day are served from {@link SessionAggregates} the same way. Every change made through the public API is reported to the registered
+ * {@link SessionsStoreListener}s; changes restored from persistent state are not.
+ * <p>
+ * Every operation is timed as {@code sessions.store.operations} tagged with the operation, and stops and lookups
+ * of unknown ids are counted as {@code sessions.store.misses}.
+ * <p>
+ * Every change increments {@link #getVersion()}, so readers can tell cheaply whether a result they computed
+ * earlier is still current.
+ */
 @Component
 public class SessionsStore {
 
-    private Map<String, Map<String, ChargingSession>> store = new HashMap<>();
-    private Map<String, String> index = new HashMap<>();
+    private final SessionsStorage storage;
+    private final RollingSummary rollingSummary;
+    private final SessionAggregates aggregates;
+    private final List<SessionsStoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Predicate<UUID> ownedIds = id -> true;
+    private final Timer addTimer;
+    private final Timer addAllTimer;
+    private final Timer stopTimer;
+    private final Timer stopAllTimer;
+    private final Timer getTimer;
+    private final Timer getAllTimer;
+    private final Timer iterateTimer;
+    private final Timer summaryTimer;
+    private final Timer stationTimer;
+    private final Timer stationSummaryTimer;
+    private final Timer updatedLastMinuteTimer;
+    private final Timer updatedBetweenTimer;
+    private final Timer evictTimer;
+    private final Timer aggregatesTimer;
+    private final Counter stopMisses;
+    private final Counter getMisses;
 
-    synchronized public ChargingSession addSession(String stationId, LocalDateTime startedAt) {
-        ChargingSession session = new ChargingSession(UUID.randomUUID(), stationId, startedAt, Status.IN_PROGRESS);
-        addSessionToStoreAndIndex(session, getDateStringWithoutSeconds(startedAt));
+    public SessionsStore() {
+        this(new ConcurrentSessionsStorage());
+    }
+
+    public SessionsStore(SessionsStorage storage) {
+        this(storage, Duration.ofHours(1L));
+    }
+
+    public SessionsStore(SessionsStorage storage, Duration maxSummaryWindow) {
+        this(storage, maxSummaryWindow, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public SessionsStore(SessionsStorage storage,
+                         @Value("${sessions.summary.max-window:1h}") Duration maxSummaryWindow,
+                         @Value("${sessions.aggregates.minute-retention:6h}") Duration minuteRetention,
+                         @Value("${sessions.aggregates.hour-retention:7d}") Duration hourRetention,
+                         @Value("${sessions.aggregates.day-retention:366d}") Duration dayRetention,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
+        this(storage, maxSummaryWindow, minuteRetention, hourRetention, dayRetention, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public SessionsStore(SessionsStorage storage, Duration maxSummaryWindow, MeterRegistry meterRegistry) {
+        this(storage, maxSummaryWindow, Duration.ofHours(6L), Duration.ofDays(7L), Duration.ofDays(366L), meterRegistry);
+    }
+
+    /**
+     * @param minuteRetention how long buckets of a minute are kept by {@link #getAggregates}, hour and day alike
+     */
+    public SessionsStore(SessionsStorage storage, Duration maxSummaryWindow, Duration minuteRetention, Duration hourRetention,
+                         Duration dayRetention, MeterRegistry meterRegistry) {
+        this.storage = storage;
+        this.rollingSummary = new RollingSummary(maxSummaryWindow);
+        this.aggregates = new SessionAggregates(minuteRetention, hourRetention, dayRetention);
+        this.addTimer = operationTimer(meterRegistry, "add");
+        this.addAllTimer = operationTimer(meterRegistry, "addAll");
+        this.stopTimer = operationTimer(meterRegistry, "stop");
+        this.stopAllTimer = operationTimer(meterRegistry, "stopAll");
+        this.getTimer = operationTimer(meterRegistry, "get");
+        this.getAllTimer = operationTimer(meterRegistry, "getAll");
+        this.iterateTimer = operationTimer(meterRegistry, "iterate");
+        this.summaryTimer = operationTimer(meterRegistry, "summary");
+        this.stationTimer = operationTimer(meterRegistry, "station");
+        this.stationSummaryTimer = operationTimer(meterRegistry, "stationSummary");
+        this.updatedLastMinuteTimer = operationTimer(meterRegistry, "updatedLastMinute");
+        this.updatedBetweenTimer = operationTimer(meterRegistry, "updatedBetween");
+        this.evictTimer = operationTimer(meterRegistry, "evict");
+        this.aggregatesTimer = operationTimer(meterRegistry, "aggregates");
+        this.stopMisses = meterRegistry.counter("sessions.store.misses", "operation", "stop");
+        this.getMisses = meterRegistry.counter("sessions.store.misses", "operation", "get");
+    }
+
+    private static Timer operationTimer(MeterRegistry meterRegistry, String operation) {
+        return meterRegistry.timer("sessions.store.operations", "operation", operation);
+    }
+
+    public void addListener(SessionsStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SessionsStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return {@code true} if the engine or a registered listener may block the threads that change the store, see
+     * {@link SessionsStorage#blocksWriters()} and {@link SessionsStoreListener#blocksWriters()}
+     */
+    public boolean writesMayBlock() {
+        if (storage.blocksWriters()) {
+            return true;
+        }
+        for (SessionsStoreListener listener : listeners) {
+            if (listener.blocksWriters()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a counter incremented after every change of the sessions. A result computed after reading version
+     * {@code v} contains at least the changes up to {@code v}, so it is current as long as the version is still
+     * {@code v}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Restricts the ids of new sessions to those {@code ownedIds} accepts, e.g. to the ids a node of a cluster owns.
+     * Random ids are drawn until one is accepted, so the predicate must accept a fair share of them.
+     */
+    public void setOwnedIds(Predicate<UUID> ownedIds) {
+        this.ownedIds = ownedIds;
+    }
+
+    private UUID newId() {
+        UUID id;
+        do {
+            id = UUID.randomUUID();
+        } while (!ownedIds.test(id));
+        return id;
+    }
+
+    public ChargingSession addSession(String stationId, LocalDateTime startedAt) {
+        long start = System.nanoTime();
+        ChargingSession session = new ChargingSession(newId(), stationId, startedAt, Status.IN_PROGRESS);
+        for (SessionsStoreListener listener : listeners) {
+            listener.beforeSessionStarted(session);
+        }
+        storage.add(session);
+        rollingSummary.sessionStarted(startedAt);
+        aggregates.sessionStarted(stationId, startedAt);
+        version.incrementAndGet();
+        addTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (SessionsStoreListener listener : listeners) {
+            listener.sessionStarted(session);
+        }
         return session;
     }
 
-    private String getDateStringWithoutSeconds(LocalDateTime localDateTime) {
-        return localDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME).substring(0,16);
+    public void stopSession(String id, LocalDateTime stopTime) {
+        long start = System.nanoTime();
+        Stop stop = applyStop(UUID.fromString(id), stopTime, true);
+        stopTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (stop == null) {
+            stopMisses.increment();
+            throw new IllegalArgumentException("No sessions with such id=" + id);
+        }
+        if (!listeners.isEmpty()) {
+            ChargingSession session = new ChargingSession(stop.id, stop.stationId, stop.startedAt, stopTime, Status.STOPPED);
+            for (SessionsStoreListener listener : listeners) {
+                listener.sessionStopped(session, stop.previousStoppedAt);
+            }
+        }
+    }
+
+    /**
+     * Adds a session for every start in one pass over the storage, see {@link SessionsStorage#addAll}.
+     *
+     * @return the added sessions in the order of {@code starts}
+     */
+    public List<ChargingSession> addSessions(List<SessionStart> starts) {
+        long start = System.nanoTime();
+        List<ChargingSession> sessions = new ArrayList<>(starts.size());
+        for (SessionStart sessionStart : starts) {
+            sessions.add(new ChargingSession(newId(), sessionStart.getStationId(), sessionStart.getStartedAt(), Status.IN_PROGRESS));
+        }
+        for (ChargingSession session : sessions) {
+            for (SessionsStoreListener listener : listeners) {
+                listener.beforeSessionStarted(session);
+            }
+        }
+        storage.addAll(sessions);
+        for (ChargingSession session : sessions) {
+            rollingSummary.sessionStarted(session.getStartedAt());
+            aggregates.sessionStarted(session.getStationId(), session.getStartedAt());
+        }
+        version.incrementAndGet();
+        addAllTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (ChargingSession session : sessions) {
+            for (SessionsStoreListener listener : listeners) {
+                listener.sessionStarted(session);
+            }
+        }
+        return sessions;
     }
 
-    private void addSessionToStoreAndIndex(ChargingSession session, String lastUpdateTime) {
-        Map<String, ChargingSession> sessions = store.computeIfAbsent(lastUpdateTime, k -> new HashMap<>());
-        sessions.put(session.getId().toString(), session);
-        index.put(session.getId().toString(), lastUpdateTime);
+    /**
+     * Applies all stops in one pass over the storage, see {@link SessionsStorage#stopAll}.
+     *
+     * @return the stopped session for every stop in the order of {@code stops}, {@code null} where there is no
+     * session with the id of the stop
+     */
+    public List<ChargingSession> stopSessions(List<SessionStop> stops) {
+        long start = System.nanoTime();
+        Stop[] applied = new Stop[stops.size()];
+        for (int i = 0; i < applied.length; i++) {
+            applied[i] = new Stop(stops.get(i).getStoppedAt(), true);
+        }
+        boolean[] found = storage.stopAll(stops, (session, i) -> applied[i].accept(session));
+        version.incrementAndGet();
+        stopAllTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        List<ChargingSession> sessions = new ArrayList<>(applied.length);
+        for (int i = 0; i < applied.length; i++) {
+            if (!found[i]) {
+                stopMisses.increment();
+                sessions.add(null);
+                continue;
+            }
+            Stop stop = applied[i];
+            ChargingSession session = new ChargingSession(stop.id, stop.stationId, stop.startedAt, stop.stopTime, Status.STOPPED);
+            sessions.add(session);
+            for (SessionsStoreListener listener : listeners) {
+                listener.sessionStopped(session, stop.previousStoppedAt);
+            }
+        }
+        return sessions;
     }
 
-    synchronized public void stopSession(String id, LocalDateTime stopTime) {
-        String dateKey = index.get(id);
-        if (dateKey == null) {
+    private Stop applyStop(UUID id, LocalDateTime stopTime, boolean notify) {
+        Stop stop = new Stop(stopTime, notify);
+        if (!storage.stop(id, stopTime, stop)) {
+            return null;
+        }
+        version.incrementAndGet();
+        return stop;
+    }
+
+    /**
+     * Adds a session read from persistent state, keeping its id and status. Sessions that are already in the
+     * store are skipped. Listeners are not notified.
+     */
+    public void restoreSession(ChargingSession session) {
+        if (storage.get(session.getId()) != null) {
+            return;
+        }
+        storage.add(session);
+        countRestored(session);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Restores the sessions like {@link #restoreSession} in one pass over the storage, see
+     * {@link SessionsStorage#addAll}.
+     */
+    public void restoreSessions(List<ChargingSession> sessions) {
+        List<ChargingSession> restored = new ArrayList<>(sessions.size());
+        for (ChargingSession session : sessions) {
+            if (storage.get(session.getId()) == null) {
+                restored.add(session);
+            }
+        }
+        if (restored.isEmpty()) {
+            return;
+        }
+        storage.addAll(restored);
+        for (ChargingSession session : restored) {
+            countRestored(session);
+        }
+        version.incrementAndGet();
+    }
+
+    private void countRestored(ChargingSession session) {
+        rollingSummary.sessionStarted(session.getStartedAt());
+        aggregates.sessionStarted(session.getStationId(), session.getStartedAt());
+        if (session.getStatus() == Status.STOPPED) {
+            rollingSummary.sessionStopped(session.getStartedAt(), Status.IN_PROGRESS, session.getStoppedAt());
+            aggregates.sessionStopped(session.getStationId(), session.getStartedAt(), null, session.getStoppedAt());
+        }
+    }
+
+    /**
+     * Stops a session read from persistent state. Listeners are not notified.
+     *
+     * @return {@code false} if there is no session with this id
+     */
+    public boolean restoreStop(UUID id, LocalDateTime stopTime) {
+        return applyStop(id, stopTime, false) != null;
+    }
+
+    public ChargingSession getSession(String id) {
+        long start = System.nanoTime();
+        ChargingSession session = storage.get(UUID.fromString(id));
+        getTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (session == null) {
+            getMisses.increment();
             throw new IllegalArgumentException("No sessions with such id=" + id);
         }
-        Map<String, ChargingSession> sessions = store.get(dateKey);
-        ChargingSession session = sessions.getOrDefault(id, null);
-        index.remove(id);
-        sessions.remove(id);
-        session.setStatus(Status.STOPPED);
-        session.setStoppedAt(stopTime);
+        return session;
+    }
 
-        addSessionToStoreAndIndex(session, getDateStringWithoutSeconds(stopTime));
+    /**
+     * Looks up every id like {@link #getSession}.
+     *
+     * @return the session of every id in the order of {@code ids}, {@code null} where there is no session with the id
+     */
+    public List<ChargingSession> getSessions(List<UUID> ids) {
+        List<ChargingSession> sessions = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            long start = System.nanoTime();
+            ChargingSession session = storage.get(id);
+            getTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (session == null) {
+                getMisses.increment();
+            }
+            sessions.add(session);
+        }
+        return sessions;
     }
 
-    synchronized public ArrayList<ChargingSession> getAllSessions() {
+    public ArrayList<ChargingSession> getAllSessions() {
+        long start = System.nanoTime();
         ArrayList<ChargingSession> allSessions = new ArrayList<>();
-        for (String key : store.keySet()) {
-           allSessions.addAll(new ArrayList<>(store.get(key).values()));
-        }
+        storage.iterator(null).forEachRemaining(allSessions::add);
+        getAllTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return allSessions;
     }
 
-    synchronized public ArrayList<ChargingSession> getSessionsUpdatedLastMinute() {
-        String dateTimeForCurrentMinute = getDateStringWithoutSeconds(LocalDateTime.now());
-        LocalDateTime oneMinuteAgo = LocalDateTime.now().minusMinutes(1L);
-        String dateTimeForOneMinuteAgo = getDateStringWithoutSeconds(oneMinuteAgo);
+    /**
+     * Returns a weakly consistent iterator over the sessions, starting right after the session with id
+     * {@code afterId}, or from the first session if it is {@code null}. The iterator reads the storage directly,
+     * it neither copies the sessions nor blocks writers. Only positioning the iterator is timed.
+     *
+     * @throws IllegalArgumentException if {@code afterId} is not a UUID or the storage cannot resume after it
+     */
+    public Iterator<ChargingSession> getSessionsAfter(String afterId) {
+        long start = System.nanoTime();
+        Iterator<ChargingSession> sessions = storage.iterator(afterId == null ? null : UUID.fromString(afterId));
+        iterateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return sessions;
+    }
+
+    /**
+     * Counts sessions by status that were last updated during the given window ending now, with a resolution of
+     * one second.
+     *
+     * @throws IllegalArgumentException if the window is shorter than a second or longer than the configured
+     *                                  {@code sessions.summary.max-window}
+     */
+    public SessionsSummary getSessionsSummary(Duration window) {
+        long start = System.nanoTime();
+        SessionsSummary summary = rollingSummary.summarize(LocalDateTime.now(), window);
+        summaryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return summary;
+    }
+
+    /**
+     * Returns the sessions of the station, visiting only the sessions of that station.
+     */
+    public ArrayList<ChargingSession> getStationSessions(String stationId) {
+        long start = System.nanoTime();
+        ArrayList<ChargingSession> sessions = new ArrayList<>();
+        storage.forEachAtStation(stationId, sessions::add);
+        stationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return sessions;
+    }
 
+    /**
+     * Counts the sessions of the station by status, either all of them if {@code window} is {@code null}, or those
+     * last updated during the window ending now. Visits only the sessions of that station.
+     */
+    public SessionsSummary getStationSummary(String stationId, Duration window) {
+        long start = System.nanoTime();
+        LocalDateTime since = window == null ? null : LocalDateTime.now().minus(window);
+        int[] counts = new int[Status.values().length];
+        storage.forEachAtStation(stationId, session -> {
+            if (since == null || session.getLastUpdateTime().isAfter(since)) {
+                counts[session.getStatus().ordinal()]++;
+            }
+        });
+        int started = counts[Status.IN_PROGRESS.ordinal()];
+        int stopped = counts[Status.STOPPED.ordinal()];
+        stationSummaryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new SessionsSummary(started + stopped, started, stopped);
+    }
+
+    public Duration getMaxSummaryWindow() {
+        return rollingSummary.getMaxWindow();
+    }
+
+    /**
+     * Counts the sessions started and stopped per bucket of the granularity, from the bucket of {@code from} up to
+     * the last bucket that starts before {@code to}, of the station or of all stations if {@code stationId} is
+     * {@code null}. Reads one counter per bucket, whatever the number of sessions. Buckets older than the retention
+     * of the granularity are empty.
+     *
+     * @throws IllegalArgumentException if {@code from} is not before {@code to} or the range is longer than the
+     *                                  retention of the granularity
+     */
+    public List<AggregateBucket> getAggregates(LocalDateTime from, LocalDateTime to, AggregateGranularity granularity, String stationId) {
+        long start = System.nanoTime();
+        List<AggregateBucket> buckets = aggregates.aggregate(from, to, granularity, stationId);
+        aggregatesTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return buckets;
+    }
 
-        ArrayList<ChargingSession> sessionsUpdatedDuringCurrentMinute = getListOfSessions(store.get(dateTimeForCurrentMinute));
-        ArrayList<ChargingSession> sessionsUpdatedDuringPreviousMinute = getListOfSessions(store.get(dateTimeForOneMinuteAgo));
+    /**
+     * Evicts the oldest minute bucket of stopped sessions if it ended before {@code cutoff}.
+     *
+     * @return the number of evicted sessions, or -1 if there is no bucket to evict
+     */
+    public int evictStoppedBucket(LocalDateTime cutoff) {
+        long start = System.nanoTime();
+        int evicted = storage.evictStoppedBucket(cutoff);
+        if (evicted > 0) {
+            version.incrementAndGet();
+        }
+        evictTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return evicted;
+    }
 
-        List<ChargingSession> filteredSessions = sessionsUpdatedDuringPreviousMinute.stream()
-                .filter(s -> s.getStoppedAt() == null ? s.getStartedAt().isAfter(oneMinuteAgo) : s.getStoppedAt().isAfter(oneMinuteAgo))
-                .collect(Collectors.toList());
+    public ArrayList<ChargingSession> getSessionsUpdatedLastMinute() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime endOfCurrentMinute = now.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1L);
+        ArrayList<ChargingSession> result = new ArrayList<>();
+        storage.forEachUpdatedBetween(now.minusMinutes(1L), endOfCurrentMinute, result::add);
+        updatedLastMinuteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
 
+    /**
+     * Returns the sessions last updated at or after {@code from} and before {@code to}, visiting only the minute
+     * buckets of that range. The range is empty unless {@code from} is before {@code to}.
+     */
+    public ArrayList<ChargingSession> getSessionsUpdatedBetween(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
         ArrayList<ChargingSession> result = new ArrayList<>();
-        result.addAll(sessionsUpdatedDuringCurrentMinute);
-        result.addAll(filteredSessions);
+        if (from.isBefore(to)) {
+            // the storage excludes both ends
+            storage.forEachUpdatedBetween(from.minusNanos(1L), to, result::add);
+        }
+        updatedBetweenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return result;
     }
 
-    private ArrayList<ChargingSession> getListOfSessions(Map<String, ChargingSession> sessions) {
-       if(sessions != null) {
-           return new ArrayList<>(sessions.values());
-       } else {
-           return new ArrayList<>();
-       }
+    /**
+     * Called by the storage with the session before it is stopped, while concurrent stops of the same session
+     * wait. Hands the stop to {@link SessionsStoreListener#beforeSessionStopped} and keeps what listeners need to
+     * know about the previous state.
+     */
+    private final class Stop implements Consumer<ChargingSession> {
+        private final LocalDateTime stopTime;
+        private final boolean notify;
+        private UUID id;
+        private String stationId;
+        private LocalDateTime startedAt;
+        private LocalDateTime previousStoppedAt;
+
+        Stop(LocalDateTime stopTime, boolean notify) {
+            this.stopTime = stopTime;
+            this.notify = notify;
+        }
+
+        @Override
+        public void accept(ChargingSession session) {
+            if (notify) {
+                for (SessionsStoreListener listener : listeners) {
+                    listener.beforeSessionStopped(session, stopTime);
+                }
+            }
+            rollingSummary.sessionStopped(session.getLastUpdateTime(), session.getStatus(), stopTime);
+            aggregates.sessionStopped(session.getStationId(), session.getStartedAt(), session.getStoppedAt(), stopTime);
+            id = session.getId();
+            stationId = session.getStationId();
+            startedAt = session.getStartedAt();
+            previousStoppedAt = session.getStoppedAt();
+        }
     }
 
 }
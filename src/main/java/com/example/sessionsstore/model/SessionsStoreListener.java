@@ -0,0 +1,44 @@
+package com.example.sessionsstore.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Receives the changes applied by {@link SessionsStore}, on the thread that applied them and after the storage
+ * was updated. Concurrent stops of the same session may be reported in either order. A listener that must record
+ * changes in the order they are applied, like a write-ahead journal, does so in {@link #beforeSessionStarted} and
+ * {@link #beforeSessionStopped}.
+ */
+public interface SessionsStoreListener {
+
+    /**
+     * Called before the session is added to the storage. If it throws, the session is not added.
+     */
+    default void beforeSessionStarted(ChargingSession session) {
+    }
+
+    /**
+     * Called by the storage right before it stops the session, in the order in which concurrent stops of the same
+     * session are applied, possibly on a writer thread of the storage. If it throws, the stop is not applied.
+     *
+     * @param session the session before the stop
+     */
+    default void beforeSessionStopped(ChargingSession session, LocalDateTime stoppedAt) {
+    }
+
+    void sessionStarted(ChargingSession session);
+
+    /**
+     * @param session           the session after the stop
+     * @param previousStoppedAt the stop time this stop replaced, {@code null} if the session was in progress
+     */
+    void sessionStopped(ChargingSession session, LocalDateTime previousStoppedAt);
+
+    /**
+     * @return {@code true} if the listener may block the thread that applied a change, e.g. to wait for a disk
+     * write, so that non-blocking callers must not apply changes on their own threads
+     */
+    default boolean blocksWriters() {
+        return false;
+    }
+
+}
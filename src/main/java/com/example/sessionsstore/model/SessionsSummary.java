@@ -0,0 +1,14 @@
+package com.example.sessionsstore.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionsSummary {
+    private int totalCount;
+    private int startedCount;
+    private int stoppedCount;
+}
@@ -0,0 +1,228 @@
+package com.example.sessionsstore.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Storage engine that partitions the sessions between independent engines (shards) by consistent hashing of the
+ * session id, see {@link ConsistentHashRing}. Adds, stops and lookups only touch the shard that owns the id, so
+ * writers of different shards never share a lock or a bucket. Batches are split by shard and every shard applies
+ * its part in one pass.
+ * <p>
+ * Reads of time ranges and stations visit all shards one after the other. Iterators walk the shards in their
+ * order, every shard in the order of its engine; an iterator resumed after an id continues in the shard that owns
+ * the id and then walks the following shards. Sizes are the sums of the shards, a minute that has sessions in
+ * several shards counts as several buckets, which are also evicted one at a time.
+ */
+public class ShardedSessionsStorage implements SessionsStorage {
+
+    // enough to keep the shards within a few percent of an even split
+    private static final int VIRTUAL_NODES = 64;
+
+    private final SessionsStorage[] shards;
+    private final ConsistentHashRing ring;
+
+    public ShardedSessionsStorage(List<SessionsStorage> shards) {
+        this.shards = shards.toArray(new SessionsStorage[0]);
+        List<String> names = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            names.add("shard-" + i);
+        }
+        this.ring = new ConsistentHashRing(names, VIRTUAL_NODES);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return the shard that owns the id
+     */
+    public SessionsStorage shardFor(UUID id) {
+        return shards[ring.nodeFor(id)];
+    }
+
+    @Override
+    public void add(ChargingSession session) {
+        shardFor(session.getId()).add(session);
+    }
+
+    @Override
+    public void addAll(List<ChargingSession> sessions) {
+        List<List<ChargingSession>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>(sessions.size() / shards.length + 1));
+        }
+        for (ChargingSession session : sessions) {
+            byShard.get(ring.nodeFor(session.getId())).add(session);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (!byShard.get(i).isEmpty()) {
+                shards[i].addAll(byShard.get(i));
+            }
+        }
+    }
+
+    @Override
+    public boolean stop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop) {
+        return shardFor(id).stop(id, stoppedAt, onStop);
+    }
+
+    @Override
+    public boolean[] stopAll(List<SessionStop> stops, ObjIntConsumer<ChargingSession> onStop) {
+        int[] shardOfStop = new int[stops.size()];
+        int[] shardSizes = new int[shards.length];
+        for (int i = 0; i < shardOfStop.length; i++) {
+            shardOfStop[i] = ring.nodeFor(stops.get(i).getId());
+            shardSizes[shardOfStop[i]]++;
+        }
+        boolean[] found = new boolean[stops.size()];
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shardSizes[shard] == 0) {
+                continue;
+            }
+            List<SessionStop> shardStops = new ArrayList<>(shardSizes[shard]);
+            // position of every stop of the shard in the whole batch
+            int[] positions = new int[shardSizes[shard]];
+            for (int i = 0; i < shardOfStop.length; i++) {
+                if (shardOfStop[i] == shard) {
+                    positions[shardStops.size()] = i;
+                    shardStops.add(stops.get(i));
+                }
+            }
+            boolean[] shardFound = shards[shard].stopAll(shardStops, (session, i) -> onStop.accept(session, positions[i]));
+            for (int i = 0; i < positions.length; i++) {
+                found[positions[i]] = shardFound[i];
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public ChargingSession get(UUID id) {
+        return shardFor(id).get(id);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the engine of the shard that owns {@code after} cannot resume after it
+     */
+    @Override
+    public Iterator<ChargingSession> iterator(UUID after) {
+        int first = after == null ? 0 : ring.nodeFor(after);
+        return new ShardsIterator(first, shards[first].iterator(after));
+    }
+
+    @Override
+    public void forEachUpdatedBetween(LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action) {
+        for (SessionsStorage shard : shards) {
+            shard.forEachUpdatedBetween(from, to, action);
+        }
+    }
+
+    @Override
+    public void forEachAtStation(String stationId, Consumer<ChargingSession> action) {
+        for (SessionsStorage shard : shards) {
+            shard.forEachAtStation(stationId, action);
+        }
+    }
+
+    /**
+     * Evicts the oldest eligible bucket of the first shard that has one, so a call holds the locks of one bucket
+     * of one shard only.
+     */
+    @Override
+    public int evictStoppedBucket(LocalDateTime cutoff) {
+        for (SessionsStorage shard : shards) {
+            int evicted = shard.evictStoppedBucket(cutoff);
+            if (evicted >= 0) {
+                return evicted;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int sessionCount() {
+        int count = 0;
+        for (SessionsStorage shard : shards) {
+            count += shard.sessionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int indexSize() {
+        int size = 0;
+        for (SessionsStorage shard : shards) {
+            size += shard.indexSize();
+        }
+        return size;
+    }
+
+    @Override
+    public int bucketCount() {
+        int count = 0;
+        for (SessionsStorage shard : shards) {
+            count += shard.bucketCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int bucketSize(ChargingSession.Status status, LocalDateTime minute) {
+        int size = 0;
+        for (SessionsStorage shard : shards) {
+            size += shard.bucketSize(status, minute);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean blocksWriters() {
+        for (SessionsStorage shard : shards) {
+            if (shard.blocksWriters()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the shards from {@code shard} on, creating the iterator of a shard only when it is reached.
+     */
+    private final class ShardsIterator implements Iterator<ChargingSession> {
+        private int shard;
+        private Iterator<ChargingSession> current;
+
+        ShardsIterator(int shard, Iterator<ChargingSession> current) {
+            this.shard = shard;
+            this.current = current;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (shard + 1 == shards.length) {
+                    return false;
+                }
+                current = shards[++shard].iterator(null);
+            }
+            return true;
+        }
+
+        @Override
+        public ChargingSession next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+}
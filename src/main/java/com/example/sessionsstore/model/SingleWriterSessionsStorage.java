@@ -0,0 +1,472 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import static com.example.sessionsstore.model.ChargingSession.*;
+
+/**
+ * Storage engine with a single writer thread and lock-free reads.
+ * <p>
+ * Changes are not applied by the calling threads: they are published as commands to a bounded {@link MpscRing},
+ * and one writer thread takes them out in batches and applies them one after another. The sessions live in
+ * {@link PersistentTrie}s (the index by id, the per-minute buckets of in-progress and stopped sessions and the
+ * sessions by station), which the writer changes in place for the duration of a batch and then publishes as an
+ * immutable {@link Snapshot} through one volatile write. Only then are the callers of the batch released, so a
+ * caller always reads its own changes. Readers take the latest snapshot and never synchronize: they neither block
+ * the writer nor see a batch half applied, and iterators read one consistent version of the store. Stored
+ * {@link ChargingSession}s are never changed, a stop stores a new one.
+ * <p>
+ * While the ring is full, changes wait or fail according to the {@link BackpressurePolicy}. The time from
+ * publishing a change to its release is recorded as {@code sessions.storage.writer.latency}, the number of
+ * changes per batch as {@code sessions.storage.writer.batch} and the changes waiting in the ring as
+ * {@code sessions.storage.writer.queue}. {@link #close()} stops the writer.
+ */
+public class SingleWriterSessionsStorage implements SessionsStorage, AutoCloseable {
+
+    public static final int DEFAULT_RING_SIZE = 65_536;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int SPINS = 128;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20L);
+
+    private final MpscRing<Command> ring;
+    private final BackpressurePolicy backpressure;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // station ids get a key when their first session is added, by the writer only; keys are never removed
+    private final ConcurrentMap<String, UUID> stationKeys = new ConcurrentHashMap<>();
+
+    // the working copy of the writer, published as the snapshot after every batch
+    private Object edit;
+    private PersistentTrie<ChargingSession> index = PersistentTrie.empty();
+    private PersistentTrie<PersistentTrie<ChargingSession>> inProgress = PersistentTrie.empty();
+    private PersistentTrie<PersistentTrie<ChargingSession>> stopped = PersistentTrie.empty();
+    private PersistentTrie<PersistentTrie<ChargingSession>> stations = PersistentTrie.empty();
+    private long nextStationRef;
+
+    private final Timer addLatency;
+    private final Timer addAllLatency;
+    private final Timer stopLatency;
+    private final Timer stopAllLatency;
+    private final Timer evictLatency;
+    private final DistributionSummary batchSize;
+    private final Counter rejected;
+
+    public SingleWriterSessionsStorage() {
+        this(Metrics.globalRegistry);
+    }
+
+    public SingleWriterSessionsStorage(MeterRegistry meterRegistry) {
+        this(DEFAULT_RING_SIZE, BackpressurePolicy.BLOCK, meterRegistry);
+    }
+
+    public SingleWriterSessionsStorage(int ringSize, BackpressurePolicy backpressure, MeterRegistry meterRegistry) {
+        this.ring = new MpscRing<>(ringSize);
+        this.backpressure = backpressure;
+        this.addLatency = latencyTimer(meterRegistry, "add");
+        this.addAllLatency = latencyTimer(meterRegistry, "addAll");
+        this.stopLatency = latencyTimer(meterRegistry, "stop");
+        this.stopAllLatency = latencyTimer(meterRegistry, "stopAll");
+        this.evictLatency = latencyTimer(meterRegistry, "evict");
+        this.batchSize = DistributionSummary.builder("sessions.storage.writer.batch")
+                .baseUnit("changes")
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("sessions.storage.writer.rejected");
+        Gauge.builder("sessions.storage.writer.queue", ring, MpscRing::size).register(meterRegistry);
+        this.writer = new Thread(this::run, "sessions-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("sessions.storage.writer.latency")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stops the writer after it applied the changes already in the ring. Later changes fail with
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void add(ChargingSession session) {
+        execute(new Command(addLatency) {
+            @Override
+            void apply() {
+                applyAdd(session);
+            }
+        });
+    }
+
+    @Override
+    public void addAll(List<ChargingSession> sessions) {
+        execute(new Command(addAllLatency) {
+            @Override
+            void apply() {
+                sessions.forEach(SingleWriterSessionsStorage.this::applyAdd);
+            }
+        });
+    }
+
+    @Override
+    public boolean stop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop) {
+        boolean[] found = new boolean[1];
+        execute(new Command(stopLatency) {
+            @Override
+            void apply() {
+                found[0] = applyStop(id, stoppedAt, onStop);
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Applies all stops as one change, so they land in the same snapshot.
+     */
+    @Override
+    public boolean[] stopAll(List<SessionStop> stops, ObjIntConsumer<ChargingSession> onStop) {
+        boolean[] found = new boolean[stops.size()];
+        execute(new Command(stopAllLatency) {
+            @Override
+            void apply() {
+                for (int i = 0; i < found.length; i++) {
+                    int position = i;
+                    SessionStop stop = stops.get(i);
+                    found[i] = applyStop(stop.getId(), stop.getStoppedAt(), session -> onStop.accept(session, position));
+                }
+            }
+        });
+        return found;
+    }
+
+    @Override
+    public ChargingSession get(UUID id) {
+        return snapshot.index.get(id);
+    }
+
+    /**
+     * Iterates the index of the latest snapshot ordered by id as an unsigned number. The cursor does not need to
+     * exist in the store.
+     */
+    @Override
+    public Iterator<ChargingSession> iterator(UUID after) {
+        return snapshot.index.values(after);
+    }
+
+    @Override
+    public void forEachUpdatedBetween(LocalDateTime from, LocalDateTime to, Consumer<ChargingSession> action) {
+        Snapshot current = snapshot;
+        forEachUpdatedBetween(current.inProgress, from, to, action);
+        forEachUpdatedBetween(current.stopped, from, to, action);
+    }
+
+    private static void forEachUpdatedBetween(PersistentTrie<PersistentTrie<ChargingSession>> buckets, LocalDateTime from, LocalDateTime to,
+                                              Consumer<ChargingSession> action) {
+        long lastMinute = epochMinute(to);
+        PersistentTrie.Cursor<PersistentTrie<ChargingSession>> minutes = buckets.cursor(minuteKey(epochMinute(from) - 1L));
+        while (minutes.advance() && minute(minutes.key()) <= lastMinute) {
+            for (Iterator<ChargingSession> sessions = minutes.value().values(null); sessions.hasNext(); ) {
+                ChargingSession session = sessions.next();
+                LocalDateTime lastUpdateTime = session.getLastUpdateTime();
+                if (lastUpdateTime.isAfter(from) && lastUpdateTime.isBefore(to)) {
+                    action.accept(session);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEachAtStation(String stationId, Consumer<ChargingSession> action) {
+        UUID stationKey = stationKeys.get(stationId);
+        PersistentTrie<ChargingSession> sessions = stationKey == null ? null : snapshot.stations.get(stationKey);
+        if (sessions != null) {
+            sessions.values(null).forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public int evictStoppedBucket(LocalDateTime cutoff) {
+        int[] evicted = new int[1];
+        execute(new Command(evictLatency) {
+            @Override
+            void apply() {
+                evicted[0] = applyEvict(cutoff);
+            }
+        });
+        return evicted[0];
+    }
+
+    /**
+     * Every session is in exactly one bucket, so this is the size of the index.
+     */
+    @Override
+    public int sessionCount() {
+        return snapshot.index.size();
+    }
+
+    @Override
+    public int indexSize() {
+        return snapshot.index.size();
+    }
+
+    @Override
+    public int bucketCount() {
+        Snapshot current = snapshot;
+        return current.inProgress.size() + current.stopped.size();
+    }
+
+    @Override
+    public int bucketSize(Status status, LocalDateTime minute) {
+        Snapshot current = snapshot;
+        PersistentTrie<ChargingSession> bucket = (status == Status.STOPPED ? current.stopped : current.inProgress).get(minuteKey(epochMinute(minute)));
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    /**
+     * @return {@code true}, callers wait for the writer thread to apply their change
+     */
+    @Override
+    public boolean blocksWriters() {
+        return true;
+    }
+
+    /**
+     * Publishes the command and waits until the writer released it, spinning briefly before parking.
+     */
+    private void execute(Command command) {
+        if (!running) {
+            throw new IllegalStateException("Storage is closed");
+        }
+        command.waiter = Thread.currentThread();
+        command.submittedAt = System.nanoTime();
+        while (!ring.offer(command)) {
+            if (backpressure == BackpressurePolicy.REJECT) {
+                rejected.increment();
+                throw new RejectedExecutionException("Sessions writer is saturated, " + ring.capacity() + " changes are waiting");
+            }
+            LockSupport.parkNanos(this, FULL_RING_PARK_NANOS);
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        for (int spins = 0; !command.done; spins++) {
+            if (spins >= SPINS) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+                if (!command.done && !writer.isAlive()) {
+                    throw new IllegalStateException("Storage is closed");
+                }
+            }
+        }
+        if (command.failure != null) {
+            throw command.failure;
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (true) {
+            Command command = ring.poll();
+            if (command == null) {
+                if (!running) {
+                    return;
+                }
+                writerParked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+            edit = new Object();
+            do {
+                try {
+                    command.apply();
+                } catch (RuntimeException e) {
+                    command.failure = e;
+                }
+                batch.add(command);
+            } while (batch.size() < MAX_BATCH_SIZE && (command = ring.poll()) != null);
+            snapshot = new Snapshot(index, inProgress, stopped, stations);
+            // the next batch must not change what was just published
+            edit = null;
+            batchSize.record(batch.size());
+            long releasedAt = System.nanoTime();
+            for (Command applied : batch) {
+                applied.latency.record(releasedAt - applied.submittedAt, TimeUnit.NANOSECONDS);
+                applied.done = true;
+                LockSupport.unpark(applied.waiter);
+            }
+            batch.clear();
+        }
+    }
+
+    private void applyAdd(ChargingSession session) {
+        ChargingSession previous = index.get(session.getId());
+        if (previous != null) {
+            removeFromBuckets(previous);
+        }
+        index = index.with(session.getId(), session, edit);
+        addToBuckets(session);
+    }
+
+    private boolean applyStop(UUID id, LocalDateTime stoppedAt, Consumer<ChargingSession> onStop) {
+        ChargingSession previous = index.get(id);
+        if (previous == null) {
+            return false;
+        }
+        onStop.accept(previous);
+        ChargingSession session = new ChargingSession(id, previous.getStationId(), previous.getStartedAt(), stoppedAt, Status.STOPPED);
+        removeFromBuckets(previous);
+        index = index.with(id, session, edit);
+        addToBuckets(session);
+        return true;
+    }
+
+    /**
+     * Removes the oldest stopped bucket if its minute is before the minute of {@code cutoff}, and its sessions.
+     */
+    private int applyEvict(LocalDateTime cutoff) {
+        PersistentTrie.Cursor<PersistentTrie<ChargingSession>> oldest = stopped.cursor(null);
+        if (!oldest.advance() || minute(oldest.key()) >= epochMinute(cutoff)) {
+            return -1;
+        }
+        PersistentTrie<ChargingSession> bucket = oldest.value();
+        for (Iterator<ChargingSession> sessions = bucket.values(null); sessions.hasNext(); ) {
+            ChargingSession session = sessions.next();
+            index = index.without(session.getId(), edit);
+            stations = without(stations, stationKeys.get(session.getStationId()), session.getId());
+        }
+        stopped = stopped.without(oldest.key(), edit);
+        return bucket.size();
+    }
+
+    private void addToBuckets(ChargingSession session) {
+        UUID minuteKey = minuteKey(epochMinute(session.getLastUpdateTime()));
+        if (session.getStatus() == Status.STOPPED) {
+            stopped = with(stopped, minuteKey, session);
+        } else {
+            inProgress = with(inProgress, minuteKey, session);
+        }
+        UUID stationKey = stationKeys.computeIfAbsent(session.getStationId(), stationId -> new UUID(0L, nextStationRef++));
+        stations = with(stations, stationKey, session);
+    }
+
+    private void removeFromBuckets(ChargingSession session) {
+        UUID minuteKey = minuteKey(epochMinute(session.getLastUpdateTime()));
+        if (session.getStatus() == Status.STOPPED) {
+            stopped = without(stopped, minuteKey, session.getId());
+        } else {
+            inProgress = without(inProgress, minuteKey, session.getId());
+        }
+        stations = without(stations, stationKeys.get(session.getStationId()), session.getId());
+    }
+
+    private PersistentTrie<PersistentTrie<ChargingSession>> with(PersistentTrie<PersistentTrie<ChargingSession>> buckets, UUID key,
+                                                                 ChargingSession session) {
+        PersistentTrie<ChargingSession> bucket = buckets.get(key);
+        PersistentTrie<ChargingSession> updated = (bucket == null ? PersistentTrie.<ChargingSession>empty() : bucket).with(session.getId(), session, edit);
+        // a bucket already changed during this batch was changed in place
+        return updated == bucket ? buckets : buckets.with(key, updated, edit);
+    }
+
+    /**
+     * Removes empty buckets.
+     */
+    private PersistentTrie<PersistentTrie<ChargingSession>> without(PersistentTrie<PersistentTrie<ChargingSession>> buckets, UUID key, UUID id) {
+        PersistentTrie<ChargingSession> bucket = buckets.get(key);
+        if (bucket == null) {
+            return buckets;
+        }
+        PersistentTrie<ChargingSession> updated = bucket.without(id, edit);
+        if (updated.isEmpty()) {
+            return buckets.without(key, edit);
+        }
+        return updated == bucket ? buckets : buckets.with(key, updated, edit);
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    /**
+     * Flips the sign bit, so that the unsigned order of the keys is the chronological order of the minutes.
+     */
+    private static UUID minuteKey(long epochMinute) {
+        return new UUID(0L, epochMinute ^ Long.MIN_VALUE);
+    }
+
+    private static long minute(UUID minuteKey) {
+        return minuteKey.getLeastSignificantBits() ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * A change applied by the writer. Its caller waits for {@link #done}.
+     */
+    private abstract static class Command {
+        private final Timer latency;
+        private Thread waiter;
+        private long submittedAt;
+        private RuntimeException failure;
+        private volatile boolean done;
+
+        Command(Timer latency) {
+            this.latency = latency;
+        }
+
+        abstract void apply();
+    }
+
+    /**
+     * One published version of the store.
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(PersistentTrie.empty(), PersistentTrie.empty(), PersistentTrie.empty(), PersistentTrie.empty());
+
+        final PersistentTrie<ChargingSession> index;
+        final PersistentTrie<PersistentTrie<ChargingSession>> inProgress;
+        final PersistentTrie<PersistentTrie<ChargingSession>> stopped;
+        final PersistentTrie<PersistentTrie<ChargingSession>> stations;
+
+        Snapshot(PersistentTrie<ChargingSession> index, PersistentTrie<PersistentTrie<ChargingSession>> inProgress,
+                 PersistentTrie<PersistentTrie<ChargingSession>> stopped, PersistentTrie<PersistentTrie<ChargingSession>> stations) {
+            this.index = index;
+            this.inProgress = inProgress;
+            this.stopped = stopped;
+            this.stations = stations;
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.sessionsstore.model;
+
+/**
+ * What {@link SessionEventLog} does with a subscriber that fell behind by more events than the log keeps.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * The subscriber is told which events it missed and continues with the oldest event the log still has.
+     */
+    DROP,
+    /**
+     * The subscriber is told that it fell behind and is unsubscribed, so that its client reconnects or gives up.
+     */
+    DISCONNECT
+}
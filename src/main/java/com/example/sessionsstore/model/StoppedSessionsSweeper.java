@@ -0,0 +1,97 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts stopped sessions older than {@code sessions.retention.stopped} on its own background thread. In-progress
+ * sessions are kept indefinitely.
+ * <p>
+ * Every sweep evicts whole minute buckets, one bucket per call to the store, so an engine that locks for an
+ * eviction blocks request threads for at most one bucket. The time of every such call is recorded as
+ * {@code sessions.sweep.pause}, the whole sweep as {@code sessions.sweep.duration}.
+ */
+@Component
+@ConditionalOnProperty("sessions.retention.stopped")
+public class StoppedSessionsSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StoppedSessionsSweeper.class);
+
+    private final SessionsStore sessionsStore;
+    private final Duration retention;
+    private final Duration sweepInterval;
+    private final Counter evictedSessions;
+    private final Counter evictedBuckets;
+    private final Timer pauseTimer;
+    private final Timer sweepTimer;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stopped-sessions-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StoppedSessionsSweeper(SessionsStore sessionsStore,
+                                  @Value("${sessions.retention.stopped}") Duration retention,
+                                  @Value("${sessions.retention.sweep-interval:1m}") Duration sweepInterval,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        if (retention.compareTo(Duration.ofMinutes(1L)) < 0) {
+            throw new IllegalArgumentException("sessions.retention.stopped must be at least one minute");
+        }
+        this.sessionsStore = sessionsStore;
+        this.retention = retention;
+        this.sweepInterval = sweepInterval;
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.evictedSessions = registry.counter("sessions.evicted");
+        this.evictedBuckets = registry.counter("sessions.evicted.buckets");
+        this.pauseTimer = registry.timer("sessions.sweep.pause");
+        this.sweepTimer = registry.timer("sessions.sweep.duration");
+    }
+
+    @PostConstruct
+    void start() {
+        executor.scheduleWithFixedDelay(this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    void sweep() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+            long sweepStart = System.nanoTime();
+            while (true) {
+                long pauseStart = System.nanoTime();
+                int evicted = sessionsStore.evictStoppedBucket(cutoff);
+                pauseTimer.record(System.nanoTime() - pauseStart, TimeUnit.NANOSECONDS);
+                if (evicted < 0) {
+                    break;
+                }
+                evictedSessions.increment(evicted);
+                evictedBuckets.increment();
+            }
+            sweepTimer.record(System.nanoTime() - sweepStart, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // keep the schedule alive, the next sweep retries
+            log.error("Sweep of stopped sessions failed", e);
+        }
+    }
+
+}
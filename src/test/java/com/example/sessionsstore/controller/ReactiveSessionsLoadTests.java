@@ -0,0 +1,8 @@
+package com.example.sessionsstore.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class ReactiveSessionsLoadTests extends SessionsLoadTests {
+}
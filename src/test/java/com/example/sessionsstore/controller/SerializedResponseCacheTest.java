@@ -0,0 +1,91 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.SessionsStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SerializedResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionsStore sessionsStore = new SessionsStore();
+    private final AtomicInteger computed = new AtomicInteger();
+
+    @Test
+    public void givenUnchangedStore_WhenGetTwice_ThenSerializeOnceAndCountHit() {
+        SerializedResponseCache cache = cache(Duration.ofMinutes(1L), DataSize.ofMegabytes(1L));
+
+        SerializedResponseCache.Body first = cache.get("all", "all", this::compute);
+        SerializedResponseCache.Body second = cache.get("all", "all", this::compute);
+
+        assertSame(first, second);
+        assertEquals(1, computed.get());
+        assertArrayEquals("[1]".getBytes(), first.getBytes());
+        assertEquals(1.0, meterRegistry.counter("sessions.response.cache", "endpoint", "all", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("sessions.response.cache", "endpoint", "all", "result", "miss").count());
+        assertEquals(0.5, meterRegistry.get("sessions.response.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    public void givenStoreChanged_WhenGet_ThenSerializeAgain() {
+        SerializedResponseCache cache = cache(Duration.ofMinutes(1L), DataSize.ofMegabytes(1L));
+        SerializedResponseCache.Body first = cache.get("all", "all", this::compute);
+
+        sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        SerializedResponseCache.Body second = cache.get("all", "all", this::compute);
+
+        assertNotSame(first, second);
+        assertEquals(2, computed.get());
+        assertFalse(second.matches(first.getEtag()));
+        assertSame(second, cache.get("all", "all", this::compute));
+    }
+
+    @Test
+    public void givenExpiredTtlOrOversizedBody_WhenGet_ThenSerializeAgain() throws InterruptedException {
+        SerializedResponseCache shortLived = cache(Duration.ofMillis(20L), DataSize.ofMegabytes(1L));
+        shortLived.get("all", "all", this::compute);
+        Thread.sleep(30L);
+        shortLived.get("all", "all", this::compute);
+        assertEquals(2, computed.get());
+
+        SerializedResponseCache small = cache(Duration.ofMinutes(1L), DataSize.ofBytes(2L));
+        small.get("all", "all", this::compute);
+        small.get("all", "all", this::compute);
+        assertEquals(4, computed.get());
+    }
+
+    @Test
+    public void givenIfNoneMatchLists_WhenMatch_ThenMatchStrongWeakAndAnyTag() {
+        SerializedResponseCache.Body body = cache(Duration.ofMinutes(1L), DataSize.ofMegabytes(1L)).get("all", "all", this::compute);
+        String etag = body.getEtag();
+
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertTrue(body.matches(etag));
+        assertTrue(body.matches("\"other\", W/" + etag));
+        assertTrue(body.matches("*"));
+        assertFalse(body.matches("\"other\""));
+        assertFalse(body.matches(null));
+    }
+
+    private SerializedResponseCache cache(Duration ttl, DataSize maxBodySize) {
+        return new SerializedResponseCache(sessionsStore, new SessionsJson(new ObjectMapper()), ttl, maxBodySize, meterRegistry);
+    }
+
+    private int[] compute() {
+        return new int[]{computed.incrementAndGet()};
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.SessionEventLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads {@code GET /chargingSessions/events} of the servlet serving mode over a real connection, as a
+ * {@code MockMvc} response never ends.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SessionEventsControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SessionEventLog eventLog;
+
+    @Test
+    void givenSessionStartedAndStopped_WhenStreamEventsAfterLastEventId_ThenReturnEventsFollowingIt() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        long lastEventId = eventLog.getLastSequence();
+        RestSubmitSessionResponse submitted = client.post().uri("/chargingSessions").contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new RestSubmitSessionRequest("ABC-12345", LocalDateTime.now().toString()))
+                .retrieve().bodyToMono(RestSubmitSessionResponse.class).block(Duration.ofSeconds(10L));
+        client.put().uri("/chargingSessions/" + submitted.getId()).exchange().block(Duration.ofSeconds(10L));
+
+        List<ServerSentEvent<String>> events = client.get().uri("/chargingSessions/events")
+                .header(SessionEventsController.LAST_EVENT_ID, Long.toString(lastEventId))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .take(2).collectList().block(Duration.ofSeconds(10L));
+
+        assertEquals(2, events.size());
+        assertEquals(Long.toString(lastEventId + 1), events.get(0).id());
+        assertEquals("started", events.get(0).event());
+        assertTrue(events.get(0).data().contains(submitted.getId()));
+        assertEquals(Long.toString(lastEventId + 2), events.get(1).id());
+        assertEquals("stopped", events.get(1).event());
+    }
+
+    @Test
+    void givenLastEventIdInWrongFormat_WhenStreamEvents_ThenReturnErrorCode400() {
+        HttpStatus status = WebClient.create("http://localhost:" + port).get().uri("/chargingSessions/events?lastEventId=yesterday")
+                .accept(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_JSON)
+                .exchange().block(Duration.ofSeconds(10L)).statusCode();
+
+        assertEquals(HttpStatus.BAD_REQUEST, status);
+    }
+
+}
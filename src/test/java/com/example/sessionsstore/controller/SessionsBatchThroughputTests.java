@@ -0,0 +1,84 @@
+package com.example.sessionsstore.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Tag("slow")
+public class SessionsBatchThroughputTests {
+
+    private static final int SESSIONS = 2_000;
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void testGivenSameSessions_WhenSubmitAndStopSinglyAndInBatches_ThenBatchesAreFaster() {
+        // warm up both paths
+        submitAndStopSingly(200);
+        submitAndStopInBatches(200);
+
+        double single = submitAndStopSingly(SESSIONS);
+        double batch = submitAndStopInBatches(SESSIONS);
+
+        assertTrue(batch > single, () -> String.format("single requests ops/s=%.0f, batches of %d ops/s=%.0f", single, BATCH_SIZE, batch));
+    }
+
+    private double submitAndStopSingly(int sessions) {
+        long start = System.nanoTime();
+        List<String> ids = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            RestSubmitSessionRequest request = new RestSubmitSessionRequest("ABC-" + (i % 100), LocalDateTime.now().toString());
+            ResponseEntity<RestSubmitSessionResponse> response = restTemplate.postForEntity("/chargingSessions", request, RestSubmitSessionResponse.class);
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+            ids.add(response.getBody().getId());
+        }
+        for (String id : ids) {
+            ResponseEntity<Void> response = restTemplate.exchange("/chargingSessions/" + id, HttpMethod.PUT, null, Void.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+        }
+        return 2.0 * sessions / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private double submitAndStopInBatches(int sessions) {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < sessions; offset += BATCH_SIZE) {
+            List<RestSubmitSessionRequest> submits = new ArrayList<>(BATCH_SIZE);
+            for (int i = offset; i < offset + BATCH_SIZE; i++) {
+                submits.add(new RestSubmitSessionRequest("ABC-" + (i % 100), LocalDateTime.now().toString()));
+            }
+            RestBatchItemResult[] submitted = restTemplate.postForObject("/chargingSessions/batch", submits, RestBatchItemResult[].class);
+            List<RestStopSessionRequest> stops = new ArrayList<>(BATCH_SIZE);
+            for (RestBatchItemResult result : submitted) {
+                assertEquals(HttpStatus.CREATED.value(), result.getStatus());
+                stops.add(new RestStopSessionRequest((String) ((Map<?, ?>) result.getBody()).get("id"), null));
+            }
+            ResponseEntity<RestBatchItemResult[]> stopped = restTemplate.exchange("/chargingSessions/batch/stop", HttpMethod.PUT,
+                    new HttpEntity<>(stops), RestBatchItemResult[].class);
+            for (RestBatchItemResult result : stopped.getBody()) {
+                assertEquals(HttpStatus.OK.value(), result.getStatus());
+            }
+        }
+        return 2.0 * sessions / ((System.nanoTime() - start) / 1e9);
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.SessionsStoreApplication;
+import com.example.sessionsstore.model.AggregateBucket;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs three instances of the application on different ports as one {@link SessionsCluster} and checks that every
+ * instance answers for the sessions of all of them.
+ */
+public class SessionsClusterTests {
+
+    private static final int NODES = 3;
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> SESSIONS = new ParameterizedTypeReference<List<Map<String, Object>>>() {};
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static final List<TestRestTemplate> clients = new ArrayList<>();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            urls.add("http://localhost:" + freePort());
+        }
+        for (String url : urls) {
+            contexts.add(new SpringApplicationBuilder(SessionsStoreApplication.class).run(
+                    "--server.port=" + url.substring(url.lastIndexOf(':') + 1),
+                    "--sessions.cluster.nodes=" + String.join(",", urls),
+                    "--sessions.cluster.self=" + url,
+                    "--sessions.response-cache.ttl=0"));
+            clients.add(new TestRestTemplate(new RestTemplateBuilder().rootUri(url)));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void givenSessionsSubmittedToAllNodes_WhenStopAndReadThroughOtherNodes_ThenEveryNodeAnswersForTheWholeCluster() {
+        String stationId = "CLUSTER-" + UUID.randomUUID();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            RestSubmitSessionRequest request = new RestSubmitSessionRequest(stationId, LocalDateTime.now().toString());
+            ResponseEntity<RestSubmitSessionResponse> response = clients.get(i % NODES).postForEntity("/chargingSessions", request, RestSubmitSessionResponse.class);
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+            ids.add(response.getBody().getId());
+        }
+        for (int i = 0; i < 20; i++) {
+            ResponseEntity<String> response = clients.get((i + 1) % NODES).exchange("/chargingSessions/" + ids.get(i), HttpMethod.PUT, null, String.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+        }
+        assertEquals(HttpStatus.NOT_FOUND, clients.get(0).exchange("/chargingSessions/" + UUID.randomUUID(), HttpMethod.PUT, null, String.class).getStatusCode());
+
+        for (TestRestTemplate client : clients) {
+            List<Map<String, Object>> sessions = getSessions(client, "/chargingSessions?stationId=" + stationId, null).getBody();
+            assertEquals(new HashSet<>(ids), ids(sessions));
+            assertEquals(20L, sessions.stream().filter(session -> "STOPPED".equals(session.get("status"))).count());
+
+            RestSummary summary = client.getForObject("/stations/" + stationId + "/summary", RestSummary.class);
+            assertEquals(new RestSummary(30, 10, 20), summary);
+
+            LocalDateTime today = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
+            RestAggregates aggregates = client.getForObject("/chargingSessions/summary?granularity=day&stationId=" + stationId
+                    + "&from=" + today.minusDays(1L) + "&to=" + today.plusDays(2L), RestAggregates.class);
+            assertEquals(30, aggregates.getBuckets().stream().mapToInt(AggregateBucket::getStartedCount).sum());
+            assertEquals(20, aggregates.getBuckets().stream().mapToInt(AggregateBucket::getStoppedCount).sum());
+        }
+        Set<String> all = ids(getSessions(clients.get(1), "/chargingSessions", null).getBody());
+        assertTrue(all.containsAll(ids));
+        RestSummary lastMinute = clients.get(2).getForObject("/chargingSessions/summary", RestSummary.class);
+        assertTrue(lastMinute.getTotalCount() >= 30);
+        assertEquals(all.size(), clients.get(0).getForObject("/chargingSessions/summary?window=1h", RestSummary.class).getTotalCount().intValue());
+    }
+
+    @Test
+    void givenSessionsOfAllNodes_WhenReadPagesAndStreamFromOneNode_ThenVisitEverySessionOnce() {
+        for (int i = 0; i < 25; i++) {
+            RestSubmitSessionRequest request = new RestSubmitSessionRequest("ABC-" + i, LocalDateTime.now().toString());
+            clients.get(i % NODES).postForEntity("/chargingSessions", request, RestSubmitSessionResponse.class);
+        }
+        Set<String> all = ids(getSessions(clients.get(0), "/chargingSessions", null).getBody());
+
+        List<String> paged = new ArrayList<>();
+        String url = "/chargingSessions?limit=7";
+        while (url != null) {
+            ResponseEntity<List<Map<String, Object>>> page = getSessions(clients.get(1), url, null);
+            for (Map<String, Object> session : page.getBody()) {
+                paged.add((String) session.get("id"));
+            }
+            String link = page.getHeaders().getFirst(HttpHeaders.LINK);
+            url = link == null ? null : link.substring(link.indexOf("/chargingSessions"), link.indexOf('>'));
+        }
+        assertEquals(all.size(), paged.size());
+        assertEquals(all, new HashSet<>(paged));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, SessionsRestController.APPLICATION_NDJSON_VALUE);
+        String streamed = clients.get(2).exchange("/chargingSessions?after=" + paged.get(9), HttpMethod.GET, new HttpEntity<>(headers), String.class).getBody();
+        String[] lines = streamed.trim().split("\n");
+        assertEquals(paged.size() - 10, lines.length);
+        assertTrue(lines[0].contains(paged.get(10)));
+    }
+
+    @Test
+    void givenBatchWithSessionsOfAllNodes_WhenStopBatchOnOneNode_ThenStopEverySessionAtItsOwner() {
+        List<RestSubmitSessionRequest> submits = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            submits.add(new RestSubmitSessionRequest("ABC-12345", LocalDateTime.now().toString()));
+        }
+        List<String> ids = new ArrayList<>();
+        for (TestRestTemplate client : clients) {
+            for (RestBatchItemResult result : client.postForObject("/chargingSessions/batch", submits.subList(0, 4), RestBatchItemResult[].class)) {
+                ids.add((String) ((Map<?, ?>) result.getBody()).get("id"));
+            }
+        }
+        List<RestStopSessionRequest> stops = new ArrayList<>();
+        for (String id : ids) {
+            stops.add(new RestStopSessionRequest(id, null));
+        }
+        stops.add(5, new RestStopSessionRequest(UUID.randomUUID().toString(), null));
+        stops.add(new RestStopSessionRequest("not-a-uuid", null));
+
+        RestBatchItemResult[] results = clients.get(0).exchange("/chargingSessions/batch/stop", HttpMethod.PUT, new HttpEntity<>(stops), RestBatchItemResult[].class).getBody();
+
+        assertEquals(stops.size(), results.length);
+        for (int i = 0; i < results.length; i++) {
+            boolean known = i != 5 && i != results.length - 1;
+            assertEquals(known ? 200 : 404, results[i].getStatus(), "entry " + i);
+            if (known) {
+                assertNull(results[i].getBody());
+            }
+        }
+    }
+
+    @Test
+    void givenForwardedRequest_WhenGetAllSessions_ThenAnswerWithSessionsOfThatNodeOnly() {
+        for (int i = 0; i < 10; i++) {
+            clients.get(0).postForEntity("/chargingSessions", new RestSubmitSessionRequest("ABC-12345", LocalDateTime.now().toString()), RestSubmitSessionResponse.class);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(SessionsCluster.FORWARDED_HEADER, "true");
+        int local = 0;
+        for (TestRestTemplate client : clients) {
+            local += getSessions(client, "/chargingSessions", headers).getBody().size();
+        }
+
+        assertEquals(getSessions(clients.get(0), "/chargingSessions", null).getBody().size(), local);
+    }
+
+    private static ResponseEntity<List<Map<String, Object>>> getSessions(TestRestTemplate client, String url, HttpHeaders headers) {
+        return client.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), SESSIONS);
+    }
+
+    private static Set<String> ids(List<Map<String, Object>> sessions) {
+        Set<String> ids = new HashSet<>();
+        for (Map<String, Object> session : sessions) {
+            ids.add((String) session.get("id"));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,401 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.AggregateBucket;
+import com.example.sessionsstore.model.AggregateGranularity;
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.ReactiveSessionsStore;
+import com.example.sessionsstore.model.SessionEventLog;
+import com.example.sessionsstore.model.SessionStart;
+import com.example.sessionsstore.model.SessionStop;
+import com.example.sessionsstore.model.SessionsStore;
+import com.example.sessionsstore.model.SessionsSummary;
+import com.example.sessionsstore.model.SingleWriterSessionsStorage;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * The reactive serving mode against the contract of {@link SessionsRestControllerTest}.
+ */
+@WebFluxTest(properties = "sessions.response-cache.ttl=0")
+@Import({SessionsRouter.class, SessionsHandler.class, ReactiveSessionsStore.class, SerializedResponseCache.class, SessionsJson.class, SessionEventLog.class})
+public class SessionsHandlerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private SessionEventLog eventLog;
+
+    @MockBean
+    private SessionsStore sessionsStore;
+
+    @Test
+    public void givenStationIdAndTimestamp_WhenSubmitSession_ThenReturnChargingSessionWithCode201() {
+        RestSubmitSessionRequest validRequest = new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529");
+        LocalDateTime parsedTimestamp = LocalDateTime.parse(validRequest.getTimestamp(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        ChargingSession chargingSession = new ChargingSession(UUID.randomUUID(), validRequest.getStationId(), parsedTimestamp, null, IN_PROGRESS);
+        Mockito.when(sessionsStore.addSession(validRequest.getStationId(), parsedTimestamp)).thenReturn(chargingSession);
+
+        client.post().uri("/chargingSessions").contentType(MediaType.APPLICATION_JSON).syncBody(validRequest)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(chargingSession.getId().toString())
+                .jsonPath("$.stationId").isEqualTo(chargingSession.getStationId())
+                .jsonPath("$.timestamp").isEqualTo(chargingSession.getStartedAt().toString());
+    }
+
+    @Test
+    public void givenSingleWriterEngine_WhenSubmitSession_ThenApplyItOffTheEventLoop() {
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage()) {
+            SessionsStore singleWriter = new SessionsStore(storage);
+            AtomicReference<String> writingThread = new AtomicReference<>();
+            Mockito.when(sessionsStore.writesMayBlock()).thenAnswer(invocation -> singleWriter.writesMayBlock());
+            Mockito.when(sessionsStore.addSession(anyString(), any(LocalDateTime.class))).thenAnswer(invocation -> {
+                writingThread.set(Thread.currentThread().getName());
+                return singleWriter.addSession(invocation.getArgument(0), invocation.getArgument(1));
+            });
+
+            client.post().uri("/chargingSessions").contentType(MediaType.APPLICATION_JSON).syncBody(new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529"))
+                    .exchange()
+                    .expectStatus().isCreated();
+
+            assertTrue(writingThread.get().startsWith("sessions-writes"), writingThread.get());
+            assertEquals(1, singleWriter.getAllSessions().size());
+        }
+    }
+
+    @Test
+    public void givenStationIdIsEmpty_WhenSubmitSession_ThenReturnErrorCode400() {
+        client.post().uri("/chargingSessions").contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new RestSubmitSessionRequest("", "2019-05-06T19:00:20.529"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("Timestamp and stationId cannot be empty");
+    }
+
+    @Test
+    public void givenTimeStampInWrongFormat_WhenSubmitSession_ThenReturnErrorCode400() {
+        client.post().uri("/chargingSessions").contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new RestSubmitSessionRequest("ABC-12345", "yesterday"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void givenValidSessionId_WhenStopSession_ThenReturnCode200() {
+        client.put().uri("/chargingSessions/" + UUID.randomUUID())
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void givenNotExistingSessionId_WhenStopSession_ThenReturnErrorCode404() {
+        Mockito.doThrow(IllegalArgumentException.class).when(sessionsStore).stopSession(anyString(), any(LocalDateTime.class));
+
+        client.put().uri("/chargingSessions/" + UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void givenSaturatedStore_WhenStopSession_ThenReturnErrorCode503() {
+        Mockito.doThrow(new RejectedExecutionException("Sessions writer is saturated")).when(sessionsStore).stopSession(anyString(), any(LocalDateTime.class));
+
+        client.put().uri("/chargingSessions/" + UUID.randomUUID())
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("Sessions writer is saturated");
+    }
+
+    @Test
+    public void givenETagOfCurrentSessions_WhenGetAllSessions_ThenReturnCode304() {
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getAllSessions()).thenReturn(new ArrayList<>(Collections.singletonList(session)));
+
+        String etag = client.get().uri("/chargingSessions")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        client.get().uri("/chargingSessions").header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag);
+    }
+
+    @Test
+    public void givenTwoSession_WhenGetAllSessions_ThenReturnListWithCode200() {
+        ChargingSession inProgressSession = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession stoppedSession = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now().minusMinutes(1), LocalDateTime.now(), STOPPED);
+        Mockito.when(sessionsStore.getAllSessions()).thenReturn(new ArrayList<>(Arrays.asList(inProgressSession, stoppedSession)));
+
+        client.get().uri("/chargingSessions")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].status").isEqualTo(STOPPED.name());
+    }
+
+    @Test
+    public void givenTwoSessionsAndLimitOfOne_WhenGetSessionsPage_ThenReturnFirstSessionWithLinkToNextPage() {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getSessionsAfter(null)).thenReturn(Arrays.asList(session1, session2).iterator());
+
+        client.get().uri("/chargingSessions?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, containsString("after=" + session1.getId() + ">; rel=\"next\""))
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(session1.getId().toString());
+    }
+
+    @Test
+    public void givenLimitOutOfRange_WhenGetSessionsPage_ThenReturnErrorCode400() {
+        client.get().uri("/chargingSessions?limit=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/chargingSessions?limit=" + (SessionsRestController.MAX_PAGE_SIZE + 1)).exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void givenCursorInWrongFormat_WhenGetSessionsPage_ThenReturnErrorCode400() {
+        Mockito.when(sessionsStore.getSessionsAfter("not-a-uuid")).thenThrow(IllegalArgumentException.class);
+
+        client.get().uri("/chargingSessions?limit=10&after=not-a-uuid").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void givenTwoSessions_WhenStreamSessionsAsNdjson_ThenWriteOneSessionPerLine() {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), LocalDateTime.now(), STOPPED);
+        Mockito.when(sessionsStore.getSessionsAfter(null)).thenReturn(Arrays.asList(session1, session2).iterator());
+
+        String body = client.get().uri("/chargingSessions").accept(MediaType.parseMediaType(SessionsRestController.APPLICATION_NDJSON_VALUE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(SessionsRestController.APPLICATION_NDJSON_VALUE)
+                .expectBody(String.class).returnResult().getResponseBody();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"" + session1.getId() + "\""));
+        assertTrue(lines[1].startsWith("{\"id\":\"" + session2.getId() + "\""));
+    }
+
+    @Test
+    public void givenStartAndStopLogged_WhenStreamEventsAfterLastEventId_ThenReturnEventsFollowingIt() {
+        long lastEventId = eventLog.getLastSequence();
+        ChargingSession started = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession stopped = new ChargingSession(started.getId(), "ABC-12345", started.getStartedAt(), LocalDateTime.now(), STOPPED);
+        eventLog.sessionStarted(started);
+        eventLog.sessionStopped(stopped, null);
+
+        List<ServerSentEvent<String>> events = client.get().uri("/chargingSessions/events")
+                .header(SessionEventsController.LAST_EVENT_ID, Long.toString(lastEventId))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .getResponseBody().take(2).collectList().block(Duration.ofSeconds(10L));
+
+        assertEquals(2, events.size());
+        assertEquals(Long.toString(lastEventId + 1), events.get(0).id());
+        assertEquals("started", events.get(0).event());
+        assertTrue(events.get(0).data().contains(started.getId().toString()));
+        assertEquals(Long.toString(lastEventId + 2), events.get(1).id());
+        assertEquals("stopped", events.get(1).event());
+        assertTrue(events.get(1).data().contains("\"STOPPED\""));
+    }
+
+    @Test
+    public void givenLastEventIdInWrongFormat_WhenStreamEvents_ThenReturnErrorCode400() {
+        client.get().uri("/chargingSessions/events?lastEventId=yesterday")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("Cannot parse Last-Event-ID");
+    }
+
+    @Test
+    public void givenWindowOfFiveMinutes_WhenGetSessionsSummary_ThenReturnSummaryForFiveMinutesWithCode200() {
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofMinutes(5L))).thenReturn(new SessionsSummary(4, 2, 2));
+
+        client.get().uri("/chargingSessions/summary?window=5m")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalCount").isEqualTo(4)
+                .jsonPath("$.startedCount").isEqualTo(2)
+                .jsonPath("$.stoppedCount").isEqualTo(2);
+    }
+
+    @Test
+    public void givenWindowLongerThanMaxWindow_WhenGetSessionsSummary_ThenReturnErrorCode400() {
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofDays(1L))).thenThrow(new IllegalArgumentException("Summary window must be between 1s and 3600s"));
+
+        client.get().uri("/chargingSessions/summary?window=1d")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("Summary window must be between 1s and 3600s");
+    }
+
+    @Test
+    public void givenFromAndTo_WhenGetSessionsSummary_ThenReturnHourlyAggregates() {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T19:00");
+        Mockito.when(sessionsStore.getAggregates(from, from.plusHours(1L), AggregateGranularity.HOUR, null))
+                .thenReturn(Collections.singletonList(new AggregateBucket(from, 4, 1, new int[]{0, 1, 0, 0, 0, 0, 0, 0, 0, 0})));
+
+        client.get().uri("/chargingSessions/summary?from=2019-05-06T19:00&to=2019-05-06T20:00")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.granularity").isEqualTo("hour")
+                .jsonPath("$.buckets[0].start").isEqualTo("2019-05-06T19:00:00")
+                .jsonPath("$.buckets[0].startedCount").isEqualTo(4)
+                .jsonPath("$.buckets[0].stoppedDurations[1]").isEqualTo(1);
+    }
+
+    @Test
+    public void givenFromAndToWithWindow_WhenGetSessionsSummary_ThenReturnErrorCode400() {
+        client.get().uri("/chargingSessions/summary?from=2019-05-06T19:00&to=2019-05-06T20:00&window=5m")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("Window cannot be combined with from and to");
+    }
+
+    @Test
+    public void givenTwoSessionsAtStation_WhenGetSessionsByStationId_ThenReturnSessionsOfStation() {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), LocalDateTime.now(), STOPPED);
+        Mockito.when(sessionsStore.getStationSessions("ABC-12345")).thenReturn(new ArrayList<>(Arrays.asList(session1, session2)));
+
+        client.get().uri("/chargingSessions?stationId=ABC-12345")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+    }
+
+    @Test
+    public void givenStationIdAndLimit_WhenGetSessions_ThenReturnErrorCode400() {
+        client.get().uri("/chargingSessions?stationId=ABC-12345&limit=10").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void givenFromAndTo_WhenGetSessions_ThenReturnSessionsUpdatedInRange() {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T19:00:00");
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", from.plusMinutes(5L), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getSessionsUpdatedBetween(from, from.plusHours(1L))).thenReturn(new ArrayList<>(Collections.singletonList(session)));
+
+        client.get().uri("/chargingSessions?from=2019-05-06T19:00:00&to=2019-05-06T20:00:00")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(session.getId().toString());
+    }
+
+    @Test
+    public void givenFromNotBeforeTo_WhenGetSessions_ThenReturnErrorCode400() {
+        client.get().uri("/chargingSessions?from=2019-05-06T20:00:00&to=2019-05-06T19:00:00")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errorMessage").isEqualTo("From must be before to");
+    }
+
+    @Test
+    public void givenWindowOfOneHour_WhenGetStationSummary_ThenReturnSummaryForOneHour() {
+        Mockito.when(sessionsStore.getStationSummary("ABC-12345", Duration.ofHours(1L))).thenReturn(new SessionsSummary(3, 1, 2));
+
+        client.get().uri("/stations/ABC-12345/summary?window=1h")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.totalCount").isEqualTo(3);
+    }
+
+    @Test
+    public void givenValidAndInvalidEntries_WhenSubmitSessionsBatch_ThenAddValidEntriesAndReturnResultPerEntry() {
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", startedAt, null, IN_PROGRESS);
+        Mockito.when(sessionsStore.addSessions(Collections.singletonList(new SessionStart("ABC-12345", startedAt))))
+                .thenReturn(Collections.singletonList(session));
+        List<RestSubmitSessionRequest> requests = Arrays.asList(
+                new RestSubmitSessionRequest("", "2019-05-06T19:00:20.529"),
+                new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529"),
+                new RestSubmitSessionRequest("ABC-12345", "yesterday"));
+
+        client.post().uri("/chargingSessions/batch").contentType(MediaType.APPLICATION_JSON).syncBody(requests)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].status").isEqualTo(400)
+                .jsonPath("$[1].status").isEqualTo(201)
+                .jsonPath("$[1].body.id").isEqualTo(session.getId().toString())
+                .jsonPath("$[2].body.errorMessage").isEqualTo("Cannot parse timestamp");
+    }
+
+    @Test
+    public void givenNullEntryAndStopBeforeStart_WhenStopSessionsBatch_ThenRejectThemAndStopTheOthers() {
+        UUID known = UUID.randomUUID();
+        UUID startedLater = UUID.randomUUID();
+        LocalDateTime stoppedAt = LocalDateTime.parse("2019-05-06T19:10:00");
+        Mockito.when(sessionsStore.getSessions(Arrays.asList(known, startedLater)))
+                .thenReturn(Arrays.asList(new ChargingSession(known, "ABC-12345", stoppedAt.minusMinutes(10L), null, IN_PROGRESS),
+                        new ChargingSession(startedLater, "ABC-12345", stoppedAt.plusMinutes(1L), null, IN_PROGRESS)));
+        Mockito.when(sessionsStore.stopSessions(Collections.singletonList(new SessionStop(known, stoppedAt))))
+                .thenReturn(Collections.singletonList(new ChargingSession(known, "ABC-12345", stoppedAt.minusMinutes(10L), stoppedAt, STOPPED)));
+        List<RestStopSessionRequest> requests = Arrays.asList(
+                new RestStopSessionRequest(known.toString(), "2019-05-06T19:10:00"),
+                null,
+                new RestStopSessionRequest(startedLater.toString(), "2019-05-06T19:10:00"));
+
+        client.put().uri("/chargingSessions/batch/stop").contentType(MediaType.APPLICATION_JSON).syncBody(requests)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].status").isEqualTo(200)
+                .jsonPath("$[1].status").isEqualTo(400)
+                .jsonPath("$[1].body.errorMessage").isEqualTo("Entry cannot be null")
+                .jsonPath("$[2].status").isEqualTo(400)
+                .jsonPath("$[2].body.errorMessage").isEqualTo("Timestamp cannot be before the start of the session");
+    }
+
+    @Test
+    public void givenTooManyEntries_WhenSubmitSessionsBatch_ThenReturnErrorCode400() {
+        List<RestSubmitSessionRequest> requests = Collections.nCopies(SessionsRestController.MAX_BATCH_SIZE + 1,
+                new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529"));
+
+        client.post().uri("/chargingSessions/batch").contentType(MediaType.APPLICATION_JSON).syncBody(requests)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+}
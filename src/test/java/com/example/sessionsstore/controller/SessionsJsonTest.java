@@ -0,0 +1,177 @@
+package com.example.sessionsstore.controller;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SessionsJsonTest {
+
+    // configured like the application's
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final SessionsJson sessionsJson = new SessionsJson(objectMapper);
+
+    @Test
+    public void givenRandomSessions_WhenWrite_ThenSameAsObjectMapper() throws IOException {
+        Random random = new Random(42L);
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            LocalDateTime startedAt = LocalDateTime.of(1 + random.nextInt(9999), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60), random.nextInt(4) == 0 ? 0 : random.nextInt(60),
+                    random.nextInt(3) == 0 ? 0 : random.nextInt(1_000_000_000) / (int) Math.pow(10, random.nextInt(9)));
+            ChargingSession.Status status = ChargingSession.Status.values()[random.nextInt(2)];
+            sessions.add(new ChargingSession(new UUID(random.nextLong(), random.nextLong()), "ABC-" + random.nextInt(),
+                    startedAt, status == ChargingSession.Status.STOPPED ? startedAt.plusHours(1L) : null, status));
+        }
+
+        for (ChargingSession session : sessions) {
+            assertJson(objectMapper.writeValueAsString(session), sessionsJson.toBytes(session));
+        }
+        assertJson(objectMapper.writeValueAsString(sessions), sessionsJson.toBytes(sessions));
+        assertJson("[]", sessionsJson.toBytes(Collections.emptyList()));
+    }
+
+    @Test
+    public void givenLargeList_WhenWriteToStream_ThenSameAsObjectMapper() throws IOException {
+        List<ChargingSession> sessions = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.of(2019, 5, 6, 19, 0, 20, 529_000_000);
+        for (int i = 0; i < 10_000; i++) {
+            sessions.add(new ChargingSession(UUID.randomUUID(), "ABC-" + i, now.minusNanos(i), null, ChargingSession.Status.IN_PROGRESS));
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        sessionsJson.write(sessions, outputStream);
+
+        assertJson(objectMapper.writeValueAsString(sessions), outputStream.toByteArray());
+    }
+
+    @Test
+    public void givenStationIdsToEscape_WhenWrite_ThenSameAsObjectMapper() throws IOException {
+        for (String stationId : Arrays.asList("", "\"quoted\"", "back\\slash", "tab\tnew\nline\r\b\f", "\u0000\u0001\u001f\u007f",
+                "Lades\u00e4ule \u20ac", "emoji \uD83D\uDD0C", "</script>")) {
+            ChargingSession session = new ChargingSession(UUID.randomUUID(), stationId, LocalDateTime.now(), null, ChargingSession.Status.IN_PROGRESS);
+
+            assertJson(objectMapper.writeValueAsString(session), sessionsJson.toBytes(session));
+        }
+    }
+
+    @Test
+    public void givenNullFields_WhenWrite_ThenSameAsObjectMapper() throws IOException {
+        ChargingSession session = new ChargingSession();
+        RestSummary summary = new RestSummary(5, null, 2);
+        RestSubmitSessionResponse response = new RestSubmitSessionResponse();
+
+        assertJson(objectMapper.writeValueAsString(session), sessionsJson.toBytes(session));
+        assertJson(objectMapper.writeValueAsString(summary), sessionsJson.toBytes(summary));
+        assertJson(objectMapper.writeValueAsString(response), sessionsJson.toBytes(response));
+    }
+
+    @Test
+    public void givenSummaryAndSubmitResponse_WhenWrite_ThenSameAsObjectMapper() throws IOException {
+        RestSummary summary = new RestSummary(Integer.MAX_VALUE, Integer.MIN_VALUE, 0);
+        RestSubmitSessionResponse response = new RestSubmitSessionResponse(UUID.randomUUID().toString(), "ABC-12345",
+                LocalDateTime.of(2019, 5, 6, 19, 0));
+
+        assertJson(objectMapper.writeValueAsString(summary), sessionsJson.toBytes(summary));
+        assertJson(objectMapper.writeValueAsString(response), sessionsJson.toBytes(response));
+    }
+
+    @Test
+    public void givenOtherValues_WhenWrite_ThenWrittenByObjectMapper() throws IOException {
+        RestError error = new RestError("Cannot parse after");
+        List<Object> mixed = Arrays.asList(new ChargingSession(), 1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        sessionsJson.write(error, outputStream);
+
+        assertJson(objectMapper.writeValueAsString(error), outputStream.toByteArray());
+        assertJson(objectMapper.writeValueAsString(mixed), sessionsJson.toBytes(mixed));
+    }
+
+    @Test
+    public void givenSessions_WhenWriteLines_ThenOneObjectPerLine() throws IOException {
+        List<ChargingSession> sessions = Arrays.asList(
+                new ChargingSession(UUID.randomUUID(), "ABC-1", LocalDateTime.now(), null, ChargingSession.Status.IN_PROGRESS),
+                new ChargingSession(UUID.randomUUID(), "ABC-2", LocalDateTime.now(), LocalDateTime.now(), ChargingSession.Status.STOPPED));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        sessionsJson.writeLines(sessions.iterator(), outputStream);
+
+        assertEquals(objectMapper.writeValueAsString(sessions.get(0)) + "\n" + objectMapper.writeValueAsString(sessions.get(1)) + "\n",
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void givenSubmitRequests_WhenRead_ThenSameAsObjectMapper() throws IOException {
+        for (String body : Arrays.asList(
+                "{\"stationId\":\"ABC-12345\",\"timestamp\":\"2019-05-06T19:00:20.529\"}",
+                " {\n \"timestamp\" : \"2019-05-06T19:00:20\" ,\t\"stationId\" : \"ABC-12345\" }\n",
+                "{}",
+                "{\"stationId\":null,\"timestamp\":\"\"}",
+                "{\"stationId\":\"first\",\"stationId\":\"last\"}",
+                "{\"stationId\":\"ABC-12345\",\"unknown\":\"value\"}",
+                "{\"stationId\":\"ABC-\\\"12345\\\"\",\"timestamp\":\"2019-05-06T19:00\"}",
+                "{\"stationId\":\"Lades\u00e4ule\",\"unknown\":{\"nested\":[1,2]}}",
+                "{\"stationId\":12345}",
+                "{\"stationId\":\"ABC-12345\"} trailing",
+                "null")) {
+            RestSubmitSessionRequest expected = objectMapper.readValue(body, RestSubmitSessionRequest.class);
+
+            assertEquals(expected, read(body), body);
+        }
+    }
+
+    @Test
+    public void givenInvalidSubmitRequests_WhenRead_ThenThrowIOException() {
+        for (String body : Arrays.asList("", "{", "{\"stationId\":\"ABC-12345\"", "{\"stationId\" \"ABC-12345\"}", "[]")) {
+            assertThrows(IOException.class, () -> read(body), body);
+        }
+    }
+
+    @Test
+    public void givenTimestamps_WhenParse_ThenSameAsFormatter() {
+        for (String text : Arrays.asList("2019-05-06T19:00", "2019-05-06T19:00:20", "2019-05-06t19:00:20.5", "2019-05-06T19:00:20.000000001",
+                "2019-05-06T19:00:20.123456789", "0000-01-01T00:00", "9999-12-31T23:59:59.999999999", "+10000-01-01T00:00:00",
+                "2020-02-29T12:00")) {
+            assertEquals(LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME), IsoDateTime.parse(text), text);
+        }
+    }
+
+    @Test
+    public void givenInvalidTimestamps_WhenParse_ThenThrowDateTimeParseException() {
+        for (String text : Arrays.asList("", "2019-05-06", "2019-05-06 19:00", "2019-05-06T19:00:2", "2019-05-06T19:00:20,5",
+                "2019-05-06T19:00:20.1234567890", "2019-13-06T19:00", "2019-02-30T19:00", "2019-05-06T24:00", "2019-05-06T19:00Z",
+                "2019-05-06T1a:00", "2019-05-06T19:60")) {
+            assertThrows(DateTimeParseException.class, () -> IsoDateTime.parse(text), text);
+        }
+    }
+
+    private RestSubmitSessionRequest read(String body) throws IOException {
+        return sessionsJson.readSubmitRequest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertJson(String expected, byte[] actual) {
+        assertEquals(expected, new String(actual, StandardCharsets.UTF_8));
+    }
+
+}
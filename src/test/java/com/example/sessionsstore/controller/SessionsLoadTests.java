@@ -0,0 +1,127 @@
+package com.example.sessionsstore.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Keeps {@code loadtest.connections} connections busy with submits and stops and logs the throughput and the
+ * latency percentiles of the serving mode. {@link ReactiveSessionsLoadTests} runs the same load against the
+ * reactive mode. Both are tagged slow and only run with {@code ./gradlew slowTest}. The defaults fit a laptop; for
+ * 10k connections run with {@code -Dloadtest.connections=10000} and an open files limit of more than twice that, as
+ * client and server share the JVM.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Tag("slow")
+public class SessionsLoadTests {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionsLoadTests.class);
+    private static final int CONNECTIONS = Integer.getInteger("loadtest.connections", 500);
+    private static final int REQUESTS_PER_CONNECTION = Integer.getInteger("loadtest.requests", 10);
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.main.web-application-type:servlet}")
+    private String mode;
+
+    @Test
+    void testGivenConcurrentConnections_WhenSubmitAndStopSessions_ThenReportThroughputAndLatency() {
+        ConnectionProvider connections = ConnectionProvider.fixed("load", CONNECTIONS, Duration.ofMinutes(1L).toMillis());
+        WebClient client = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .baseUrl("http://localhost:" + port)
+                .build();
+        try {
+            // warm up
+            run(client, Math.min(CONNECTIONS, 100), 10, new long[1_000]);
+
+            long[] latencies = new long[CONNECTIONS * REQUESTS_PER_CONNECTION];
+            long start = System.nanoTime();
+            int failures = run(client, CONNECTIONS, REQUESTS_PER_CONNECTION, latencies);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            log.info(String.format(Locale.ROOT, "mode=%s connections=%d ops/s=%.0f p50=%.1fms p99=%.1fms max=%.1fms failures=%d",
+                    mode, CONNECTIONS, latencies.length / seconds, millis(latencies, 0.5), millis(latencies, 0.99),
+                    millis(latencies, 1.0), failures));
+            assertEquals(0, failures);
+        } finally {
+            connections.dispose();
+        }
+    }
+
+    /**
+     * Every connection submits a session and stops it, {@code requests / 2} times in a row.
+     *
+     * @return the number of failed requests
+     */
+    private int run(WebClient client, int connections, int requests, long[] latencies) {
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        Flux.range(0, connections)
+                .flatMap(connection -> Flux.range(0, requests / 2).concatMap(i -> timed(submit(client, connection), latencies, recorded)
+                        .flatMap(id -> timed(stop(client, id), latencies, recorded))
+                        .onErrorResume(e -> {
+                            failures.incrementAndGet();
+                            return Mono.empty();
+                        })), connections)
+                .blockLast(Duration.ofMinutes(10L));
+        return failures.get();
+    }
+
+    private static Mono<String> submit(WebClient client, int connection) {
+        return client.post().uri("/chargingSessions")
+                .syncBody(new RestSubmitSessionRequest("ABC-" + connection, LocalDateTime.now().toString()))
+                .retrieve()
+                .bodyToMono(RestSubmitSessionResponse.class)
+                .map(RestSubmitSessionResponse::getId);
+    }
+
+    private static Mono<String> stop(WebClient client, String id) {
+        return client.put().uri("/chargingSessions/{id}", id)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .thenReturn(id);
+    }
+
+    private static <T> Mono<T> timed(Mono<T> request, long[] latencies, AtomicInteger recorded) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.doOnSuccess(result -> {
+                int i = recorded.getAndIncrement();
+                if (i < latencies.length) {
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        });
+    }
+
+    private static double millis(long[] sortedLatencies, double percentile) {
+        int i = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(i, 0)] / (double) TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+}
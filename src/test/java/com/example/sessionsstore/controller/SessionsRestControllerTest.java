@@ -1,35 +1,56 @@
 package com.example.sessionsstore.controller;
 
+import com.example.sessionsstore.model.AggregateBucket;
+import com.example.sessionsstore.model.AggregateGranularity;
 import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionStart;
+import com.example.sessionsstore.model.SessionStop;
 import com.example.sessionsstore.model.SessionsStore;
+import com.example.sessionsstore.model.SessionsSummary;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
 import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(SessionsRestController.class)
+// every request computes its body, a cached body would outlive the mocks of its test
+@WebMvcTest(value = SessionsRestController.class, properties = "sessions.response-cache.ttl=0")
+@Import({SerializedResponseCache.class, SessionsJson.class})
 public class SessionsRestControllerTest {
 
     @Autowired
@@ -99,6 +120,14 @@ public class SessionsRestControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void givenSaturatedStore_WhenStopSession_ThenReturnErrorCode503() throws Exception {
+        Mockito.doThrow(new RejectedExecutionException("Sessions writer is saturated")).when(sessionsStore).stopSession(anyString(), any(LocalDateTime.class));
+        mvc.perform(put("/chargingSessions/" + UUID.randomUUID().toString()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.errorMessage", is("Sessions writer is saturated")));
+    }
+
     @Test
     public void givenTwoSession_WhenGetAllSessions_ThenReturnListWithCode200() throws Exception {
         ChargingSession inProgressSession1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
@@ -112,14 +141,88 @@ public class SessionsRestControllerTest {
                 .andExpect(jsonPath("$", hasSize(2)));
     }
 
+    @Test
+    public void givenETagOfCurrentSessions_WhenGetAllSessions_ThenReturnCode304() throws Exception {
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getAllSessions()).thenReturn(new ArrayList<>(Collections.singletonList(session)));
+
+        String etag = mvc.perform(get("/chargingSessions"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/chargingSessions").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        Mockito.when(sessionsStore.getAllSessions()).thenReturn(new ArrayList<>());
+        mvc.perform(get("/chargingSessions").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void givenTwoSessionsAndLimitOfOne_WhenGetSessionsPage_ThenReturnFirstSessionWithLinkToNextPage() throws Exception {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getSessionsAfter(null)).thenReturn(Arrays.asList(session1, session2).iterator());
+
+        mvc.perform(get("/chargingSessions?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(session1.getId().toString())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + session1.getId() + ">; rel=\"next\"")));
+    }
+
+    @Test
+    public void givenLastPage_WhenGetSessionsPage_ThenReturnSessionsWithoutLinkToNextPage() throws Exception {
+        UUID after = UUID.randomUUID();
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getSessionsAfter(after.toString())).thenReturn(Collections.singletonList(session).iterator());
+
+        mvc.perform(get("/chargingSessions?limit=10&after=" + after))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void givenLimitOutOfRange_WhenGetSessionsPage_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/chargingSessions?limit=0"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/chargingSessions?limit=" + (SessionsRestController.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenCursorInWrongFormat_WhenGetSessionsPage_ThenReturnErrorCode400() throws Exception {
+        Mockito.when(sessionsStore.getSessionsAfter("not-a-uuid")).thenThrow(IllegalArgumentException.class);
+
+        mvc.perform(get("/chargingSessions?limit=10&after=not-a-uuid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenTwoSessions_WhenStreamSessionsAsNdjson_ThenWriteOneSessionPerLine() throws Exception {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), LocalDateTime.now(), STOPPED);
+        Mockito.when(sessionsStore.getSessionsAfter(null)).thenReturn(Arrays.asList(session1, session2).iterator());
+
+        MvcResult result = mvc.perform(get("/chargingSessions").accept(SessionsRestController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SessionsRestController.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"" + session1.getId() + "\""));
+        assertTrue(lines[1].startsWith("{\"id\":\"" + session2.getId() + "\""));
+    }
+
     @Test
     public void givenTwoInProgressAndTwoStoppedSessionsUpdatedLastMinute_WhenGetSessionsSummary_ThenReturnSummaryWithCode200() throws Exception {
-        ChargingSession inProgressSession1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
-        ChargingSession inProgressSession2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
-        ChargingSession stoppedSession1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now().minusMinutes(1), LocalDateTime.now(), STOPPED);
-        ChargingSession stoppedSession2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now().minusMinutes(1), LocalDateTime.now(), STOPPED);
-        ArrayList<ChargingSession> sessions = new ArrayList<ChargingSession>(Arrays.asList(inProgressSession1, inProgressSession2, stoppedSession1, stoppedSession2));
-        Mockito.when(sessionsStore.getSessionsUpdatedLastMinute()).thenReturn(sessions);
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofMinutes(1L))).thenReturn(new SessionsSummary(4, 2, 2));
 
         mvc.perform(get("/chargingSessions/summary")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -129,9 +232,20 @@ public class SessionsRestControllerTest {
                 .andExpect(jsonPath("$.stoppedCount", is(2)));
     }
 
+    @Test
+    public void givenETagOfCurrentSummary_WhenGetSessionsSummary_ThenReturnCode304() throws Exception {
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofMinutes(1L))).thenReturn(new SessionsSummary(4, 2, 2));
+        String etag = mvc.perform(get("/chargingSessions/summary"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/chargingSessions/summary").header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     public void givenNoSessionsUpdatedLastMinute_WhenGetSessionsSummary_ThenReturnSummaryWithCode200() throws Exception {
-        Mockito.when(sessionsStore.getSessionsUpdatedLastMinute()).thenReturn(new ArrayList<>());
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofMinutes(1L))).thenReturn(new SessionsSummary(0, 0, 0));
 
         mvc.perform(get("/chargingSessions/summary")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -141,4 +255,212 @@ public class SessionsRestControllerTest {
                 .andExpect(jsonPath("$.stoppedCount", is(0)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenWindowOfFiveMinutes_WhenGetSessionsSummary_ThenReturnSummaryForFiveMinutesWithCode200() throws Exception {
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofMinutes(5L))).thenReturn(new SessionsSummary(3, 1, 2));
+
+        mvc.perform(get("/chargingSessions/summary?window=5m")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount", is(3)))
+                .andExpect(jsonPath("$.startedCount", is(1)))
+                .andExpect(jsonPath("$.stoppedCount", is(2)));
+    }
+
+    @Test
+    public void givenWindowInWrongFormat_WhenGetSessionsSummary_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/chargingSessions/summary?window=five")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenWindowLongerThanMaxWindow_WhenGetSessionsSummary_ThenReturnErrorCode400() throws Exception {
+        Mockito.when(sessionsStore.getSessionsSummary(Duration.ofDays(1L))).thenThrow(IllegalArgumentException.class);
+
+        mvc.perform(get("/chargingSessions/summary?window=1d")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenFromToAndGranularity_WhenGetSessionsSummary_ThenReturnAggregatesOfStationWithCode200() throws Exception {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T00:00");
+        Mockito.when(sessionsStore.getAggregates(from, from.plusDays(2L), AggregateGranularity.DAY, "ABC-12345")).thenReturn(Arrays.asList(
+                new AggregateBucket(from, 3, 2, new int[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 1}),
+                new AggregateBucket(from.plusDays(1L), 1, 0, new int[10])));
+
+        mvc.perform(get("/chargingSessions/summary?from=2019-05-06T00:00&to=2019-05-08T00:00&granularity=day&stationId=ABC-12345"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity", is("day")))
+                .andExpect(jsonPath("$.stationId", is("ABC-12345")))
+                .andExpect(jsonPath("$.stoppedDurationBounds[0]", is("PT5M")))
+                .andExpect(jsonPath("$.buckets", hasSize(2)))
+                .andExpect(jsonPath("$.buckets[0].start", is("2019-05-06T00:00:00")))
+                .andExpect(jsonPath("$.buckets[0].startedCount", is(3)))
+                .andExpect(jsonPath("$.buckets[0].stoppedCount", is(2)))
+                .andExpect(jsonPath("$.buckets[0].stoppedDurations[9]", is(1)));
+    }
+
+    @Test
+    public void givenUnknownGranularity_WhenGetSessionsSummary_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/chargingSessions/summary?from=2019-05-06T00:00&to=2019-05-08T00:00&granularity=week"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage", is("Granularity must be minute, hour or day")));
+    }
+
+    @Test
+    public void givenRangeLongerThanRetention_WhenGetSessionsSummary_ThenReturnErrorCode400() throws Exception {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T00:00");
+        Mockito.when(sessionsStore.getAggregates(from, from.plusDays(2L), AggregateGranularity.HOUR, null))
+                .thenThrow(new IllegalArgumentException("Range cannot cover more than 168 hour buckets, hour aggregates are kept for PT168H"));
+
+        mvc.perform(get("/chargingSessions/summary?from=2019-05-06T00:00&to=2019-05-08T00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage", containsString("168 hour buckets")));
+    }
+
+    @Test
+    public void givenTwoSessionsAtStation_WhenGetSessionsByStationId_ThenReturnSessionsOfStation() throws Exception {
+        ChargingSession session1 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+        ChargingSession session2 = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), LocalDateTime.now(), STOPPED);
+        Mockito.when(sessionsStore.getStationSessions("ABC-12345")).thenReturn(new ArrayList<>(Arrays.asList(session1, session2)));
+
+        mvc.perform(get("/chargingSessions?stationId=ABC-12345"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].stationId", is("ABC-12345")));
+    }
+
+    @Test
+    public void givenStationIdAndLimit_WhenGetSessions_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/chargingSessions?stationId=ABC-12345&limit=10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenFromAndTo_WhenGetSessions_ThenReturnSessionsUpdatedInRange() throws Exception {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T19:00:00");
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", from.plusMinutes(5L), null, IN_PROGRESS);
+        Mockito.when(sessionsStore.getSessionsUpdatedBetween(from, from.plusHours(1L))).thenReturn(new ArrayList<>(Collections.singletonList(session)));
+
+        mvc.perform(get("/chargingSessions?from=2019-05-06T19:00:00&to=2019-05-06T20:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(session.getId().toString())));
+    }
+
+    @Test
+    public void givenFromNotBeforeToOrUnparsable_WhenGetSessions_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/chargingSessions?from=2019-05-06T20:00:00&to=2019-05-06T19:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage", is("From must be before to")));
+        mvc.perform(get("/chargingSessions?from=yesterday&to=2019-05-06T19:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage", is("Cannot parse from and to")));
+        mvc.perform(get("/chargingSessions?from=2019-05-06T19:00:00&to=2019-05-06T20:00:00&limit=10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenStationWithSessions_WhenGetStationSummary_ThenReturnSummaryOfAllItsSessions() throws Exception {
+        Mockito.when(sessionsStore.getStationSummary("ABC-12345", null)).thenReturn(new SessionsSummary(3, 1, 2));
+
+        mvc.perform(get("/stations/ABC-12345/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount", is(3)))
+                .andExpect(jsonPath("$.startedCount", is(1)))
+                .andExpect(jsonPath("$.stoppedCount", is(2)));
+    }
+
+    @Test
+    public void givenWindowOfOneHour_WhenGetStationSummary_ThenReturnSummaryForOneHour() throws Exception {
+        Mockito.when(sessionsStore.getStationSummary("ABC-12345", Duration.ofHours(1L))).thenReturn(new SessionsSummary(1, 1, 0));
+
+        mvc.perform(get("/stations/ABC-12345/summary?window=1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount", is(1)));
+    }
+
+    @Test
+    public void givenWindowInWrongFormat_WhenGetStationSummary_ThenReturnErrorCode400() throws Exception {
+        mvc.perform(get("/stations/ABC-12345/summary?window=five"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/stations/ABC-12345/summary?window=-1m"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenValidAndInvalidEntries_WhenSubmitSessionsBatch_ThenAddValidEntriesAndReturnResultPerEntry() throws Exception {
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-12345", startedAt, null, IN_PROGRESS);
+        Mockito.when(sessionsStore.addSessions(Collections.singletonList(new SessionStart("ABC-12345", startedAt))))
+                .thenReturn(Collections.singletonList(session));
+        List<RestSubmitSessionRequest> requests = Arrays.asList(
+                new RestSubmitSessionRequest("", "2019-05-06T19:00:20.529"),
+                new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529"),
+                new RestSubmitSessionRequest("ABC-12345", "yesterday"),
+                null);
+
+        mvc.perform(post("/chargingSessions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new Gson().toJson(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].status", is(400)))
+                .andExpect(jsonPath("$[0].body.errorMessage", is("Timestamp and stationId cannot be empty")))
+                .andExpect(jsonPath("$[1].status", is(201)))
+                .andExpect(jsonPath("$[1].body.id", is(session.getId().toString())))
+                .andExpect(jsonPath("$[2].status", is(400)))
+                .andExpect(jsonPath("$[2].body.errorMessage", is("Cannot parse timestamp")))
+                .andExpect(jsonPath("$[3].status", is(400)))
+                .andExpect(jsonPath("$[3].body.errorMessage", is("Entry cannot be null")));
+    }
+
+    @Test
+    public void givenKnownUnknownAndInvalidIds_WhenStopSessionsBatch_ThenStopKnownSessionsAndReturnResultPerEntry() throws Exception {
+        UUID known = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        UUID startedLater = UUID.randomUUID();
+        LocalDateTime stoppedAt = LocalDateTime.parse("2019-05-06T19:10:00");
+        Mockito.when(sessionsStore.getSessions(Arrays.asList(known, unknown, startedLater)))
+                .thenReturn(Arrays.asList(new ChargingSession(known, "ABC-12345", stoppedAt.minusMinutes(10L), null, IN_PROGRESS), null,
+                        new ChargingSession(startedLater, "ABC-12345", stoppedAt.plusMinutes(1L), null, IN_PROGRESS)));
+        Mockito.when(sessionsStore.stopSessions(Arrays.asList(new SessionStop(known, stoppedAt), new SessionStop(unknown, stoppedAt))))
+                .thenReturn(Arrays.asList(new ChargingSession(known, "ABC-12345", stoppedAt.minusMinutes(10L), stoppedAt, STOPPED), null));
+        List<RestStopSessionRequest> requests = Arrays.asList(
+                new RestStopSessionRequest(known.toString(), "2019-05-06T19:10:00"),
+                new RestStopSessionRequest("not-a-uuid", null),
+                new RestStopSessionRequest(unknown.toString(), "2019-05-06T19:10:00"),
+                new RestStopSessionRequest(known.toString(), "later"),
+                null,
+                new RestStopSessionRequest(startedLater.toString(), "2019-05-06T19:10:00"));
+
+        mvc.perform(put("/chargingSessions/batch/stop")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new Gson().toJson(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)))
+                .andExpect(jsonPath("$[0].status", is(200)))
+                .andExpect(jsonPath("$[1].status", is(404)))
+                .andExpect(jsonPath("$[2].status", is(404)))
+                .andExpect(jsonPath("$[2].body.errorMessage", is("No sessions found with id=" + unknown)))
+                .andExpect(jsonPath("$[3].status", is(400)))
+                .andExpect(jsonPath("$[4].status", is(400)))
+                .andExpect(jsonPath("$[4].body.errorMessage", is("Entry cannot be null")))
+                .andExpect(jsonPath("$[5].status", is(400)))
+                .andExpect(jsonPath("$[5].body.errorMessage", is("Timestamp cannot be before the start of the session")));
+    }
+
+    @Test
+    public void givenTooManyEntries_WhenSubmitSessionsBatch_ThenReturnErrorCode400() throws Exception {
+        List<RestSubmitSessionRequest> requests = Collections.nCopies(SessionsRestController.MAX_BATCH_SIZE + 1,
+                new RestSubmitSessionRequest("ABC-12345", "2019-05-06T19:00:20.529"));
+
+        mvc.perform(post("/chargingSessions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new Gson().toJson(requests)))
+                .andExpect(status().isBadRequest());
+    }
+
+}
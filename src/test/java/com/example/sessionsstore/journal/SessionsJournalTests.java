@@ -0,0 +1,151 @@
+package com.example.sessionsstore.journal;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionsStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionsJournalTests {
+
+    // a start record of station "ABC" framed: 8 bytes frame header, 29 bytes fixed fields, 4 + 3 bytes station id
+    private static final int START_FRAME_SIZE = 44;
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    void testGivenJournaledSessions_WhenRestart_ThenRestoreSessionsAndSummary() throws IOException {
+        SessionsStore sessionsStore = new SessionsStore();
+        SessionsJournal journal = startJournal(sessionsStore, FsyncPolicy.ALWAYS, DataSize.ofMegabytes(1L));
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession stopped = sessionsStore.addSession("ABC", now.minusSeconds(10L));
+        ChargingSession inProgress = sessionsStore.addSession("DEF-\u00fc", now.minusSeconds(5L));
+        sessionsStore.stopSession(stopped.getId().toString(), now);
+        journal.stop();
+
+        SessionsStore restored = new SessionsStore();
+        startJournal(restored, FsyncPolicy.ALWAYS, DataSize.ofMegabytes(1L)).stop();
+
+        assertEquals(2, restored.getAllSessions().size());
+        ChargingSession restoredStopped = restored.getSession(stopped.getId().toString());
+        assertEquals(STOPPED, restoredStopped.getStatus());
+        assertEquals(now, restoredStopped.getStoppedAt());
+        assertEquals(now.minusSeconds(10L), restoredStopped.getStartedAt());
+        ChargingSession restoredInProgress = restored.getSession(inProgress.getId().toString());
+        assertEquals(IN_PROGRESS, restoredInProgress.getStatus());
+        assertEquals("DEF-\u00fc", restoredInProgress.getStationId());
+        assertEquals(sessionsStore.getSessionsSummary(Duration.ofMinutes(1L)), restored.getSessionsSummary(Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenFullSegments_WhenSnapshot_ThenDeleteCoveredSegmentsAndRestoreFromSnapshot() throws IOException {
+        SessionsStore sessionsStore = new SessionsStore();
+        SessionsJournal journal = startJournal(sessionsStore, FsyncPolicy.INTERVAL, DataSize.ofKilobytes(4L));
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sessions.add(sessionsStore.addSession("ABC", LocalDateTime.now()));
+        }
+        assertTrue(files("journal-").size() > 1);
+
+        journal.snapshot();
+        assertEquals(2, files("journal-").size());
+        assertEquals(1, files("snapshot-").size());
+        sessionsStore.stopSession(sessions.get(0).getId().toString(), LocalDateTime.now());
+        sessions.add(sessionsStore.addSession("ABC", LocalDateTime.now()));
+        journal.stop();
+
+        SessionsStore restored = new SessionsStore();
+        startJournal(restored, FsyncPolicy.INTERVAL, DataSize.ofKilobytes(4L)).stop();
+
+        assertEquals(sessions.size(), restored.getAllSessions().size());
+        assertEquals(STOPPED, restored.getSession(sessions.get(0).getId().toString()).getStatus());
+        assertEquals(IN_PROGRESS, restored.getSession(sessions.get(500).getId().toString()).getStatus());
+    }
+
+    @Test
+    void testGivenTornLastRecord_WhenRestart_ThenReplayRecordsBeforeIt() throws IOException {
+        SessionsStore sessionsStore = new SessionsStore();
+        SessionsJournal journal = startJournal(sessionsStore, FsyncPolicy.OS, DataSize.ofMegabytes(1L));
+        for (int i = 0; i < 3; i++) {
+            sessionsStore.addSession("ABC", LocalDateTime.now());
+        }
+        journal.stop();
+        try (RandomAccessFile segment = new RandomAccessFile(files("journal-").get(0).toFile(), "rw")) {
+            long lastPayload = 2L * START_FRAME_SIZE + 8;
+            segment.seek(lastPayload + 20);
+            segment.write(segment.read() ^ 0xFF);
+        }
+
+        SessionsStore restored = new SessionsStore();
+        startJournal(restored, FsyncPolicy.OS, DataSize.ofMegabytes(1L)).stop();
+
+        assertEquals(2, restored.getAllSessions().size());
+    }
+
+    @Test
+    void testGivenJournalCannotAppend_WhenAddAndStopSessions_ThenChangesAreNotApplied() throws IOException {
+        SessionsStore sessionsStore = new SessionsStore();
+        SessionsJournal journal = startJournal(sessionsStore, FsyncPolicy.OS, DataSize.ofKilobytes(4L));
+        ChargingSession session = sessionsStore.addSession("ABC", LocalDateTime.now());
+        FileSystemUtils.deleteRecursively(directory);
+        Files.write(directory, new byte[0]);
+
+        int added = 0;
+        try {
+            while (true) {
+                sessionsStore.addSession("ABC", LocalDateTime.now());
+                added++;
+            }
+        } catch (UncheckedIOException e) {
+            // the next segment cannot be created
+        }
+        assertEquals(added + 1, sessionsStore.getAllSessions().size());
+        assertThrows(UncheckedIOException.class, () -> sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now()));
+        assertEquals(IN_PROGRESS, sessionsStore.getSession(session.getId().toString()).getStatus());
+        journal.stop();
+    }
+
+    private SessionsJournal startJournal(SessionsStore sessionsStore, FsyncPolicy policy, DataSize segmentSize) throws IOException {
+        SessionsJournal journal = new SessionsJournal(sessionsStore, directory.toString(), segmentSize, policy,
+                Duration.ofMillis(10L), Duration.ofHours(1L));
+        journal.start();
+        return journal;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.example.sessionsstore.journal;
+
+import com.example.sessionsstore.model.ChargingSession;
+import com.example.sessionsstore.model.SessionsStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SessionsSnapshotTests {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionsSnapshotTests.class);
+    private static final int STARTUP_SESSIONS = Integer.getInteger("snapshot.sessions", 100_000);
+    private static final LocalDateTime NOW = LocalDateTime.parse("2019-05-06T19:00:20.529");
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    void testGivenSessionsOfManyBlocks_WhenWriteAndReadInParallel_ThenReadSameSessions() throws IOException {
+        List<ChargingSession> sessions = new ArrayList<>(Arrays.asList(
+                new ChargingSession(UUID.randomUUID(), "DEF-\u00fc", NOW, null, IN_PROGRESS),
+                new ChargingSession(UUID.randomUUID(), "", NOW.withNano(0), NOW.plusNanos(1L), STOPPED),
+                new ChargingSession(UUID.randomUUID(), "ABC-1", LocalDateTime.of(1, 1, 1, 0, 0), LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_999_999), STOPPED),
+                new ChargingSession(UUID.randomUUID(), "ABC-1", LocalDateTime.of(9999, 12, 31, 0, 0), LocalDateTime.of(1, 1, 1, 0, 0), STOPPED)));
+        for (int i = 0; i < 100; i++) {
+            ChargingSession.Status status = i % 3 == 0 ? STOPPED : IN_PROGRESS;
+            sessions.add(new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 7), NOW.minusSeconds(i), status == STOPPED ? NOW.plusMinutes(i) : null, status));
+        }
+        Path path = directory.resolve("snapshot.bin");
+
+        assertEquals(sessions.size(), SessionsSnapshot.write(path, sessions.iterator(), 8));
+        Set<ChargingSession> read = ConcurrentHashMap.newKeySet();
+        assertEquals(sessions.size(), SessionsSnapshot.read(path, read::addAll, 4));
+
+        assertEquals(new HashSet<>(sessions), read);
+    }
+
+    @Test
+    void testGivenNoSessions_WhenWriteAndRead_ThenReadNone() throws IOException {
+        Path path = directory.resolve("snapshot.bin");
+
+        assertEquals(0, SessionsSnapshot.write(path, Collections.<ChargingSession>emptyIterator()));
+
+        assertEquals(0, SessionsSnapshot.read(path, block -> {
+            throw new AssertionError();
+        }, 4));
+    }
+
+    @Test
+    void testGivenCorruptOrTruncatedSnapshot_WhenRead_ThenThrowIOException() throws IOException {
+        Path path = directory.resolve("snapshot.bin");
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sessions.add(new ChargingSession(UUID.randomUUID(), "ABC", NOW, null, IN_PROGRESS));
+        }
+        SessionsSnapshot.write(path, sessions.iterator(), 8);
+        byte[] bytes = Files.readAllBytes(path);
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(bytes.length / 2);
+            file.write(bytes[bytes.length / 2] ^ 0xFF);
+        }
+        assertThrows(IOException.class, () -> SessionsSnapshot.read(path, block -> {
+        }, 2));
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> SessionsSnapshot.read(path, block -> {
+        }, 2));
+    }
+
+    @Test
+    void testGivenVersion1Snapshot_WhenRead_ThenReadSessions() throws IOException {
+        Path path = directory.resolve("snapshot.bin");
+        ChargingSession stopped = new ChargingSession(UUID.randomUUID(), "ABC", NOW, NOW.plusHours(1L), STOPPED);
+        ChargingSession inProgress = new ChargingSession(UUID.randomUUID(), "DEF-\u00fc", NOW, null, IN_PROGRESS);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+            out.writeInt(0x53455353);
+            out.writeInt(1);
+            for (ChargingSession session : Arrays.asList(stopped, inProgress)) {
+                out.writeBoolean(true);
+                out.writeLong(session.getId().getMostSignificantBits());
+                out.writeLong(session.getId().getLeastSignificantBits());
+                out.writeUTF(session.getStationId());
+                out.writeInt(session.getStartedAt().getNano());
+                out.writeLong(session.getStartedAt().toEpochSecond(ZoneOffset.UTC));
+                if (session.getStoppedAt() == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(session.getStoppedAt().getNano());
+                    out.writeLong(session.getStoppedAt().toEpochSecond(ZoneOffset.UTC));
+                }
+            }
+            out.writeBoolean(false);
+            out.writeLong(2L);
+        }
+        List<ChargingSession> read = new ArrayList<>();
+
+        assertEquals(2, SessionsSnapshot.read(path, read::addAll, 4));
+
+        assertEquals(Arrays.asList(stopped, inProgress), read);
+    }
+
+    @Test
+    @Tag("slow")
+    void testGivenSnapshotOfManySessions_WhenStartJournal_ThenReportStartupToReadyTime() throws IOException {
+        long start = System.nanoTime();
+        SessionsSnapshot.write(directory.resolve(String.format("snapshot-%020d.bin", 1L)), generate(STARTUP_SESSIONS));
+        long written = System.nanoTime();
+        long snapshotBytes = Files.size(directory.resolve(String.format("snapshot-%020d.bin", 1L)));
+
+        SessionsStore sessionsStore = new SessionsStore();
+        SessionsJournal journal = new SessionsJournal(sessionsStore, directory.toString(), DataSize.ofMegabytes(1L), FsyncPolicy.OS,
+                Duration.ofMillis(10L), Duration.ofHours(1L));
+        long restart = System.nanoTime();
+        journal.start();
+        long ready = System.nanoTime();
+        journal.stop();
+
+        log.info("sessions={} snapshot bytes/session={} write ms={} startup-to-ready ms={} threads={}", STARTUP_SESSIONS,
+                String.format("%.1f", snapshotBytes / (double) STARTUP_SESSIONS), (written - start) / 1_000_000, (ready - restart) / 1_000_000,
+                Runtime.getRuntime().availableProcessors());
+        assertEquals(STARTUP_SESSIONS, sessionsStore.getAllSessions().size());
+    }
+
+    /**
+     * Sessions of 10k stations started one per millisecond, every other one stopped half an hour later, in the
+     * order of their ids like the sessions of a store.
+     */
+    private static Iterator<ChargingSession> generate(int sessions) {
+        Random random = new Random(42L);
+        return new Iterator<ChargingSession>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < sessions;
+            }
+
+            @Override
+            public ChargingSession next() {
+                LocalDateTime startedAt = NOW.minusNanos(next * 1_000_000L);
+                boolean stopped = next % 2 == 0;
+                ChargingSession session = new ChargingSession(new UUID(next, random.nextLong()), "ABC-" + (next % 10_000), startedAt,
+                        stopped ? startedAt.plusMinutes(30L) : null, stopped ? STOPPED : IN_PROGRESS);
+                next++;
+                return session;
+            }
+        };
+    }
+
+}
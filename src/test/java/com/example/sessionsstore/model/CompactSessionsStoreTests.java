@@ -0,0 +1,106 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactSessionsStoreTests extends SessionsStoreTests {
+
+    @Override
+    protected SessionsStorage createStorage(MeterRegistry meterRegistry) {
+        return new CompactSessionsStorage(meterRegistry);
+    }
+
+    @Test
+    void testGivenManySessionsEvictedInRounds_WhenGetSessions_ThenIndexFindsExactlyTheRemainingSessions() {
+        CompactSessionsStorage storage = new CompactSessionsStorage();
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        List<UUID> evictedIds = new ArrayList<>();
+        List<ChargingSession> remaining = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3000; i++) {
+                ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 7), startedAt.plusSeconds(i), null, IN_PROGRESS);
+                storage.add(session);
+                boolean stopped = i % 3 == 0;
+                if (stopped) {
+                    storage.stop(session.getId(), startedAt.plusHours(round), previous -> { });
+                }
+                if (stopped && round < 4) {
+                    evictedIds.add(session.getId());
+                } else {
+                    remaining.add(storage.get(session.getId()));
+                }
+            }
+            while (storage.evictStoppedBucket(startedAt.plusHours(3L).plusMinutes(1L)) >= 0) {
+            }
+        }
+
+        evictedIds.forEach(id -> assertNull(storage.get(id)));
+        remaining.forEach(session -> assertEquals(session, storage.get(session.getId())));
+        List<ChargingSession> iterated = new ArrayList<>();
+        storage.iterator(null).forEachRemaining(iterated::add);
+        assertEquals(remaining.size(), iterated.size());
+        assertFalse(iterated.contains(null));
+        for (int i = 1; i < iterated.size(); i++) {
+            assertTrue(iterated.get(i - 1).getId().compareTo(iterated.get(i).getId()) < 0);
+        }
+        for (int station = 0; station < 7; station++) {
+            String stationId = "ABC-" + station;
+            List<ChargingSession> atStation = new ArrayList<>();
+            storage.forEachAtStation(stationId, atStation::add);
+            assertEquals(remaining.stream().filter(session -> session.getStationId().equals(stationId)).count(), atStation.size());
+            atStation.forEach(session -> assertTrue(remaining.contains(session)));
+        }
+    }
+
+    @Test
+    void testGivenSessionsAddedAndEvictedAfterIterating_WhenIterateInPages_ThenReturnExactlyTheRemainingSessionsInIdOrder() {
+        CompactSessionsStorage storage = new CompactSessionsStorage();
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        TreeSet<UUID> remaining = new TreeSet<>();
+        for (int changes : new int[]{3000, 1000, 10_000}) {
+            List<UUID> stopped = new ArrayList<>();
+            for (int i = 0; i < changes; i++) {
+                ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 7), startedAt, null, IN_PROGRESS);
+                storage.add(session);
+                remaining.add(session.getId());
+                if (i % 4 == 0) {
+                    stopped.add(session.getId());
+                }
+            }
+            for (UUID id : stopped) {
+                storage.stop(id, startedAt.minusHours(1L), previous -> { });
+            }
+            while (storage.evictStoppedBucket(startedAt) >= 0) {
+            }
+            remaining.removeAll(stopped);
+
+            List<UUID> iterated = new ArrayList<>();
+            UUID after = null;
+            while (true) {
+                Iterator<ChargingSession> page = storage.iterator(after);
+                for (int i = 0; i < 100 && page.hasNext(); i++) {
+                    after = page.next().getId();
+                    iterated.add(after);
+                }
+                if (!page.hasNext()) {
+                    break;
+                }
+            }
+            assertEquals(new ArrayList<>(remaining), iterated);
+        }
+    }
+
+}
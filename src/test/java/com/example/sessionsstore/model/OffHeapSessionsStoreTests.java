@@ -0,0 +1,56 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OffHeapSessionsStoreTests extends SessionsStoreTests {
+
+    @Override
+    protected SessionsStorage createStorage(MeterRegistry meterRegistry) {
+        return new OffHeapSessionsStorage(meterRegistry);
+    }
+
+    @Test
+    void testGivenMoreSessionsThanOneSlab_WhenEvictAndAddAgain_ThenReuseFreedRecordsWithoutNewSlabs() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OffHeapSessionsStorage storage = new OffHeapSessionsStorage(meterRegistry);
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529123");
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < OffHeapSessionRecords.RECORDS_PER_SLAB + 1000; i++) {
+            ChargingSession session = new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 10), startedAt.plusSeconds(i % 60), null, IN_PROGRESS);
+            storage.add(session);
+            sessions.add(session);
+        }
+        for (int i = 0; i < 1000; i++) {
+            storage.stop(sessions.get(i).getId(), startedAt.minusHours(1L), previous -> { });
+        }
+        while (storage.evictStoppedBucket(startedAt) >= 0) {
+        }
+        double allocatedBytes = meterRegistry.get("sessions.storage.direct.memory").gauge().value();
+
+        for (int i = 0; i < 1000; i++) {
+            storage.add(new ChargingSession(UUID.randomUUID(), "ABC-12345", startedAt, null, IN_PROGRESS));
+        }
+
+        assertEquals(allocatedBytes, meterRegistry.get("sessions.storage.direct.memory").gauge().value());
+        assertEquals(sessions.size(), storage.indexSize());
+        assertNull(storage.get(sessions.get(0).getId()));
+        for (int i = 1000; i < sessions.size(); i++) {
+            assertEquals(sessions.get(i), storage.get(sessions.get(i).getId()));
+        }
+
+        storage.close();
+        assertEquals(0.0, meterRegistry.get("sessions.storage.direct.memory").gauge().value());
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PersistentTrieTests {
+
+    private static final Comparator<UUID> UNSIGNED = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    @Test
+    void testGivenRandomChangesInBatches_WhenReadEveryVersion_ThenMatchSortedMapOfThatVersion() {
+        Random random = new Random(42L);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // keys sharing long prefixes force deep nodes
+            keys.add(i % 2 == 0 ? new UUID(random.nextLong(), random.nextLong()) : new UUID(7L, random.nextInt(64)));
+        }
+        PersistentTrie<Integer> trie = PersistentTrie.empty();
+        TreeMap<UUID, Integer> expected = new TreeMap<>(UNSIGNED);
+        List<PersistentTrie<Integer>> versions = new ArrayList<>();
+        List<TreeMap<UUID, Integer>> expectedVersions = new ArrayList<>();
+        for (int batch = 0; batch < 50; batch++) {
+            Object edit = new Object();
+            for (int i = 0; i < 40; i++) {
+                UUID key = keys.get(random.nextInt(keys.size()));
+                if (random.nextInt(3) == 0) {
+                    trie = trie.without(key, edit);
+                    expected.remove(key);
+                } else {
+                    trie = trie.with(key, i, edit);
+                    expected.put(key, i);
+                }
+            }
+            versions.add(trie);
+            expectedVersions.add(new TreeMap<>(expected));
+        }
+
+        for (int version = 0; version < versions.size(); version++) {
+            assertMatches(expectedVersions.get(version), versions.get(version), keys);
+        }
+    }
+
+    @Test
+    void testGivenCursorKeyBetweenEntries_WhenIterateAfterIt_ThenStartAtTheNextGreaterKey() {
+        PersistentTrie<String> trie = PersistentTrie.empty();
+        for (long i = 0; i < 100; i += 10) {
+            trie = trie.with(new UUID(0L, i), "v" + i, null);
+        }
+        trie = trie.with(new UUID(-1L, 0L), "last", null);
+
+        assertEquals("v50", trie.values(new UUID(0L, 45L)).next());
+        assertEquals("v60", trie.values(new UUID(0L, 50L)).next());
+        assertEquals("last", trie.values(new UUID(0L, 95L)).next());
+        assertEquals(false, trie.values(new UUID(-1L, 0L)).hasNext());
+    }
+
+    @Test
+    void testGivenPublishedTrie_WhenChangedWithAnotherEdit_ThenPublishedTrieIsUnchanged() {
+        Object edit = new Object();
+        PersistentTrie<String> published = PersistentTrie.<String>empty().with(new UUID(0L, 1L), "a", edit).with(new UUID(0L, 2L), "b", edit);
+
+        PersistentTrie<String> changed = published.with(new UUID(0L, 3L), "c", new Object()).without(new UUID(0L, 1L), null);
+
+        assertEquals(2, published.size());
+        assertEquals("a", published.get(new UUID(0L, 1L)));
+        assertNull(published.get(new UUID(0L, 3L)));
+        assertEquals(2, changed.size());
+        assertNull(changed.get(new UUID(0L, 1L)));
+        assertSame(published, published.with(new UUID(0L, 4L), "d", edit));
+    }
+
+    private static void assertMatches(TreeMap<UUID, Integer> expected, PersistentTrie<Integer> trie, List<UUID> keys) {
+        assertEquals(expected.size(), trie.size());
+        for (UUID key : keys) {
+            assertEquals(expected.get(key), trie.get(key));
+        }
+        List<Integer> values = new ArrayList<>();
+        trie.values(null).forEachRemaining(values::add);
+        assertEquals(new ArrayList<>(expected.values()), values);
+        for (int i = 0; i < 20; i++) {
+            UUID after = keys.get(i * 7);
+            Iterator<Integer> tail = trie.values(after);
+            for (Map.Entry<UUID, Integer> entry : expected.tailMap(after, false).entrySet()) {
+                assertEquals(entry.getValue(), tail.next());
+            }
+            assertEquals(false, tail.hasNext());
+        }
+    }
+
+}
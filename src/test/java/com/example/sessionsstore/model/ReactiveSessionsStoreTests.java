@@ -0,0 +1,69 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReactiveSessionsStoreTests {
+
+    @Test
+    void testGivenNoBlockingListener_WhenAddSession_ThenAddOnSubscribingThread() {
+        SessionsStore sessionsStore = new SessionsStore();
+        AtomicReference<String> thread = new AtomicReference<>();
+        sessionsStore.addListener(new RecordingListener(thread, false));
+        ReactiveSessionsStore reactiveStore = new ReactiveSessionsStore(sessionsStore);
+
+        ChargingSession session = reactiveStore.addSession("ABC-12345", LocalDateTime.now()).block();
+
+        assertEquals(Thread.currentThread().getName(), thread.get());
+        assertEquals(session, sessionsStore.getSession(session.getId().toString()));
+        reactiveStore.stop();
+    }
+
+    @Test
+    void testGivenBlockingListener_WhenAddAndStopSession_ThenChangeStoreOnWriteThreads() {
+        SessionsStore sessionsStore = new SessionsStore();
+        AtomicReference<String> thread = new AtomicReference<>();
+        sessionsStore.addListener(new RecordingListener(thread, true));
+        ReactiveSessionsStore reactiveStore = new ReactiveSessionsStore(sessionsStore);
+
+        ChargingSession session = reactiveStore.addSession("ABC-12345", LocalDateTime.now()).block();
+        assertTrue(thread.get().startsWith("sessions-writes"));
+        thread.set(null);
+        reactiveStore.stopSession(session.getId().toString(), LocalDateTime.now()).block();
+
+        assertTrue(thread.get().startsWith("sessions-writes"));
+        assertEquals(ChargingSession.Status.STOPPED, sessionsStore.getSession(session.getId().toString()).getStatus());
+        reactiveStore.stop();
+    }
+
+    private static final class RecordingListener implements SessionsStoreListener {
+        private final AtomicReference<String> thread;
+        private final boolean blocksWriters;
+
+        RecordingListener(AtomicReference<String> thread, boolean blocksWriters) {
+            this.thread = thread;
+            this.blocksWriters = blocksWriters;
+        }
+
+        @Override
+        public void sessionStarted(ChargingSession session) {
+            thread.set(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void sessionStopped(ChargingSession session, LocalDateTime previousStoppedAt) {
+            thread.set(Thread.currentThread().getName());
+        }
+
+        @Override
+        public boolean blocksWriters() {
+            return blocksWriters;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RollingSummaryTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.parse("2019-05-06T19:00:20.529");
+
+    private RollingSummary rollingSummary;
+
+    @BeforeEach
+    void setUp() {
+        rollingSummary = new RollingSummary(Duration.ofMinutes(15L), Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @Test
+    void testGivenSessionsStartedInsideAndOutsideWindow_WhenSummarize_ThenCountOnlySessionsInsideWindow() {
+        rollingSummary.sessionStarted(NOW);
+        rollingSummary.sessionStarted(NOW.minusSeconds(59L));
+        rollingSummary.sessionStarted(NOW.minusSeconds(60L));
+        rollingSummary.sessionStarted(NOW.minusMinutes(10L));
+
+        assertEquals(new SessionsSummary(2, 2, 0), rollingSummary.summarize(NOW, Duration.ofMinutes(1L)));
+        assertEquals(new SessionsSummary(3, 3, 0), rollingSummary.summarize(NOW, Duration.ofMinutes(5L)));
+        assertEquals(new SessionsSummary(4, 4, 0), rollingSummary.summarize(NOW, Duration.ofMinutes(15L)));
+    }
+
+    @Test
+    void testGivenSessionStartedAndStoppedInsideWindow_WhenSummarize_ThenCountItAsStoppedOnly() {
+        rollingSummary.sessionStarted(NOW.minusSeconds(30L));
+        rollingSummary.sessionStopped(NOW.minusSeconds(30L), IN_PROGRESS, NOW);
+
+        assertEquals(new SessionsSummary(1, 0, 1), rollingSummary.summarize(NOW, Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSessionStartedBeforeRingAndStoppedNow_WhenSummarize_ThenCountItAsStopped() {
+        rollingSummary.sessionStarted(NOW.minusSeconds(5L));
+        rollingSummary.sessionStarted(NOW.minusHours(2L));
+        rollingSummary.sessionStopped(NOW.minusHours(2L), IN_PROGRESS, NOW);
+
+        assertEquals(new SessionsSummary(2, 1, 1), rollingSummary.summarize(NOW, Duration.ofMinutes(15L)));
+    }
+
+    @Test
+    void testGivenSlotReusedByLaterSecond_WhenStopSessionCountedInOldSecond_ThenLaterCountsAreKept() {
+        LocalDateTime previousRound = NOW.minusSeconds(15L * 60L + 60L);
+        rollingSummary.sessionStarted(previousRound);
+        rollingSummary.sessionStarted(NOW);
+        rollingSummary.sessionStopped(previousRound, IN_PROGRESS, NOW.plusSeconds(1L));
+
+        assertEquals(new SessionsSummary(2, 1, 1), rollingSummary.summarize(NOW.plusSeconds(1L), Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSessionStoppedTwice_WhenSummarize_ThenCountItOnce() {
+        rollingSummary.sessionStarted(NOW.minusSeconds(20L));
+        rollingSummary.sessionStopped(NOW.minusSeconds(20L), IN_PROGRESS, NOW.minusSeconds(10L));
+        rollingSummary.sessionStopped(NOW.minusSeconds(10L), STOPPED, NOW);
+
+        assertEquals(new SessionsSummary(1, 0, 1), rollingSummary.summarize(NOW, Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSessionsFarInTheFutureOrOlderThanRing_WhenSummarize_ThenCurrentCountsStillShow() {
+        // a second in 2099 that maps to the same slot of the ring of 15 + 1 minutes as NOW
+        long ringSeconds = 16L * 60L;
+        LocalDateTime future = NOW.plusSeconds(Duration.between(NOW, LocalDateTime.parse("2099-01-01T00:00")).getSeconds() / ringSeconds * ringSeconds);
+        rollingSummary.sessionStarted(future);
+        rollingSummary.sessionStarted(NOW.minusSeconds(ringSeconds));
+        rollingSummary.sessionStarted(NOW.plusSeconds(61L));
+        rollingSummary.sessionStarted(NOW.minusSeconds(5L));
+        rollingSummary.sessionStarted(NOW);
+        rollingSummary.sessionStopped(NOW.minusSeconds(5L), IN_PROGRESS, future);
+
+        assertEquals(new SessionsSummary(1, 1, 0), rollingSummary.summarize(NOW, Duration.ofMinutes(1L)));
+        assertEquals(new SessionsSummary(0, 0, 0), rollingSummary.summarize(future, Duration.ofSeconds(1L)));
+    }
+
+    @Test
+    void testGivenWindowLongerThanMaxWindow_WhenSummarize_ThenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> rollingSummary.summarize(NOW, Duration.ofMinutes(16L)));
+        assertThrows(IllegalArgumentException.class, () -> rollingSummary.summarize(NOW, Duration.ZERO));
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SessionAggregatesTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.parse("2019-05-06T19:00:20.529");
+
+    private SessionAggregates aggregates;
+
+    @BeforeEach
+    void setUp() {
+        aggregates = createAggregates(NOW);
+    }
+
+    @Test
+    void testGivenSessionsStartedInTwoMinutes_WhenAggregateByMinute_ThenCountThemInTheBucketsOfTheirStarts() {
+        aggregates.sessionStarted("ABC-1", NOW);
+        aggregates.sessionStarted("ABC-2", NOW.plusSeconds(5L));
+        aggregates.sessionStarted("ABC-1", NOW.plusMinutes(1L));
+
+        List<AggregateBucket> buckets = aggregates.aggregate(NOW, NOW.plusMinutes(3L), AggregateGranularity.MINUTE, null);
+
+        assertEquals(4, buckets.size());
+        assertEquals(LocalDateTime.parse("2019-05-06T19:00"), buckets.get(0).getStart());
+        assertEquals(2, buckets.get(0).getStartedCount());
+        assertEquals(1, buckets.get(1).getStartedCount());
+        assertEquals(0, buckets.get(2).getStartedCount());
+        assertEquals(LocalDateTime.parse("2019-05-06T19:03"), buckets.get(3).getStart());
+    }
+
+    @Test
+    void testGivenSessionsOfTwoStations_WhenAggregateByStation_ThenCountOnlyThatStation() {
+        aggregates.sessionStarted("ABC-1", NOW);
+        aggregates.sessionStarted("ABC-2", NOW);
+        aggregates.sessionStopped("ABC-2", NOW, null, NOW.plusMinutes(10L));
+
+        AggregateBucket station1 = aggregates.aggregate(NOW, NOW.plusHours(1L), AggregateGranularity.HOUR, "ABC-1").get(0);
+        AggregateBucket station2 = aggregates.aggregate(NOW, NOW.plusHours(1L), AggregateGranularity.HOUR, "ABC-2").get(0);
+        AggregateBucket unknown = aggregates.aggregate(NOW, NOW.plusHours(1L), AggregateGranularity.HOUR, "XYZ").get(0);
+
+        assertEquals(1, station1.getStartedCount());
+        assertEquals(0, station1.getStoppedCount());
+        assertEquals(1, station2.getStartedCount());
+        assertEquals(1, station2.getStoppedCount());
+        assertEquals(0, unknown.getStartedCount());
+    }
+
+    @Test
+    void testGivenStopsOfDifferentDurations_WhenAggregateByDay_ThenCountDurationsInHistogram() {
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusMinutes(5L));
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusMinutes(5L).plusNanos(1L));
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusHours(3L));
+        aggregates.sessionStopped("ABC-1", NOW.minusDays(2L), null, NOW.plusHours(1L));
+
+        AggregateBucket bucket = aggregates.aggregate(NOW, NOW.plusSeconds(1L), AggregateGranularity.DAY, null).get(0);
+
+        assertEquals(LocalDateTime.parse("2019-05-06T00:00"), bucket.getStart());
+        assertEquals(4, bucket.getStoppedCount());
+        assertArrayEquals(new int[]{1, 1, 0, 0, 0, 1, 0, 0, 0, 1}, bucket.getStoppedDurations());
+    }
+
+    @Test
+    void testGivenSessionStoppedAgain_WhenAggregate_ThenMoveTheStopToTheNewBucket() {
+        aggregates = createAggregates(NOW.plusMinutes(90L));
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusMinutes(1L));
+        aggregates.sessionStopped("ABC-1", NOW, NOW.plusMinutes(1L), NOW.plusMinutes(90L));
+
+        List<AggregateBucket> buckets = aggregates.aggregate(NOW, NOW.plusHours(2L), AggregateGranularity.HOUR, "ABC-1");
+
+        assertEquals(0, buckets.get(0).getStoppedCount());
+        assertArrayEquals(new int[10], buckets.get(0).getStoppedDurations());
+        assertEquals(1, buckets.get(1).getStoppedCount());
+        assertEquals(1, buckets.get(1).getStoppedDurations()[4]);
+    }
+
+    @Test
+    void testGivenMinutesOlderThanRetention_WhenAggregate_ThenMinutesAreEmptyButHoursKeepThem() {
+        aggregates = createAggregates(NOW.plusHours(1L));
+        aggregates.sessionStarted("ABC-1", NOW);
+        aggregates.sessionStarted("ABC-1", NOW.plusHours(1L));
+
+        assertEquals(0, aggregates.aggregate(NOW, NOW.plusSeconds(1L), AggregateGranularity.MINUTE, null).get(0).getStartedCount());
+        assertEquals(1, aggregates.aggregate(NOW, NOW.plusSeconds(1L), AggregateGranularity.HOUR, null).get(0).getStartedCount());
+        assertEquals(2, aggregates.aggregate(NOW, NOW.plusSeconds(1L), AggregateGranularity.DAY, null).get(0).getStartedCount());
+    }
+
+    @Test
+    void testGivenStopOfBucketNoLongerKept_WhenStoppedAgain_ThenLaterCountsAreKept() {
+        aggregates = createAggregates(NOW.plusMinutes(62L));
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusMinutes(1L));
+        aggregates.sessionStarted("ABC-2", NOW.plusMinutes(61L));
+        aggregates.sessionStopped("ABC-1", NOW, NOW.plusMinutes(1L), NOW.plusMinutes(62L));
+
+        List<AggregateBucket> buckets = aggregates.aggregate(NOW.plusMinutes(61L), NOW.plusMinutes(63L), AggregateGranularity.MINUTE, null);
+
+        assertEquals(1, buckets.get(0).getStartedCount());
+        assertEquals(0, buckets.get(0).getStoppedCount());
+        assertEquals(1, buckets.get(1).getStoppedCount());
+    }
+
+    @Test
+    void testGivenRangeLongerThanRetentionOrEmpty_WhenAggregate_ThenThrowIllegalArgumentException() {
+        assertEquals(60, aggregates.aggregate(NOW.withMinute(0).withSecond(0).withNano(0), NOW.withMinute(0).withSecond(0).withNano(0).plusHours(1L),
+                AggregateGranularity.MINUTE, null).size());
+        assertThrows(IllegalArgumentException.class, () -> aggregates.aggregate(NOW, NOW.plusHours(1L), AggregateGranularity.MINUTE, null));
+        assertThrows(IllegalArgumentException.class, () -> aggregates.aggregate(NOW, NOW, AggregateGranularity.HOUR, null));
+        assertThrows(IllegalArgumentException.class, () -> new SessionAggregates(Duration.ofSeconds(59L), Duration.ofDays(1L), Duration.ofDays(1L)));
+    }
+
+    @Test
+    void testGivenSessionsFarInTheFuture_WhenAggregate_ThenCurrentBucketsStillShow() {
+        // in 2099, in the slot of NOW of the minute tier (61 slots)
+        LocalDateTime farFuture = NOW.plusMinutes(61L * 690_000L);
+        aggregates.sessionStarted("ABC-1", farFuture);
+        aggregates.sessionStopped("ABC-1", farFuture, null, farFuture.plusMinutes(5L));
+
+        aggregates.sessionStarted("ABC-1", NOW);
+        aggregates.sessionStopped("ABC-1", NOW, null, NOW.plusSeconds(30L));
+
+        for (AggregateGranularity granularity : AggregateGranularity.values()) {
+            AggregateBucket bucket = aggregates.aggregate(NOW, NOW.plusSeconds(1L), granularity, null).get(0);
+            assertEquals(1, bucket.getStartedCount(), granularity.name());
+            assertEquals(1, bucket.getStoppedCount(), granularity.name());
+            assertEquals(0, aggregates.aggregate(farFuture, farFuture.plusSeconds(1L), granularity, "ABC-1").get(0).getStartedCount());
+        }
+    }
+
+    @Test
+    void testGivenSeveralWriters_WhenCountConcurrently_ThenNoCountIsLost() throws Exception {
+        int writers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int sessionsPerWriter = 30_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < sessionsPerWriter; i++) {
+                        String stationId = "ABC-" + i % 10;
+                        LocalDateTime startedAt = NOW.minusMinutes(i % 30);
+                        aggregates.sessionStarted(stationId, startedAt);
+                        aggregates.sessionStopped(stationId, startedAt, null, startedAt.plusSeconds(10L));
+                        aggregates.sessionStopped(stationId, startedAt, startedAt.plusSeconds(10L), startedAt.plusMinutes(1L));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int started = 0;
+        int stopped = 0;
+        for (AggregateBucket bucket : aggregates.aggregate(NOW.minusMinutes(30L), NOW.plusMinutes(1L), AggregateGranularity.MINUTE, null)) {
+            started += bucket.getStartedCount();
+            stopped += bucket.getStoppedCount();
+        }
+        assertEquals(writers * sessionsPerWriter, started);
+        assertEquals(writers * sessionsPerWriter, stopped);
+        int stationStarted = 0;
+        for (AggregateBucket bucket : aggregates.aggregate(NOW.minusHours(1L), NOW.plusHours(1L), AggregateGranularity.HOUR, "ABC-1")) {
+            stationStarted += bucket.getStartedCount();
+        }
+        assertEquals(writers * sessionsPerWriter / 10, stationStarted);
+    }
+
+    private static SessionAggregates createAggregates(LocalDateTime now) {
+        return new SessionAggregates(Duration.ofHours(1L), Duration.ofDays(2L), Duration.ofDays(10L), Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+}
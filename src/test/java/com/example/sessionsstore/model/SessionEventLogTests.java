@@ -0,0 +1,171 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionEventLogTests {
+
+    private final SessionsStore sessionsStore = new SessionsStore();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testGivenStartsAndStop_WhenSubscribeAfterSequence_ThenGetTheFollowingEventsInOrder() {
+        SessionEventLog eventLog = createEventLog(16, SlowConsumerPolicy.DROP);
+        ChargingSession first = sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        sessionsStore.stopSession(first.getId().toString(), LocalDateTime.now());
+        RecordingSubscriber fromStart = new RecordingSubscriber(Long.MAX_VALUE);
+        RecordingSubscriber resumed = new RecordingSubscriber(Long.MAX_VALUE);
+        RecordingSubscriber fromNow = new RecordingSubscriber(Long.MAX_VALUE);
+        eventLog.subscribe(0L, fromStart);
+        eventLog.subscribe(2L, resumed);
+        eventLog.subscribe(null, fromNow);
+
+        eventLog.dispatch();
+
+        assertEquals(3L, eventLog.getLastSequence());
+        assertEquals(Arrays.asList(1L, 2L, 3L), fromStart.sequences());
+        assertEquals(SessionEvent.Type.STARTED, fromStart.events.get(0).getType());
+        assertEquals(SessionEvent.Type.STOPPED, fromStart.events.get(2).getType());
+        assertEquals(first.getId(), fromStart.events.get(2).getSession().getId());
+        assertEquals(Arrays.asList(3L), resumed.sequences());
+        assertTrue(fromNow.events.isEmpty());
+
+        sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        eventLog.dispatch();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), fromStart.sequences());
+        assertEquals(Arrays.asList(4L), fromNow.sequences());
+    }
+
+    @Test
+    void testGivenSubscriberWithoutDemand_WhenCancelled_ThenGetNoMoreEvents() {
+        SessionEventLog eventLog = createEventLog(16, SlowConsumerPolicy.DROP);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1L);
+        SessionEventLog.Subscription subscription = eventLog.subscribe(null, subscriber);
+        sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+
+        eventLog.dispatch();
+        subscription.cancel();
+        subscriber.demand = Long.MAX_VALUE;
+        eventLog.dispatch();
+
+        assertEquals(Arrays.asList(1L), subscriber.sequences());
+        assertEquals(0.0, meterRegistry.get("sessions.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void testGivenDropPolicy_WhenSubscriberFallsBehindTheRing_ThenReportMissedEventsAndContinue() {
+        SessionEventLog eventLog = createEventLog(4, SlowConsumerPolicy.DROP);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0L);
+        eventLog.subscribe(0L, subscriber);
+        for (int i = 0; i < 10; i++) {
+            sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        }
+
+        eventLog.dispatch();
+        subscriber.demand = Long.MAX_VALUE;
+        eventLog.dispatch();
+
+        assertEquals(Arrays.asList(1L, 6L), subscriber.missed);
+        assertEquals(Arrays.asList(7L, 8L, 9L, 10L), subscriber.sequences());
+        assertEquals(6.0, meterRegistry.counter("sessions.events.missed").count());
+    }
+
+    @Test
+    void testGivenDisconnectPolicy_WhenSubscriberFallsBehindTheRing_ThenDisconnectIt() {
+        SessionEventLog eventLog = createEventLog(4, SlowConsumerPolicy.DISCONNECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0L);
+        eventLog.subscribe(0L, subscriber);
+        for (int i = 0; i < 5; i++) {
+            sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        }
+
+        eventLog.dispatch();
+        subscriber.demand = Long.MAX_VALUE;
+        eventLog.dispatch();
+
+        assertEquals(1L, subscriber.disconnectedAt);
+        assertTrue(subscriber.events.isEmpty());
+        assertEquals(1.0, meterRegistry.counter("sessions.events.disconnected").count());
+        assertEquals(0.0, meterRegistry.get("sessions.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void testGivenThousandsOfSubscribers_WhenAddSessions_ThenWritersNeverCallSubscribers() {
+        SessionEventLog eventLog = createEventLog(1024, SlowConsumerPolicy.DROP);
+        List<RecordingSubscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            subscribers.add(subscriber);
+            eventLog.subscribe(null, subscriber);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        }
+
+        assertTrue(subscribers.stream().allMatch(subscriber -> subscriber.events.isEmpty()));
+        eventLog.dispatch();
+        assertTrue(subscribers.stream().allMatch(subscriber -> subscriber.events.size() == 1000));
+    }
+
+    // dispatched by the tests instead of the scheduled dispatcher
+    private SessionEventLog createEventLog(int bufferSize, SlowConsumerPolicy slowConsumerPolicy) {
+        SessionEventLog eventLog = new SessionEventLog(sessionsStore, bufferSize, slowConsumerPolicy, Duration.ofMillis(10L), meterRegistry);
+        sessionsStore.addListener(eventLog);
+        return eventLog;
+    }
+
+    private static class RecordingSubscriber implements SessionEventSubscriber {
+        final List<SessionEvent> events = new ArrayList<>();
+        final List<Long> missed = new ArrayList<>();
+        long demand;
+        long disconnectedAt = -1L;
+
+        RecordingSubscriber(long demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        public long demand() {
+            return demand == Long.MAX_VALUE ? demand : demand - events.size();
+        }
+
+        @Override
+        public void onEvents(List<SessionEvent> events) {
+            this.events.addAll(events);
+        }
+
+        @Override
+        public void onMissed(long firstMissed, long lastMissed) {
+            missed.add(firstMissed);
+            missed.add(lastMissed);
+        }
+
+        @Override
+        public void onDisconnected(long firstMissed) {
+            disconnectedAt = firstMissed;
+        }
+
+        List<Long> sequences() {
+            List<Long> sequences = new ArrayList<>();
+            for (SessionEvent event : events) {
+                sequences.add(event.getSequence());
+            }
+            return sequences;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("slow")
+public class SessionsStorageFootprintTests {
+
+    private static final int SESSIONS = 100_000;
+
+    @Test
+    void testGivenSameSessions_WhenMeasureRetainedHeap_ThenCompactStorageUsesLessThanAThirdOfConcurrentStorage() {
+        List<ChargingSession> sessions = createSessions();
+
+        double concurrentBytesPerSession = bytesPerSession(new ConcurrentSessionsStorage(), sessions);
+        double compactBytesPerSession = bytesPerSession(new CompactSessionsStorage(), sessions);
+
+        assertTrue(compactBytesPerSession * 3 < concurrentBytesPerSession,
+                () -> String.format("bytes per session: concurrent=%.1f compact=%.1f", concurrentBytesPerSession, compactBytesPerSession));
+    }
+
+    @Test
+    void testGivenSameSessions_WhenMeasureRetainedHeap_ThenOffHeapStorageUsesLessThanAThirdOfCompactStorage() {
+        List<ChargingSession> sessions = createSessions();
+
+        double compactBytesPerSession = bytesPerSession(new CompactSessionsStorage(), sessions);
+        try (OffHeapSessionsStorage offHeap = new OffHeapSessionsStorage()) {
+            double offHeapBytesPerSession = bytesPerSession(offHeap, sessions);
+
+            assertTrue(offHeapBytesPerSession * 3 < compactBytesPerSession,
+                    () -> String.format("heap bytes per session: compact=%.1f off-heap=%.1f", compactBytesPerSession, offHeapBytesPerSession));
+        }
+    }
+
+    private double bytesPerSession(SessionsStorage storage, List<ChargingSession> sessions) {
+        SessionsStore sessionsStore = new SessionsStore(storage);
+        long emptySize = GraphLayout.parseInstance(storage).totalSize();
+        for (int i = 0; i < sessions.size(); i++) {
+            ChargingSession session = sessions.get(i);
+            storage.add(session);
+            if (i % 2 == 0) {
+                sessionsStore.stopSession(session.getId().toString(), session.getStartedAt().plusMinutes(30L));
+            }
+        }
+        return (GraphLayout.parseInstance(storage).totalSize() - emptySize) / (double) sessions.size();
+    }
+
+    private List<ChargingSession> createSessions() {
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        List<ChargingSession> sessions = new ArrayList<>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            // a new String per session, like a station id parsed from a request body
+            String stationId = new StringBuilder("ABC-").append(i % 100).toString();
+            sessions.add(new ChargingSession(UUID.randomUUID(), stationId, startedAt.plusSeconds(i), null, IN_PROGRESS));
+        }
+        return sessions;
+    }
+
+}
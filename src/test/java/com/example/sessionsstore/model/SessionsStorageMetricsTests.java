@@ -0,0 +1,53 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SessionsStorageMetricsTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionsStorage storage = new ConcurrentSessionsStorage(meterRegistry);
+    private final SessionsStore sessionsStore = new SessionsStore(storage);
+
+    @Test
+    void testGivenSessionsInTwoMinutes_WhenScrapeGauges_ThenReportSessionsIndexAndBuckets() {
+        LocalDateTime minute = LocalDateTime.parse("2019-05-06T19:00:00");
+        sessionsStore.addSession("ABC-12345", minute);
+        sessionsStore.addSession("ABC-12345", minute.plusMinutes(1L));
+        createMetrics();
+
+        assertEquals(2.0, meterRegistry.get("sessions.storage.sessions").gauge().value());
+        assertEquals(2.0, meterRegistry.get("sessions.storage.index.size").gauge().value());
+        assertEquals(2.0, meterRegistry.get("sessions.storage.buckets").gauge().value());
+    }
+
+    @Test
+    void testGivenFinishedMinute_WhenRecordBucketSizes_ThenRecordEveryNonEmptyBucketOfThatMinute() {
+        LocalDateTime minute = LocalDateTime.parse("2019-05-06T19:00:00");
+        sessionsStore.addSession("ABC-12345", minute.plusSeconds(1L));
+        sessionsStore.addSession("ABC-12345", minute.plusSeconds(2L));
+        ChargingSession stopped = sessionsStore.addSession("ABC-12345", minute.plusSeconds(3L));
+        sessionsStore.stopSession(stopped.getId().toString(), minute.plusSeconds(4L));
+        SessionsStorageMetrics metrics = createMetrics();
+
+        metrics.recordBucketSizes(minute);
+        metrics.recordBucketSizes(minute.plusMinutes(1L));
+
+        assertEquals(1L, meterRegistry.get("sessions.storage.bucket.size").tag("status", "in_progress").summary().count());
+        assertEquals(2.0, meterRegistry.get("sessions.storage.bucket.size").tag("status", "in_progress").summary().totalAmount());
+        assertEquals(1L, meterRegistry.get("sessions.storage.bucket.size").tag("status", "stopped").summary().count());
+    }
+
+    private SessionsStorageMetrics createMetrics() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new SessionsStorageMetrics(storage, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.example.sessionsstore.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionsStoreConcurrencyTests {
+
+    private static final int SESSIONS_PER_THREAD = 20_000;
+
+    @Test
+    void testGivenSeveralWritersAndReaders_WhenAddAndStopSessionsConcurrently_ThenNoUpdateIsLost() throws Exception {
+        SessionsStore sessionsStore = new SessionsStore();
+        int writers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (writing.get()) {
+                    sessionsStore.getAllSessions();
+                    sessionsStore.getSessionsUpdatedLastMinute();
+                }
+            });
+
+            runWriters(sessionsStore, writers, executor);
+            writing.set(false);
+            reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ArrayList<ChargingSession> sessions = sessionsStore.getAllSessions();
+        assertEquals(writers * SESSIONS_PER_THREAD, sessions.size());
+        sessions.forEach(s -> assertEquals(STOPPED, s.getStatus()));
+    }
+
+    @Test
+    void testGivenSessionsStoppedConcurrently_WhenGetSessionsUpdatedBetween_ThenEverySessionOnceAndConsistent() throws Exception {
+        SessionsStore sessionsStore = new SessionsStore();
+        int writers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        LocalDateTime from = LocalDateTime.now().minusHours(1L);
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (writing.get()) {
+                    Set<UUID> ids = new HashSet<>();
+                    for (ChargingSession session : sessionsStore.getSessionsUpdatedBetween(from, LocalDateTime.now().plusHours(1L))) {
+                        assertTrue(ids.add(session.getId()), "duplicate " + session);
+                        assertEquals(session.getStoppedAt() != null, session.getStatus() == STOPPED, session.toString());
+                    }
+                }
+                return null;
+            });
+
+            runWriters(sessionsStore, writers, executor);
+            writing.set(false);
+            reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runWriters(SessionsStore sessionsStore, int writers, ExecutorService executor) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            String stationId = "ABC-" + i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<ChargingSession> added = new ArrayList<>(SESSIONS_PER_THREAD);
+                for (int j = 0; j < SESSIONS_PER_THREAD; j++) {
+                    added.add(sessionsStore.addSession(stationId, LocalDateTime.now().minusSeconds(j % 120)));
+                }
+                for (ChargingSession session : added) {
+                    sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+}
@@ -1,12 +1,22 @@
 package com.example.sessionsstore.model;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -14,11 +24,25 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SessionsStoreTests {
 
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SessionsStorage storage;
     private SessionsStore sessionsStore;
 
     @BeforeEach
      void setUp() {
-        sessionsStore = new SessionsStore();
+        storage = createStorage(meterRegistry);
+        sessionsStore = new SessionsStore(storage, Duration.ofHours(1L), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (storage instanceof AutoCloseable) {
+            ((AutoCloseable) storage).close();
+        }
+    }
+
+    protected SessionsStorage createStorage(MeterRegistry meterRegistry) {
+        return new ConcurrentSessionsStorage(meterRegistry);
     }
 
     @Test
@@ -103,6 +127,283 @@ public class SessionsStoreTests {
         assertTrue(sessionsUpdatedLastMinute.isEmpty());
     }
 
+    @Test
+    void testGivenSeveralSessionsStartedInDifferentTimeAndWithDifferentStatus_WhenGetSessionsSummaryForOneMinute_ThenCountsMatchSessionsUpdatedLastMinute() {
+        LocalDateTime now = LocalDateTime.now();
+        createInProgressSession(now);
+        createInProgressSession(now.minusSeconds(59L));
+        createInProgressSession(now.minusSeconds(61L));
+        createStoppedSession(now, now);
+        createStoppedSession(now.minusSeconds(59L), now);
+        createStoppedSession(now.minusSeconds(61L), now);
+        createStoppedSession(now.minusSeconds(61L), now.minusSeconds(61L));
+        createStoppedSession(now.minusMinutes(2L), now);
+
+        SessionsSummary summary = sessionsStore.getSessionsSummary(Duration.ofMinutes(1L));
+
+        assertEquals(new SessionsSummary(6, 2, 4), summary);
+    }
+
+    @Test
+    void testGivenSessionStoppedTwice_WhenGetSessionsSummary_ThenSessionIsCountedOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession session = createStoppedSession(now.minusSeconds(10L), now.minusSeconds(5L));
+        sessionsStore.stopSession(session.getId().toString(), now);
+
+        assertEquals(new SessionsSummary(1, 0, 1), sessionsStore.getSessionsSummary(Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSeveralSessions_WhenIterateSessionsAfterCursor_ThenEverySessionIsReturnedOnceInStoreOrder() {
+        for (int i = 0; i < 50; i++) {
+            createInProgressSession(LocalDateTime.now());
+        }
+        List<UUID> ids = new ArrayList<>();
+        String after = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            Iterator<ChargingSession> page = sessionsStore.getSessionsAfter(after);
+            hasMore = false;
+            for (int i = 0; i < 7 && page.hasNext(); i++) {
+                ChargingSession session = page.next();
+                ids.add(session.getId());
+                after = session.getId().toString();
+                hasMore = true;
+            }
+        }
+
+        List<UUID> allIds = new ArrayList<>();
+        sessionsStore.getAllSessions().forEach(s -> allIds.add(s.getId()));
+        assertEquals(50, ids.size());
+        assertEquals(allIds, ids);
+    }
+
+    @Test
+    void testGivenCursorSessionEvicted_WhenIterateSessionsAfterCursor_ThenResumeAfterIt() {
+        LocalDateTime startedAt = LocalDateTime.now().minusHours(3L);
+        for (int i = 0; i < 20; i++) {
+            createInProgressSession(startedAt);
+        }
+        List<UUID> allIds = new ArrayList<>();
+        sessionsStore.getAllSessions().forEach(s -> allIds.add(s.getId()));
+        UUID cursor = allIds.get(9);
+        sessionsStore.stopSession(cursor.toString(), startedAt.plusHours(1L));
+        while (sessionsStore.evictStoppedBucket(startedAt.plusHours(2L)) >= 0) {
+        }
+        assertThrows(IllegalArgumentException.class, () -> sessionsStore.getSession(cursor.toString()));
+
+        List<UUID> ids = new ArrayList<>();
+        sessionsStore.getSessionsAfter(cursor.toString()).forEachRemaining(s -> ids.add(s.getId()));
+
+        assertEquals(allIds.subList(10, 20), ids);
+    }
+
+    @Test
+    void testGivenCursorInWrongFormat_WhenIterateSessionsAfterCursor_ThenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> sessionsStore.getSessionsAfter("not-a-uuid"));
+    }
+
+    @Test
+    void testGivenSessionsStoppedBeforeAndAfterCutoff_WhenEvictStoppedBuckets_ThenOnlyOldStoppedSessionsAreEvicted() {
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession inProgressSessionSubmitted3HoursAgo = createInProgressSession(now.minusHours(3L));
+        ChargingSession stoppedSession3HoursAgo = createStoppedSession(now.minusHours(4L), now.minusHours(3L));
+        createStoppedSession(now.minusHours(4L), now.minusHours(3L).minusMinutes(5L));
+        ChargingSession stoppedSessionNow = createStoppedSession(now.minusHours(4L), now);
+
+        int evictedSessions = 0;
+        int evictedBuckets = 0;
+        for (int evicted; (evicted = sessionsStore.evictStoppedBucket(now.minusHours(2L))) >= 0; ) {
+            evictedSessions += evicted;
+            evictedBuckets++;
+        }
+
+        assertEquals(2, evictedSessions);
+        assertEquals(2, evictedBuckets);
+        ArrayList<ChargingSession> sessions = sessionsStore.getAllSessions();
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.contains(inProgressSessionSubmitted3HoursAgo));
+        assertTrue(sessions.contains(stoppedSessionNow));
+        assertThrows(IllegalArgumentException.class, () -> sessionsStore.stopSession(stoppedSession3HoursAgo.getId().toString(), now));
+    }
+
+    @Test
+    void testGivenEvictedSessions_WhenAddNewSessions_ThenNewSessionsAreStored() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 20; i++) {
+            createStoppedSession(now.minusHours(4L), now.minusHours(3L));
+        }
+        while (sessionsStore.evictStoppedBucket(now.minusHours(2L)) >= 0) {
+        }
+        for (int i = 0; i < 30; i++) {
+            createStoppedSession(now.minusMinutes(1L), now);
+        }
+
+        ArrayList<ChargingSession> sessions = sessionsStore.getAllSessions();
+        assertEquals(30, sessions.size());
+        sessions.forEach(s -> assertEquals(s, sessionsStore.getSession(s.getId().toString())));
+    }
+
+    @Test
+    void testGivenSessionsStoppedAgainInEvictedMinute_WhenGetSessions_ThenTheyAreStored() {
+        LocalDateTime evictedMinute = LocalDateTime.now().minusHours(3L);
+        createStoppedSession(evictedMinute.minusHours(1L), evictedMinute);
+        assertEquals(1, sessionsStore.evictStoppedBucket(evictedMinute.plusHours(1L)));
+
+        ChargingSession session = createStoppedSession(evictedMinute.minusHours(1L), evictedMinute);
+
+        assertEquals(1, storage.bucketSize(STOPPED, evictedMinute));
+        assertEquals(Collections.singletonList(session), sessionsStore.getSessionsUpdatedBetween(evictedMinute, evictedMinute.plusMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSessionsOverSeveralDays_WhenGetSessionsUpdatedBetween_ThenReturnSessionsFromIncludedToExcluded() {
+        LocalDateTime from = LocalDateTime.parse("2019-05-06T19:00:30");
+        LocalDateTime to = from.plusDays(1L);
+        ChargingSession atFrom = createInProgressSession(from);
+        ChargingSession beforeFrom = createInProgressSession(from.minusNanos(1L));
+        ChargingSession stoppedInRange = createStoppedSession(from.minusDays(3L), from.plusHours(5L));
+        ChargingSession stoppedAfterRange = createStoppedSession(from.plusHours(5L), to);
+        ChargingSession beforeTo = createInProgressSession(to.minusNanos(1L));
+        createInProgressSession(from.plusDays(30L));
+
+        List<ChargingSession> sessions = sessionsStore.getSessionsUpdatedBetween(from, to);
+
+        assertEquals(3, sessions.size());
+        assertTrue(sessions.containsAll(Arrays.asList(atFrom, stoppedInRange, beforeTo)));
+        assertFalse(sessions.contains(beforeFrom));
+        assertFalse(sessions.contains(stoppedAfterRange));
+        assertTrue(sessionsStore.getSessionsUpdatedBetween(to, from).isEmpty());
+        assertEquals(2L, meterRegistry.timer("sessions.store.operations", "operation", "updatedBetween").count());
+    }
+
+    @Test
+    void testGivenChangesAndMisses_WhenGetVersion_ThenOnlyChangesIncrementIt() {
+        long initial = sessionsStore.getVersion();
+        ChargingSession session = createInProgressSession(LocalDateTime.now());
+        sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now());
+        long afterChanges = sessionsStore.getVersion();
+
+        assertThrows(IllegalArgumentException.class, () -> sessionsStore.stopSession(UUID.randomUUID().toString(), LocalDateTime.now()));
+        sessionsStore.getAllSessions();
+        assertEquals(-1, sessionsStore.evictStoppedBucket(LocalDateTime.now().minusDays(1L)));
+
+        assertEquals(initial + 2L, afterChanges);
+        assertEquals(afterChanges, sessionsStore.getVersion());
+    }
+
+    @Test
+    void testGivenStoreOperations_WhenDone_ThenTimeOperationsAndLocksAndCountMisses() {
+        ChargingSession session = sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+        sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now());
+        assertThrows(IllegalArgumentException.class, () -> sessionsStore.stopSession(UUID.randomUUID().toString(), LocalDateTime.now()));
+        sessionsStore.getAllSessions();
+
+        assertEquals(1L, meterRegistry.timer("sessions.store.operations", "operation", "add").count());
+        assertEquals(2L, meterRegistry.timer("sessions.store.operations", "operation", "stop").count());
+        assertEquals(1L, meterRegistry.timer("sessions.store.operations", "operation", "getAll").count());
+        assertEquals(1.0, meterRegistry.counter("sessions.store.misses", "operation", "stop").count());
+        assertTrue(meterRegistry.get("sessions.storage.lock.wait").tag("operation", "stop").timer().count() >= 1L);
+        assertTrue(meterRegistry.get("sessions.storage.lock.hold").tag("operation", "stop").timer().count() >= 1L);
+    }
+
+    @Test
+    void testGivenSessionsInTwoMinutes_WhenGetStorageStatistics_ThenCountSessionsIndexAndBuckets() {
+        LocalDateTime minute = LocalDateTime.parse("2019-05-06T19:00:00");
+        sessionsStore.addSession("ABC-12345", minute.plusSeconds(10L));
+        ChargingSession stopped = sessionsStore.addSession("ABC-12345", minute.plusSeconds(20L));
+        sessionsStore.stopSession(stopped.getId().toString(), minute.plusSeconds(70L));
+
+        assertEquals(2, storage.sessionCount());
+        assertEquals(2, storage.indexSize());
+        assertEquals(2, storage.bucketCount());
+        assertEquals(1, storage.bucketSize(IN_PROGRESS, minute));
+        assertEquals(0, storage.bucketSize(STOPPED, minute));
+        assertEquals(1, storage.bucketSize(STOPPED, minute.plusSeconds(90L)));
+    }
+
+    @Test
+    void testGivenSessionsAtTwoStations_WhenGetStationSessions_ThenReturnOnlySessionsOfThatStation() {
+        ChargingSession session1 = sessionsStore.addSession("ABC-1", LocalDateTime.now());
+        ChargingSession session2 = sessionsStore.addSession("ABC-1", LocalDateTime.now());
+        sessionsStore.addSession("ABC-2", LocalDateTime.now());
+        sessionsStore.stopSession(session2.getId().toString(), LocalDateTime.now());
+
+        List<ChargingSession> sessions = sessionsStore.getStationSessions("ABC-1");
+
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.stream().anyMatch(s -> s.getId().equals(session1.getId()) && s.getStatus() == IN_PROGRESS));
+        assertTrue(sessions.stream().anyMatch(s -> s.getId().equals(session2.getId()) && s.getStatus() == STOPPED));
+        assertTrue(sessionsStore.getStationSessions("ABC-3").isEmpty());
+    }
+
+    @Test
+    void testGivenSessionsAtStation_WhenGetStationSummary_ThenCountAllOrWithinWindowByStatus() {
+        LocalDateTime now = LocalDateTime.now();
+        sessionsStore.addSession("ABC-1", now.minusHours(2L));
+        ChargingSession stopped = sessionsStore.addSession("ABC-1", now.minusHours(3L));
+        sessionsStore.stopSession(stopped.getId().toString(), now.minusMinutes(10L));
+        sessionsStore.addSession("ABC-2", now);
+
+        assertEquals(new SessionsSummary(2, 1, 1), sessionsStore.getStationSummary("ABC-1", null));
+        assertEquals(new SessionsSummary(1, 0, 1), sessionsStore.getStationSummary("ABC-1", Duration.ofHours(1L)));
+        assertEquals(new SessionsSummary(0, 0, 0), sessionsStore.getStationSummary("ABC-3", null));
+    }
+
+    @Test
+    void testGivenEvictedSessions_WhenGetStationSessions_ThenReturnOnlyRemainingSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession evicted = createStoppedSession(now.minusDays(2L), now.minusDays(2L));
+        ChargingSession kept = createInProgressSession(now.minusDays(2L));
+
+        sessionsStore.evictStoppedBucket(now.minusDays(1L));
+
+        List<ChargingSession> sessions = sessionsStore.getStationSessions(evicted.getStationId());
+        assertEquals(1, sessions.size());
+        assertEquals(kept.getId(), sessions.get(0).getId());
+    }
+
+    @Test
+    void testGivenStartsOfSeveralMinutesAndStations_WhenAddSessions_ThenAddAllSessionsInOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        List<SessionStart> starts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            starts.add(new SessionStart("ABC-" + (i % 3), now.minusSeconds(i * 5L)));
+        }
+
+        List<ChargingSession> sessions = sessionsStore.addSessions(starts);
+
+        assertEquals(100, sessions.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(starts.get(i).getStationId(), sessions.get(i).getStationId());
+            assertEquals(sessions.get(i), sessionsStore.getSession(sessions.get(i).getId().toString()));
+        }
+        assertEquals(34, sessionsStore.getStationSessions("ABC-0").size());
+        assertEquals(new SessionsSummary(12, 12, 0), sessionsStore.getSessionsSummary(Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenKnownAndUnknownIds_WhenStopSessions_ThenStopKnownSessionsAndReturnNullForUnknown() {
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession session1 = createInProgressSession(now.minusMinutes(5L));
+        ChargingSession session2 = createInProgressSession(now.minusMinutes(5L));
+        List<SessionStop> stops = Arrays.asList(
+                new SessionStop(session1.getId(), now),
+                new SessionStop(UUID.randomUUID(), now),
+                new SessionStop(session2.getId(), now.minusMinutes(1L)));
+
+        List<ChargingSession> stopped = sessionsStore.stopSessions(stops);
+
+        assertEquals(3, stopped.size());
+        assertEquals(STOPPED, stopped.get(0).getStatus());
+        assertEquals(now, stopped.get(0).getStoppedAt());
+        assertEquals(null, stopped.get(1));
+        assertEquals(now.minusMinutes(1L), stopped.get(2).getStoppedAt());
+        assertEquals(STOPPED, sessionsStore.getSession(session2.getId().toString()).getStatus());
+        assertEquals(new SessionsSummary(2, 0, 2), sessionsStore.getSessionsSummary(Duration.ofMinutes(2L)));
+        assertEquals(1.0, meterRegistry.counter("sessions.store.misses", "operation", "stop").count());
+    }
+
     private ChargingSession createInProgressSession(LocalDateTime time) {
         return sessionsStore.addSession("ABC-12345", time);
     }
@@ -110,7 +411,46 @@ public class SessionsStoreTests {
     private ChargingSession createStoppedSession(LocalDateTime startTime, LocalDateTime stopTime) {
         ChargingSession session = createInProgressSession(startTime);
         sessionsStore.stopSession(session.getId().toString(), stopTime);
-        return session;
+        return sessionsStore.getSession(session.getId().toString());
+    }
+
+    @Test
+    void testGivenRestoredSessions_WhenGetSessionsAndSummary_ThenRestoredWithStatusButExistingSkipped() {
+        LocalDateTime now = LocalDateTime.now();
+        ChargingSession existing = sessionsStore.addSession("ABC-12345", now.minusSeconds(10L));
+        ChargingSession stopped = new ChargingSession(UUID.randomUUID(), "ABC-12345", now.minusSeconds(20L), now.minusSeconds(5L), STOPPED);
+        ChargingSession inProgress = new ChargingSession(UUID.randomUUID(), "XYZ-1", now.minusSeconds(15L), null, IN_PROGRESS);
+
+        sessionsStore.restoreSessions(Arrays.asList(stopped, inProgress,
+                new ChargingSession(existing.getId(), "ABC-12345", now.minusSeconds(30L), now, STOPPED)));
+
+        assertEquals(3, sessionsStore.getAllSessions().size());
+        assertEquals(STOPPED, sessionsStore.getSession(stopped.getId().toString()).getStatus());
+        assertEquals(IN_PROGRESS, sessionsStore.getSession(existing.getId().toString()).getStatus());
+        assertEquals(2, sessionsStore.getStationSessions("ABC-12345").size());
+        assertEquals(new SessionsSummary(3, 2, 1), sessionsStore.getSessionsSummary(Duration.ofMinutes(1L)));
+    }
+
+    @Test
+    void testGivenSessionsAddedStoppedAndRestored_WhenGetAggregates_ThenCountStartsAndStopsByHour() {
+        // aggregates only count what is within their retention before the clock
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(2L);
+        ChargingSession session = sessionsStore.addSession("ABC-12345", hour.plusMinutes(5L));
+        sessionsStore.addSessions(Arrays.asList(new SessionStart("ABC-12345", hour.plusMinutes(10L)), new SessionStart("XYZ-1", hour.plusMinutes(20L))));
+        sessionsStore.stopSession(session.getId().toString(), hour.plusMinutes(30L));
+        sessionsStore.stopSession(session.getId().toString(), hour.plusMinutes(70L));
+        sessionsStore.restoreSession(new ChargingSession(UUID.randomUUID(), "ABC-12345", hour, hour.plusMinutes(1L), STOPPED));
+
+        List<AggregateBucket> buckets = sessionsStore.getAggregates(hour, hour.plusHours(2L), AggregateGranularity.HOUR, "ABC-12345");
+
+        assertEquals(2, buckets.size());
+        assertEquals(3, buckets.get(0).getStartedCount());
+        assertEquals(1, buckets.get(0).getStoppedCount());
+        assertEquals(1, buckets.get(0).getStoppedDurations()[0]);
+        assertEquals(0, buckets.get(1).getStartedCount());
+        assertEquals(1, buckets.get(1).getStoppedCount());
+        assertEquals(1, buckets.get(1).getStoppedDurations()[4]);
+        assertEquals(4, sessionsStore.getAggregates(hour, hour.plusHours(1L), AggregateGranularity.DAY, null).get(0).getStartedCount());
     }
 
 }
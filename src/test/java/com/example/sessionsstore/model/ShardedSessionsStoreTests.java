@@ -0,0 +1,131 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedSessionsStoreTests extends SessionsStoreTests {
+
+    @Override
+    protected SessionsStorage createStorage(MeterRegistry meterRegistry) {
+        List<SessionsStorage> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new ConcurrentSessionsStorage(meterRegistry));
+        }
+        return new ShardedSessionsStorage(shards);
+    }
+
+    @Override
+    @Test
+    void testGivenSessionsInTwoMinutes_WhenGetStorageStatistics_ThenCountSessionsIndexAndBuckets() {
+        ShardedSessionsStorage storage = (ShardedSessionsStorage) createStorage(new SimpleMeterRegistry());
+        LocalDateTime minute = LocalDateTime.parse("2019-05-06T19:00:00");
+        ChargingSession inProgress = new ChargingSession(UUID.randomUUID(), "ABC-12345", minute.plusSeconds(10L), IN_PROGRESS);
+        ChargingSession stopped = new ChargingSession(UUID.randomUUID(), "ABC-12345", minute.plusSeconds(20L), IN_PROGRESS);
+        storage.add(inProgress);
+        storage.add(stopped);
+        storage.stop(stopped.getId(), minute.plusSeconds(70L), previous -> { });
+
+        assertEquals(2, storage.sessionCount());
+        assertEquals(2, storage.indexSize());
+        // every shard has its own buckets, the in-progress minute is one or two buckets
+        int shardsOfMinute = storage.shardFor(inProgress.getId()) == storage.shardFor(stopped.getId()) ? 1 : 2;
+        assertEquals(shardsOfMinute + 1, storage.bucketCount());
+        assertEquals(1, storage.bucketSize(IN_PROGRESS, minute));
+        assertEquals(0, storage.bucketSize(STOPPED, minute));
+        assertEquals(1, storage.bucketSize(STOPPED, minute.plusSeconds(90L)));
+    }
+
+    @Test
+    void testGivenManyIds_WhenNodeFor_ThenSpreadEvenlyAndMoveOnlyToAnAddedNode() {
+        ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 64);
+        ConsistentHashRing sameFour = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 64);
+        ConsistentHashRing five = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d", "e"), 64);
+        int[] counts = new int[4];
+        int moved = 0;
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = UUID.randomUUID();
+            int node = four.nodeFor(id);
+            counts[node]++;
+            assertEquals(node, sameFour.nodeFor(id));
+            if (five.nodeFor(id) != node) {
+                assertEquals(4, five.nodeFor(id));
+                moved++;
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 25_000 * 0.75 && count < 25_000 * 1.25, Arrays.toString(counts));
+        }
+        assertTrue(moved > 20_000 * 0.75 && moved < 20_000 * 1.25, "moved " + moved);
+    }
+
+    @Test
+    void testGivenSessionsInAllShards_WhenIterateAfterEverySession_ThenResumeAcrossShards() {
+        ShardedSessionsStorage storage = (ShardedSessionsStorage) createStorage(new SimpleMeterRegistry());
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        for (int i = 0; i < 200; i++) {
+            storage.add(new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 3), startedAt, IN_PROGRESS));
+        }
+        List<ChargingSession> all = new ArrayList<>();
+        storage.iterator(null).forEachRemaining(all::add);
+        Set<UUID> ids = new HashSet<>();
+        Set<SessionsStorage> shards = new HashSet<>();
+        all.forEach(session -> {
+            ids.add(session.getId());
+            shards.add(storage.shardFor(session.getId()));
+        });
+
+        assertEquals(200, ids.size());
+        assertEquals(storage.shardCount(), shards.size());
+        for (int i = 0; i < all.size(); i++) {
+            Iterator<ChargingSession> rest = storage.iterator(all.get(i).getId());
+            for (int j = i + 1; j < all.size(); j++) {
+                assertEquals(all.get(j).getId(), rest.next().getId());
+            }
+            assertFalse(rest.hasNext());
+        }
+        assertEquals(200, storage.sessionCount());
+        assertEquals(200, storage.bucketSize(IN_PROGRESS, startedAt));
+    }
+
+    @Test
+    void testGivenBatchOfStopsOfAllShards_WhenStopAll_ThenReportEveryStopAtItsPosition() {
+        ShardedSessionsStorage storage = (ShardedSessionsStorage) createStorage(new SimpleMeterRegistry());
+        LocalDateTime startedAt = LocalDateTime.parse("2019-05-06T19:00:20.529");
+        List<SessionStop> stops = new ArrayList<>();
+        boolean[] expected = new boolean[40];
+        for (int i = 0; i < expected.length; i++) {
+            UUID id = UUID.randomUUID();
+            expected[i] = i % 4 != 0;
+            if (expected[i]) {
+                storage.add(new ChargingSession(id, "ABC-12345", startedAt, IN_PROGRESS));
+            }
+            stops.add(new SessionStop(id, startedAt.plusMinutes(1L)));
+        }
+        UUID[] stopped = new UUID[expected.length];
+
+        boolean[] found = storage.stopAll(stops, (session, i) -> stopped[i] = session.getId());
+
+        assertArrayEquals(expected, found);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i] ? stops.get(i).getId() : null, stopped[i]);
+        }
+    }
+
+}
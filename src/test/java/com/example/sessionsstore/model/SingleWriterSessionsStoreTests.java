@@ -0,0 +1,177 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.sessionsstore.model.ChargingSession.Status.IN_PROGRESS;
+import static com.example.sessionsstore.model.ChargingSession.Status.STOPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleWriterSessionsStoreTests extends SessionsStoreTests {
+
+    @Override
+    protected SessionsStorage createStorage(MeterRegistry meterRegistry) {
+        return new SingleWriterSessionsStorage(meterRegistry);
+    }
+
+    /**
+     * The engine has no locks, its writes are timed from publishing to release instead.
+     */
+    @Override
+    @Test
+    void testGivenStoreOperations_WhenDone_ThenTimeOperationsAndLocksAndCountMisses() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage(registry)) {
+            SessionsStore sessionsStore = new SessionsStore(storage, Duration.ofHours(1L), registry);
+            ChargingSession session = sessionsStore.addSession("ABC-12345", LocalDateTime.now());
+            sessionsStore.stopSession(session.getId().toString(), LocalDateTime.now());
+            assertThrows(IllegalArgumentException.class, () -> sessionsStore.stopSession(UUID.randomUUID().toString(), LocalDateTime.now()));
+
+            assertEquals(1L, registry.get("sessions.storage.writer.latency").tag("operation", "add").timer().count());
+            assertEquals(2L, registry.get("sessions.storage.writer.latency").tag("operation", "stop").timer().count());
+            assertTrue(registry.get("sessions.storage.writer.batch").summary().count() >= 1L);
+            assertEquals(0.0, registry.get("sessions.storage.writer.queue").gauge().value());
+            assertEquals(1.0, registry.counter("sessions.store.misses", "operation", "stop").count());
+        }
+    }
+
+    @Test
+    void testGivenSingleWriterEngineAloneOrAsShard_WhenAskWritesMayBlock_ThenTrue() {
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage(new SimpleMeterRegistry());
+             SingleWriterSessionsStorage shard = new SingleWriterSessionsStorage(new SimpleMeterRegistry())) {
+            assertTrue(new SessionsStore(storage).writesMayBlock());
+            assertTrue(new SessionsStore(new ShardedSessionsStorage(Arrays.asList(new ConcurrentSessionsStorage(), shard))).writesMayBlock());
+            assertFalse(new SessionsStore(new ShardedSessionsStorage(Arrays.asList(new ConcurrentSessionsStorage(), new ConcurrentSessionsStorage()))).writesMayBlock());
+        }
+    }
+
+    @Test
+    void testGivenIteratorOverSnapshot_WhenStoreChanges_ThenIteratorKeepsReadingTheSnapshot() throws Exception {
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage(new SimpleMeterRegistry())) {
+            LocalDateTime now = LocalDateTime.now();
+            List<ChargingSession> sessions = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                sessions.add(new ChargingSession(UUID.randomUUID(), "ABC-" + (i % 3), now, null, IN_PROGRESS));
+            }
+            storage.addAll(sessions);
+            Iterator<ChargingSession> iterator = storage.iterator(null);
+
+            for (ChargingSession session : sessions) {
+                storage.stop(session.getId(), now.plusMinutes(1L), previous -> { });
+            }
+            storage.add(new ChargingSession(UUID.randomUUID(), "ABC-0", now, null, IN_PROGRESS));
+
+            int iterated = 0;
+            while (iterator.hasNext()) {
+                assertEquals(IN_PROGRESS, iterator.next().getStatus());
+                iterated++;
+            }
+            assertEquals(100, iterated);
+            sessions.forEach(session -> assertEquals(STOPPED, storage.get(session.getId()).getStatus()));
+            assertEquals(1, storage.bucketSize(IN_PROGRESS, now));
+            assertEquals(100, storage.bucketSize(STOPPED, now.plusMinutes(1L)));
+            assertEquals(101, storage.indexSize());
+        }
+    }
+
+    @Test
+    void testGivenManyWriterThreads_WhenAddAndStopConcurrently_ThenEveryChangeIsApplied() throws Exception {
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage(64, BackpressurePolicy.BLOCK, new SimpleMeterRegistry())) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            LocalDateTime now = LocalDateTime.now();
+            List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                String stationId = "ABC-" + thread;
+                futures.add(executor.submit(() -> {
+                    List<UUID> ids = new ArrayList<>();
+                    for (int i = 0; i < 2_000; i++) {
+                        ChargingSession session = new ChargingSession(UUID.randomUUID(), stationId, now, null, IN_PROGRESS);
+                        storage.add(session);
+                        if (i % 2 == 0) {
+                            assertTrue(storage.stop(session.getId(), now.plusSeconds(1L), previous -> { }));
+                        }
+                        ids.add(session.getId());
+                    }
+                    return ids;
+                }));
+            }
+            List<UUID> ids = new ArrayList<>();
+            for (Future<List<UUID>> future : futures) {
+                ids.addAll(future.get(1L, TimeUnit.MINUTES));
+            }
+            executor.shutdown();
+
+            assertEquals(16_000, storage.indexSize());
+            ids.forEach(id -> assertFalse(storage.get(id) == null));
+            List<ChargingSession> atStation = new ArrayList<>();
+            storage.forEachAtStation("ABC-3", atStation::add);
+            assertEquals(2_000, atStation.size());
+            assertEquals(8_000, storage.bucketSize(STOPPED, now.plusSeconds(1L)));
+        }
+    }
+
+    @Test
+    void testGivenFullRingAndRejectPolicy_WhenAddSession_ThenRejectUntilWriterCatchesUp() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (SingleWriterSessionsStorage storage = new SingleWriterSessionsStorage(2, BackpressurePolicy.REJECT, registry)) {
+            ChargingSession blocking = new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS);
+            storage.add(blocking);
+            CountDownLatch writerBlocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            // blocks the writer inside the stop callback
+            Future<Boolean> stop = executor.submit(() -> storage.stop(blocking.getId(), LocalDateTime.now(), previous -> {
+                writerBlocked.countDown();
+                awaitQuietly(release);
+            }));
+            assertTrue(writerBlocked.await(10L, TimeUnit.SECONDS));
+            List<Future<?>> queued = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                queued.add(executor.submit(() -> storage.add(new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS))));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (registry.get("sessions.storage.writer.queue").gauge().value() < 2.0 && System.nanoTime() < deadline) {
+                Thread.sleep(1L);
+            }
+
+            assertThrows(RejectedExecutionException.class,
+                    () -> storage.add(new ChargingSession(UUID.randomUUID(), "ABC-12345", LocalDateTime.now(), null, IN_PROGRESS)));
+            assertEquals(1.0, registry.get("sessions.storage.writer.rejected").counter().count());
+
+            release.countDown();
+            assertTrue(stop.get(10L, TimeUnit.SECONDS));
+            for (Future<?> future : queued) {
+                future.get(10L, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            assertEquals(3, storage.indexSize());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.example.sessionsstore.model;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StoppedSessionsSweeperTests {
+
+    private final SessionsStore sessionsStore = new SessionsStore();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testGivenSessionsStoppedBeforeRetention_WhenSweep_ThenEvictThemAndRecordMetrics() {
+        LocalDateTime now = LocalDateTime.now();
+        stopSession(sessionsStore.addSession("ABC-12345", now.minusDays(2L)), now.minusDays(2L));
+        stopSession(sessionsStore.addSession("ABC-12345", now.minusDays(2L)), now.minusDays(2L).plusMinutes(10L));
+        sessionsStore.addSession("ABC-12345", now.minusDays(2L));
+        stopSession(sessionsStore.addSession("ABC-12345", now.minusDays(2L)), now);
+        StoppedSessionsSweeper sweeper = new StoppedSessionsSweeper(sessionsStore, Duration.ofHours(24L), Duration.ofMinutes(1L), meterRegistryProvider());
+
+        sweeper.sweep();
+
+        assertEquals(2, sessionsStore.getAllSessions().size());
+        assertEquals(2.0, meterRegistry.counter("sessions.evicted").count());
+        assertEquals(2.0, meterRegistry.counter("sessions.evicted.buckets").count());
+        assertEquals(1L, meterRegistry.timer("sessions.sweep.duration").count());
+        assertEquals(3L, meterRegistry.timer("sessions.sweep.pause").count());
+    }
+
+    @Test
+    void testGivenRetentionShorterThanOneMinute_WhenCreateSweeper_ThenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new StoppedSessionsSweeper(sessionsStore, Duration.ofSeconds(30L), Duration.ofMinutes(1L), meterRegistryProvider()));
+    }
+
+    private void stopSession(ChargingSession session, LocalDateTime stopTime) {
+        sessionsStore.stopSession(session.getId().toString(), stopTime);
+    }
+
+    private ObjectProvider<MeterRegistry> meterRegistryProvider() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return beanFactory.getBeanProvider(MeterRegistry.class);
+    }
+
+}